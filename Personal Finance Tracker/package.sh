@@ -0,0 +1,24 @@
+#!/bin/sh
+# Builds dist/ with the application jar, the JDBC driver from lib/, an AppCDS
+# archive of the classes loaded during startup, and a run.sh launcher.
+# The training run opens the window once, so it needs a display.
+set -e
+cd "$(dirname "$0")"
+DIST="$(pwd)/dist"
+
+rm -rf build "$DIST"
+mkdir -p build "$DIST/lib"
+# The SIMD kernel needs --add-modules at build and run time; release builds use the scalar one
+javac -d build -cp "lib/*" $(ls src/*.java | grep -v VectorProjectionKernel)
+jar --create --file "$DIST/finance-tracker.jar" --main-class FinanceTracker -C build .
+cp lib/*.jar "$DIST/lib/"
+
+CP="$DIST/finance-tracker.jar:$DIST/lib/*"
+java -XX:ArchiveClassesAtExit="$DIST/finance-tracker.jsa" -cp "$CP" StartupBenchmark --child
+
+cat > "$DIST/run.sh" <<RUN
+#!/bin/sh
+exec java -XX:SharedArchiveFile="$DIST/finance-tracker.jsa" -cp "$CP" FinanceTracker "\$@"
+RUN
+chmod +x "$DIST/run.sh"
+echo "Packaged into $DIST"
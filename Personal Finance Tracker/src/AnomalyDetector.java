@@ -0,0 +1,147 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Online per-category model of expenses, used to flag unusual ones as they
+// arrive. Amounts are tracked on a log scale with Welford's running mean and
+// variance. Sizes are roughly log-normal, so a plain z-score would flag every
+// rent payment. Frequency is an EWMA of expenses per day. Each category costs
+// a fixed handful of fields however many rows it has seen, and scoring a row
+// is a map lookup plus a few arithmetic operations.
+class AnomalyDetector {
+    static final int WARM_UP = 30;                  // observations (or days) before a category is scored
+    static final double AMOUNT_THRESHOLD = 3.5;     // standard deviations above the mean log amount
+    static final double FREQUENCY_THRESHOLD = 4.0;  // Poisson-style deviations above the daily rate
+    private static final double DAILY_ALPHA = 0.05; // weight of each new day, roughly a 20-day memory
+    private static final double MIN_LOG_SD = 0.1;   // amounts that never vary still tolerate ~10%
+
+    static final class Alert {
+        final Transaction transaction;
+        final double amount;   // in the currency the detector was fed
+        final String reason;
+        final double score;
+
+        Alert(Transaction transaction, double amount, String reason, double score) {
+            this.transaction = transaction;
+            this.amount = amount;
+            this.reason = reason;
+            this.score = score;
+        }
+    }
+
+    private static final class Stats {
+        long n;
+        double mean;
+        double m2;
+        long lastDay = Long.MIN_VALUE;
+        int today;       // expenses seen on lastDay
+        double rate;     // EWMA of expenses per day, up to the day before lastDay
+        long days;       // days the rate has been folded over
+
+        void add(double x) {
+            n++;
+            double delta = x - mean;
+            mean += delta / n;
+            m2 += delta * (x - mean);
+        }
+
+        void remove(double x) {
+            if (n <= 1) {
+                n = 0;
+                mean = 0;
+                m2 = 0;
+                return;
+            }
+            double delta = x - mean;
+            mean -= delta / --n;
+            m2 = Math.max(0, m2 - delta * (x - mean));
+        }
+
+        // Moves to `day`, folding the finished day and the empty days between
+        // into the rate; false for a date older than the one already seen
+        boolean advance(long day) {
+            if (lastDay == Long.MIN_VALUE) {
+                lastDay = day;
+                return true;
+            }
+            if (day < lastDay) return false;
+            if (day > lastDay) {
+                rate = (1 - DAILY_ALPHA) * rate + DAILY_ALPHA * today;
+                long gap = Math.min(day - lastDay - 1, 10_000);
+                if (gap > 0) rate *= Math.pow(1 - DAILY_ALPHA, gap);
+                days += day - lastDay;
+                today = 0;
+                lastDay = day;
+            }
+            return true;
+        }
+    }
+
+    private final Map<String, Stats> stats = new HashMap<>();
+
+    // Scores an expense against what its category has seen so far, then
+    // learns from it; null when nothing about it is unusual
+    Alert observe(Transaction t, double amount) {
+        if (!(amount > 0)) return null;
+        Stats s = stats.computeIfAbsent(t.getCategory(), k -> new Stats());
+        double x = Math.log(amount);
+        Alert alert = null;
+        if (s.n >= WARM_UP) {
+            double sd = Math.max(MIN_LOG_SD, Math.sqrt(s.m2 / (s.n - 1)));
+            double z = (x - s.mean) / sd;
+            if (z >= AMOUNT_THRESHOLD) {
+                alert = new Alert(t, amount, String.format("%.1fx the usual %s amount", amount / Math.exp(s.mean), t.getCategory()), z);
+            }
+        }
+        s.add(x);
+        if (s.advance(t.getDate().toEpochDay())) {
+            s.today++;
+            if (alert == null && s.days >= WARM_UP && s.today >= 2) {
+                double z = (s.today - s.rate) / Math.sqrt(Math.max(s.rate, 0.05));
+                if (z >= FREQUENCY_THRESHOLD) {
+                    alert = new Alert(t, amount, String.format("%d %s expenses in one day (usually %.2f)", s.today, t.getCategory(), s.rate), z);
+                }
+            }
+        }
+        return alert;
+    }
+
+    // Observes a batch in date order, since exports often list newest first
+    List<Alert> observeAll(List<Transaction> rows, FxRates.Converter fx) {
+        List<Alert> alerts = new ArrayList<>();
+        for (Transaction t : byDate(rows)) {
+            if (!t.getType().equals("Expense")) continue;
+            Alert alert = observe(t, fx.convert(t));
+            if (alert != null) alerts.add(alert);
+        }
+        return alerts;
+    }
+
+    // Rebuilds the model from history without raising alerts
+    void train(Iterable<Transaction> rows, FxRates.Converter fx) {
+        stats.clear();
+        List<Transaction> expenses = new ArrayList<>();
+        for (Transaction t : rows) {
+            if (t.getType().equals("Expense")) expenses.add(t);
+        }
+        for (Transaction t : byDate(expenses)) observe(t, fx.convert(t));
+    }
+
+    // Takes a removed expense back out of the amount statistics; the daily
+    // rate is left alone since it only ever looks forward
+    void forget(Transaction t, double amount) {
+        Stats s = stats.get(t.getCategory());
+        if (s != null && amount > 0) s.remove(Math.log(amount));
+    }
+
+    private static List<Transaction> byDate(List<Transaction> rows) {
+        boolean ordered = true;
+        for (int i = 1; i < rows.size() && ordered; i++) ordered = !rows.get(i).getDate().isBefore(rows.get(i - 1).getDate());
+        if (ordered) return rows;
+        List<Transaction> sorted = new ArrayList<>(rows);
+        sorted.sort(Comparator.comparing(Transaction::getDate));
+        return sorted;
+    }
+}
@@ -0,0 +1,278 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Arrow IPC file format (version 5 metadata): magic, a schema message, then
+// per row group a dictionary batch for each encoded column's new values
+// (deltas after the first) and a record batch, then a footer indexing the
+// batches. No column is nullable, so validity buffers are empty.
+class ArrowFileWriter implements ColumnarExport.Sink {
+    private static final byte[] MAGIC = "ARROW1".getBytes(StandardCharsets.US_ASCII);
+    private static final short METADATA_V5 = 4;
+    // Type union
+    private static final byte TYPE_INT = 2, TYPE_UTF8 = 5, TYPE_DECIMAL = 7, TYPE_DATE = 8;
+    // MessageHeader union
+    private static final byte HEADER_SCHEMA = 1, HEADER_DICTIONARY_BATCH = 2, HEADER_RECORD_BATCH = 3;
+    // Dictionary ids of the type, category and currency columns
+    private static final int TYPE_DICT = 0, CATEGORY_DICT = 1, CURRENCY_DICT = 2;
+
+    private final OutputStream out;
+    private long position;
+    private final List<long[]> dictionaryBlocks = new ArrayList<>();
+    private final List<long[]> recordBlocks = new ArrayList<>();
+    private final int[] dictionaryWritten = new int[3];
+    private final boolean[] dictionaryDefined = new boolean[3];
+    private final Body body = new Body();
+
+    ArrowFileWriter(File file) throws IOException {
+        this(new FileOutputStream(file));
+    }
+
+    ArrowFileWriter(OutputStream target) throws IOException {
+        out = new BufferedOutputStream(target, 1 << 16);
+        write(MAGIC, MAGIC.length);
+        write(new byte[2], 2);
+        FlatBufferBuilder fb = new FlatBufferBuilder();
+        writeMessage(fb, HEADER_SCHEMA, schema(fb), 0);
+    }
+
+    @Override
+    public void write(ColumnarExport.RowGroup g) throws IOException {
+        writeDictionary(TYPE_DICT, g.types.values);
+        writeDictionary(CATEGORY_DICT, g.categories.values);
+        writeDictionary(CURRENCY_DICT, g.currencies.values);
+
+        int n = g.size;
+        body.reset();
+        body.ints(g.id, n);
+        body.ints(g.day, n);
+        body.ints(g.type, n);
+        body.ints(g.category, n);
+        body.decimals(g.cents, n);
+        body.ints(g.currency, n);
+        body.strings(g.description, 0, n);
+        FlatBufferBuilder fb = new FlatBufferBuilder();
+        recordBlocks.add(writeMessage(fb, HEADER_RECORD_BATCH, recordBatch(fb, n, ColumnarExport.COLUMNS.length), body.size()));
+    }
+
+    // The first batch for an id defines the dictionary; later ones only append
+    private void writeDictionary(int id, List<String> values) throws IOException {
+        int from = dictionaryWritten[id], to = values.size();
+        if (dictionaryDefined[id] && from == to) return;
+        body.reset();
+        body.strings(values.subList(from, to).toArray(new String[0]), 0, to - from);
+        FlatBufferBuilder fb = new FlatBufferBuilder();
+        int data = recordBatch(fb, to - from, 1);
+        fb.startTable(3);
+        fb.addLong(0, id);
+        fb.addOffset(1, data);
+        fb.addByte(2, (byte) (dictionaryDefined[id] ? 1 : 0));
+        dictionaryBlocks.add(writeMessage(fb, HEADER_DICTIONARY_BATCH, fb.endTable(), body.size()));
+        dictionaryWritten[id] = to;
+        dictionaryDefined[id] = true;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        // An empty export still defines every dictionary the schema names
+        for (int id = 0; id < dictionaryDefined.length; id++) {
+            if (!dictionaryDefined[id]) writeDictionary(id, new ArrayList<>());
+        }
+        writeInt(-1); // end-of-stream marker
+        writeInt(0);
+        FlatBufferBuilder fb = new FlatBufferBuilder();
+        int schema = schema(fb);
+        int dictionaries = fb.createStructVector(dictionaryBlocks.toArray(new long[0][]), 24);
+        int batches = fb.createStructVector(recordBlocks.toArray(new long[0][]), 24);
+        fb.startTable(5);
+        fb.addShort(0, METADATA_V5);
+        fb.addOffset(1, schema);
+        fb.addOffset(2, dictionaries);
+        fb.addOffset(3, batches);
+        byte[] footer = fb.finish(fb.endTable());
+        write(footer, footer.length);
+        writeInt(footer.length);
+        write(MAGIC, MAGIC.length);
+        out.close();
+    }
+
+    private int schema(FlatBufferBuilder fb) {
+        int[] fields = {
+            field(fb, "id", TYPE_INT, intType(fb), -1),
+            field(fb, "date", TYPE_DATE, dateType(fb), -1),
+            field(fb, "type", TYPE_UTF8, emptyTable(fb), TYPE_DICT),
+            field(fb, "category", TYPE_UTF8, emptyTable(fb), CATEGORY_DICT),
+            field(fb, "amount", TYPE_DECIMAL, decimalType(fb), -1),
+            field(fb, "currency", TYPE_UTF8, emptyTable(fb), CURRENCY_DICT),
+            field(fb, "description", TYPE_UTF8, emptyTable(fb), -1)
+        };
+        int vector = fb.createOffsetVector(fields);
+        fb.startTable(4);
+        fb.addShort(0, (short) 0); // little-endian
+        fb.addOffset(1, vector);
+        return fb.endTable();
+    }
+
+    private static int field(FlatBufferBuilder fb, String name, byte typeType, int type, int dictionaryId) {
+        int nameOffset = fb.createString(name);
+        int dictionary = 0;
+        if (dictionaryId >= 0) {
+            int indexType = intType(fb);
+            fb.startTable(4);
+            fb.addLong(0, dictionaryId);
+            fb.addOffset(1, indexType);
+            dictionary = fb.endTable();
+        }
+        int children = fb.createOffsetVector(new int[0]);
+        fb.startTable(7);
+        fb.addOffset(0, nameOffset);
+        fb.addByte(1, (byte) 0);
+        fb.addByte(2, typeType);
+        fb.addOffset(3, type);
+        if (dictionaryId >= 0) fb.addOffset(4, dictionary);
+        fb.addOffset(5, children);
+        return fb.endTable();
+    }
+
+    // Signed 32-bit, also the index type of every dictionary
+    private static int intType(FlatBufferBuilder fb) {
+        fb.startTable(2);
+        fb.addInt(0, 32);
+        fb.addByte(1, (byte) 1);
+        return fb.endTable();
+    }
+
+    private static int dateType(FlatBufferBuilder fb) {
+        fb.startTable(1);
+        fb.addShort(0, (short) 0); // DateUnit.DAY
+        return fb.endTable();
+    }
+
+    private static int decimalType(FlatBufferBuilder fb) {
+        fb.startTable(3);
+        fb.addInt(0, ColumnarExport.PRECISION);
+        fb.addInt(1, ColumnarExport.SCALE);
+        fb.addInt(2, 128);
+        return fb.endTable();
+    }
+
+    private static int emptyTable(FlatBufferBuilder fb) {
+        fb.startTable(0);
+        return fb.endTable();
+    }
+
+    // RecordBatch over the buffers in `body`: one node per column, none nullable
+    private int recordBatch(FlatBufferBuilder fb, int length, int columns) {
+        long[][] nodes = new long[columns][];
+        for (int c = 0; c < columns; c++) nodes[c] = new long[]{length, 0};
+        int buffers = fb.createStructVector(body.buffers(), 16);
+        int nodeVector = fb.createStructVector(nodes, 16);
+        fb.startTable(5);
+        fb.addLong(0, length);
+        fb.addOffset(1, nodeVector);
+        fb.addOffset(2, buffers);
+        return fb.endTable();
+    }
+
+    // Encapsulated message: continuation marker, padded metadata length,
+    // Message flatbuffer, then the body. Returns the footer Block.
+    private long[] writeMessage(FlatBufferBuilder fb, byte headerType, int header, int bodyLength) throws IOException {
+        fb.startTable(5);
+        fb.addLong(3, bodyLength);
+        fb.addOffset(2, header);
+        fb.addShort(0, METADATA_V5);
+        fb.addByte(1, headerType);
+        byte[] metadata = fb.finish(fb.endTable());
+        long start = position;
+        int padded = ((metadata.length + 8 + 7) & ~7) - 8;
+        writeInt(-1);
+        writeInt(padded);
+        write(metadata, metadata.length);
+        write(new byte[padded - metadata.length], padded - metadata.length);
+        write(body.bytes, bodyLength);
+        return new long[]{start, 8 + padded, bodyLength};
+    }
+
+    private void write(byte[] bytes, int length) throws IOException {
+        out.write(bytes, 0, length);
+        position += length;
+    }
+
+    private void writeInt(int v) throws IOException {
+        out.write(v);
+        out.write(v >>> 8);
+        out.write(v >>> 16);
+        out.write(v >>> 24);
+        position += 4;
+    }
+
+    // Message body: buffers laid out back to back, each padded to 8 bytes
+    private static final class Body {
+        byte[] bytes = new byte[1 << 16];
+        private int size;
+        private final List<long[]> buffers = new ArrayList<>();
+
+        void reset() {
+            size = 0;
+            buffers.clear();
+        }
+
+        int size() { return size; }
+
+        long[][] buffers() { return buffers.toArray(new long[0][]); }
+
+        private ByteBuffer reserve(int length) {
+            int padded = (length + 7) & ~7;
+            if (size + padded > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + padded));
+            }
+            buffers.add(new long[]{size, length});
+            ByteBuffer view = ByteBuffer.wrap(bytes, size, padded).order(ByteOrder.LITTLE_ENDIAN);
+            Arrays.fill(bytes, size + length, size + padded, (byte) 0);
+            size += padded;
+            return view;
+        }
+
+        private void validity() { buffers.add(new long[]{size, 0}); }
+
+        void ints(int[] values, int n) {
+            validity();
+            ByteBuffer b = reserve(4 * n);
+            for (int i = 0; i < n; i++) b.putInt(values[i]);
+        }
+
+        // decimal128: the cents as a sign-extended 128-bit little-endian integer
+        void decimals(long[] cents, int n) {
+            validity();
+            ByteBuffer b = reserve(16 * n);
+            for (int i = 0; i < n; i++) {
+                b.putLong(cents[i]);
+                b.putLong(cents[i] < 0 ? -1 : 0);
+            }
+        }
+
+        void strings(String[] values, int from, int to) {
+            validity();
+            byte[][] utf8 = new byte[to - from][];
+            int total = 0;
+            for (int i = from; i < to; i++) {
+                utf8[i - from] = values[i].getBytes(StandardCharsets.UTF_8);
+                total += utf8[i - from].length;
+            }
+            ByteBuffer offsets = reserve(4 * (to - from + 1));
+            int offset = 0;
+            offsets.putInt(0);
+            for (byte[] s : utf8) offsets.putInt(offset += s.length);
+            ByteBuffer data = reserve(total);
+            for (byte[] s : utf8) data.put(s);
+        }
+    }
+}
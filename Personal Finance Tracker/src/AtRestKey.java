@@ -0,0 +1,170 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+// Passphrase-derived key for files written at rest, and the chunked AES-GCM
+// format they use. PBKDF2 turns the passphrase into a master key once per
+// session (its salt goes into every file); each file then gets its own key
+// from HKDF over a fresh random salt, so nonces never repeat under one key.
+//
+// File layout: header, then chunks of [int length][ciphertext + 16-byte tag].
+// Header: MAGIC | version | chunk size | PBKDF2 iterations | PBKDF2 salt (16)
+// | file salt (16) | nonce prefix (7). Chunk i is sealed under the nonce
+// prefix | i (4 bytes) | 1 if last else 0, with the header as associated
+// data, so chunks cannot be reordered, dropped, truncated or moved between files.
+final class AtRestKey {
+    static final String SUFFIX = ".ftenc";
+    static final int MAGIC = 0x4654454E; // "FTEN"
+    static final int VERSION = 1;
+    static final int CHUNK_SIZE = 256 * 1024;
+    static final int TAG_BYTES = 16;
+    static final int HEADER_BYTES = 4 + 4 + 4 + 4 + 16 + 16 + 7;
+    private static final int ITERATIONS = 310_000;
+
+    // Chunk crypto runs here, one worker per core, shared by all streams
+    static final ExecutorService WORKERS = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+        Thread t = new Thread(r, "at-rest-crypto");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    });
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final byte[] kdfSalt;
+    private final int iterations;
+    private final byte[] master;
+
+    private AtRestKey(byte[] kdfSalt, int iterations, byte[] master) {
+        this.kdfSalt = kdfSalt;
+        this.iterations = iterations;
+        this.master = master;
+    }
+
+    // New session key under a fresh salt
+    static AtRestKey derive(char[] passphrase) throws GeneralSecurityException {
+        byte[] salt = new byte[16];
+        RANDOM.nextBytes(salt);
+        return derive(passphrase, salt, ITERATIONS);
+    }
+
+    static AtRestKey derive(char[] passphrase, byte[] salt, int iterations) throws GeneralSecurityException {
+        PBEKeySpec spec = new PBEKeySpec(passphrase, salt, iterations, 256);
+        try {
+            byte[] master = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            return new AtRestKey(salt.clone(), iterations, master);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    // Same passphrase under the salt a file was written with; reuses this key when it matches
+    AtRestKey forFile(Header header, char[] passphrase) throws GeneralSecurityException {
+        if (Arrays.equals(header.kdfSalt, kdfSalt) && header.iterations == iterations) return this;
+        return derive(passphrase, header.kdfSalt, header.iterations);
+    }
+
+    Header newHeader() {
+        Header h = new Header();
+        h.chunkSize = CHUNK_SIZE;
+        h.iterations = iterations;
+        h.kdfSalt = kdfSalt.clone();
+        RANDOM.nextBytes(h.fileSalt);
+        RANDOM.nextBytes(h.noncePrefix);
+        return h;
+    }
+
+    // HKDF-SHA256 with the file salt; one output block is the whole AES-256 key
+    SecretKey fileKey(Header header) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(header.fileSalt, "HmacSHA256"));
+        byte[] prk = mac.doFinal(master);
+        mac.init(new SecretKeySpec(prk, "HmacSHA256"));
+        mac.update("finance-tracker at-rest v1".getBytes(StandardCharsets.US_ASCII));
+        mac.update((byte) 1);
+        return new SecretKeySpec(mac.doFinal(), "AES");
+    }
+
+    static final class Header {
+        int chunkSize;
+        int iterations;
+        byte[] kdfSalt = new byte[16];
+        final byte[] fileSalt = new byte[16];
+        final byte[] noncePrefix = new byte[7];
+        byte[] encoded;
+
+        byte[] encode() throws IOException {
+            if (encoded != null) return encoded;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_BYTES);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(chunkSize);
+            out.writeInt(iterations);
+            out.write(kdfSalt);
+            out.write(fileSalt);
+            out.write(noncePrefix);
+            return encoded = bytes.toByteArray();
+        }
+
+        static Header read(DataInputStream in) throws IOException {
+            Header h = new Header();
+            if (in.readInt() != MAGIC) throw new IOException("Not an encrypted tracker file");
+            if (in.readInt() != VERSION) throw new IOException("Unsupported encrypted file version");
+            h.chunkSize = in.readInt();
+            h.iterations = in.readInt();
+            if (h.chunkSize <= 0 || h.chunkSize > (64 << 20) || h.iterations <= 0) throw new IOException("Corrupt encrypted file header");
+            in.readFully(h.kdfSalt);
+            in.readFully(h.fileSalt);
+            in.readFully(h.noncePrefix);
+            h.encode();
+            return h;
+        }
+    }
+
+    // Seals or opens one chunk; called on the worker threads
+    static byte[] crypt(int mode, SecretKey key, Header header, long index, boolean last, byte[] data, int length) throws GeneralSecurityException, IOException {
+        if (index > 0xFFFFFFFFL) throw new IOException("File too large to encrypt");
+        byte[] nonce = new byte[12];
+        System.arraycopy(header.noncePrefix, 0, nonce, 0, 7);
+        nonce[7] = (byte) (index >>> 24);
+        nonce[8] = (byte) (index >>> 16);
+        nonce[9] = (byte) (index >>> 8);
+        nonce[10] = (byte) index;
+        nonce[11] = (byte) (last ? 1 : 0);
+        Cipher cipher = CIPHER.get();
+        cipher.init(mode, key, new GCMParameterSpec(TAG_BYTES * 8, nonce));
+        cipher.updateAAD(header.encode());
+        return cipher.doFinal(data, 0, length);
+    }
+
+    // True when the file starts with the encrypted-file magic
+    static boolean isEncrypted(File file) {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+}
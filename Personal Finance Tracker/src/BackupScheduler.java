@@ -0,0 +1,466 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// Background backups of the database and the archive partitions under
+// backups/. A run first takes a consistent copy with VACUUM INTO. In WAL
+// mode that is a read transaction, so writers keep going while it runs.
+// The copy is then cut into chunks at page boundaries where a page's CRC
+// hits a fixed pattern, so a page inserted or removed early in the file only
+// changes the chunks around it. Chunks are stored deflated and named by
+// their SHA-256. Each snapshot is a manifest listing its chunks, so a run
+// only writes chunks that no earlier snapshot has. The manifest also records
+// every file's SHA-256 and the run's timings.
+//
+// While a session passphrase is set, new chunks and manifests are deflated
+// and then written in the AtRestKey format. Chunks keep their plaintext
+// SHA-256 names so deduplication still works, and a plain chunk that a run
+// needs again is rewritten encrypted. Reading either kind needs no flag,
+// since encrypted files start with the format's magic.
+//
+// Reading and storing the copy is paced to a fixed byte rate on a
+// low-priority thread. VACUUM INTO itself cannot be paced. A file lock
+// keeps two tracker instances from backing up or pruning at the same time.
+final class BackupScheduler {
+    static final long BYTES_PER_SECOND = 32L << 20;
+    private static final int DEFAULT_PAGE = 4096;
+    private static final int BOUNDARY_MASK = 15;      // a cut after about every 16th page
+    private static final int MAX_PAGES_PER_CHUNK = 64;
+    private static final DateTimeFormatter NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final File directory;
+    private final File chunks;
+    private final File snapshots;
+    private final File archive;
+    private final SharedDatabase.ConnectionSource connections;
+    private final int keep;
+    private final long bytesPerSecond;
+    private volatile Secret secret;
+    private Timer timer;
+    private long paceStart;
+    private long paced;
+
+    // One backup run as recorded in its manifest
+    static final class Snapshot {
+        final String name;
+        LocalDateTime taken;
+        long bytes;          // all files, uncompressed
+        long newBytes;       // compressed bytes of chunks this run had to write
+        int newChunks;
+        int reusedChunks;
+        long copyMillis;     // VACUUM INTO
+        long storeMillis;    // chunking, hashing and writing, paced
+        boolean locked;      // encrypted and not readable with this session's passphrase
+        final List<BackedUpFile> files = new ArrayList<>();
+
+        Snapshot(String name) { this.name = name; }
+    }
+
+    // Session key and its passphrase; the passphrase opens files sealed under an earlier salt
+    private static final class Secret {
+        final AtRestKey key;
+        final char[] passphrase;
+
+        Secret(AtRestKey key, char[] passphrase) {
+            this.key = key;
+            this.passphrase = passphrase.clone();
+        }
+    }
+
+    static final class BackedUpFile {
+        final String path;
+        final long bytes;
+        final String sha256;
+        final List<String> chunks = new ArrayList<>();
+
+        BackedUpFile(String path, long bytes, String sha256) {
+            this.path = path;
+            this.bytes = bytes;
+            this.sha256 = sha256;
+        }
+    }
+
+    BackupScheduler(File directory, File archive, SharedDatabase.ConnectionSource connections, int keep, long bytesPerSecond) {
+        this.directory = directory;
+        this.chunks = new File(directory, "chunks");
+        this.snapshots = new File(directory, "snapshots");
+        this.archive = archive;
+        this.connections = connections;
+        this.keep = keep;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    // Checks every `checkMillis` and backs up once the newest snapshot is
+    // older than `interval`, so a tracker that is only open now and then
+    // still gets its daily backup. `status` hears about each run.
+    synchronized void start(long firstCheckMillis, long checkMillis, Duration interval, Consumer<String> status) {
+        if (timer != null) return;
+        timer = new Timer("db-backup", true);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+                try {
+                    List<Snapshot> existing = snapshots();
+                    if (!existing.isEmpty() && existing.get(0).taken.plus(interval).isAfter(LocalDateTime.now())) return;
+                    Snapshot s = backUpNow();
+                    if (s != null) status.accept(describe(s));
+                } catch (IOException | SQLException | RuntimeException ex) {
+                    ex.printStackTrace();
+                    status.accept("Backup failed: " + ex.getMessage());
+                }
+            }
+        }, firstCheckMillis, checkMillis);
+    }
+
+    // Encrypts later chunks and manifests under `key`; null writes them plain again
+    void setKey(AtRestKey key, char[] passphrase) {
+        secret = key == null ? null : new Secret(key, passphrase);
+    }
+
+    synchronized void stop() {
+        if (timer != null) timer.cancel();
+        timer = null;
+    }
+
+    static String describe(Snapshot s) {
+        return String.format("Backed up %.1f MB in %.1f s (%.1f MB new, %d of %d chunks reused).",
+            s.bytes / 1048576.0, (s.copyMillis + s.storeMillis) / 1000.0, s.newBytes / 1048576.0,
+            s.reusedChunks, s.reusedChunks + s.newChunks);
+    }
+
+    // Takes a snapshot now; null when another instance is backing up
+    synchronized Snapshot backUpNow() throws IOException, SQLException {
+        Files.createDirectories(chunks.toPath());
+        Files.createDirectories(snapshots.toPath());
+        try (FileChannel channel = FileChannel.open(new File(directory, ".lock").toPath(),
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.tryLock()) {
+            if (lock == null) return null;
+            removeLeftovers();
+
+            Snapshot s = new Snapshot(LocalDateTime.now().format(NAME));
+            s.taken = LocalDateTime.now().withNano(0);
+            File copy = new File(directory, "copy-" + s.name + ".db");
+            try {
+                long start = System.nanoTime();
+                try (Connection conn = connections.open();
+                     PreparedStatement stmt = conn.prepareStatement("VACUUM INTO ?")) {
+                    stmt.setString(1, copy.getAbsolutePath());
+                    stmt.execute();
+                }
+                s.copyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+                start = System.nanoTime();
+                paceStart = start;
+                paced = 0;
+                store(s, "finance_tracker.db", copy, sqlitePageSize(copy));
+                File[] partitions = archive.listFiles((d, name) -> name.endsWith(".ftpart"));
+                if (partitions != null) {
+                    Arrays.sort(partitions);
+                    for (File partition : partitions) store(s, "archive/" + partition.getName(), partition, DEFAULT_PAGE);
+                }
+                writeManifest(s);
+                s.storeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                writeManifest(s); // again with the store time; the rename keeps it atomic
+            } finally {
+                copy.delete();
+            }
+            prune();
+            return s;
+        }
+    }
+
+    // Newest first
+    List<Snapshot> snapshots() throws IOException {
+        File[] manifests = snapshots.listFiles((d, name) -> name.endsWith(".manifest"));
+        List<Snapshot> list = new ArrayList<>();
+        if (manifests == null) return list;
+        Arrays.sort(manifests, (a, b) -> b.getName().compareTo(a.getName()));
+        for (File manifest : manifests) list.add(readManifest(manifest));
+        return list;
+    }
+
+    // Rebuilds the snapshot's files under `target` and checks each checksum
+    void restore(Snapshot s, File target) throws IOException {
+        checkUnlocked(s);
+        for (BackedUpFile f : s.files) {
+            File out = new File(target, f.path);
+            Files.createDirectories(out.getAbsoluteFile().getParentFile().toPath());
+            boolean ok = false;
+            try (OutputStream os = Files.newOutputStream(out.toPath())) {
+                check(f, os);
+                ok = true;
+            } finally {
+                if (!ok) out.delete();
+            }
+        }
+    }
+
+    // Reads every chunk of the snapshot back and checks each file's checksum
+    void verify(Snapshot s) throws IOException {
+        checkUnlocked(s);
+        for (BackedUpFile f : s.files) check(f, OutputStream.nullOutputStream());
+    }
+
+    private static void checkUnlocked(Snapshot s) throws IOException {
+        if (s.locked) throw new IOException("Backup " + s.name + " is encrypted; set its passphrase first");
+    }
+
+    private void check(BackedUpFile f, OutputStream out) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[1 << 16];
+        for (String chunk : f.chunks) {
+            try (InputStream in = new InflaterInputStream(open(chunkFile(chunk)))) {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, n);
+                    out.write(buffer, 0, n);
+                }
+            }
+        }
+        if (!hex(digest.digest()).equals(f.sha256)) throw new IOException("Checksum mismatch in " + f.path);
+    }
+
+    private void store(Snapshot s, String path, File file, int pageSize) throws IOException {
+        MessageDigest whole = sha256();
+        List<String> stored = new ArrayList<>();
+        CRC32 crc = new CRC32();
+        byte[] page = new byte[pageSize];
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream(MAX_PAGES_PER_CHUNK * pageSize);
+        int pages = 0;
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16)) {
+            int n;
+            while ((n = in.readNBytes(page, 0, pageSize)) > 0) {
+                whole.update(page, 0, n);
+                chunk.write(page, 0, n);
+                crc.reset();
+                crc.update(page, 0, n);
+                if ((crc.getValue() & BOUNDARY_MASK) == 0 || ++pages == MAX_PAGES_PER_CHUNK) {
+                    stored.add(storeChunk(s, chunk.toByteArray()));
+                    chunk.reset();
+                    pages = 0;
+                }
+                pace(n);
+            }
+        }
+        if (chunk.size() > 0) stored.add(storeChunk(s, chunk.toByteArray()));
+        BackedUpFile f = new BackedUpFile(path, file.length(), hex(whole.digest()));
+        f.chunks.addAll(stored);
+        s.files.add(f);
+        s.bytes += f.bytes;
+    }
+
+    private String storeChunk(Snapshot s, byte[] data) throws IOException {
+        String name = hex(sha256().digest(data));
+        File target = chunkFile(name);
+        Secret current = secret;
+        if (target.exists() && (current == null || AtRestKey.isEncrypted(target))) {
+            s.reusedChunks++;
+            return name;
+        }
+        Files.createDirectories(target.getParentFile().toPath());
+        File tmp = new File(target.getPath() + ".tmp");
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (OutputStream out = new DeflaterOutputStream(seal(Files.newOutputStream(tmp.toPath()), current), deflater)) {
+            out.write(data);
+        } finally {
+            deflater.end();
+        }
+        s.newBytes += tmp.length();
+        s.newChunks++;
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return name;
+    }
+
+    // Sleeps as needed to keep the run at or below bytesPerSecond
+    private void pace(long bytes) throws IOException {
+        paced += bytes;
+        long wait = paceStart + paced * 1_000_000_000L / bytesPerSecond - System.nanoTime();
+        if (wait <= 0) return;
+        try {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Backup interrupted");
+        }
+    }
+
+    // Keeps the newest `keep` snapshots, then deletes chunks none of them use
+    private void prune() throws IOException {
+        List<Snapshot> all = snapshots();
+        for (Snapshot old : all.subList(Math.min(keep, all.size()), all.size())) {
+            Files.deleteIfExists(new File(snapshots, old.name + ".manifest").toPath());
+        }
+        Set<String> live = new HashSet<>();
+        for (Snapshot s : all.subList(0, Math.min(keep, all.size()))) {
+            if (s.locked) return; // its chunks are unknown, so none can be called unused
+            for (BackedUpFile f : s.files) live.addAll(f.chunks);
+        }
+        try (Stream<Path> files = Files.walk(chunks.toPath())) {
+            for (Path p : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                if (!live.contains(p.getFileName().toString())) Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    // Copies and partial chunks left by a run that was killed
+    private void removeLeftovers() throws IOException {
+        File[] copies = directory.listFiles((d, name) -> name.startsWith("copy-") && name.endsWith(".db"));
+        if (copies != null) {
+            for (File copy : copies) copy.delete();
+        }
+        try (Stream<Path> files = Files.walk(chunks.toPath())) {
+            for (Path p : (Iterable<Path>) files.filter(p -> p.toString().endsWith(".tmp"))::iterator) Files.deleteIfExists(p);
+        }
+    }
+
+    private void writeManifest(Snapshot s) throws IOException {
+        StringBuilder out = new StringBuilder();
+        out.append("taken=").append(s.taken).append('\n');
+        out.append("bytes=").append(s.bytes).append('\n');
+        out.append("new-bytes=").append(s.newBytes).append('\n');
+        out.append("new-chunks=").append(s.newChunks).append('\n');
+        out.append("reused-chunks=").append(s.reusedChunks).append('\n');
+        out.append("copy-ms=").append(s.copyMillis).append('\n');
+        out.append("store-ms=").append(s.storeMillis).append('\n');
+        for (BackedUpFile f : s.files) {
+            out.append("file ").append(f.bytes).append(' ').append(f.sha256).append(' ').append(f.path).append('\n');
+            for (String chunk : f.chunks) out.append("chunk ").append(chunk).append('\n');
+        }
+        Path target = new File(snapshots, s.name + ".manifest").toPath();
+        Path tmp = new File(snapshots, s.name + ".manifest.tmp").toPath();
+        try (OutputStream file = seal(Files.newOutputStream(tmp), secret)) {
+            file.write(out.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Snapshot readManifest(File manifest) throws IOException {
+        String name = manifest.getName();
+        Snapshot s = new Snapshot(name.substring(0, name.length() - ".manifest".length()));
+        String text;
+        try (InputStream in = open(manifest)) {
+            text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException ex) {
+            if (!AtRestKey.isEncrypted(manifest)) throw ex;
+            // Listed by its name's timestamp until the right passphrase is set
+            s.locked = true;
+            s.taken = LocalDateTime.parse(s.name, NAME).withNano(0);
+            return s;
+        }
+        BackedUpFile current = null;
+        for (String line : text.split("\n")) {
+            if (line.startsWith("chunk ")) {
+                if (current == null) throw new IOException("Chunk before file in " + name);
+                current.chunks.add(line.substring(6));
+            } else if (line.startsWith("file ")) {
+                String[] parts = line.split(" ", 4);
+                current = new BackedUpFile(parts[3], Long.parseLong(parts[1]), parts[2]);
+                s.files.add(current);
+            } else if (line.contains("=")) {
+                String key = line.substring(0, line.indexOf('='));
+                String value = line.substring(line.indexOf('=') + 1);
+                switch (key) {
+                    case "taken": s.taken = LocalDateTime.parse(value); break;
+                    case "bytes": s.bytes = Long.parseLong(value); break;
+                    case "new-bytes": s.newBytes = Long.parseLong(value); break;
+                    case "new-chunks": s.newChunks = Integer.parseInt(value); break;
+                    case "reused-chunks": s.reusedChunks = Integer.parseInt(value); break;
+                    case "copy-ms": s.copyMillis = Long.parseLong(value); break;
+                    case "store-ms": s.storeMillis = Long.parseLong(value); break;
+                    default: // written by a newer version
+                }
+            }
+        }
+        if (s.taken == null) throw new IOException("Incomplete manifest " + name);
+        return s;
+    }
+
+    // A chunk or manifest as written, decrypted if it was sealed
+    private InputStream open(File file) throws IOException {
+        InputStream in = new FileInputStream(file);
+        if (!AtRestKey.isEncrypted(file)) return in;
+        Secret current = secret;
+        try {
+            if (current == null) throw new IOException(file.getName() + " is encrypted and no passphrase is set");
+            return new EncryptedInputStream(in, current.key, current.passphrase);
+        } catch (IOException ex) {
+            in.close();
+            throw ex;
+        }
+    }
+
+    private static OutputStream seal(OutputStream out, Secret secret) throws IOException {
+        if (secret == null) return out;
+        try {
+            // Chunks are small, so they are sealed on the backup thread rather than the shared pool
+            return new EncryptedOutputStream(out, secret.key, 1);
+        } catch (IOException ex) {
+            out.close();
+            throw ex;
+        }
+    }
+
+    private File chunkFile(String name) {
+        return new File(new File(chunks, name.substring(0, 2)), name);
+    }
+
+    // Page size from the SQLite header (bytes 16-17, where 1 means 65536)
+    private static int sqlitePageSize(File db) throws IOException {
+        try (InputStream in = new FileInputStream(db)) {
+            byte[] header = in.readNBytes(18);
+            if (header.length < 18) return DEFAULT_PAGE;
+            int size = ((header[16] & 0xff) << 8) | (header[17] & 0xff);
+            return size == 1 ? 65536 : size >= 512 ? size : DEFAULT_PAGE;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder out = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) out.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        return out.toString();
+    }
+}
@@ -0,0 +1,39 @@
+// Bloom filter over 64-bit fingerprints. The probe positions are derived from
+// the two halves of the fingerprint (Kirsch-Mitzenmacher double hashing).
+class BloomFilter {
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final long capacity;
+    private long size;
+
+    public BloomFilter(long expectedItems, double falsePositiveRate) {
+        capacity = Math.max(expectedItems, 1024);
+        long m = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        bits = new long[(int) ((m + 63) >>> 6)];
+        bitCount = (long) bits.length << 6;
+        hashCount = Math.max(1, (int) Math.round((double) m / capacity * Math.log(2)));
+    }
+
+    public void put(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+        size++;
+    }
+
+    public boolean mightContain(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    public boolean isFull() { return size >= capacity; }
+}
@@ -0,0 +1,55 @@
+import java.io.Serializable;
+
+class Budget implements Serializable {
+    private String category;
+    private double limit;
+    private double spent;
+    private String parent; // category of the enclosing budget, null for a top-level envelope
+    private BudgetPeriod period = BudgetPeriod.LIFETIME; // spent covers the current period only
+    private int id; // 0 until saved
+    private long version; // row version when loaded or last saved
+    private boolean modified = true; // changed here since then; only these are saved
+
+    public Budget(String category, double limit) {
+        this.category = category;
+        this.limit = limit;
+    }
+
+    public Budget(String category, double limit, String parent) {
+        this(category, limit);
+        this.parent = parent;
+    }
+
+    public Budget(String category, double limit, String parent, BudgetPeriod period) {
+        this(category, limit, parent);
+        this.period = period;
+    }
+
+    // Marks this budget as matching database row `id` at `version`
+    public void setStored(int id, long version) {
+        this.id = id;
+        this.version = version;
+        modified = false;
+    }
+
+    // A new definition for a category that already has a row updates that row
+    public void replaces(Budget stored) {
+        if (stored == null) return;
+        id = stored.id;
+        version = stored.version;
+    }
+
+    public void addExpense(double amount) {
+        spent += amount;
+    }
+
+    public String getCategory() { return category; }
+    public double getLimit() { return limit; }
+    public double getSpent() { return spent; }
+    public double getRemaining() { return limit - spent; }
+    public String getParent() { return parent; }
+    public BudgetPeriod getPeriod() { return period; }
+    public int getId() { return id; }
+    public long getVersion() { return version; }
+    public boolean isModified() { return modified; }
+}
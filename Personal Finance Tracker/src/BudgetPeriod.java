@@ -0,0 +1,96 @@
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+// When a budget's limit resets. Stored as a short spec:
+//   LIFETIME               never resets
+//   WEEKLY                 Monday to Sunday
+//   MONTHLY                calendar month
+//   EVERY:<days>:<start>   fixed-length periods repeating from a start date
+//   ROLLING:<days>         the trailing <days> days up to and including today
+final class BudgetPeriod {
+    enum Kind { LIFETIME, WEEKLY, MONTHLY, EVERY, ROLLING }
+
+    // Bounds of the lifetime window; DailySpending clamps them to its data
+    static final long FIRST_DAY = LocalDate.of(1900, 1, 1).toEpochDay();
+    static final long LAST_DAY = LocalDate.of(9999, 12, 31).toEpochDay();
+
+    static final BudgetPeriod LIFETIME = new BudgetPeriod(Kind.LIFETIME, 0, null);
+
+    private final Kind kind;
+    private final int days;
+    private final LocalDate start;
+
+    private BudgetPeriod(Kind kind, int days, LocalDate start) {
+        this.kind = kind;
+        this.days = days;
+        this.start = start;
+    }
+
+    static BudgetPeriod parse(String spec) {
+        if (spec == null || spec.trim().isEmpty()) return LIFETIME;
+        String[] parts = spec.trim().toUpperCase().split(":");
+        Kind kind = Kind.valueOf(parts[0]);
+        switch (kind) {
+            case EVERY:
+                if (parts.length != 3) throw new IllegalArgumentException("Expected EVERY:<days>:<start date>");
+                try {
+                    return new BudgetPeriod(kind, positive(parts[1]), LocalDate.parse(parts[2]));
+                } catch (DateTimeParseException ex) {
+                    throw new IllegalArgumentException("Invalid start date: " + parts[2]);
+                }
+            case ROLLING:
+                if (parts.length != 2) throw new IllegalArgumentException("Expected ROLLING:<days>");
+                return new BudgetPeriod(kind, positive(parts[1]), null);
+            case LIFETIME:
+                return LIFETIME;
+            default:
+                return new BudgetPeriod(kind, 0, null);
+        }
+    }
+
+    private static int positive(String value) {
+        int n = Integer.parseInt(value);
+        if (n < 1) throw new IllegalArgumentException("Period length must be at least one day");
+        return n;
+    }
+
+    public Kind getKind() { return kind; }
+
+    // Inclusive [first, last] epoch days of the period containing `day`
+    public long[] window(long day) {
+        LocalDate date = LocalDate.ofEpochDay(day);
+        switch (kind) {
+            case WEEKLY: {
+                long first = date.with(DayOfWeek.MONDAY).toEpochDay();
+                return new long[]{first, first + 6};
+            }
+            case MONTHLY:
+                return new long[]{date.withDayOfMonth(1).toEpochDay(), date.withDayOfMonth(date.lengthOfMonth()).toEpochDay()};
+            case EVERY: {
+                long first = start.toEpochDay() + Math.floorDiv(day - start.toEpochDay(), days) * days;
+                return new long[]{first, first + days - 1};
+            }
+            case ROLLING:
+                return new long[]{day - days + 1, day};
+            default:
+                return new long[]{FIRST_DAY, LAST_DAY};
+        }
+    }
+
+    // The period ending just before `window` starts; rolling windows step back by their length
+    public long[] previous(long[] window) {
+        if (kind == Kind.LIFETIME) return null;
+        if (kind == Kind.ROLLING) return new long[]{window[0] - days, window[0] - 1};
+        return window(window[0] - 1);
+    }
+
+    @Override
+    public String toString() {
+        switch (kind) {
+            case EVERY: return "EVERY:" + days + ":" + start;
+            case ROLLING: return "ROLLING:" + days;
+            default: return kind.name();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Budgets nested by parent category (Household > Food > Groceries). Each node
+// keeps its subtree's spending, so recording an expense adds it along the
+// path to the root in O(depth) and only those nodes are reported as changed.
+// Structural edits mark the index stale; it is rebuilt on next use.
+class BudgetTree {
+    interface Listener {
+        void spendingChanged(int[] nodes);
+        void structureChanged();
+    }
+
+    private final Map<String, Budget> budgets = new LinkedHashMap<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    private boolean stale = true;
+
+    // Index, rebuilt from `budgets` when stale
+    private Budget[] nodes = new Budget[0];
+    private final Map<String, Integer> index = new LinkedHashMap<>();
+    private int[] parent = new int[0];
+    private int[] depth = new int[0];
+    private int[][] children = new int[0][];
+    private int[] roots = new int[0];
+    private double[] rolledSpent = new double[0];
+    private double[] rolledLimit = new double[0];
+
+    public void put(Budget budget) {
+        budgets.put(budget.getCategory(), budget);
+        changed();
+    }
+
+    public void putAll(Collection<Budget> all) {
+        for (Budget b : all) budgets.put(b.getCategory(), b);
+        changed();
+    }
+
+    public void remove(String category) {
+        if (budgets.remove(category) != null) changed();
+    }
+
+    public void clear() {
+        budgets.clear();
+        changed();
+    }
+
+    public Collection<Budget> values() { return Collections.unmodifiableCollection(budgets.values()); }
+
+    public Budget get(String category) { return budgets.get(category); }
+
+    public boolean contains(String category) { return budgets.containsKey(category); }
+
+    public int size() { return budgets.size(); }
+
+    public void addListener(Listener l) { listeners.add(l); }
+
+    public void removeListener(Listener l) { listeners.remove(l); }
+
+    // Records spending against a category's budget and every enclosing budget
+    public void addExpense(String category, double amount) {
+        Budget budget = budgets.get(category);
+        if (budget == null) return;
+        budget.addExpense(amount);
+        if (stale) {
+            // The rebuild will pick up the new spending; nothing to patch
+            for (Listener l : listeners) l.structureChanged();
+            return;
+        }
+        int n = 0;
+        int[] path = new int[depth[index.get(category)] + 1];
+        for (int i = index.get(category); i != -1; i = parent[i]) {
+            rolledSpent[i] += amount;
+            path[n++] = i;
+        }
+        for (Listener l : listeners) l.spendingChanged(path);
+    }
+
+    private void changed() {
+        stale = true;
+        for (Listener l : listeners) l.structureChanged();
+    }
+
+    private void ensureIndexed() {
+        if (!stale) return;
+        int n = budgets.size();
+        nodes = budgets.values().toArray(new Budget[0]);
+        index.clear();
+        for (int i = 0; i < n; i++) index.put(nodes[i].getCategory(), i);
+
+        parent = new int[n];
+        for (int i = 0; i < n; i++) {
+            Integer p = nodes[i].getParent() == null ? null : index.get(nodes[i].getParent());
+            parent[i] = p == null ? -1 : p;
+        }
+        // A parent chain that loops back on itself is cut at the node that closes it
+        byte[] state = new byte[n]; // 0 unvisited, 1 on the current path, 2 done
+        for (int i = 0; i < n; i++) {
+            int j = i, last = -1;
+            while (j != -1 && state[j] == 0) {
+                state[j] = 1;
+                last = j;
+                j = parent[j];
+            }
+            if (j != -1 && state[j] == 1) parent[last] = -1;
+            for (int k = i; k != -1 && state[k] == 1; k = parent[k]) state[k] = 2;
+        }
+
+        // Children in name order; roots likewise
+        int[] childCount = new int[n];
+        int rootCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (parent[i] == -1) rootCount++;
+            else childCount[parent[i]]++;
+        }
+        children = new int[n][];
+        for (int i = 0; i < n; i++) children[i] = new int[childCount[i]];
+        roots = new int[rootCount];
+        Arrays.fill(childCount, 0);
+        rootCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (parent[i] == -1) roots[rootCount++] = i;
+            else children[parent[i]][childCount[parent[i]]++] = i;
+        }
+        roots = sortByName(roots);
+        for (int i = 0; i < n; i++) children[i] = sortByName(children[i]);
+
+        // Depths in pre-order, then subtree totals in reverse pre-order (children first)
+        depth = new int[n];
+        int[] order = new int[n];
+        int[] stack = new int[n];
+        int top = 0, visited = 0;
+        for (int r : roots) stack[top++] = r;
+        while (top > 0) {
+            int i = stack[--top];
+            order[visited++] = i;
+            for (int c : children[i]) {
+                depth[c] = depth[i] + 1;
+                stack[top++] = c;
+            }
+        }
+        rolledSpent = new double[n];
+        rolledLimit = new double[n];
+        for (int k = visited - 1; k >= 0; k--) {
+            int i = order[k];
+            double childLimits = 0;
+            rolledSpent[i] += nodes[i].getSpent();
+            for (int c : children[i]) {
+                rolledSpent[i] += rolledSpent[c];
+                childLimits += rolledLimit[c];
+            }
+            // An envelope without its own limit is bounded by its children's
+            rolledLimit[i] = nodes[i].getLimit() > 0 ? nodes[i].getLimit() : childLimits;
+        }
+        stale = false;
+    }
+
+    private int[] sortByName(int[] ids) {
+        return Arrays.stream(ids).boxed()
+            .sorted((a, b) -> nodes[a].getCategory().compareToIgnoreCase(nodes[b].getCategory()))
+            .mapToInt(Integer::intValue).toArray();
+    }
+
+    public int[] roots() { ensureIndexed(); return roots; }
+    public int[] children(int node) { ensureIndexed(); return children[node]; }
+    public int depth(int node) { ensureIndexed(); return depth[node]; }
+    public Budget budget(int node) { ensureIndexed(); return nodes[node]; }
+    public double rolledSpent(int node) { ensureIndexed(); return rolledSpent[node]; }
+    public double rolledLimit(int node) { ensureIndexed(); return rolledLimit[node]; }
+    public int nodeCount() { ensureIndexed(); return nodes.length; }
+
+    public int node(String category) {
+        ensureIndexed();
+        Integer i = index.get(category);
+        return i == null ? -1 : i;
+    }
+}
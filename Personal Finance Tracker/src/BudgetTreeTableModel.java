@@ -0,0 +1,157 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableCellRenderer;
+import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+
+// Tree-table view of a BudgetTree. Only the expanded rows are in the model and
+// JTable paints just the visible ones through shared renderers, so thousands
+// of budgets cost no per-budget components. Spending changes repaint only the
+// rows on the changed path.
+class BudgetTreeTableModel extends AbstractTableModel implements BudgetTree.Listener {
+    private static final String[] COLUMNS = {"Budget", "Limit", "Spent", "Remaining", "Progress"};
+    private static final Class<?>[] TYPES = {String.class, Double.class, Double.class, Double.class, Double.class};
+
+    private final BudgetTree tree;
+    private final String currency;
+    private boolean[] expanded = new boolean[0];
+    private int[] rows = new int[0];   // row -> node
+    private int[] rowOf = new int[0];  // node -> row, -1 when collapsed away
+
+    public BudgetTreeTableModel(BudgetTree tree, String currency) {
+        this.tree = tree;
+        this.currency = currency;
+        structureChanged();
+    }
+
+    @Override
+    public int getRowCount() { return rows.length; }
+
+    @Override
+    public int getColumnCount() { return COLUMNS.length; }
+
+    @Override
+    public String getColumnName(int column) { return COLUMNS[column]; }
+
+    @Override
+    public Class<?> getColumnClass(int column) { return TYPES[column]; }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int node = rows[row];
+        double limit = tree.rolledLimit(node), spent = tree.rolledSpent(node);
+        switch (column) {
+            case 0: return tree.budget(node).getCategory();
+            case 1: return limit;
+            case 2: return spent;
+            case 3: return limit - spent;
+            default: return limit > 0 ? spent / limit : 0.0;
+        }
+    }
+
+    public void toggle(int row) {
+        int node = rows[row];
+        if (tree.children(node).length == 0) return;
+        expanded[node] = !expanded[node];
+        flatten();
+        fireTableDataChanged();
+    }
+
+    @Override
+    public void spendingChanged(int[] nodes) {
+        for (int node : nodes) {
+            int row = rowOf[node];
+            if (row >= 0) fireTableRowsUpdated(row, row);
+        }
+    }
+
+    // Top-level envelopes start expanded so their direct children are visible
+    @Override
+    public void structureChanged() {
+        int n = tree.nodeCount();
+        expanded = new boolean[n];
+        for (int r : tree.roots()) expanded[r] = true;
+        flatten();
+        fireTableDataChanged();
+    }
+
+    private void flatten() {
+        int n = tree.nodeCount();
+        int[] out = new int[n];
+        int count = 0;
+        int[] stack = new int[n];
+        int top = 0;
+        int[] roots = tree.roots();
+        for (int i = roots.length - 1; i >= 0; i--) stack[top++] = roots[i];
+        while (top > 0) {
+            int node = stack[--top];
+            out[count++] = node;
+            if (!expanded[node]) continue;
+            int[] children = tree.children(node);
+            for (int i = children.length - 1; i >= 0; i--) stack[top++] = children[i];
+        }
+        rows = Arrays.copyOf(out, count);
+        rowOf = new int[n];
+        Arrays.fill(rowOf, -1);
+        for (int r = 0; r < count; r++) rowOf[rows[r]] = r;
+    }
+
+    // Table with indented, expandable names, currency amounts and progress bars.
+    // Clicking a name expands or collapses it.
+    JTable createTable() {
+        JTable table = new JTable(this);
+        table.setRowHeight(22);
+        table.getColumnModel().getColumn(0).setCellRenderer(new DefaultTableCellRenderer() {
+            @Override
+            public Component getTableCellRendererComponent(JTable t, Object value, boolean isSelected,
+                                                           boolean hasFocus, int row, int column) {
+                super.getTableCellRendererComponent(t, value, isSelected, hasFocus, row, column);
+                int node = rows[row];
+                String marker = tree.children(node).length == 0 ? "   " : expanded[node] ? "\u25BE " : "\u25B8 ";
+                setText(marker + value);
+                setBorder(BorderFactory.createEmptyBorder(0, 4 + 16 * tree.depth(node), 0, 0));
+                return this;
+            }
+        });
+        table.setDefaultRenderer(Double.class, new DefaultTableCellRenderer() {
+            {
+                setHorizontalAlignment(SwingConstants.RIGHT);
+            }
+
+            @Override
+            protected void setValue(Object value) {
+                setText(FxRates.format((Double) value, currency));
+            }
+        });
+        table.getColumnModel().getColumn(4).setCellRenderer(new ProgressRenderer());
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                int row = table.rowAtPoint(e.getPoint());
+                if (row >= 0 && table.columnAtPoint(e.getPoint()) == 0) toggle(row);
+            }
+        });
+        return table;
+    }
+
+    // One progress bar stamps every row of the Progress column
+    private static final class ProgressRenderer extends JProgressBar implements TableCellRenderer {
+        ProgressRenderer() {
+            super(0, 1000);
+            setStringPainted(true);
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            double ratio = (Double) value;
+            setValue((int) Math.round(Math.min(1, Math.max(0, ratio)) * 1000));
+            setString(String.format("%.0f%%", ratio * 100));
+            setForeground(ratio > 1 ? new Color(200, 40, 40) : new Color(70, 130, 180));
+            return this;
+        }
+    }
+}
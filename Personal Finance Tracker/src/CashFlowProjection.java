@@ -0,0 +1,127 @@
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+// Monte Carlo projection of the account balance. Each month every category's
+// spending (or income) is drawn from a normal fitted to its historical monthly
+// totals, clamped at zero and grown by inflation. Paths are split into blocks
+// advanced in parallel; after each month the balances are binned into a
+// histogram to emit percentile bands, so only the current balance of each
+// path is kept, never its trajectory.
+class CashFlowProjection {
+    private static final int BLOCK = 4096;
+    private static final int BINS = 4096;
+
+    static final class Band {
+        final int month;
+        final double p5, p25, p50, p75, p95;
+
+        Band(int month, double p5, double p25, double p50, double p75, double p95) {
+            this.month = month;
+            this.p5 = p5;
+            this.p25 = p25;
+            this.p50 = p50;
+            this.p75 = p75;
+            this.p95 = p95;
+        }
+    }
+
+    private final double[] mean;
+    private final double[] sd;
+    private final double[] sign;
+    private final double startBalance;
+    private final double monthlyInflation;
+    private final ProjectionKernel kernel = loadKernel();
+
+    public CashFlowProjection(double[] mean, double[] sd, double[] sign, double startBalance, double annualInflation) {
+        this.mean = mean;
+        this.sd = sd;
+        this.sign = sign;
+        this.startBalance = startBalance;
+        this.monthlyInflation = Math.pow(1 + annualInflation, 1.0 / 12);
+    }
+
+    // The Vector API kernel is only present when compiled with
+    // --add-modules jdk.incubator.vector; otherwise fall back to scalar.
+    private static ProjectionKernel loadKernel() {
+        try {
+            return (ProjectionKernel) Class.forName("VectorProjectionKernel").getDeclaredConstructor().newInstance();
+        } catch (Throwable ex) {
+            return new ScalarProjectionKernel();
+        }
+    }
+
+    public String kernelName() {
+        return kernel instanceof ScalarProjectionKernel ? "scalar" : "SIMD";
+    }
+
+    public void run(int months, int paths, long seed, Consumer<Band> sink) {
+        double[] balances = new double[paths];
+        long[] rng = new long[paths];
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int i = 0; i < paths; i++) {
+            balances[i] = startBalance;
+            rng[i] = seeds.nextLong() | 1; // xorshift state must be non-zero
+        }
+        int blocks = (paths + BLOCK - 1) / BLOCK;
+        double[] blockMin = new double[blocks];
+        double[] blockMax = new double[blocks];
+
+        double scale = 1;
+        for (int month = 1; month <= months; month++) {
+            if (Thread.currentThread().isInterrupted()) return;
+            scale *= monthlyInflation;
+            double monthScale = scale;
+            IntStream.range(0, blocks).parallel().forEach(blk -> {
+                int from = blk * BLOCK, to = Math.min(paths, from + BLOCK);
+                kernel.step(balances, rng, from, to, mean, sd, sign, monthScale);
+                double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+                for (int i = from; i < to; i++) {
+                    min = Math.min(min, balances[i]);
+                    max = Math.max(max, balances[i]);
+                }
+                blockMin[blk] = min;
+                blockMax[blk] = max;
+            });
+            sink.accept(percentiles(month, balances, blocks, blockMin, blockMax));
+        }
+    }
+
+    private Band percentiles(int month, double[] balances, int blocks, double[] blockMin, double[] blockMax) {
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for (int b = 0; b < blocks; b++) {
+            min = Math.min(min, blockMin[b]);
+            max = Math.max(max, blockMax[b]);
+        }
+        if (max <= min) return new Band(month, min, min, min, min, min);
+        double lo = min, width = (max - min) / BINS;
+
+        long[] hist = IntStream.range(0, blocks).parallel().mapToObj(blk -> {
+            long[] local = new long[BINS];
+            int from = blk * BLOCK, to = Math.min(balances.length, from + BLOCK);
+            for (int i = from; i < to; i++) {
+                local[Math.min(BINS - 1, (int) ((balances[i] - lo) / width))]++;
+            }
+            return local;
+        }).reduce(new long[BINS], (a, b) -> {
+            long[] sum = new long[BINS];
+            for (int i = 0; i < BINS; i++) sum[i] = a[i] + b[i];
+            return sum;
+        });
+
+        double[] q = {0.05, 0.25, 0.50, 0.75, 0.95};
+        double[] out = new double[q.length];
+        long seen = 0;
+        int qi = 0;
+        for (int bin = 0; bin < BINS && qi < q.length; bin++) {
+            long next = seen + hist[bin];
+            while (qi < q.length && next >= q[qi] * balances.length) {
+                double within = hist[bin] == 0 ? 0 : (q[qi] * balances.length - seen) / hist[bin];
+                out[qi++] = lo + (bin + within) * width;
+            }
+            seen = next;
+        }
+        while (qi < q.length) out[qi++] = max;
+        return new Band(month, out[0], out[1], out[2], out[3], out[4]);
+    }
+}
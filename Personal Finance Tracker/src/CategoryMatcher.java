@@ -0,0 +1,150 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+// Assigns categories from description keywords. All keyword rules are compiled
+// into one Aho-Corasick automaton (a dense goto table over the characters that
+// occur in any keyword), so a description is scanned once no matter how many
+// rules exist. The longest matching keyword wins, ties going to the older rule.
+// Regex rules are only tried, in order, when no keyword matched.
+class CategoryMatcher {
+    static final class Rule {
+        final int id;
+        final String pattern;
+        final boolean regex;
+        final String category;
+
+        Rule(int id, String pattern, boolean regex, String category) {
+            this.id = id;
+            this.pattern = pattern;
+            this.regex = regex;
+            this.category = category;
+        }
+
+        Object[] toTableRow() {
+            return new Object[]{id, pattern, regex ? "Regex" : "Keyword", category};
+        }
+    }
+
+    private final int[] charClass = new int[Character.MAX_VALUE + 1]; // 0 = not in any keyword
+    private final int alphabet;
+    private final int[] next;      // next[state * alphabet + class]
+    private final int[] output;    // best keyword ending at a state (incl. suffixes), -1 if none
+    private final int[] keywordLength;
+    private final String[] keywordCategory;
+    private final Pattern[] regexes;
+    private final String[] regexCategory;
+
+    public CategoryMatcher(List<Rule> rules) {
+        List<String> keywords = new ArrayList<>();
+        List<String> categories = new ArrayList<>();
+        List<Pattern> patterns = new ArrayList<>();
+        List<String> patternCategories = new ArrayList<>();
+        for (Rule rule : rules) {
+            if (rule.regex) {
+                patterns.add(Pattern.compile(rule.pattern, Pattern.CASE_INSENSITIVE));
+                patternCategories.add(rule.category);
+            } else {
+                String keyword = ImportFingerprints.normalizeDescription(rule.pattern);
+                if (keyword.isEmpty()) continue;
+                keywords.add(keyword);
+                categories.add(rule.category);
+            }
+        }
+        regexes = patterns.toArray(new Pattern[0]);
+        regexCategory = patternCategories.toArray(new String[0]);
+        keywordCategory = categories.toArray(new String[0]);
+        keywordLength = new int[keywords.size()];
+
+        int classes = 1, states = 1;
+        for (String keyword : keywords) {
+            states += keyword.length();
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                if (charClass[c] == 0) charClass[c] = classes++;
+            }
+        }
+        alphabet = classes;
+
+        // Trie, with 0 marking a missing edge (the root is never a child)
+        int[] table = new int[states * alphabet];
+        int[] out = new int[states];
+        Arrays.fill(out, -1);
+        int used = 1;
+        for (int k = 0; k < keywords.size(); k++) {
+            String keyword = keywords.get(k);
+            keywordLength[k] = keyword.length();
+            int s = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                int slot = s * alphabet + charClass[keyword.charAt(i)];
+                if (table[slot] == 0) table[slot] = used++;
+                s = table[slot];
+            }
+            if (out[s] == -1) out[s] = k; // duplicate keywords keep the older rule
+        }
+
+        // Breadth-first pass turns the trie into a full DFA: missing edges follow
+        // the failure link, and each state inherits its suffix's output when the
+        // state itself ends no keyword (a state's own keyword is always longer).
+        int[] fail = new int[used];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 1; c < alphabet; c++) {
+            int child = table[c];
+            if (child != 0) queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            if (out[s] == -1) out[s] = out[fail[s]];
+            for (int c = 1; c < alphabet; c++) {
+                int slot = s * alphabet + c;
+                int child = table[slot];
+                int viaFail = table[fail[s] * alphabet + c];
+                if (child != 0) {
+                    fail[child] = viaFail;
+                    queue.add(child);
+                } else {
+                    table[slot] = viaFail;
+                }
+            }
+        }
+        next = Arrays.copyOf(table, used * alphabet);
+        output = Arrays.copyOf(out, used);
+    }
+
+    // Category for a description, or null when no rule matches. Case and runs
+    // of whitespace are folded on the fly exactly as normalizeDescription
+    // folds the keywords.
+    public String categorize(String description) {
+        if (description == null) return null;
+        int s = 0, best = -1;
+        boolean space = true; // also drops leading whitespace
+        for (int i = 0, n = description.length(); i < n; i++) {
+            char c = description.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (space) continue;
+                space = true;
+                c = ' ';
+            } else {
+                space = false;
+                c = Character.toLowerCase(c);
+            }
+            s = next[s * alphabet + charClass[c]];
+            int k = output[s];
+            if (k != -1 && (best == -1 || keywordLength[k] > keywordLength[best]
+                    || (keywordLength[k] == keywordLength[best] && k < best))) {
+                best = k;
+            }
+        }
+        if (best != -1) return keywordCategory[best];
+        for (int i = 0; i < regexes.length; i++) {
+            if (regexes[i].matcher(description).find()) return regexCategory[i];
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return keywordCategory.length == 0 && regexes.length == 0;
+    }
+}
@@ -0,0 +1,65 @@
+import java.util.Collections;
+import java.util.List;
+
+// One committed mutation, published on the ChangeStream. Transaction events
+// carry the row's position in the TransactionStore and the store version
+// after the change; budget and reminder events carry the table row (Object[])
+// keyed by database id. RESET means the contents were replaced wholesale.
+// A bulk UPDATE or DELETE of transactions lists every row it touched in
+// `positions`, ascending and numbered as before the change, with `before`
+// and `after` in the same order.
+final class ChangeEvent {
+    enum Entity { TRANSACTION, BUDGET, REMINDER }
+    enum Kind { INSERT, UPDATE, DELETE, RESET }
+
+    final Entity entity;
+    final Kind kind;
+    final int position;     // first affected row in store order, -1 when keyed by id
+    final int[] positions;  // every row an UPDATE or DELETE touched; null otherwise
+    final int id;           // database id of a single-row change, 0 if unsaved
+    final List<?> before;   // rows replaced or removed
+    final List<?> after;    // rows inserted or written, or the new contents on RESET
+    final long version;     // TransactionStore version after the change, 0 otherwise
+    long sequence;          // assigned by ChangeStream.publish
+
+    private ChangeEvent(Entity entity, Kind kind, int[] positions, int position, int id, List<?> before, List<?> after, long version) {
+        this.entity = entity;
+        this.kind = kind;
+        this.positions = positions;
+        this.position = position;
+        this.id = id;
+        this.before = before;
+        this.after = after;
+        this.version = version;
+    }
+
+    static ChangeEvent inserted(Entity entity, int position, int id, List<?> rows, long version) {
+        return new ChangeEvent(entity, Kind.INSERT, null, position, id, Collections.emptyList(), rows, version);
+    }
+
+    static ChangeEvent updated(Entity entity, int position, int id, Object before, Object after, long version) {
+        return new ChangeEvent(entity, Kind.UPDATE, new int[]{position}, position, id, Collections.singletonList(before), Collections.singletonList(after), version);
+    }
+
+    static ChangeEvent updatedAll(Entity entity, int[] positions, List<?> before, List<?> after, long version) {
+        return new ChangeEvent(entity, Kind.UPDATE, positions, positions[0], 0, before, after, version);
+    }
+
+    static ChangeEvent deleted(Entity entity, int position, int id, Object before, long version) {
+        return new ChangeEvent(entity, Kind.DELETE, new int[]{position}, position, id, Collections.singletonList(before), Collections.emptyList(), version);
+    }
+
+    static ChangeEvent deletedAll(Entity entity, int[] positions, List<?> before, long version) {
+        return new ChangeEvent(entity, Kind.DELETE, positions, positions[0], 0, before, Collections.emptyList(), version);
+    }
+
+    static ChangeEvent reset(Entity entity, List<?> rows, long version) {
+        return new ChangeEvent(entity, Kind.RESET, null, -1, 0, Collections.emptyList(), rows, version);
+    }
+
+    @SuppressWarnings("unchecked")
+    <T> List<T> before(Class<T> type) { return (List<T>) before; }
+
+    @SuppressWarnings("unchecked")
+    <T> List<T> after(Class<T> type) { return (List<T>) after; }
+}
@@ -0,0 +1,33 @@
+import java.awt.EventQueue;
+import java.util.concurrent.SubmissionPublisher;
+
+// In-process change-data-capture stream. Mutations are published as
+// ChangeEvents through a Flow publisher that delivers to each subscriber on
+// the EDT from its own bounded buffer, so views patch the rows an event
+// touched. Publishing never blocks: when a subscriber's buffer is full the
+// event is dropped for that subscriber only, and it resyncs from its source.
+class ChangeStream {
+    private static final int BUFFER = 1024;
+
+    private final SubmissionPublisher<ChangeEvent> publisher = new SubmissionPublisher<>(EventQueue::invokeLater, BUFFER);
+    private long sequence;
+
+    // Sequences events in publication order; callers publish under the lock
+    // that ordered the mutation itself
+    public synchronized void publish(ChangeEvent event) {
+        event.sequence = ++sequence;
+        publisher.offer(event, (subscriber, dropped) -> {
+            if (subscriber instanceof ChangeSubscriber) ((ChangeSubscriber) subscriber).dropped();
+            return false;
+        });
+    }
+
+    public void subscribe(ChangeSubscriber subscriber) {
+        subscriber.attach(this);
+        publisher.subscribe(subscriber);
+    }
+
+    public synchronized long sequence() { return sequence; }
+
+    public void close() { publisher.close(); }
+}
@@ -0,0 +1,73 @@
+import java.awt.EventQueue;
+import java.util.concurrent.Flow;
+
+// Base for a view fed by a ChangeStream. Demand is requested in batches and
+// topped up as events are consumed. Only events for one entity are applied.
+// After a drop the view reloads once from its source and skips every event
+// published before the reload, since the reload already reflects them.
+abstract class ChangeSubscriber implements Flow.Subscriber<ChangeEvent> {
+    private static final int BATCH = 64;
+
+    private final ChangeEvent.Entity entity;
+    private ChangeStream stream;
+    private Flow.Subscription subscription;
+    private int outstanding;
+    private volatile boolean lagging;
+    private long coveredThrough;
+
+    ChangeSubscriber(ChangeEvent.Entity entity) {
+        this.entity = entity;
+    }
+
+    // Applies one event for this subscriber's entity
+    protected abstract void apply(ChangeEvent event);
+
+    // Rebuilds the view from its source of truth
+    protected abstract void reload();
+
+    void attach(ChangeStream stream) { this.stream = stream; }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        outstanding = BATCH;
+        subscription.request(BATCH);
+    }
+
+    @Override
+    public void onNext(ChangeEvent event) {
+        if (--outstanding <= BATCH / 2) {
+            subscription.request(BATCH - outstanding);
+            outstanding = BATCH;
+        }
+        if (lagging) resync();
+        if (event.sequence > coveredThrough && event.entity == entity) apply(event);
+    }
+
+    // Called by the stream when this subscriber's buffer overflowed
+    void dropped() {
+        if (lagging) return;
+        lagging = true;
+        EventQueue.invokeLater(() -> {
+            if (lagging) resync();
+        });
+    }
+
+    private void resync() {
+        lagging = false;
+        coveredThrough = stream.sequence();
+        reload();
+    }
+
+    public void cancel() {
+        if (subscription != null) subscription.cancel();
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        error.printStackTrace();
+    }
+
+    @Override
+    public void onComplete() {}
+}
@@ -0,0 +1,56 @@
+import javax.swing.JPanel;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.util.HashMap;
+import java.util.Map;
+
+class ChartPanel extends JPanel {
+    private Map<String, Double> categorySpending = new HashMap<>();
+    
+    public ChartPanel() {
+        setPreferredSize(new Dimension(600, 400));
+    }
+    
+    public void updateData(Map<String, Double> data) {
+        this.categorySpending = data;
+        repaint();
+    }
+    
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        
+        // Check if there is data to draw
+        if (categorySpending.isEmpty()) {
+            g.drawString("No data available", 10, 10);
+            return;
+        }
+        
+        double max = categorySpending.values().stream()
+                        .mapToDouble(Double::doubleValue)
+                        .max()
+                        .orElse(1);
+        int width = getWidth();
+        int height = getHeight();
+        
+        // Prevent division by zero by ensuring the divisor is at least 1
+        int divisor = categorySpending.size() * 2;
+        if(divisor == 0) {
+            divisor = 1;
+        }
+        int barWidth = width / divisor;
+        
+        int i = 0;
+        for (Map.Entry<String, Double> entry : categorySpending.entrySet()) {
+            int barHeight = (int) ((entry.getValue() / max) * (height - 50));
+            int x = i * 2 * barWidth + barWidth;
+            int y = height - barHeight - 30;
+            g.setColor(Color.BLUE);
+            g.fillRect(x, y, barWidth, barHeight);
+            g.setColor(Color.BLACK);
+            g.drawString(entry.getKey(), x, height - 10);
+            i++;
+        }
+    }
+}
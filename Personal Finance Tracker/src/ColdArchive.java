@@ -0,0 +1,290 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// Closed years of transactions stored as immutable, deflate-compressed
+// partition files, one per year. Each file ends with an uncompressed footer of
+// precomputed totals, so whole-year summaries are answered from the footer
+// alone and only partially covered years are ever decompressed.
+//
+// File layout: MAGIC | deflated rows | footer | footer length (int) | MAGIC
+class ColdArchive {
+    private static final int MAGIC = 0x46545041; // "FTPA"
+    // v2 adds a currency per row and the footer's currency set, v3 the account
+    // per row, v4 the row's tag names
+    private static final int FORMAT_VERSION = 4;
+
+    static final class Footer {
+        int formatVersion = FORMAT_VERSION;
+        int year;
+        int rowCount;
+        double incomeTotal;
+        double expenseTotal;
+        final Map<String, Double> expenseByCategory = new TreeMap<>();
+        final Map<String, Double> incomeByCategory = new TreeMap<>();
+        final Set<String> currencies = new TreeSet<>(); // totals are only meaningful for a single currency
+    }
+
+    private final File directory;
+    private final Map<Integer, Footer> footers = new TreeMap<>(); // cached; partitions never change in place
+
+    public ColdArchive(File directory) {
+        this.directory = directory;
+    }
+
+    private File partitionFile(int year) {
+        return new File(directory, "transactions-" + year + ".ftpart");
+    }
+
+    // Footers of every partition on disk, keyed by year
+    public synchronized Map<Integer, Footer> partitions() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith("transactions-") && name.endsWith(".ftpart"));
+        if (files == null) return new TreeMap<>();
+        for (File f : files) {
+            int year = Integer.parseInt(f.getName().substring("transactions-".length(), f.getName().length() - ".ftpart".length()));
+            if (!footers.containsKey(year)) footers.put(year, readFooter(f));
+        }
+        return new TreeMap<>(footers);
+    }
+
+    public boolean hasPartition(int year) {
+        return partitionFile(year).exists();
+    }
+
+    private File preparedFile(int year) {
+        return new File(directory, partitionFile(year).getName() + ".tmp");
+    }
+
+    // First phase of archiving a year: writes the merged partition (existing
+    // rows plus `rows`) to a side file. Nothing is visible to readers until
+    // commitPartition renames it over the live partition, which the caller
+    // does only after the rows are durably deleted from the hot table.
+    public synchronized void preparePartition(int year, Iterable<Transaction> rows) throws IOException {
+        directory.mkdirs();
+        File target = partitionFile(year);
+        File tmp = preparedFile(year);
+        Footer footer = new Footer();
+        footer.year = year;
+
+        try (FileOutputStream fos = new FileOutputStream(tmp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+            out.writeInt(MAGIC);
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            DeflaterOutputStream deflated = new DeflaterOutputStream(out, deflater, 1 << 16);
+            DataOutputStream body = new DataOutputStream(deflated);
+            Consumer<Transaction> writeRow = t -> {
+                try {
+                    body.writeInt((int) t.getDate().toEpochDay());
+                    body.writeUTF(t.getType());
+                    body.writeUTF(t.getCategory());
+                    body.writeDouble(t.getAmount());
+                    body.writeUTF(t.getCurrency());
+                    body.writeUTF(t.getDescription() == null ? "" : t.getDescription());
+                    body.writeUTF(t.getAccount());
+                    body.writeShort(t.getArchivedTags().size());
+                    for (String tag : t.getArchivedTags()) body.writeUTF(tag);
+                } catch (IOException ex) {
+                    throw new RuntimeException(ex);
+                }
+                footer.rowCount++;
+                footer.currencies.add(t.getCurrency());
+                if (t.getType().equals("Expense")) {
+                    footer.expenseTotal += t.getAmount();
+                    footer.expenseByCategory.merge(t.getCategory(), t.getAmount(), Double::sum);
+                } else {
+                    footer.incomeTotal += t.getAmount();
+                    footer.incomeByCategory.merge(t.getCategory(), t.getAmount(), Double::sum);
+                }
+            };
+            if (target.exists()) scanPartition(year, writeRow);
+            for (Transaction t : rows) writeRow.accept(t);
+            body.flush();
+            deflated.finish();
+            deflater.end();
+
+            byte[] footerBytes = encodeFooter(footer);
+            out.write(footerBytes);
+            out.writeInt(footerBytes.length);
+            out.writeInt(MAGIC);
+            out.flush();
+            fos.getFD().sync();
+        }
+    }
+
+    public synchronized void commitPartition(int year) throws IOException {
+        File tmp = preparedFile(year);
+        if (!tmp.exists()) return; // already committed
+        Files.move(tmp.toPath(), partitionFile(year).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        footers.put(year, readFooter(partitionFile(year)));
+    }
+
+    // Drops prepared files whose hot-table delete never committed
+    public synchronized void discardPrepared() {
+        File[] stale = directory.listFiles((dir, name) -> name.endsWith(".ftpart.tmp"));
+        if (stale == null) return;
+        for (File f : stale) f.delete();
+    }
+
+    // Streams the archived rows dated within [from, to]; null bounds are open.
+    // Only partitions whose year intersects the range are opened.
+    public void scan(LocalDate from, LocalDate to, Consumer<Transaction> action) throws IOException {
+        for (int year : partitions().keySet()) {
+            if (from != null && year < from.getYear()) continue;
+            if (to != null && year > to.getYear()) continue;
+            scanPartition(year, t -> {
+                if (inRange(from, to, t.getDate())) action.accept(t);
+            });
+        }
+    }
+
+    // Adds archived expenses within [from, to], converted by fx, to `into`.
+    // Single-currency years fully inside the range come straight from the
+    // footer without decompression.
+    public void addExpensesByCategory(LocalDate from, LocalDate to, FxRates.Converter fx, Map<String, Double> into) throws IOException {
+        Set<String> target = Collections.singleton(fx.getTarget());
+        for (Footer footer : partitions().values()) {
+            if (covers(from, to, footer.year) && (footer.currencies.isEmpty() || footer.currencies.equals(target))) {
+                footer.expenseByCategory.forEach((category, total) -> into.merge(category, total, Double::sum));
+            } else if (intersects(from, to, footer.year)) {
+                scanPartition(footer.year, t -> {
+                    if (t.getType().equals("Expense") && inRange(from, to, t.getDate())) {
+                        into.merge(t.getCategory(), fx.convert(t), Double::sum);
+                    }
+                });
+            }
+        }
+    }
+
+    public double expenseTotal(LocalDate from, LocalDate to, FxRates.Converter fx) throws IOException {
+        Map<String, Double> byCategory = new HashMap<>();
+        addExpensesByCategory(from, to, fx, byCategory);
+        return byCategory.values().stream().mapToDouble(Double::doubleValue).sum();
+    }
+
+    private static boolean covers(LocalDate from, LocalDate to, int year) {
+        return (from == null || !from.isAfter(LocalDate.of(year, 1, 1)))
+            && (to == null || !to.isBefore(LocalDate.of(year, 12, 31)));
+    }
+
+    private static boolean inRange(LocalDate from, LocalDate to, LocalDate date) {
+        return (from == null || !date.isBefore(from)) && (to == null || !date.isAfter(to));
+    }
+
+    private static boolean intersects(LocalDate from, LocalDate to, int year) {
+        return (from == null || from.getYear() <= year) && (to == null || to.getYear() >= year);
+    }
+
+    private void scanPartition(int year, Consumer<Transaction> action) throws IOException {
+        File file = partitionFile(year);
+        Footer footer;
+        synchronized (this) {
+            footer = footers.get(year);
+            if (footer == null) footers.put(year, footer = readFooter(file));
+        }
+        int rowCount = footer.rowCount;
+        try (InputStream raw = new BufferedInputStream(new FileInputStream(file))) {
+            DataInputStream header = new DataInputStream(raw);
+            if (header.readInt() != MAGIC) throw new IOException("Not a partition file: " + file);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(raw), 1 << 16));
+            for (int i = 0; i < rowCount; i++) {
+                LocalDate date = LocalDate.ofEpochDay(in.readInt());
+                String type = in.readUTF();
+                String category = in.readUTF();
+                double amount = in.readDouble();
+                String currency = footer.formatVersion >= 2 ? in.readUTF() : FxRates.DEFAULT_CURRENCY;
+                String description = in.readUTF();
+                Transaction t = new Transaction(amount, type, category, date, description, currency);
+                if (footer.formatVersion >= 3) t.setAccount(in.readUTF());
+                if (footer.formatVersion >= 4) {
+                    String[] tags = new String[in.readUnsignedShort()];
+                    for (int k = 0; k < tags.length; k++) tags[k] = in.readUTF();
+                    t.setArchivedTags(Arrays.asList(tags));
+                }
+                action.accept(t);
+            }
+        } catch (EOFException ex) {
+            throw new IOException("Truncated partition file: " + file, ex);
+        }
+    }
+
+    private static byte[] encodeFooter(Footer footer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(footer.year);
+        out.writeInt(footer.rowCount);
+        out.writeDouble(footer.incomeTotal);
+        out.writeDouble(footer.expenseTotal);
+        writeTotals(out, footer.expenseByCategory);
+        writeTotals(out, footer.incomeByCategory);
+        out.writeInt(footer.currencies.size());
+        for (String currency : footer.currencies) out.writeUTF(currency);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeTotals(DataOutputStream out, Map<String, Double> totals) throws IOException {
+        out.writeInt(totals.size());
+        for (Map.Entry<String, Double> e : totals.entrySet()) {
+            out.writeUTF(e.getKey());
+            out.writeDouble(e.getValue());
+        }
+    }
+
+    // Reads only the trailing footer; the compressed rows are not touched
+    private static Footer readFooter(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(raf.length() - 8);
+            int length = raf.readInt();
+            if (raf.readInt() != MAGIC) throw new IOException("Not a partition file: " + file);
+            raf.seek(raf.length() - 8 - length);
+            int version = raf.readInt();
+            if (version < 1 || version > FORMAT_VERSION) throw new IOException("Unsupported partition version: " + file);
+            Footer footer = new Footer();
+            footer.formatVersion = version;
+            footer.year = raf.readInt();
+            footer.rowCount = raf.readInt();
+            footer.incomeTotal = raf.readDouble();
+            footer.expenseTotal = raf.readDouble();
+            readTotals(raf, footer.expenseByCategory);
+            readTotals(raf, footer.incomeByCategory);
+            if (version >= 2) {
+                int n = raf.readInt();
+                for (int i = 0; i < n; i++) footer.currencies.add(raf.readUTF());
+            } else {
+                footer.currencies.add(FxRates.DEFAULT_CURRENCY);
+            }
+            return footer;
+        }
+    }
+
+    private static void readTotals(RandomAccessFile raf, Map<String, Double> into) throws IOException {
+        int n = raf.readInt();
+        for (int i = 0; i < n; i++) {
+            into.put(raf.readUTF(), raf.readDouble());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Writes transactions as typed columnar files for notebooks. Rows are
+// buffered into fixed-size row groups and handed to a format-specific sink;
+// type, category and currency are dictionary-encoded, dates are epoch days
+// and amounts are exact decimal(18,2) cents.
+class ColumnarExport implements Closeable {
+    enum Format {
+        ARROW(".arrow"), PARQUET(".parquet");
+
+        final String extension;
+
+        Format(String extension) { this.extension = extension; }
+    }
+
+    static final String[] COLUMNS = {"id", "date", "type", "category", "amount", "currency", "description"};
+    static final int PRECISION = 18;
+    static final int SCALE = 2;
+    static final int ROWS_PER_GROUP = 64 * 1024;
+
+    // Values of one dictionary-encoded column in first-seen order. Ids are
+    // stable for the whole file; sinks write only the values added since
+    // their last row group.
+    static final class Dictionary {
+        final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> ids = new HashMap<>();
+
+        int id(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+    }
+
+    static final class RowGroup {
+        int size;
+        final int[] id = new int[ROWS_PER_GROUP];
+        final int[] day = new int[ROWS_PER_GROUP];
+        final int[] type = new int[ROWS_PER_GROUP];
+        final int[] category = new int[ROWS_PER_GROUP];
+        final long[] cents = new long[ROWS_PER_GROUP];
+        final int[] currency = new int[ROWS_PER_GROUP];
+        final String[] description = new String[ROWS_PER_GROUP];
+        final Dictionary types = new Dictionary();
+        final Dictionary categories = new Dictionary();
+        final Dictionary currencies = new Dictionary();
+    }
+
+    interface Sink {
+        void write(RowGroup group) throws IOException;
+        void finish() throws IOException;
+    }
+
+    private final RowGroup group = new RowGroup();
+    private final Sink sink;
+    private long rows;
+
+    ColumnarExport(File file, Format format) throws IOException {
+        this(new FileOutputStream(file), format);
+    }
+
+    // Writes to any stream, e.g. an EncryptedOutputStream; closed with the export
+    ColumnarExport(OutputStream out, Format format) throws IOException {
+        sink = format == Format.ARROW ? new ArrowFileWriter(out) : new ParquetFileWriter(out);
+    }
+
+    public void append(int id, LocalDate date, String type, String category, double amount, String currency, String description) throws IOException {
+        int r = group.size++;
+        group.id[r] = id;
+        group.day[r] = (int) date.toEpochDay();
+        group.type[r] = group.types.id(nonNull(type));
+        group.category[r] = group.categories.id(nonNull(category));
+        group.cents[r] = Math.round(amount * 100);
+        group.currency[r] = group.currencies.id(nonNull(currency));
+        group.description[r] = nonNull(description);
+        rows++;
+        if (group.size == ROWS_PER_GROUP) flush();
+    }
+
+    private static String nonNull(String s) { return s == null ? "" : s; }
+
+    private void flush() throws IOException {
+        if (group.size == 0) return;
+        sink.write(group);
+        group.size = 0;
+    }
+
+    public long rows() { return rows; }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        sink.finish();
+    }
+
+    // Archived years first (their rows carry id 0), then the hot table through
+    // a forward-only cursor, so memory stays at one row group
+    static long exportTransactions(Connection conn, ColdArchive archive, OutputStream out, Format format) throws SQLException, IOException {
+        try (ColumnarExport export = new ColumnarExport(out, format)) {
+            try {
+                archive.scan(null, null, t -> {
+                    try {
+                        export.append(t.getId(), t.getDate(), t.getType(), t.getCategory(), t.getAmount(), t.getCurrency(), t.getDescription());
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+            try (Statement stmt = conn.createStatement()) {
+                stmt.setFetchSize(ROWS_PER_GROUP);
+                try (ResultSet rs = stmt.executeQuery(
+                         "SELECT id, date, type, category, amount, currency, description FROM transactions ORDER BY date, id")) {
+                    while (rs.next()) {
+                        export.append(rs.getInt("id"), LocalDate.parse(rs.getString("date")), rs.getString("type"),
+                                rs.getString("category"), rs.getDouble("amount"), rs.getString("currency"), rs.getString("description"));
+                    }
+                }
+            }
+            return export.rows();
+        }
+    }
+}
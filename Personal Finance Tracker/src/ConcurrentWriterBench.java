@@ -0,0 +1,152 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Several writer processes on one SQLite file, the way several tracker
+// windows share finance_tracker.db. Each child JVM edits rows picked from a
+// small hot set with the app's conditional "WHERE id = ? AND version = ?"
+// update, and inserts a row every tenth operation. Locks are waited out with
+// the busy timeout and SharedDatabase.withRetry. Reports committed writes per
+// second, lost-update conflicts caught by the version check, and busy retries.
+//
+//   java -cp "lib/*:." ConcurrentWriterBench [writers] [seconds] [hotRows]
+public class ConcurrentWriterBench {
+    private static final String[] CATEGORIES = {"Food", "Rent", "Transport", "Utilities", "Entertainment", "Health"};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--child")) {
+            runChild(args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3]), Long.parseLong(args[4]));
+            return;
+        }
+        int writers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int hotRows = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+
+        File db = new File(Files.createTempDirectory("writer-benchmark").toFile(), "finance_tracker.db");
+        String url = "jdbc:sqlite:" + db.getPath();
+        try (Connection conn = SharedDatabase.open(url)) {
+            SharedDatabase.enableWal(conn);
+            SchemaMigrator migrator = new SchemaMigrator();
+            migrator.migrateQuick(conn);
+            migrator.migrateRemaining(conn, (version, description, done, total) -> {});
+            conn.setAutoCommit(false);
+            try (PreparedStatement insert = conn.prepareStatement(
+                    "INSERT INTO transactions(date, type, category, amount, description, currency) VALUES ('2025-01-01', 'Expense', ?, ?, 'seed', 'USD')")) {
+                for (int i = 0; i < hotRows; i++) {
+                    insert.setString(1, CATEGORIES[i % CATEGORIES.length]);
+                    insert.setDouble(2, 10 + i);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            conn.commit();
+        }
+
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("ConcurrentWriterBench");
+        command.add("--child");
+        command.add(url);
+        command.add(String.valueOf(seconds));
+        command.add(String.valueOf(hotRows));
+
+        List<Process> children = new ArrayList<>();
+        for (int i = 0; i < writers; i++) {
+            List<String> child = new ArrayList<>(command);
+            child.add(String.valueOf(i + 1));
+            children.add(new ProcessBuilder(child).redirectErrorStream(true).start());
+        }
+        long commits = 0, conflicts = 0, retries = 0, failures = 0;
+        for (Process child : children) {
+            try (BufferedReader out = new BufferedReader(new InputStreamReader(child.getInputStream()))) {
+                String line;
+                while ((line = out.readLine()) != null) {
+                    if (!line.startsWith("commits=")) {
+                        System.err.println(line);
+                        continue;
+                    }
+                    String[] parts = line.split("[= ]");
+                    commits += Long.parseLong(parts[1]);
+                    conflicts += Long.parseLong(parts[3]);
+                    retries += Long.parseLong(parts[5]);
+                    failures += Long.parseLong(parts[7]);
+                }
+            }
+            if (!child.waitFor(seconds + 60L, TimeUnit.SECONDS)) child.destroyForcibly();
+        }
+
+        System.out.printf("writers=%d seconds=%d hot-rows=%d%n", writers, seconds, hotRows);
+        System.out.printf("commits=%d (%.0f/s)%n", commits, commits / (double) seconds);
+        System.out.printf("conflicts=%d (%.2f%% of attempts)%n", conflicts, 100.0 * conflicts / Math.max(1, commits + conflicts));
+        System.out.printf("busy-retries=%d failures=%d%n", retries, failures);
+        db.delete();
+    }
+
+    private static void runChild(String url, int seconds, int hotRows, long seed) {
+        Random random = new Random(seed);
+        long commits = 0, conflicts = 0, failures = 0;
+        long[] attempts = {0};
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        for (long op = 0; System.nanoTime() < deadline; op++) {
+            boolean insert = op % 10 == 9;
+            int id = 1 + random.nextInt(hotRows);
+            double amount = Math.round(random.nextDouble() * 50_000) / 100.0;
+            String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            try {
+                SharedDatabase.withRetry(() -> SharedDatabase.open(url), conn -> {
+                    attempts[0]++;
+                    return insert ? insertRow(conn, category, amount) : editRow(conn, id, category, amount);
+                });
+                commits++;
+            } catch (SharedDatabase.ConflictException ex) {
+                conflicts++;
+            } catch (SQLException ex) {
+                failures++;
+            }
+        }
+        long retries = attempts[0] - commits - conflicts - failures;
+        System.out.printf("commits=%d conflicts=%d retries=%d failures=%d%n", commits, conflicts, Math.max(0, retries), failures);
+    }
+
+    private static Void insertRow(Connection conn, String category, double amount) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO transactions(date, type, category, amount, description, currency) VALUES ('2025-02-01', 'Expense', ?, ?, 'bench', 'USD')")) {
+            stmt.setString(1, category);
+            stmt.setDouble(2, amount);
+            stmt.executeUpdate();
+        }
+        return null;
+    }
+
+    // Read-modify-write as an edit dialog does it, with the version check at the end
+    private static Void editRow(Connection conn, int id, String category, double amount) throws SQLException {
+        long version;
+        try (PreparedStatement read = conn.prepareStatement("SELECT version FROM transactions WHERE id = ?")) {
+            read.setInt(1, id);
+            try (ResultSet rs = read.executeQuery()) {
+                if (!rs.next()) throw new SharedDatabase.ConflictException("row " + id + " is gone");
+                version = rs.getLong(1);
+            }
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE transactions SET category = ?, amount = ? WHERE id = ? AND version = ?")) {
+            stmt.setString(1, category);
+            stmt.setDouble(2, amount);
+            stmt.setInt(3, id);
+            stmt.setLong(4, version);
+            if (stmt.executeUpdate() == 0) throw new SharedDatabase.ConflictException("row " + id + " changed");
+        }
+        return null;
+    }
+}
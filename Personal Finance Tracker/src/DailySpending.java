@@ -0,0 +1,114 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Expense totals per category per day. Budget periods are evaluated as
+// sliding windows over these totals: moving a window forward adds the days
+// entering it and subtracts the days leaving it, so advancing a day costs
+// O(1) and new expenses update open windows in place. Arbitrary historical
+// windows are answered from lazily rebuilt prefix sums in O(1).
+class DailySpending {
+    private final Map<String, Series> series = new HashMap<>();
+
+    private static final class Series {
+        long base;                 // epoch day of daily[0]
+        double[] daily = new double[0];
+        double[] prefix;           // prefix[i] = sum of daily[0..i-1]; null when stale
+        final List<Window> windows = new ArrayList<>();
+
+        double day(long d) {
+            long i = d - base;
+            return i < 0 || i >= daily.length ? 0 : daily[(int) i];
+        }
+
+        void add(long d, double amount) {
+            if (daily.length == 0) {
+                base = d;
+                daily = new double[32];
+            } else if (d < base) {
+                int shift = (int) (base - d);
+                double[] grown = new double[daily.length + shift];
+                System.arraycopy(daily, 0, grown, shift, daily.length);
+                daily = grown;
+                base = d;
+            } else if (d - base >= daily.length) {
+                daily = Arrays.copyOf(daily, (int) Math.max(d - base + 1, daily.length * 2L));
+            }
+            daily[(int) (d - base)] += amount;
+            prefix = null;
+        }
+
+        double sum(long from, long to) {
+            long lo = Math.max(from, base), hi = Math.min(to, base + daily.length - 1);
+            if (lo > hi) return 0;
+            if (prefix == null) {
+                prefix = new double[daily.length + 1];
+                for (int i = 0; i < daily.length; i++) prefix[i + 1] = prefix[i] + daily[i];
+            }
+            return prefix[(int) (hi - base) + 1] - prefix[(int) (lo - base)];
+        }
+    }
+
+    // Running total over an inclusive [from, to] day range of one category
+    final class Window {
+        private final Series s;
+        private long from = 1, to = 0; // empty until first moved
+        private double sum;
+
+        private Window(Series s) { this.s = s; }
+
+        public double sum() { return sum; }
+
+        public void moveTo(long newFrom, long newTo) {
+            if (newFrom == from && newTo == to) return;
+            boolean overlaps = newFrom <= to && newTo >= from;
+            long shift = Math.abs(newFrom - from) + Math.abs(newTo - to);
+            if (!overlaps || shift > 64) {
+                // A jump (new calendar month, history lookup): recompute from prefix sums
+                sum = s.sum(newFrom, newTo);
+            } else {
+                for (long d = from; d < newFrom; d++) sum -= s.day(d);
+                for (long d = newFrom; d < from; d++) sum += s.day(d);
+                for (long d = to + 1; d <= newTo; d++) sum += s.day(d);
+                for (long d = newTo + 1; d <= to; d++) sum -= s.day(d);
+            }
+            from = newFrom;
+            to = newTo;
+        }
+    }
+
+    public void add(String category, long day, double amount) {
+        Series s = series.computeIfAbsent(category, c -> new Series());
+        s.add(day, amount);
+        for (Window w : s.windows) {
+            if (day >= w.from && day <= w.to) w.sum += amount;
+        }
+    }
+
+    public double sum(String category, long from, long to) {
+        Series s = series.get(category);
+        return s == null ? 0 : s.sum(from, to);
+    }
+
+    // Registers a window that add() keeps current
+    public Window window(String category) {
+        Series s = series.computeIfAbsent(category, c -> new Series());
+        Window w = new Window(s);
+        s.windows.add(w);
+        return w;
+    }
+
+    // Copy of the per-day totals without any registered windows
+    public DailySpending copy() {
+        DailySpending copy = new DailySpending();
+        for (Map.Entry<String, Series> e : series.entrySet()) {
+            Series s = new Series();
+            s.base = e.getValue().base;
+            s.daily = e.getValue().daily.clone();
+            copy.series.put(e.getKey(), s);
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,101 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Future;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+// Reads the AtRestKey chunked AES-GCM format, opening chunks ahead of the
+// reader on the shared worker pool. Every chunk is authenticated before any
+// of its bytes are returned, and a stream that ends before its last chunk
+// is rejected as truncated.
+class EncryptedInputStream extends InputStream {
+    private final DataInputStream in;
+    private final AtRestKey.Header header;
+    private final SecretKey key;
+    private final int readAhead;
+    private final ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>();
+    private byte[] plain = new byte[0];
+    private int pos;
+    private long index;
+    private boolean sawLast;
+    private boolean exhausted;
+
+    EncryptedInputStream(InputStream in, AtRestKey sessionKey, char[] passphrase) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        this.header = AtRestKey.Header.read(this.in);
+        this.readAhead = 2 * Runtime.getRuntime().availableProcessors();
+        try {
+            this.key = (sessionKey == null ? AtRestKey.derive(passphrase, header.kdfSalt, header.iterations)
+                    : sessionKey.forFile(header, passphrase)).fileKey(header);
+        } catch (GeneralSecurityException ex) {
+            throw new IOException("Cannot derive file key", ex);
+        }
+    }
+
+    // Reads and schedules chunks until readAhead are pending or the file ends
+    private void fill() throws IOException {
+        while (!exhausted && inFlight.size() < readAhead) {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException ex) {
+                exhausted = true;
+                break;
+            }
+            if (length < AtRestKey.TAG_BYTES || length > header.chunkSize + AtRestKey.TAG_BYTES) throw new IOException("Corrupt encrypted chunk");
+            byte[] sealed = new byte[length];
+            in.readFully(sealed);
+            long i = index++;
+            // Only the chunk followed by end of file may carry the last flag
+            in.mark(1);
+            boolean last = in.read() < 0;
+            if (!last) in.reset();
+            exhausted = last;
+            inFlight.addLast(AtRestKey.WORKERS.submit(() ->
+                    AtRestKey.crypt(Cipher.DECRYPT_MODE, key, header, i, last, sealed, sealed.length)));
+            if (last) sawLast = true;
+        }
+    }
+
+    private boolean next() throws IOException {
+        fill();
+        if (inFlight.isEmpty()) {
+            if (!sawLast) throw new IOException("Encrypted file is truncated");
+            return false;
+        }
+        plain = EncryptedOutputStream.await(inFlight.removeFirst());
+        pos = 0;
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (pos == plain.length) {
+            if (!next()) return -1;
+        }
+        return plain[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        while (pos == plain.length) {
+            if (!next()) return -1;
+        }
+        int n = Math.min(len, plain.length - pos);
+        System.arraycopy(plain, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Future<byte[]> f : inFlight) f.cancel(false);
+        in.close();
+    }
+}
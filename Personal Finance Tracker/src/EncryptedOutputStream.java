@@ -0,0 +1,126 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+// Writes the AtRestKey chunked AES-GCM format. Full chunks are sealed on the
+// shared worker pool while the caller keeps filling the next one, and are
+// written back in order; at most two chunks per worker are in flight, which
+// bounds memory. A full chunk is only sealed once more data arrives, since
+// the last chunk is marked as such.
+class EncryptedOutputStream extends OutputStream {
+    private final DataOutputStream out;
+    private final AtRestKey.Header header;
+    private final SecretKey key;
+    private final int maxInFlight;
+    private final ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>();
+    private byte[] chunk;
+    private int filled;
+    private long index;
+    private boolean closed;
+
+    EncryptedOutputStream(OutputStream out, AtRestKey key) throws IOException {
+        this(out, key, Runtime.getRuntime().availableProcessors());
+    }
+
+    // parallelism 1 seals inline on the caller's thread
+    EncryptedOutputStream(OutputStream out, AtRestKey key, int parallelism) throws IOException {
+        this.out = new DataOutputStream(out);
+        this.header = key.newHeader();
+        this.maxInFlight = parallelism <= 1 ? 0 : 2 * parallelism;
+        this.chunk = new byte[header.chunkSize];
+        try {
+            this.key = key.fileKey(header);
+        } catch (GeneralSecurityException ex) {
+            throw new IOException("Cannot derive file key", ex);
+        }
+        this.out.write(header.encode());
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (closed) throw new IOException("Stream closed");
+        if (filled == chunk.length) seal(false);
+        chunk[filled++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) throw new IOException("Stream closed");
+        while (len > 0) {
+            if (filled == chunk.length) seal(false);
+            int n = Math.min(len, chunk.length - filled);
+            System.arraycopy(b, off, chunk, filled, n);
+            filled += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private void seal(boolean last) throws IOException {
+        byte[] data = chunk;
+        int length = filled;
+        long i = index++;
+        if (maxInFlight == 0) {
+            try {
+                writeChunk(sealChunk(i, last, data, length));
+            } catch (GeneralSecurityException ex) {
+                throw new IOException("Encryption failed", ex);
+            }
+        } else {
+            if (inFlight.size() >= maxInFlight) writeChunk(await(inFlight.removeFirst()));
+            inFlight.addLast(AtRestKey.WORKERS.submit(() -> sealChunk(i, last, data, length)));
+        }
+        if (!last) chunk = new byte[header.chunkSize];
+        filled = 0;
+    }
+
+    private byte[] sealChunk(long i, boolean last, byte[] data, int length) throws GeneralSecurityException, IOException {
+        return AtRestKey.crypt(Cipher.ENCRYPT_MODE, key, header, i, last, data, length);
+    }
+
+    private void writeChunk(byte[] sealed) throws IOException {
+        out.writeInt(sealed.length);
+        out.write(sealed);
+    }
+
+    static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause instanceof AEADBadTagException ? "Wrong passphrase or corrupted file" : cause.toString(), cause);
+        }
+    }
+
+    // Everything handed over so far is sealed and written before flushing
+    @Override
+    public void flush() throws IOException {
+        while (!inFlight.isEmpty()) writeChunk(await(inFlight.removeFirst()));
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            seal(true);
+            flush();
+        } finally {
+            for (Future<byte[]> f : inFlight) f.cancel(false);
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Random;
+
+// Export benchmark on synthetic transactions: the CSV format written by
+// Export CSV against the Arrow IPC and Parquet exports, reporting the best
+// of several runs and the file sizes. Needs no database or display.
+//
+//   java -cp . ExportBenchmark [rows] [runs]
+public class ExportBenchmark {
+    private static final String[] TYPES = {"Expense", "Income"};
+    private static final String[] CURRENCIES = {"USD", "EUR", "GBP"};
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        Random random = new Random(42);
+        int[] day = new int[rows];
+        int[] type = new int[rows];
+        String[] category = new String[rows];
+        double[] amount = new double[rows];
+        int[] currency = new int[rows];
+        String[] description = new String[rows];
+        long start = LocalDate.of(2015, 1, 1).toEpochDay();
+        for (int i = 0; i < rows; i++) {
+            day[i] = (int) (start + (long) i * 3650 / rows);
+            type[i] = random.nextInt(10) == 0 ? 1 : 0;
+            category[i] = "Category " + random.nextInt(40);
+            amount[i] = random.nextInt(500_00) / 100.0;
+            currency[i] = random.nextInt(20) == 0 ? 1 + random.nextInt(2) : 0;
+            description[i] = "Merchant " + random.nextInt(2000) + " #" + random.nextInt(100_000);
+        }
+
+        File dir = new File(System.getProperty("java.io.tmpdir"));
+        File csv = new File(dir, "export-benchmark.csv");
+        File arrow = new File(dir, "export-benchmark" + ColumnarExport.Format.ARROW.extension);
+        File parquet = new File(dir, "export-benchmark" + ColumnarExport.Format.PARQUET.extension);
+
+        long csvMs = Long.MAX_VALUE, arrowMs = Long.MAX_VALUE, parquetMs = Long.MAX_VALUE;
+        for (int r = 0; r < runs; r++) {
+            long t0 = System.nanoTime();
+            try (FileWriter fw = new FileWriter(csv)) {
+                fw.write("Date,Type,Category,Amount,Description,Currency\n");
+                for (int i = 0; i < rows; i++) {
+                    fw.write(String.format("%s,%s,%s,%.2f,%s,%s\n", LocalDate.ofEpochDay(day[i]), TYPES[type[i]],
+                            category[i], amount[i], description[i], CURRENCIES[currency[i]]));
+                }
+            }
+            long t1 = System.nanoTime();
+            columnar(arrow, ColumnarExport.Format.ARROW, day, type, category, amount, currency, description);
+            long t2 = System.nanoTime();
+            columnar(parquet, ColumnarExport.Format.PARQUET, day, type, category, amount, currency, description);
+            long t3 = System.nanoTime();
+            csvMs = Math.min(csvMs, (t1 - t0) / 1_000_000);
+            arrowMs = Math.min(arrowMs, (t2 - t1) / 1_000_000);
+            parquetMs = Math.min(parquetMs, (t3 - t2) / 1_000_000);
+        }
+
+        System.out.printf("rows=%d runs=%d%n", rows, runs);
+        report("csv", csvMs, csv);
+        report("arrow", arrowMs, arrow);
+        report("parquet", parquetMs, parquet);
+    }
+
+    private static void columnar(File file, ColumnarExport.Format format, int[] day, int[] type, String[] category,
+                                 double[] amount, int[] currency, String[] description) throws IOException {
+        try (ColumnarExport export = new ColumnarExport(file, format)) {
+            for (int i = 0; i < day.length; i++) {
+                export.append(i + 1, LocalDate.ofEpochDay(day[i]), TYPES[type[i]], category[i], amount[i],
+                        CURRENCIES[currency[i]], description[i]);
+            }
+        }
+    }
+
+    private static void report(String name, long millis, File file) {
+        System.out.printf("%-8s %6d ms %10.1f MB%n", name, millis, file.length() / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,551 @@
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+// Saved-filter expressions such as
+//   category in (Rent, Utilities) and amount > 500 and date >= 2024-01-01 and description ~ "landlord"
+// A query is parsed once into a tree, which compiles three ways:
+//   - a parameterized SQL WHERE clause over the transactions table, for queries that go to the database
+//   - an IntPredicate over the table model's primitive columns, for filtering rows in memory
+//   - a test on Transaction objects, for archived rows and reports
+//
+// Fields are date, type, category, amount, description, currency, account
+// and tag. The operators are = != < <= > >=, in (...), and ~
+// (case-insensitive contains), combined with and, or, not and parentheses.
+// #name is short for tag = name. Values are numbers, dates (YYYY-MM-DD), bare words or "quoted
+// strings". Amounts are compared in each row's own currency. Terms that only
+// test tags are answered with bitmap AND / OR / AND NOT over the TagIndex.
+final class FilterQuery {
+    enum Field {
+        DATE("date"), TYPE("type"), CATEGORY("category"), AMOUNT("amount"), DESCRIPTION("description"), CURRENCY("currency"), ACCOUNT("account"), TAG("tag");
+
+        final String column;
+
+        Field(String column) { this.column = column; }
+
+        boolean isText() { return this != DATE && this != AMOUNT && this != TAG; }
+    }
+
+    private abstract static class Node {
+        abstract void sql(StringBuilder out, List<Object> parameters);
+
+        abstract IntPredicate compile(TransactionTableModel model, TagIndex tags);
+
+        abstract boolean test(Transaction t, TagIndex tags);
+
+        // Matching transaction ids when the subtree only tests tags, else null
+        RoaringBitmap taggedIds(TagIndex tags) { return null; }
+
+        // Rows without an id (archived ones) carry their tag names and are tested directly
+        Predicate<Transaction> matcher(TagIndex tags) {
+            RoaringBitmap ids = taggedIds(tags);
+            return ids != null ? t -> t.getId() == 0 ? test(t, tags) : ids.contains(t.getId()) : t -> test(t, tags);
+        }
+    }
+
+    private final String text;
+    private final Node root;
+
+    private FilterQuery(String text, Node root) {
+        this.text = text;
+        this.root = root;
+    }
+
+    static FilterQuery parse(String text) {
+        Parser p = new Parser(text);
+        Node root = p.or();
+        if (p.peek() != null) throw p.error("Unexpected '" + p.peek() + "'");
+        return new FilterQuery(text.trim(), root);
+    }
+
+    @Override
+    public String toString() { return text; }
+
+    // WHERE clause body with ? placeholders; the values are appended to `parameters` in order
+    String toSql(List<Object> parameters) {
+        StringBuilder out = new StringBuilder();
+        root.sql(out, parameters);
+        return out.toString();
+    }
+
+    IntPredicate compile(TransactionTableModel model, TagIndex tags) { return root.compile(model, tags); }
+
+    boolean test(Transaction t, TagIndex tags) { return root.test(t, tags); }
+
+    // Transaction test with the tag terms resolved to bitmaps up front, for scans over many rows
+    Predicate<Transaction> matcher(TagIndex tags) { return root.matcher(tags); }
+
+    private static final class And extends Node {
+        final List<Node> terms;
+
+        And(List<Node> terms) { this.terms = terms; }
+
+        @Override
+        void sql(StringBuilder out, List<Object> parameters) { join(out, parameters, terms, " AND "); }
+
+        @Override
+        IntPredicate compile(TransactionTableModel model, TagIndex tags) {
+            List<Node> rest = new ArrayList<>();
+            RoaringBitmap ids = foldTags(tags, rest);
+            IntPredicate p = ids == null ? null : containsId(model, ids);
+            for (Node n : rest) p = p == null ? n.compile(model, tags) : p.and(n.compile(model, tags));
+            return p;
+        }
+
+        @Override
+        Predicate<Transaction> matcher(TagIndex tags) {
+            List<Node> rest = new ArrayList<>();
+            RoaringBitmap ids = foldTags(tags, rest);
+            Predicate<Transaction> p = ids == null ? null : t -> t.getId() == 0 ? test(t, tags) : ids.contains(t.getId());
+            for (Node n : rest) p = p == null ? n.matcher(tags) : p.and(n.matcher(tags));
+            return p;
+        }
+
+        @Override
+        boolean test(Transaction t, TagIndex tags) {
+            for (Node n : terms) {
+                if (!n.test(t, tags)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        RoaringBitmap taggedIds(TagIndex tags) {
+            List<Node> rest = new ArrayList<>();
+            RoaringBitmap ids = foldTags(tags, rest);
+            return rest.isEmpty() ? ids : null;
+        }
+
+        // Folds the tag terms into one bitmap: the positive ones ANDed, the
+        // negated ones subtracted. The other terms go to `rest`, or every
+        // term does when there is no positive tag term to start from.
+        private RoaringBitmap foldTags(TagIndex tags, List<Node> rest) {
+            RoaringBitmap ids = null;
+            List<RoaringBitmap> excluded = new ArrayList<>();
+            for (Node n : terms) {
+                RoaringBitmap b = n.taggedIds(tags);
+                if (b != null) {
+                    ids = ids == null ? b : ids.and(b);
+                } else if (n instanceof Not && (b = ((Not) n).term.taggedIds(tags)) != null) {
+                    excluded.add(b);
+                } else {
+                    rest.add(n);
+                }
+            }
+            if (ids == null) {
+                rest.clear();
+                rest.addAll(terms);
+                return null;
+            }
+            for (RoaringBitmap b : excluded) ids = ids.andNot(b);
+            return ids;
+        }
+    }
+
+    private static final class Or extends Node {
+        final List<Node> terms;
+
+        Or(List<Node> terms) { this.terms = terms; }
+
+        @Override
+        void sql(StringBuilder out, List<Object> parameters) { join(out, parameters, terms, " OR "); }
+
+        @Override
+        IntPredicate compile(TransactionTableModel model, TagIndex tags) {
+            RoaringBitmap ids = taggedIds(tags);
+            if (ids != null) return containsId(model, ids);
+            IntPredicate p = terms.get(0).compile(model, tags);
+            for (int i = 1; i < terms.size(); i++) p = p.or(terms.get(i).compile(model, tags));
+            return p;
+        }
+
+        @Override
+        boolean test(Transaction t, TagIndex tags) {
+            for (Node n : terms) {
+                if (n.test(t, tags)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        RoaringBitmap taggedIds(TagIndex tags) {
+            RoaringBitmap ids = new RoaringBitmap();
+            for (Node n : terms) {
+                RoaringBitmap b = n.taggedIds(tags);
+                if (b == null) return null;
+                ids = ids.or(b);
+            }
+            return ids;
+        }
+    }
+
+    private static void join(StringBuilder out, List<Object> parameters, List<Node> terms, String operator) {
+        out.append('(');
+        for (int i = 0; i < terms.size(); i++) {
+            if (i > 0) out.append(operator);
+            terms.get(i).sql(out, parameters);
+        }
+        out.append(')');
+    }
+
+    private static final class Not extends Node {
+        final Node term;
+
+        Not(Node term) { this.term = term; }
+
+        @Override
+        void sql(StringBuilder out, List<Object> parameters) {
+            out.append("NOT ");
+            term.sql(out, parameters);
+        }
+
+        @Override
+        IntPredicate compile(TransactionTableModel model, TagIndex tags) { return term.compile(model, tags).negate(); }
+
+        @Override
+        boolean test(Transaction t, TagIndex tags) { return !term.test(t, tags); }
+    }
+
+    // field op value for dates and amounts; text fields only take = and !=
+    private static final class Compare extends Node {
+        final Field field;
+        final String op;
+        final Object value; // LocalDate, Double or String
+
+        Compare(Field field, String op, Object value) {
+            this.field = field;
+            this.op = op;
+            this.value = value;
+        }
+
+        @Override
+        void sql(StringBuilder out, List<Object> parameters) {
+            // Dates are stored as ISO text, which sorts like the dates themselves
+            out.append(field.column).append(' ').append(op.equals("!=") ? "<>" : op).append(" ?");
+            parameters.add(value instanceof LocalDate ? value.toString() : value);
+        }
+
+        @Override
+        IntPredicate compile(TransactionTableModel model, TagIndex tags) {
+            switch (field) {
+                case DATE: {
+                    long day = ((LocalDate) value).toEpochDay();
+                    return row -> holds(Long.compare(model.getEpochDay(row), day));
+                }
+                case AMOUNT: {
+                    long cents = Math.round((Double) value * 100);
+                    return row -> holds(Long.compare(model.getCents(row), cents));
+                }
+                case CURRENCY: {
+                    int id = FxRates.currencyId((String) value);
+                    boolean equal = op.equals("=");
+                    return row -> (model.getTransaction(row).getCurrencyId() == id) == equal;
+                }
+                default: {
+                    boolean equal = op.equals("=");
+                    return model.textFilter(modelColumn(field), s -> s.equals(value) == equal);
+                }
+            }
+        }
+
+        @Override
+        boolean test(Transaction t, TagIndex tags) {
+            switch (field) {
+                case DATE: return holds(t.getDate().compareTo((LocalDate) value));
+                case AMOUNT: return holds(Long.compare(Math.round(t.getAmount() * 100), Math.round((Double) value * 100)));
+                default: return text(field, t).equals(value) == op.equals("=");
+            }
+        }
+
+        private boolean holds(int c) {
+            switch (op) {
+                case "=": return c == 0;
+                case "!=": return c != 0;
+                case "<": return c < 0;
+                case "<=": return c <= 0;
+                case ">": return c > 0;
+                default: return c >= 0;
+            }
+        }
+    }
+
+    private static final class In extends Node {
+        final Field field;
+        final Set<String> values;
+
+        In(Field field, Set<String> values) {
+            this.field = field;
+            this.values = values;
+        }
+
+        @Override
+        void sql(StringBuilder out, List<Object> parameters) {
+            out.append(field.column).append(" IN (");
+            int i = 0;
+            for (String v : values) {
+                out.append(i++ == 0 ? "?" : ", ?");
+                parameters.add(v);
+            }
+            out.append(')');
+        }
+
+        @Override
+        IntPredicate compile(TransactionTableModel model, TagIndex tags) {
+            if (field == Field.CURRENCY) return row -> values.contains(model.getTransaction(row).getCurrency());
+            return model.textFilter(modelColumn(field), values::contains);
+        }
+
+        @Override
+        boolean test(Transaction t, TagIndex tags) { return values.contains(text(field, t)); }
+    }
+
+    // Case-insensitive substring match; LIKE is case-insensitive for ASCII
+    private static final class Contains extends Node {
+        final Field field;
+        final String needle;
+
+        Contains(Field field, String needle) {
+            this.field = field;
+            this.needle = needle.toLowerCase(Locale.ROOT);
+        }
+
+        @Override
+        void sql(StringBuilder out, List<Object> parameters) {
+            out.append("COALESCE(").append(field.column).append(", '') LIKE ? ESCAPE '\\'");
+            parameters.add("%" + needle.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%");
+        }
+
+        @Override
+        IntPredicate compile(TransactionTableModel model, TagIndex tags) {
+            if (field == Field.CURRENCY) return row -> test(model.getTransaction(row), tags);
+            return model.textFilter(modelColumn(field), s -> s.toLowerCase(Locale.ROOT).contains(needle));
+        }
+
+        @Override
+        boolean test(Transaction t, TagIndex tags) { return text(field, t).toLowerCase(Locale.ROOT).contains(needle); }
+    }
+
+    // Carries any of the named tags
+    private static final class Tagged extends Node {
+        final Set<String> names = new LinkedHashSet<>();
+
+        Tagged(Set<String> names) {
+            for (String name : names) this.names.add(TagIndex.normalize(name));
+        }
+
+        @Override
+        void sql(StringBuilder out, List<Object> parameters) {
+            out.append("id IN (SELECT tt.transaction_id FROM transaction_tags tt JOIN tags g ON g.id = tt.tag_id WHERE g.name IN (");
+            int i = 0;
+            for (String name : names) {
+                out.append(i++ == 0 ? "?" : ", ?");
+                parameters.add(name);
+            }
+            out.append("))");
+        }
+
+        @Override
+        IntPredicate compile(TransactionTableModel model, TagIndex tags) { return containsId(model, taggedIds(tags)); }
+
+        @Override
+        boolean test(Transaction t, TagIndex tags) {
+            for (String name : names) {
+                if (t.getId() == 0 ? t.getArchivedTags().contains(name) : tags.has(name, t.getId())) return true;
+            }
+            return false;
+        }
+
+        @Override
+        RoaringBitmap taggedIds(TagIndex tags) {
+            RoaringBitmap ids = new RoaringBitmap();
+            for (String name : names) ids = ids.or(tags.ids(name));
+            return ids;
+        }
+    }
+
+    private static IntPredicate containsId(TransactionTableModel model, RoaringBitmap ids) {
+        return row -> ids.contains(model.getTransaction(row).getId());
+    }
+
+    private static String text(Field field, Transaction t) {
+        String s;
+        switch (field) {
+            case TYPE: s = t.getType(); break;
+            case CATEGORY: s = t.getCategory(); break;
+            case CURRENCY: s = t.getCurrency(); break;
+            case ACCOUNT: s = t.getAccount(); break;
+            default: s = t.getDescription();
+        }
+        return s == null ? "" : s;
+    }
+
+    private static int modelColumn(Field field) {
+        switch (field) {
+            case TYPE: return TransactionTableModel.TYPE;
+            case CATEGORY: return TransactionTableModel.CATEGORY;
+            case ACCOUNT: return TransactionTableModel.ACCOUNT;
+            default: return TransactionTableModel.DESCRIPTION;
+        }
+    }
+
+    // Recursive descent over: or := and ("or" and)*, and := unary ("and" unary)*,
+    // unary := "not" unary | "(" or ")" | field op value | field "in" "(" values ")"
+    private static final class Parser {
+        private final String source;
+        private final List<String> tokens = new ArrayList<>();
+        private final List<Integer> offsets = new ArrayList<>();
+        private final List<Boolean> quoted = new ArrayList<>();
+        private int pos;
+
+        Parser(String source) {
+            this.source = source;
+            tokenize();
+        }
+
+        private void tokenize() {
+            int i = 0;
+            while (i < source.length()) {
+                char c = source.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '"') {
+                    StringBuilder sb = new StringBuilder();
+                    int start = i++;
+                    while (i < source.length() && source.charAt(i) != '"') {
+                        if (source.charAt(i) == '\\' && i + 1 < source.length()) i++;
+                        sb.append(source.charAt(i++));
+                    }
+                    if (i >= source.length()) throw new IllegalArgumentException("Unterminated string at position " + (start + 1));
+                    i++;
+                    add(sb.toString(), start, true);
+                } else if ("(),~".indexOf(c) >= 0) {
+                    add(String.valueOf(c), i++, false);
+                } else if ("=!<>".indexOf(c) >= 0) {
+                    int start = i++;
+                    if (i < source.length() && source.charAt(i) == '=') i++;
+                    String op = source.substring(start, i);
+                    if (op.equals("!")) throw new IllegalArgumentException("Expected != at " + (start + 1));
+                    add(op, start, false);
+                } else {
+                    int start = i;
+                    while (i < source.length() && !Character.isWhitespace(source.charAt(i)) && "(),~=!<>\"".indexOf(source.charAt(i)) < 0) i++;
+                    add(source.substring(start, i), start, false);
+                }
+            }
+        }
+
+        private void add(String token, int offset, boolean isQuoted) {
+            tokens.add(token);
+            offsets.add(offset);
+            quoted.add(isQuoted);
+        }
+
+        String peek() { return pos < tokens.size() ? tokens.get(pos) : null; }
+
+        private boolean keyword(String word) {
+            String t = peek();
+            if (t == null || quoted.get(pos) || !t.equalsIgnoreCase(word)) return false;
+            pos++;
+            return true;
+        }
+
+        private void expect(String token) {
+            if (!token.equals(peek())) throw error("Expected '" + token + "'");
+            pos++;
+        }
+
+        IllegalArgumentException error(String message) {
+            int at = pos < offsets.size() ? offsets.get(pos) + 1 : source.length() + 1;
+            return new IllegalArgumentException(message + " at position " + at);
+        }
+
+        Node or() {
+            List<Node> terms = new ArrayList<>();
+            terms.add(and());
+            while (keyword("or")) terms.add(and());
+            return terms.size() == 1 ? terms.get(0) : new Or(terms);
+        }
+
+        private Node and() {
+            List<Node> terms = new ArrayList<>();
+            terms.add(unary());
+            while (keyword("and")) terms.add(unary());
+            return terms.size() == 1 ? terms.get(0) : new And(terms);
+        }
+
+        private Node unary() {
+            if (keyword("not")) return new Not(unary());
+            if ("(".equals(peek()) && !quoted.get(pos)) {
+                pos++;
+                Node inner = or();
+                expect(")");
+                return inner;
+            }
+            return comparison();
+        }
+
+        private Node comparison() {
+            String name = peek();
+            if (name == null) throw error("Expected a field");
+            if (name.startsWith("#") && name.length() > 1 && !quoted.get(pos)) {
+                pos++;
+                return new Tagged(Set.of(name.substring(1)));
+            }
+            Field field;
+            try {
+                field = Field.valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ex) {
+                throw error("Unknown field '" + name + "'");
+            }
+            pos++;
+            if (keyword("in")) {
+                if (!field.isText() && field != Field.TAG) throw error("'in' needs a text field");
+                expect("(");
+                Set<String> values = new LinkedHashSet<>();
+                values.add(value());
+                while (",".equals(peek())) {
+                    pos++;
+                    values.add(value());
+                }
+                expect(")");
+                return field == Field.TAG ? new Tagged(values) : new In(field, values);
+            }
+            String op = peek();
+            if (op == null || !(op.equals("~") || op.equals("=") || op.equals("!=") || op.equals("<")
+                    || op.equals("<=") || op.equals(">") || op.equals(">="))) throw error("Expected an operator");
+            pos++;
+            if (op.equals("~")) {
+                if (!field.isText()) throw error("'~' needs a text field");
+                return new Contains(field, value());
+            }
+            if ((field.isText() || field == Field.TAG) && !op.equals("=") && !op.equals("!=")) throw error("Text fields only take =, !=, in and ~");
+            if (field == Field.TAG) {
+                Node tagged = new Tagged(Set.of(value()));
+                return op.equals("=") ? tagged : new Not(tagged);
+            }
+            int at = pos;
+            String raw = value();
+            try {
+                if (field == Field.DATE) return new Compare(field, op, LocalDate.parse(raw));
+                if (field == Field.AMOUNT) return new Compare(field, op, Double.valueOf(raw));
+            } catch (DateTimeParseException | NumberFormatException ex) {
+                pos = at;
+                throw error(field == Field.DATE ? "Expected a date (YYYY-MM-DD)" : "Expected a number");
+            }
+            return new Compare(field, op, raw);
+        }
+
+        private String value() {
+            String t = peek();
+            if (t == null || (!quoted.get(pos) && "(),~=!=<<=>>=".contains(t))) throw error("Expected a value");
+            pos++;
+            return t;
+        }
+    }
+}
@@ -1,165 +1,377 @@
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableRowSorter;
-import javax.swing.RowFilter;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
 import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
-// Domain classes now implement Serializable for data persistence
-class Transaction implements Serializable {
-    private double amount;
-    private String type;
-    private String category;
-    private LocalDate date;
-    private String description;
-
-    public Transaction(double amount, String type, String category, LocalDate date, String description) {
-        this.amount = amount;
-        this.type = type;
-        this.category = category;
-        this.date = date;
-        this.description = description;
-    }
-
-    public Object[] toTableRow() {
-        return new Object[]{date, type, category, String.format("$%.2f", amount), description};
-    }
-
-    public double getAmount() { return amount; }
-    public String getType() { return type; }
-    public String getCategory() { return category; }
-    public LocalDate getDate() { return date; }
-}
-
-class Budget implements Serializable {
-    private String category;
-    private double limit;
-    private double spent;
-
-    public Budget(String category, double limit) {
-        this.category = category;
-        this.limit = limit;
-    }
-
-    public void addExpense(double amount) {
-        spent += amount;
-    }
-
-    public String getCategory() { return category; }
-    public double getLimit() { return limit; }
-    public double getSpent() { return spent; }
-    public double getRemaining() { return limit - spent; }
-}
-
-class Reminder implements Serializable {
-    private LocalDate dueDate;
-    private String description;
-    private boolean paid;
-
-    public Reminder(LocalDate dueDate, String description) {
-        this.dueDate = dueDate;
-        this.description = description;
-    }
-
-    public Object[] toTableRow() {
-        String status = paid ? "Paid" : "Pending";
-        return new Object[]{dueDate, description, status};
-    }
-
-    public LocalDate getDueDate() { return dueDate; }
-    public String getDescription() { return description; }
-    public boolean isPaid() { return paid; }
-    public void markPaid() { paid = true; }
-}
-
 public class FinanceTracker extends JFrame {
     // Existing data stores
-    private List<Transaction> transactions = new ArrayList<>();
-    private Map<String, Budget> budgets = new HashMap<>();
+    // Mutations are published here; tables, charts and budgets apply them as deltas
+    private final ChangeStream changes = new ChangeStream();
+    // Copy-on-write store; readers iterate transactions.snapshot() while edits publish new versions
+    private final TransactionStore transactions = new TransactionStore(changes);
+    // Nested envelopes; spending rolls up to every enclosing budget
+    private final BudgetTree budgets = new BudgetTree();
     private List<Reminder> reminders = new ArrayList<>();
-    private DefaultTableModel transactionModel = new DefaultTableModel();
+    // Running balance per account, kept in step with the store alongside the table model
+    private final Ledger ledger = new Ledger();
+    private TransactionTableModel transactionModel = new TransactionTableModel(ledger);
     private DefaultTableModel reminderModel = new DefaultTableModel();
+    private List<RecurrenceRule> recurringRules = new ArrayList<>();
+    private DefaultTableModel recurringModel = new DefaultTableModel();
+    // Rows per INSERT batch when posting missed recurring occurrences at startup
+    private static final int RECURRING_BACKFILL_BATCH = 500;
+    // In-memory front for the import_fingerprints table, built on first incremental import
+    private BloomFilter importBloom;
+    private static final int IMPORT_LOOKUP_BATCH = 500;
+    private static final String PERIOD_HELP =
+        "Period: MONTHLY, WEEKLY, ROLLING:<days>, EVERY:<days>:<start YYYY-MM-DD> or LIFETIME";
+    // Closed years moved out of the hot transactions table
+    private final ColdArchive archive = new ColdArchive(new File("archive"));
+    // Deduplicated snapshots of the database and archive under backups/, taken daily
+    private static final int BACKUP_KEEP = 14;
+    private static final long BACKUP_FIRST_CHECK_MS = 5 * 60_000L;
+    private static final long BACKUP_CHECK_MS = 60 * 60_000L;
+    private final BackupScheduler backups = new BackupScheduler(new File("backups"), new File("archive"),
+        this::getConnection, BACKUP_KEEP, BackupScheduler.BYTES_PER_SECOND);
+    private final FxRates fxRates = new FxRates();
+    // Currency that reports, budgets and charts are converted into
+    private volatile String reportingCurrency = FxRates.DEFAULT_CURRENCY;
+    // Daily expense totals behind period budgets, in the reporting currency.
+    // Archived years are scanned once; hot rows are re-read when the store's
+    // version moves. Either is dropped (null) when conversions change.
+    private DailySpending archivedSpending;
+    private DailySpending budgetSpending;
+    private long budgetSpendingVersion = -1;
+    private final Map<String, DailySpending.Window> budgetWindows = new HashMap<>();
+    // Saved-filter queries, parsed once per distinct text
+    private final Map<String, FilterQuery> parsedFilters = new HashMap<>();
+    // Expense size quantiles and distinct payees per category and month, same
+    // currency and lifecycle as the daily totals; the archive part is kept
+    // separately so stale cells can be rebuilt without rescanning it
+    private SpendingSketches archivedSketches;
+    private SpendingSketches sketches;
+    private long sketchesVersion = -1;
+    // Per-category running statistics that score expenses as they arrive;
+    // flagged ones are listed on the Alerts tab, newest last
+    private final AnomalyDetector anomalies = new AnomalyDetector();
+    private final DefaultTableModel alertModel = new DefaultTableModel();
+    private static final int MAX_ALERTS = 1000;
+    // Transaction ids per tag, mirrored from the transaction_tags table
+    private volatile TagIndex tags = new TagIndex();
+    // Log shipping: a leader logs store events and serves them; a follower is a read-only replica
+    private MutationLog mutationLog;
+    private ReplicationLeader replicationLeader;
+    private ChangeSubscriber mutationLogger;
+    private ReplicationFollower replicationFollower;
+    private javax.swing.Timer replicationStatusTimer;
+    // Other processes sharing finance_tracker.db: their commits are polled for and applied as deltas
+    private static final long CHANGE_POLL_MS = 2_000;
+    // Deletes stay visible to pollers this long; an instance idle for longer reloads instead
+    private static final int TOMBSTONE_DAYS = 7;
+    private static final String SELECT_TRANSACTIONS = "SELECT id, date, type, category, amount, description, currency, account, version FROM transactions";
+    private Timer changePoll;
+    private Connection pollConnection;        // poll thread only
+    private long polledDataVersion;           // poll thread only
+    private Map<String, Long> polledSequences; // poll thread only
+    // Sync point of the transactions in memory; -1 until they are first loaded
+    private volatile long syncedTransactionSeq = -1;
+    private volatile int syncedTransactionId;
+    // Session passphrase for files written at rest; null writes them in plain text
+    private AtRestKey atRestKey;
+    private char[] atRestPassphrase;
     // Categories list (used in new Category Management tab)
     private List<String> categories = new ArrayList<>(Arrays.asList(
         "Groceries", "Rent", "Entertainment", "Utilities", "Salary", "Bonus"
     ));
+    // Description keyword/regex rules, compiled into one matcher whenever they change
+    private List<CategoryMatcher.Rule> categoryRules = new ArrayList<>();
+    private DefaultTableModel categoryRuleModel = new DefaultTableModel();
+    private CategoryMatcher categoryMatcher = new CategoryMatcher(categoryRules);
     private ChartPanel graphPanel;
+    private JLabel statusLabel = new JLabel(" ");
+    private ProjectionChartPanel projectionChart = new ProjectionChartPanel();
+    // Disabled while a projection is being fitted or run, so runs never share the chart
+    private JButton projectButton = new JButton("Project Balance");
+    // Released once startup migrations have run; getConnection() waits on it
+    private final CountDownLatch schemaReady = new CountDownLatch(1);
+    // Startup milestones in epoch millis, reported by StartupBenchmark
+    private final CompletableFuture<Long> firstPaint = new CompletableFuture<>();
+    private final CompletableFuture<Long> interactive = new CompletableFuture<>();
     
+    // Only builds the window; launch() shows it and then opens the database
     public FinanceTracker() {
         setTitle("Personal Finance Tracker");
         setSize(1200, 800);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        initializeModels();
         initializeUI();
-        initializeDatabase();
-        setupDailyReminderCheck();
     }
     
     private Connection getConnection() throws SQLException {
+        try {
+            schemaReady.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the database", ex);
+        }
+        return openConnection();
+    }
+    
+    private Connection openConnection() throws SQLException {
         // Using SQLite as an example; this creates/opens a file named "finance_tracker.db"
-        return DriverManager.getConnection("jdbc:sqlite:finance_tracker.db");
+        return SharedDatabase.open("jdbc:sqlite:finance_tracker.db");
+    }
+    
+    // Shared models get their columns up front because rows can be added
+    // before the tab that displays them has been built
+    private void initializeModels() {
+        reminderModel.setColumnIdentifiers(new String[]{"ID", "Due Date", "Description", "Status", "Version"}); // Added "ID"
+        recurringModel.setColumnIdentifiers(new String[]{"ID", "Start", "Rule", "Type", "Category", "Amount", "Description"});
+        categoryRuleModel.setColumnIdentifiers(new String[]{"ID", "Pattern", "Kind", "Category"});
+        alertModel.setColumnIdentifiers(new String[]{"Date", "Category", "Amount", "Description", "Why", "Score"});
+        
+        // Store positions and table rows line up, so each event patches rows in place
+        changes.subscribe(new ChangeSubscriber(ChangeEvent.Entity.TRANSACTION) {
+            @Override
+            protected void apply(ChangeEvent e) {
+                // The ledger first, so balances are current when the rows repaint
+                ledger.apply(e);
+                switch (e.kind) {
+                    case INSERT: transactionModel.addTransactions(e.after(Transaction.class)); break;
+                    case UPDATE: transactionModel.setTransactions(e.positions, e.after(Transaction.class)); break;
+                    case DELETE: transactionModel.removeTransactions(e.positions); break;
+                    default: transactionModel.setTransactions(e.after(Transaction.class));
+                }
+                if (e.kind != ChangeEvent.Kind.RESET) transactionModel.balancesChanged();
+            }
+            
+            @Override
+            protected void reload() {
+                TransactionStore.Snapshot snapshot = transactions.snapshot();
+                ledger.reset(snapshot);
+                transactionModel.setTransactions(snapshot);
+            }
+        });
+        changes.subscribe(new ChangeSubscriber(ChangeEvent.Entity.TRANSACTION) {
+            @Override
+            protected void apply(ChangeEvent e) { applyToBudgetSpending(e); }
+            
+            @Override
+            protected void reload() {
+                budgetSpending = null;
+                refreshBudgetPeriods();
+            }
+        });
+        changes.subscribe(new ChangeSubscriber(ChangeEvent.Entity.TRANSACTION) {
+            @Override
+            protected void apply(ChangeEvent e) { applyToSketches(e); }
+            
+            @Override
+            protected void reload() { sketches = null; }
+        });
+        changes.subscribe(new ChangeSubscriber(ChangeEvent.Entity.TRANSACTION) {
+            @Override
+            protected void apply(ChangeEvent e) { applyToAnomalies(e); }
+            
+            @Override
+            protected void reload() { anomalies.train(transactions.snapshot(), fxRates.converterTo(reportingCurrency)); }
+        });
+        changes.subscribe(new ChangeSubscriber(ChangeEvent.Entity.TRANSACTION) {
+            @Override
+            protected void apply(ChangeEvent e) {
+                switch (e.kind) {
+                    case DELETE:
+                        for (Transaction t : e.before(Transaction.class)) tags.forget(t.getId());
+                        break;
+                    case RESET:
+                        tags.retainOnly(liveIds(e.after(Transaction.class)));
+                        break;
+                    default:
+                }
+            }
+            
+            @Override
+            protected void reload() { tags.retainOnly(liveIds(transactions.snapshot())); }
+        });
+        changes.subscribe(new ChangeSubscriber(ChangeEvent.Entity.REMINDER) {
+            @Override
+            protected void apply(ChangeEvent e) { applyRowChange(reminderModel, e); }
+            
+            @Override
+            protected void reload() { refreshReminderTable(reminderModel); }
+        });
+    }
+    
+    // Patches an id-keyed table (ID in column 0) with one budget or reminder event
+    private static void applyRowChange(DefaultTableModel model, ChangeEvent e) {
+        if (e.kind == ChangeEvent.Kind.INSERT || e.kind == ChangeEvent.Kind.RESET) {
+            if (e.kind == ChangeEvent.Kind.RESET) model.setRowCount(0);
+            for (Object[] row : e.after(Object[].class)) model.addRow(row);
+            return;
+        }
+        for (int r = 0; r < model.getRowCount(); r++) {
+            if (!Objects.equals(model.getValueAt(r, 0), e.id)) continue;
+            if (e.kind == ChangeEvent.Kind.DELETE) {
+                model.removeRow(r);
+            } else {
+                Object[] row = e.after(Object[].class).get(0);
+                for (int c = 0; c < row.length; c++) model.setValueAt(row[c], r, c);
+            }
+            return;
+        }
     }
 
     private void initializeUI() {
-        JTabbedPane tabbedPane = new JTabbedPane();
-        tabbedPane.addTab("Transactions", createTransactionsPanel());
-        tabbedPane.addTab("Budgets", createBudgetsPanel());
-        tabbedPane.addTab("Reports", createReportsPanel());
-        tabbedPane.addTab("Reminders", createRemindersPanel());
+        // Only the Transactions tab is built before the first frame; the rest on first selection
+        LazyTabbedPane tabbedPane = new LazyTabbedPane();
+        tabbedPane.addLazyTab("Transactions", this::createTransactionsPanel);
+        tabbedPane.addLazyTab("Budgets", this::createBudgetsPanel);
+        tabbedPane.addLazyTab("Reports", this::createReportsPanel);
+        tabbedPane.addLazyTab("Reminders", this::createRemindersPanel);
+        tabbedPane.addLazyTab("Recurring", this::createRecurringPanel);
         
-        tabbedPane.addTab("Advanced Transactions", createAdvancedTransactionsPanel());
-        tabbedPane.addTab("Charts", createChartsPanel());
-        tabbedPane.addTab("Category Management", createCategoryManagementPanel());
+        tabbedPane.addLazyTab("Advanced Transactions", this::createAdvancedTransactionsPanel);
+        tabbedPane.addLazyTab("Charts", this::createChartsPanel);
+        tabbedPane.addLazyTab("Category Management", this::createCategoryManagementPanel);
+        tabbedPane.addLazyTab("Alerts", this::createAlertsPanel);
         
         add(tabbedPane, BorderLayout.CENTER);
+        add(statusLabel, BorderLayout.SOUTH);
         setJMenuBar(createMenuBar());
         styleComponents();
     }
     
+    @Override
+    public void paint(Graphics g) {
+        super.paint(g);
+        firstPaint.complete(System.currentTimeMillis());
+    }
+    
+    CompletableFuture<Long> firstPaint() { return firstPaint; }
+    CompletableFuture<Long> interactive() { return interactive; }
+    
+    // Runs after the window is showing. Migrations, archive recovery, settings
+    // and rules load off the EDT; the UI models are filled in once they finish.
+    // Reminder checks start last since nothing needs them for the first frame.
     private void initializeDatabase() {
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-             
-        	stmt.execute("CREATE TABLE IF NOT EXISTS transactions ("
-        	        + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
-        	        + "date TEXT, "
-        	        + "type TEXT, "
-        	        + "category TEXT, "
-        	        + "amount REAL, "
-        	        + "description TEXT)");
-        	stmt.execute("CREATE TABLE IF NOT EXISTS budgets ("
-        	        + "category TEXT PRIMARY KEY, "
-        	        + "limit_amount REAL, "
-        	        + "spent REAL)");
-        	stmt.execute("CREATE TABLE IF NOT EXISTS reminders ("
-        	        + "id INTEGER PRIMARY KEY AUTOINCREMENT, "
-        	        + "dueDate TEXT, "
-        	        + "description TEXT, "
-        	        + "paid INTEGER)");
-             stmt.execute("CREATE TABLE IF NOT EXISTS categories ("
-                     + "category TEXT PRIMARY KEY)");
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-        }
+        statusLabel.setText("Opening database...");
+        SchemaMigrator migrator = new SchemaMigrator();
+        new SwingWorker<Boolean, Void>() {
+            private List<CategoryMatcher.Rule> rules;
+            private CategoryMatcher matcher;
+            private List<RecurrenceRule> recurring;
+            
+            @Override
+            protected Boolean doInBackground() throws Exception {
+                boolean rewritesPending;
+                try (Connection conn = openConnection()) {
+                    try {
+                        SharedDatabase.enableWal(conn);
+                    } catch (SQLException ex) {
+                        ex.printStackTrace(); // rollback journal still works, readers just wait on writers
+                    }
+                    rewritesPending = migrator.migrateQuick(conn);
+                    try {
+                        SharedDatabase.pruneTombstones(conn, TOMBSTONE_DAYS);
+                    } catch (SQLException ex) {
+                        ex.printStackTrace();
+                    }
+                } finally {
+                    schemaReady.countDown();
+                }
+                recoverArchive();
+                loadCurrencySettings();
+                rules = readCategoryRules();
+                matcher = new CategoryMatcher(rules);
+                recurring = readRecurringRules();
+                tags = readTags();
+                backfillRecurringTransactions(recurring);
+                return rewritesPending;
+            }
+            
+            @Override
+            protected void done() {
+                boolean rewritesPending = false;
+                try {
+                    rewritesPending = get();
+                    showCategoryRules(rules, matcher);
+                    showRecurringRules(recurring);
+                    statusLabel.setText("Ready.");
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    statusLabel.setText("Could not open database: " + ex.getMessage());
+                }
+                interactive.complete(System.currentTimeMillis());
+                if (rewritesPending) runRemainingMigrations(migrator);
+                setupDailyReminderCheck();
+                startChangePoll();
+                backups.start(BACKUP_FIRST_CHECK_MS, BACKUP_CHECK_MS, Duration.ofDays(1),
+                    message -> SwingUtilities.invokeLater(() -> statusLabel.setText(message)));
+            }
+        }.execute();
+    }
+    
+    private void runRemainingMigrations(SchemaMigrator migrator) {
+        // Table rewrites copy rows in chunks off the EDT and report progress in the status bar
+        new SwingWorker<Void, String>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                try (Connection conn = getConnection()) {
+                    migrator.migrateRemaining(conn, (version, description, done, total) ->
+                        publish(String.format("Upgrading database (v%d: %s) %d/%d rows", version, description, done, total)));
+                }
+                tags = readTags(); // the tag tables may only exist now
+                return null;
+            }
+
+            @Override
+            protected void process(List<String> chunks) {
+                statusLabel.setText(chunks.get(chunks.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                    statusLabel.setText("Database upgrade complete.");
+                } catch (Exception ex) {
+                    statusLabel.setText("Database upgrade failed: " + ex.getMessage());
+                }
+            }
+        }.execute();
     }
     
     private JPanel createTransactionsPanel() {
         JPanel panel = new JPanel(new BorderLayout());
         JTable transactionTable = new JTable(transactionModel);
-        transactionModel.setColumnIdentifiers(new String[]{"ID", "Date", "Type", "Category", "Amount", "Description"}); // Added "ID"
+        transactionTable.setDefaultRenderer(Double.class, TransactionTableModel.amountRenderer());
         transactionTable.removeColumn(transactionTable.getColumnModel().getColumn(0)); // Hide ID column
 
         JToolBar toolbar = new JToolBar();
@@ -176,8 +388,20 @@ public class FinanceTracker extends JFrame {
         deleteButton.addActionListener(e -> deleteSelectedTransaction(transactionTable, transactionModel));
         toolbar.add(deleteButton);
 
+        JButton bulkButton = new JButton("Bulk Edit");
+        bulkButton.addActionListener(e -> bulkEditTransactions(transactionTable, transactionModel));
+        toolbar.add(bulkButton);
+
+        JButton tagButton = new JButton("Tags");
+        tagButton.addActionListener(e -> tagSelectedTransactions(transactionTable, transactionModel));
+        toolbar.add(tagButton);
+
+        JButton balancesButton = new JButton("Balances");
+        balancesButton.addActionListener(e -> showAccountBalances());
+        toolbar.add(balancesButton);
+
         JButton refreshButton = new JButton("Refresh");
-        refreshButton.addActionListener(e -> refreshTransactionTable(transactionModel));
+        refreshButton.addActionListener(e -> refreshTransactionTable());
         toolbar.add(refreshButton);
 
         panel.add(toolbar, BorderLayout.NORTH);
@@ -185,7 +409,42 @@ public class FinanceTracker extends JFrame {
         return panel;
     }
     
-    private void editSelectedTransaction(JTable transactionTable, DefaultTableModel transactionModel) {
+    // Balance of every account at the end of a chosen day, each in its own currencies
+    private void showAccountBalances() {
+        JTextField dateField = new JTextField(LocalDate.now().toString(), 10);
+        DefaultTableModel balanceModel = new DefaultTableModel(new String[]{"Account", "Currency", "Balance"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) { return false; }
+        };
+        Runnable show = () -> {
+            try {
+                LocalDate date = LocalDate.parse(dateField.getText().trim());
+                balanceModel.setRowCount(0);
+                ledger.balancesOn(date).forEach((account, byCurrency) -> byCurrency.forEach((currency, cents) ->
+                    balanceModel.addRow(new Object[]{account, currency, FxRates.format(cents / 100.0, currency)})));
+            } catch (DateTimeParseException ex) {
+                JOptionPane.showMessageDialog(this, "Invalid date. Please use YYYY-MM-DD.");
+            }
+        };
+        JButton showButton = new JButton("Show");
+        showButton.addActionListener(e -> show.run());
+        dateField.addActionListener(e -> show.run());
+        show.run();
+        
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        top.add(new JLabel("Balances at end of (YYYY-MM-DD):"));
+        top.add(dateField);
+        top.add(showButton);
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(top, BorderLayout.NORTH);
+        JScrollPane scroll = new JScrollPane(new JTable(balanceModel));
+        scroll.setPreferredSize(new Dimension(420, 220));
+        panel.add(scroll, BorderLayout.CENTER);
+        JOptionPane.showMessageDialog(this, panel, "Account Balances", JOptionPane.PLAIN_MESSAGE);
+    }
+    
+    private void editSelectedTransaction(JTable transactionTable, TransactionTableModel transactionModel) {
+        if (rejectOnReplica()) return;
         int selectedRow = transactionTable.getSelectedRow();
         if (selectedRow == -1) {
             JOptionPane.showMessageDialog(null, "Select a transaction to edit.");
@@ -193,12 +452,14 @@ public class FinanceTracker extends JFrame {
         }
 
         // Retrieve selected transaction data
-        int transactionId = (int) transactionModel.getValueAt(selectedRow, 0); // ID column (hidden)
-        String date = (String) transactionModel.getValueAt(selectedRow, 1);
-        String type = (String) transactionModel.getValueAt(selectedRow, 2);
-        String category = (String) transactionModel.getValueAt(selectedRow, 3);
-        double amount = (double) transactionModel.getValueAt(selectedRow, 4);
-        String description = (String) transactionModel.getValueAt(selectedRow, 5);
+        int row = transactionTable.convertRowIndexToModel(selectedRow);
+        Transaction selected = transactionModel.getTransaction(row);
+        int transactionId = selected.getId();
+        String date = selected.getDate().toString();
+        String type = selected.getType();
+        String category = selected.getCategory();
+        double amount = selected.getAmount();
+        String description = selected.getDescription();
 
         // Show input dialogs for editing
         String newDate = JOptionPane.showInputDialog(null, "Enter new date (YYYY-MM-DD):", date);
@@ -216,82 +477,690 @@ public class FinanceTracker extends JFrame {
         String newDescription = JOptionPane.showInputDialog(null, "Enter new description:", description);
         if (newDescription == null) newDescription = ""; // Allow empty description
 
+        Object newAccount = JOptionPane.showInputDialog(null, "Account:", "Edit Transaction", JOptionPane.QUESTION_MESSAGE,
+                null, ledger.accountChoices(), selected.getAccount());
+        if (newAccount == null) return;
+
         try {
             double newAmount = Double.parseDouble(newAmountStr);
-
-            // Update in database
-            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:finance_tracker.db");
-                 PreparedStatement stmt = conn.prepareStatement("UPDATE transactions SET date = ?, type = ?, category = ?, amount = ?, description = ? WHERE id = ?")) {
-                stmt.setString(1, newDate);
-                stmt.setString(2, newType);
-                stmt.setString(3, newCategory);
-                stmt.setDouble(4, newAmount);
-                stmt.setString(5, newDescription);
-                stmt.setInt(6, transactionId);
-                stmt.executeUpdate();
-                JOptionPane.showMessageDialog(null, "Transaction updated successfully.");
-            }
-            
-            // Refresh the table
-            refreshTransactionTable(transactionModel);
+            Transaction updated = new Transaction(newAmount, newType, newCategory, LocalDate.parse(newDate), newDescription, selected.getCurrency());
+            updated.setAccount(newAccount.toString());
+            if (updateTransaction(row, selected, updated)) JOptionPane.showMessageDialog(null, "Transaction updated successfully.");
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(null, "Invalid amount value. Please enter a number.");
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(null, "Error updating transaction: " + ex.getMessage());
+        } catch (DateTimeParseException ex) {
+            JOptionPane.showMessageDialog(null, "Invalid date. Please use YYYY-MM-DD.");
         }
     }
     
-    private void deleteSelectedTransaction(JTable transactionTable, DefaultTableModel transactionModel) {
-        int selectedRow = transactionTable.getSelectedRow();
-        if (selectedRow == -1) {
+    // Writes an edit only if nobody changed the row since it was read, then
+    // lets the store publish it so views patch just this row. Rows never
+    // saved have no database copy yet and only change in memory.
+    private boolean updateTransaction(int row, Transaction before, Transaction updated) {
+        updated.setId(before.getId());
+        updated.setVersion(before.getVersion());
+        if (before.getId() != 0) {
+            try {
+                long version = SharedDatabase.withRetry(this::getConnection, conn -> {
+                    conn.setAutoCommit(false);
+                    try (PreparedStatement stmt = conn.prepareStatement("UPDATE transactions SET date = ?, type = ?, category = ?,"
+                            + " amount = ?, description = ?, currency = ?, account = ? WHERE id = ? AND version = ?");
+                         PreparedStatement read = conn.prepareStatement("SELECT version FROM transactions WHERE id = ?")) {
+                        stmt.setString(1, updated.getDate().toString());
+                        stmt.setString(2, updated.getType());
+                        stmt.setString(3, updated.getCategory());
+                        stmt.setDouble(4, updated.getAmount());
+                        stmt.setString(5, updated.getDescription());
+                        stmt.setString(6, updated.getCurrency());
+                        stmt.setString(7, updated.getAccount());
+                        stmt.setInt(8, before.getId());
+                        stmt.setLong(9, before.getVersion());
+                        if (stmt.executeUpdate() == 0) throw new SharedDatabase.ConflictException("changed or deleted elsewhere");
+                        read.setInt(1, before.getId());
+                        try (ResultSet rs = read.executeQuery()) {
+                            long v = rs.next() ? rs.getLong(1) : 0;
+                            conn.commit();
+                            return v;
+                        }
+                    }
+                });
+                updated.setVersion(version);
+            } catch (SharedDatabase.ConflictException ex) {
+                reportConflict("This transaction");
+                return false;
+            } catch (SQLException ex) {
+                JOptionPane.showMessageDialog(null, "Error updating transaction: " + ex.getMessage());
+                return false;
+            }
+        }
+        transactions.set(row, updated);
+        if (before.getId() != 0) transactions.markSaved();
+        return true;
+    }
+    
+    // Version of an id-keyed row as it is now; -1 if the row is gone
+    private static long rowVersion(Connection conn, String table, int id) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT version FROM " + table + " WHERE id = ?")) {
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1;
+            }
+        }
+    }
+    
+    // Runs a single-row "... WHERE id = ? AND version = ?" update with retry and
+    // returns the version it left the row at; -1, after telling the user, when
+    // the row changed since it was loaded
+    private long updateVersioned(String what, String table, int id, String sql, Object... parameters) throws SQLException {
+        try {
+            return SharedDatabase.withRetry(this::getConnection, conn -> {
+                conn.setAutoCommit(false);
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < parameters.length; i++) stmt.setObject(i + 1, parameters[i]);
+                    if (stmt.executeUpdate() == 0) throw new SharedDatabase.ConflictException("changed or deleted elsewhere");
+                    long version = rowVersion(conn, table, id);
+                    conn.commit();
+                    return version;
+                } catch (SQLException ex) {
+                    conn.rollback();
+                    throw ex;
+                }
+            });
+        } catch (SharedDatabase.ConflictException ex) {
+            reportConflict(what);
+            return -1;
+        }
+    }
+    
+    // Another instance got there first; pull its changes so the user can redo the edit on fresh data
+    private void reportConflict(String what) {
+        JOptionPane.showMessageDialog(null, what + " was changed or deleted by another user since it was loaded.\n"
+            + "The latest data is being reloaded; please review it and try again.");
+        pollChangesNow();
+    }
+    
+    private void deleteSelectedTransaction(JTable transactionTable, TransactionTableModel transactionModel) {
+        if (rejectOnReplica()) return;
+        int[] rows = selectedModelRows(transactionTable);
+        if (rows.length == 0) {
             JOptionPane.showMessageDialog(null, "Select a transaction to delete.");
             return;
         }
 
-        int transactionId = (int) transactionModel.getValueAt(selectedRow, 0);
-
-        int confirm = JOptionPane.showConfirmDialog(null, "Are you sure you want to delete this transaction?", "Confirm Delete", JOptionPane.YES_NO_OPTION);
+        String question = rows.length == 1 ? "Are you sure you want to delete this transaction?"
+                : "Are you sure you want to delete these " + rows.length + " transactions?";
+        int confirm = JOptionPane.showConfirmDialog(null, question, "Confirm Delete", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:finance_tracker.db");
-                 PreparedStatement stmt = conn.prepareStatement("DELETE FROM transactions WHERE id = ?")) {
-                stmt.setInt(1, transactionId);
-                stmt.executeUpdate();
-                JOptionPane.showMessageDialog(null, "Transaction deleted successfully.");
+            try {
+                List<Transaction> saved = savedTransactions(transactionModel, rows);
+                // A trigger drops the rows' tag links in the same transaction
+                SharedDatabase.withRetry(this::getConnection, conn ->
+                    updateRows(conn, saved, "DELETE FROM transactions WHERE id IN (SELECT id FROM temp.bulk_ids)"));
+                transactions.removeAll(rows);
+                if (!saved.isEmpty()) transactions.markSaved();
+                statusLabel.setText(rows.length == 1 ? "Transaction deleted." : rows.length + " transactions deleted.");
+            } catch (SharedDatabase.ConflictException ex) {
+                reportConflict(rows.length == 1 ? "This transaction" : "One of these transactions");
             } catch (SQLException ex) {
                 JOptionPane.showMessageDialog(null, "Error deleting transaction: " + ex.getMessage());
             }
-            
-            // Refresh the table
-            refreshTransactionTable(transactionModel);
         }
-    }private void refreshTransactionTable(DefaultTableModel transactionModel) {
-        transactionModel.setRowCount(0); // Clear existing data
+    }
+    
+    // Recategorizes, retypes or shifts the dates of every selected row with
+    // one statement, then patches the same rows in the store as one version
+    private void bulkEditTransactions(JTable transactionTable, TransactionTableModel transactionModel) {
+        if (rejectOnReplica()) return;
+        int[] rows = selectedModelRows(transactionTable);
+        if (rows.length == 0) {
+            JOptionPane.showMessageDialog(null, "Select the transactions to edit.");
+            return;
+        }
+
+        String[] actions = {"Recategorize", "Change Type", "Shift Dates", "Move to Account"};
+        JComboBox<String> actionCombo = new JComboBox<>(actions);
+        JTextField valueField = new JTextField();
+        JPanel panel = new JPanel(new GridLayout(2, 2));
+        panel.add(new JLabel("Action:"));
+        panel.add(actionCombo);
+        panel.add(new JLabel("Category, Income/Expense, days (+/-) or account:"));
+        panel.add(valueField);
+        String title = "Bulk Edit " + rows.length + (rows.length == 1 ? " Transaction" : " Transactions");
+        if (JOptionPane.showConfirmDialog(null, panel, title, JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
 
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:finance_tracker.db");
+        String value = valueField.getText().trim();
+        String action = (String) actionCombo.getSelectedItem();
+        String sql;
+        Object parameter;
+        Function<Transaction, Transaction> change;
+        try {
+            switch (action) {
+                case "Recategorize":
+                    if (value.isEmpty()) throw new IllegalArgumentException("Enter a category.");
+                    sql = "UPDATE transactions SET category = ? WHERE id IN (SELECT id FROM temp.bulk_ids)";
+                    parameter = value;
+                    change = t -> t.withCategory(value);
+                    break;
+                case "Change Type":
+                    if (!value.equals("Income") && !value.equals("Expense")) throw new IllegalArgumentException("Type must be Income or Expense.");
+                    sql = "UPDATE transactions SET type = ? WHERE id IN (SELECT id FROM temp.bulk_ids)";
+                    parameter = value;
+                    change = t -> t.withType(value);
+                    break;
+                case "Move to Account":
+                    if (value.isEmpty()) throw new IllegalArgumentException("Enter an account.");
+                    sql = "UPDATE transactions SET account = ? WHERE id IN (SELECT id FROM temp.bulk_ids)";
+                    parameter = value;
+                    change = t -> t.withAccount(value);
+                    break;
+                default:
+                    long days = Long.parseLong(value.startsWith("+") ? value.substring(1) : value);
+                    sql = "UPDATE transactions SET date = date(date, ?) WHERE id IN (SELECT id FROM temp.bulk_ids)";
+                    parameter = (days >= 0 ? "+" : "") + days + " days";
+                    change = t -> t.withDate(t.getDate().plusDays(days));
+            }
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(null, "Enter a whole number of days, e.g. 7 or -30.");
+            return;
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(null, ex.getMessage());
+            return;
+        }
+
+        try {
+            List<Transaction> saved = savedTransactions(transactionModel, rows);
+            Map<Integer, Long> versions = SharedDatabase.withRetry(this::getConnection, conn -> updateRows(conn, saved, sql, parameter));
+            List<Transaction> updated = new ArrayList<>(rows.length);
+            for (int row : rows) {
+                Transaction t = change.apply(transactionModel.getTransaction(row));
+                t.setVersion(versions.getOrDefault(t.getId(), t.getVersion()));
+                updated.add(t);
+            }
+            transactions.setAll(rows, updated);
+            if (!saved.isEmpty()) transactions.markSaved();
+            statusLabel.setText(action + " applied to " + rows.length + (rows.length == 1 ? " transaction." : " transactions."));
+        } catch (SharedDatabase.ConflictException ex) {
+            reportConflict(rows.length == 1 ? "This transaction" : "One of these transactions");
+        } catch (SQLException ex) {
+            JOptionPane.showMessageDialog(null, "Error updating transactions: " + ex.getMessage());
+        }
+    }
+    
+    // Adds and removes tags on every selected row, one statement per tag
+    private void tagSelectedTransactions(JTable transactionTable, TransactionTableModel transactionModel) {
+        if (rejectOnReplica()) return;
+        int[] rows = selectedModelRows(transactionTable);
+        List<Integer> ids = transactionIds(transactionModel, rows);
+        if (ids.isEmpty()) {
+            JOptionPane.showMessageDialog(null, "Select the transactions to tag.");
+            return;
+        }
+
+        Set<String> current = new TreeSet<>();
+        for (int id : ids) current.addAll(tags.tagsOf(id));
+        JTextField addField = new JTextField();
+        JTextField removeField = new JTextField();
+        JPanel panel = new JPanel(new GridLayout(5, 1));
+        panel.add(new JLabel("Current tags: " + (current.isEmpty() ? "none" : String.join(", ", current))));
+        panel.add(new JLabel("Add tags (comma separated):"));
+        panel.add(addField);
+        panel.add(new JLabel("Remove tags (comma separated):"));
+        panel.add(removeField);
+        String title = "Tag " + ids.size() + (ids.size() == 1 ? " Transaction" : " Transactions");
+        if (JOptionPane.showConfirmDialog(null, panel, title, JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+
+        Set<String> added = parseTags(addField.getText());
+        Set<String> removed = parseTags(removeField.getText());
+        try (Connection conn = getConnection()) {
+            for (String tag : added) {
+                int tagId;
+                try (PreparedStatement insert = conn.prepareStatement("INSERT OR IGNORE INTO tags(name) VALUES (?)");
+                     PreparedStatement lookup = conn.prepareStatement("SELECT id FROM tags WHERE name = ?")) {
+                    insert.setString(1, tag);
+                    insert.executeUpdate();
+                    lookup.setString(1, tag);
+                    try (ResultSet rs = lookup.executeQuery()) {
+                        tagId = rs.next() ? rs.getInt(1) : 0;
+                    }
+                }
+                updateByIds(conn, ids, "INSERT OR IGNORE INTO transaction_tags(transaction_id, tag_id) SELECT id, ? FROM temp.bulk_ids", tagId);
+                for (int id : ids) tags.tag(tag, id);
+            }
+            for (String tag : removed) {
+                updateByIds(conn, ids, "DELETE FROM transaction_tags WHERE tag_id = (SELECT id FROM tags WHERE name = ?)"
+                    + " AND transaction_id IN (SELECT id FROM temp.bulk_ids)", tag);
+                for (int id : ids) tags.untag(tag, id);
+            }
+            statusLabel.setText("Tags updated on " + ids.size() + (ids.size() == 1 ? " transaction." : " transactions."));
+        } catch (SQLException ex) {
+            JOptionPane.showMessageDialog(null, "Error updating tags: " + ex.getMessage());
+        }
+    }
+    
+    private static Set<String> parseTags(String text) {
+        Set<String> parsed = new LinkedHashSet<>();
+        for (String tag : text.split(",")) {
+            if (!tag.trim().isEmpty()) parsed.add(TagIndex.normalize(tag));
+        }
+        return parsed;
+    }
+    
+    private static RoaringBitmap liveIds(List<Transaction> rows) {
+        RoaringBitmap ids = new RoaringBitmap();
+        for (Transaction t : rows) {
+            if (t.getId() > 0) ids.add(t.getId());
+        }
+        return ids;
+    }
+    
+    // Tag bitmaps from the join table; empty while the tag tables are still to be created
+    private TagIndex readTags() {
+        TagIndex index = new TagIndex();
+        try (Connection conn = getConnection();
              Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT id, date, type, category, amount, description FROM transactions")) {
-            
+             ResultSet rs = stmt.executeQuery("SELECT g.name, tt.transaction_id FROM transaction_tags tt JOIN tags g ON g.id = tt.tag_id")) {
+            while (rs.next()) index.tag(rs.getString(1), rs.getInt(2));
+        } catch (SQLException ex) {
+            System.err.println("Tags unavailable: " + ex.getMessage());
+        }
+        return index;
+    }
+    
+    // Selected rows as ascending model indices
+    private static int[] selectedModelRows(JTable table) {
+        int[] rows = table.getSelectedRows();
+        for (int i = 0; i < rows.length; i++) rows[i] = table.convertRowIndexToModel(rows[i]);
+        Arrays.sort(rows);
+        return rows;
+    }
+    
+    // Database ids of model rows; rows never saved have none and are skipped
+    private static List<Integer> transactionIds(TransactionTableModel model, int[] rows) {
+        List<Integer> ids = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            int id = model.getTransaction(row).getId();
+            if (id != 0) ids.add(id);
+        }
+        return ids;
+    }
+    
+    // Model rows that have a database copy
+    private static List<Transaction> savedTransactions(TransactionTableModel model, int[] rows) {
+        List<Transaction> saved = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            Transaction t = model.getTransaction(row);
+            if (t.getId() != 0) saved.add(t);
+        }
+        return saved;
+    }
+    
+    // updateByIds for transactions read earlier: inside the same database
+    // transaction it first checks that every row still has the version it
+    // was read at, and rolls back with a ConflictException if any changed or
+    // went away. Returns each row's version after the statement.
+    private static Map<Integer, Long> updateRows(Connection conn, List<Transaction> rows, String sql, Object... parameters) throws SQLException {
+        Map<Integer, Long> versions = new HashMap<>();
+        if (rows.isEmpty()) return versions;
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            fillBulkIds(conn, stmt, rows, t -> new Object[]{t.getId(), t.getVersion()});
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM temp.bulk_ids b JOIN transactions t ON t.id = b.id AND t.version = b.version")) {
+                if (!rs.next() || rs.getInt(1) != rows.size()) throw new SharedDatabase.ConflictException("rows changed or deleted elsewhere");
+            }
+            try (PreparedStatement update = conn.prepareStatement(sql)) {
+                for (int i = 0; i < parameters.length; i++) update.setObject(i + 1, parameters[i]);
+                update.executeUpdate();
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT t.id, t.version FROM temp.bulk_ids b JOIN transactions t ON t.id = b.id")) {
+                while (rs.next()) versions.put(rs.getInt(1), rs.getLong(2));
+            }
+            stmt.executeUpdate("DELETE FROM temp.bulk_ids");
+            conn.commit();
+            return versions;
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+    
+    // Deletes id-keyed rows read earlier in one transaction, after checking
+    // that each still has the version it was loaded with; rolls back with a
+    // ConflictException if any changed or went away
+    private static Void deleteVersioned(Connection conn, String table, Map<Integer, Long> versions) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            fillBulkIds(conn, stmt, versions.entrySet(), e -> new Object[]{e.getKey(), e.getValue()});
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM temp.bulk_ids b JOIN " + table + " t ON t.id = b.id AND t.version = b.version")) {
+                if (!rs.next() || rs.getInt(1) != versions.size()) throw new SharedDatabase.ConflictException("rows changed or deleted elsewhere");
+            }
+            stmt.executeUpdate("DELETE FROM " + table + " WHERE id IN (SELECT id FROM temp.bulk_ids)");
+            stmt.executeUpdate("DELETE FROM temp.bulk_ids");
+            conn.commit();
+            return null;
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+    
+    // Loads (id, version) pairs into the temp table the bulk statements read
+    private static <T> void fillBulkIds(Connection conn, Statement stmt, Collection<T> rows, Function<T, Object[]> key) throws SQLException {
+        stmt.executeUpdate("CREATE TEMP TABLE IF NOT EXISTS bulk_ids(id INTEGER PRIMARY KEY, version INTEGER)");
+        stmt.executeUpdate("DELETE FROM temp.bulk_ids");
+        try (PreparedStatement insert = conn.prepareStatement("INSERT OR IGNORE INTO temp.bulk_ids(id, version) VALUES (?, ?)")) {
+            int batched = 0;
+            for (T row : rows) {
+                Object[] k = key.apply(row);
+                insert.setObject(1, k[0]);
+                insert.setObject(2, k[1]);
+                insert.addBatch();
+                if (++batched % IMPORT_LOOKUP_BATCH == 0) insert.executeBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+    
+    // Runs one set-based statement over a set of ids inside a single
+    // transaction. The ids go into a temp table that the statement reads as
+    // "SELECT id FROM temp.bulk_ids", so its text is the same for 1 row or
+    // 50,000 and stays clear of SQLite's bound-parameter limit.
+    private static int updateByIds(Connection conn, Collection<Integer> ids, String sql, Object... parameters) throws SQLException {
+        if (ids.isEmpty()) return 0;
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (Statement stmt = conn.createStatement()) {
+            fillBulkIds(conn, stmt, ids, id -> new Object[]{id, null});
+            int changed;
+            try (PreparedStatement update = conn.prepareStatement(sql)) {
+                for (int i = 0; i < parameters.length; i++) update.setObject(i + 1, parameters[i]);
+                changed = update.executeUpdate();
+            }
+            stmt.executeUpdate("DELETE FROM temp.bulk_ids");
+            conn.commit();
+            return changed;
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+    
+    // Full reload from the database; the store's reset event repaints the views
+    private void refreshTransactionTable() {
+        if (rejectOnReplica()) return;
+        try (Connection conn = getConnection()) {
+            long seq = transactionSeq(conn);
+            ledger.setOpenings(readOpenings(conn));
+            resetTransactions(readAllTransactions(conn), seq);
+        } catch (SQLException ex) {
+            JOptionPane.showMessageDialog(null, "Error loading transactions: " + ex.getMessage());
+        }
+    }
+    
+    private static long transactionSeq(Connection conn) throws SQLException {
+        return SharedDatabase.sequences(conn).getOrDefault("transactions", 0L);
+    }
+    
+    private static List<Transaction> readAllTransactions(Connection conn) throws SQLException {
+        List<Transaction> loaded = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(SELECT_TRANSACTIONS)) {
+            while (rs.next()) loaded.add(readTransaction(rs));
+        }
+        return loaded;
+    }
+    
+    // Account balances carried in from archived years, in signed cents
+    private static Map<String, Map<String, Long>> readOpenings(Connection conn) throws SQLException {
+        Map<String, Map<String, Long>> openings = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT account, currency, cents FROM account_openings")) {
             while (rs.next()) {
-                transactionModel.addRow(new Object[]{
-                    rs.getInt("id"),
-                    rs.getString("date"),
-                    rs.getString("type"),
-                    rs.getString("category"),
-                    rs.getDouble("amount"),
-                    rs.getString("description")
+                openings.computeIfAbsent(rs.getString(1), a -> new HashMap<>()).put(rs.getString(2), rs.getLong(3));
+            }
+        }
+        return openings;
+    }
+    
+    private static Transaction readTransaction(ResultSet rs) throws SQLException {
+        Transaction t = new Transaction(rs.getDouble("amount"), rs.getString("type"), rs.getString("category"),
+                LocalDate.parse(rs.getString("date")), rs.getString("description"), rs.getString("currency"));
+        t.setId(rs.getInt("id"));
+        t.setVersion(rs.getLong("version"));
+        t.setAccount(rs.getString("account"));
+        return t;
+    }
+    
+    // Replaces the rows in memory with a full read taken at sequence `seq`
+    // (read before the rows); the change poll carries on from there
+    private void resetTransactions(List<Transaction> loaded, long seq) {
+        int maxId = 0;
+        for (Transaction t : loaded) maxId = Math.max(maxId, t.getId());
+        transactions.reset(loaded);
+        syncedTransactionSeq = seq;
+        syncedTransactionId = maxId;
+    }
+    
+    // Another tracker process may share finance_tracker.db. PRAGMA data_version
+    // on a dedicated connection says whether anyone else committed; only then
+    // are the sequences in sync_state read, and only tables whose sequence
+    // moved are re-read, transactions as a delta of changed and deleted rows.
+    private void startChangePoll() {
+        changePoll = new Timer("db-change-poll", true);
+        changePoll.schedule(new TimerTask() {
+            @Override
+            public void run() { pollChanges(); }
+        }, 0, CHANGE_POLL_MS);
+    }
+    
+    // Polls right away instead of on the next tick, e.g. after a write conflict
+    private void pollChangesNow() {
+        if (changePoll == null) return;
+        changePoll.schedule(new TimerTask() {
+            @Override
+            public void run() { pollChanges(); }
+        }, 0);
+    }
+    
+    private void pollChanges() {
+        try {
+            if (pollConnection == null) {
+                pollConnection = openConnection();
+                polledDataVersion = SharedDatabase.dataVersion(pollConnection);
+                polledSequences = SharedDatabase.sequences(pollConnection);
+                return;
+            }
+            long dataVersion = SharedDatabase.dataVersion(pollConnection);
+            if (dataVersion == polledDataVersion) return;
+            polledDataVersion = dataVersion;
+            
+            Map<String, Long> now = SharedDatabase.sequences(pollConnection);
+            if (moved(now, "transactions")) pollTransactions(now);
+            if (moved(now, "budgets")) {
+                // Both tables are small, so the poll rereads them whole rather than walking tombstones
+                List<Budget> loaded = readBudgets(pollConnection);
+                List<Object[]> rows = readBudgetRows(pollConnection);
+                SwingUtilities.invokeLater(() -> {
+                    mergeBudgets(loaded);
+                    changes.publish(ChangeEvent.reset(ChangeEvent.Entity.BUDGET, rows, 0));
                 });
             }
+            if (moved(now, "reminders")) {
+                List<Reminder> loaded = readReminders(pollConnection);
+                List<Object[]> rows = readReminderRows(pollConnection);
+                SwingUtilities.invokeLater(() -> {
+                    mergeReminders(loaded);
+                    changes.publish(ChangeEvent.reset(ChangeEvent.Entity.REMINDER, rows, 0));
+                });
+            }
+            if (moved(now, "recurring_rules")) {
+                List<RecurrenceRule> recurring = readRecurringRules();
+                SwingUtilities.invokeLater(() -> showRecurringRules(recurring));
+            }
+            if (moved(now, "category_rules")) {
+                List<CategoryMatcher.Rule> rules = readCategoryRules();
+                CategoryMatcher matcher = new CategoryMatcher(rules);
+                SwingUtilities.invokeLater(() -> showCategoryRules(rules, matcher));
+            }
+            polledSequences = now;
         } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(null, "Error loading transactions: " + ex.getMessage());
+            // Most likely the file is briefly unavailable; reconnect on the next tick
+            closePollConnection();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (java.lang.reflect.InvocationTargetException ex) {
+            ex.getCause().printStackTrace();
         }
     }
     
+    private boolean moved(Map<String, Long> now, String table) {
+        return !Objects.equals(now.get(table), polledSequences.get(table));
+    }
+    
+    private void closePollConnection() {
+        if (pollConnection == null) return;
+        try {
+            pollConnection.close();
+        } catch (SQLException ignored) {}
+        pollConnection = null;
+    }
+    
+    // Reads rows inserted (id above the last one seen) or updated (version
+    // above the last sequence) since the last sync, plus the ids deleted
+    // since, and waits for the EDT to apply them so polls never overlap.
+    private void pollTransactions(Map<String, Long> now) throws SQLException, InterruptedException, java.lang.reflect.InvocationTargetException {
+        long seq = syncedTransactionSeq;
+        if (seq < 0 || replicationFollower != null) return; // nothing loaded here, or a replica fed by its leader
+        long current = now.getOrDefault("transactions", 0L);
+        if (now.getOrDefault("pruned:transactions", -1L) > seq) {
+            // The tombstones for some deletes we missed are gone; start over
+            Map<String, Map<String, Long>> openings = readOpenings(pollConnection);
+            List<Transaction> all = readAllTransactions(pollConnection);
+            SwingUtilities.invokeAndWait(() -> {
+                ledger.setOpenings(openings);
+                resetTransactions(all, current);
+            });
+            return;
+        }
+        // Archiving elsewhere moves totals into the openings as it deletes rows
+        Map<String, Map<String, Long>> openings = readOpenings(pollConnection);
+        List<Transaction> changed = new ArrayList<>();
+        try (PreparedStatement stmt = pollConnection.prepareStatement(SELECT_TRANSACTIONS + " WHERE id > ? OR version > ?")) {
+            stmt.setInt(1, syncedTransactionId);
+            stmt.setLong(2, seq);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) changed.add(readTransaction(rs));
+            }
+        }
+        List<Integer> deleted = new ArrayList<>();
+        try (PreparedStatement stmt = pollConnection.prepareStatement(
+                "SELECT id FROM tombstones WHERE table_name = 'transactions' AND seq > ?")) {
+            stmt.setLong(1, seq);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) deleted.add(rs.getInt(1));
+            }
+        }
+        SwingUtilities.invokeAndWait(() -> {
+            ledger.setOpenings(openings);
+            applyTransactionDelta(changed, deleted, current);
+        });
+    }
+    
+    // Rows this instance wrote itself come back with the same content and
+    // only pick up their version; everything else becomes one update, one
+    // delete and one insert event on the store
+    private void applyTransactionDelta(List<Transaction> changed, List<Integer> deleted, long seq) {
+        TransactionStore.Snapshot snapshot = transactions.snapshot();
+        Map<Integer, Integer> positions = new HashMap<>();
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (snapshot.get(i).getId() != 0) positions.put(snapshot.get(i).getId(), i);
+        }
+        TreeMap<Integer, Transaction> updates = new TreeMap<>();
+        List<Transaction> added = new ArrayList<>();
+        int maxId = syncedTransactionId;
+        int refreshed = 0;
+        for (Transaction t : changed) {
+            maxId = Math.max(maxId, t.getId());
+            Integer at = positions.get(t.getId());
+            if (at == null) {
+                added.add(t);
+            } else if (sameContent(snapshot.get(at), t)) {
+                // Published snapshots are never modified; a copy carries the new version
+                updates.put(at, snapshot.get(at).withVersion(t.getVersion()));
+                refreshed++;
+            } else {
+                updates.put(at, t);
+            }
+        }
+        int[] gone = deleted.stream().map(positions::get).filter(Objects::nonNull).mapToInt(Integer::intValue).sorted().toArray();
+        
+        if (!updates.isEmpty()) {
+            transactions.setAll(updates.keySet().stream().mapToInt(Integer::intValue).toArray(), new ArrayList<>(updates.values()));
+        }
+        if (gone.length > 0) transactions.removeAll(gone);
+        if (!added.isEmpty()) transactions.addAll(added);
+        if (updates.size() + gone.length + added.size() > 0) transactions.markSaved();
+        int applied = updates.size() - refreshed;
+        syncedTransactionSeq = Math.max(syncedTransactionSeq, seq);
+        syncedTransactionId = maxId;
+        if (applied + gone.length + added.size() > 0) {
+            statusLabel.setText(String.format("Synced changes from another window: %d updated, %d deleted, %d added.",
+                applied, gone.length, added.size()));
+        }
+    }
+    
+    private static boolean sameContent(Transaction a, Transaction b) {
+        return Arrays.equals(a.storedValues(), b.storedValues());
+    }
+    
+    // Brings the budget tree in line with the budgets table: entries whose row was
+    // deleted or renamed elsewhere go and rows replace unchanged entries, while
+    // edits made here and not yet saved stay (saving checks them against the row)
+    private void mergeBudgets(List<Budget> loaded) {
+        Map<Integer, String> stored = new HashMap<>();
+        for (Budget b : loaded) stored.put(b.getId(), b.getCategory());
+        for (Budget b : new ArrayList<>(budgets.values())) {
+            if (b.isModified() || b.getCategory().equals(stored.get(b.getId()))) continue;
+            budgets.remove(b.getCategory());
+            budgetWindows.remove(b.getCategory());
+        }
+        for (Budget b : loaded) {
+            Budget local = budgets.get(b.getCategory());
+            if (local == null || !local.isModified()) budgets.put(b);
+        }
+        refreshBudgetPeriods();
+    }
+    
+    // Reminders are only added here, so the table rows plus those not yet saved
+    private void mergeReminders(List<Reminder> loaded) {
+        List<Reminder> merged = new ArrayList<>(loaded);
+        for (Reminder r : reminders) {
+            if (r.getId() == 0) merged.add(r);
+        }
+        reminders = merged;
+    }
+    
     private JPanel createBudgetsPanel() {
         JPanel panel = new JPanel(new BorderLayout());
         DefaultTableModel budgetModel = new DefaultTableModel();
         JTable budgetTable = new JTable(budgetModel);
-        budgetModel.setColumnIdentifiers(new String[]{"ID", "Category", "Limit", "Spent", "Remaining"}); // Added "ID" for reference
+        budgetModel.setColumnIdentifiers(new String[]{"ID", "Category", "Limit", "Spent", "Remaining", "Parent", "Period", "Version"}); // Added "ID" for reference
+        budgetTable.removeColumn(budgetTable.getColumnModel().getColumn(7)); // Hide version column
         budgetTable.removeColumn(budgetTable.getColumnModel().getColumn(0)); // Hide ID column
+        changes.subscribe(new ChangeSubscriber(ChangeEvent.Entity.BUDGET) {
+            @Override
+            protected void apply(ChangeEvent e) { applyRowChange(budgetModel, e); }
+            
+            @Override
+            protected void reload() { refreshBudgetTable(budgetModel); }
+        });
 
         JToolBar toolbar = new JToolBar();
 
@@ -316,6 +1185,10 @@ public class FinanceTracker extends JFrame {
         progressButton.addActionListener(e -> showBudgetProgress());
         toolbar.add(progressButton);
 
+        JButton historyButton = new JButton("Budget History");
+        historyButton.addActionListener(e -> showBudgetHistory());
+        toolbar.add(historyButton);
+
         panel.add(toolbar, BorderLayout.NORTH);
         panel.add(new JScrollPane(budgetTable), BorderLayout.CENTER);
 
@@ -333,6 +1206,10 @@ public class FinanceTracker extends JFrame {
         int budgetId = (int) budgetModel.getValueAt(selectedRow, 0); // ID column (hidden)
         String category = (String) budgetModel.getValueAt(selectedRow, 1);
         double limit = (double) budgetModel.getValueAt(selectedRow, 2);
+        double spent = (double) budgetModel.getValueAt(selectedRow, 3);
+        Object parent = budgetModel.getValueAt(selectedRow, 5);
+        Object period = budgetModel.getValueAt(selectedRow, 6);
+        long version = (long) budgetModel.getValueAt(selectedRow, 7); // as loaded, so edits made elsewhere since are caught
         
         // Show input dialogs for editing
         String newCategory = JOptionPane.showInputDialog(null, "Enter new category:", category);
@@ -341,52 +1218,83 @@ public class FinanceTracker extends JFrame {
         String newLimitStr = JOptionPane.showInputDialog(null, "Enter new limit:", limit);
         if (newLimitStr == null || newLimitStr.trim().isEmpty()) return;
 
+        String newParent = JOptionPane.showInputDialog(null, "Enter parent budget (blank for none):", parent == null ? "" : parent);
+        if (newParent == null) return;
+        newParent = newParent.trim().isEmpty() ? null : newParent.trim();
+
+        String newPeriod = JOptionPane.showInputDialog(null, PERIOD_HELP, period);
+        if (newPeriod == null) return;
+
         try {
             double newLimit = Double.parseDouble(newLimitStr);
+            String periodSpec = BudgetPeriod.parse(newPeriod).toString();
 
-            // Update in database
-            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:finance_tracker.db");
-                 PreparedStatement stmt = conn.prepareStatement("UPDATE budgets SET category = ?, limit = ? WHERE id = ?")) {
-                stmt.setString(1, newCategory);
-                stmt.setDouble(2, newLimit);
-                stmt.setInt(3, budgetId);
-                stmt.executeUpdate();
-                JOptionPane.showMessageDialog(null, "Budget updated successfully.");
-            }
+            // Update in database, unless someone else changed it while the dialogs were open
+            long newVersion = updateVersioned("This budget", "budgets", budgetId,
+                    "UPDATE budgets SET category = ?, limit_amount = ?, parent = ?, period = ? WHERE id = ? AND version = ?",
+                    newCategory, newLimit, newParent, periodSpec, budgetId, version);
+            if (newVersion < 0) return;
+            JOptionPane.showMessageDialog(null, "Budget updated successfully.");
+            Budget updated = new Budget(newCategory, newLimit, newParent, BudgetPeriod.parse(periodSpec));
+            updated.setStored(budgetId, newVersion);
+            replaceBudget(category, updated);
             
-            // Refresh the table
-            refreshBudgetTable(budgetModel);
+            Object[] row = {budgetId, newCategory, newLimit, spent, newLimit - spent, newParent, periodSpec, newVersion};
+            changes.publish(ChangeEvent.updated(ChangeEvent.Entity.BUDGET, -1, budgetId, null, row, 0));
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(null, "Invalid limit value. Please enter a number.");
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(null, "Invalid period: " + ex.getMessage());
         } catch (SQLException ex) {
             JOptionPane.showMessageDialog(null, "Error updating budget: " + ex.getMessage());
         }
     }
 
     private void deleteSelectedBudget(JTable budgetTable, DefaultTableModel budgetModel) {
-        int selectedRow = budgetTable.getSelectedRow();
-        if (selectedRow == -1) {
+        Map<Integer, Long> versions = selectedVersions(budgetTable, budgetModel, 7);
+        List<String> names = new ArrayList<>();
+        for (int row : selectedModelRows(budgetTable)) names.add((String) budgetModel.getValueAt(row, 1));
+        if (versions.isEmpty()) {
             JOptionPane.showMessageDialog(null, "Select a budget to delete.");
             return;
         }
 
-        int budgetId = (int) budgetModel.getValueAt(selectedRow, 0);
-
-        int confirm = JOptionPane.showConfirmDialog(null, "Are you sure you want to delete this budget?", "Confirm Delete", JOptionPane.YES_NO_OPTION);
+        String question = versions.size() == 1 ? "Are you sure you want to delete this budget?"
+                : "Are you sure you want to delete these " + versions.size() + " budgets?";
+        int confirm = JOptionPane.showConfirmDialog(null, question, "Confirm Delete", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:finance_tracker.db");
-                 PreparedStatement stmt = conn.prepareStatement("DELETE FROM budgets WHERE id = ?")) {
-                stmt.setInt(1, budgetId);
-                stmt.executeUpdate();
-                JOptionPane.showMessageDialog(null, "Budget deleted successfully.");
+            try {
+                SharedDatabase.withRetry(this::getConnection, conn -> deleteVersioned(conn, "budgets", versions));
+                for (String name : names) replaceBudget(name, null);
+                for (int budgetId : versions.keySet()) changes.publish(ChangeEvent.deleted(ChangeEvent.Entity.BUDGET, -1, budgetId, null, 0));
+                JOptionPane.showMessageDialog(null, versions.size() == 1 ? "Budget deleted successfully." : versions.size() + " budgets deleted.");
+            } catch (SharedDatabase.ConflictException ex) {
+                reportConflict(versions.size() == 1 ? "This budget" : "One of these budgets");
             } catch (SQLException ex) {
                 JOptionPane.showMessageDialog(null, "Error deleting budget: " + ex.getMessage());
             }
-            
-            // Refresh the table
-            refreshBudgetTable(budgetModel);
         }
     }
+    
+    // Applies a budget edit or delete (replacement null) that is already in the
+    // database to the tree, so progress, history and the next save see it
+    private void replaceBudget(String category, Budget replacement) {
+        budgets.remove(category);
+        budgetWindows.remove(category);
+        if (replacement != null) budgets.put(replacement);
+        refreshBudgetPeriods();
+    }
+    
+    // Hidden ID (model column 0) and version of every selected row of an
+    // id-keyed table, as they were loaded; rows not yet saved have id 0 and are left out
+    private static Map<Integer, Long> selectedVersions(JTable table, DefaultTableModel model, int versionColumn) {
+        Map<Integer, Long> versions = new LinkedHashMap<>();
+        for (int row : selectedModelRows(table)) {
+            int id = (Integer) model.getValueAt(row, 0);
+            if (id != 0) versions.put(id, (Long) model.getValueAt(row, versionColumn));
+        }
+        return versions;
+    }
 
     
     private JPanel createReportsPanel() {
@@ -401,14 +1309,155 @@ public class FinanceTracker extends JFrame {
         compareButton.addActionListener(e -> showPeriodComparison());
         buttonPanel.add(compareButton);
         
+        projectButton.addActionListener(e -> showBalanceProjection());
+        buttonPanel.add(projectButton);
+        
+        JButton payeesButton = new JButton("Payees by Month");
+        payeesButton.addActionListener(e -> showMonthlyPayees());
+        buttonPanel.add(payeesButton);
+        
+        JButton filteredButton = new JButton("Filtered Report");
+        filteredButton.addActionListener(e -> showFilteredReport());
+        buttonPanel.add(filteredButton);
+        
         panel.add(buttonPanel, BorderLayout.NORTH);
+        panel.add(projectionChart, BorderLayout.CENTER);
         return panel;
     }
     
+    // Fits a monthly spending/income distribution per category from history
+    // and streams Monte Carlo percentile bands of the balance into the chart
+    private void showBalanceProjection() {
+        // Monthly totals per "type/category", including archived years
+        Map<String, Map<YearMonth, Double>> monthly = new HashMap<>();
+        double[] net = {0};
+        YearMonth[] span = {null, null};
+        TransactionStore.Snapshot snapshot = transactions.snapshot();
+        FxRates.Converter fx = fxRates.converterTo(reportingCurrency);
+        projectButton.setEnabled(false);
+        statusLabel.setText("Reading transaction history...");
+        // Scanning the archive decompresses every partition
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws IOException {
+                Consumer<Transaction> collect = t -> {
+                    YearMonth ym = YearMonth.from(t.getDate());
+                    double amount = fx.convert(t);
+                    monthly.computeIfAbsent(t.getType() + "/" + t.getCategory(), k -> new HashMap<>())
+                           .merge(ym, amount, Double::sum);
+                    net[0] += t.getType().equals("Income") ? amount : -amount;
+                    if (span[0] == null || ym.isBefore(span[0])) span[0] = ym;
+                    if (span[1] == null || ym.isAfter(span[1])) span[1] = ym;
+                };
+                snapshot.forEach(collect);
+                archive.scan(null, null, collect);
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (Exception ex) {
+                    projectButton.setEnabled(true);
+                    statusLabel.setText("Projection failed.");
+                    JOptionPane.showMessageDialog(FinanceTracker.this, "Error reading transaction history: " + ex.getMessage());
+                    return;
+                }
+                statusLabel.setText("Ready.");
+                if (monthly.isEmpty()) {
+                    projectButton.setEnabled(true);
+                    JOptionPane.showMessageDialog(FinanceTracker.this, "No transaction history to project from.");
+                    return;
+                }
+                runBalanceProjection(monthly, net[0], span[0], span[1]);
+            }
+        }.execute();
+    }
+
+    private void runBalanceProjection(Map<String, Map<YearMonth, Double>> monthly, double net, YearMonth first, YearMonth last) {
+        JTextField balanceField = new JTextField(String.format("%.2f", net));
+        JTextField yearsField = new JTextField("10");
+        JTextField pathsField = new JTextField("100000");
+        JTextField inflationField = new JTextField("2.0");
+        JPanel panel = new JPanel(new GridLayout(4, 2));
+        panel.add(new JLabel("Starting Balance:"));
+        panel.add(balanceField);
+        panel.add(new JLabel("Years (1-30):"));
+        panel.add(yearsField);
+        panel.add(new JLabel("Simulated Paths:"));
+        panel.add(pathsField);
+        panel.add(new JLabel("Annual Inflation (%):"));
+        panel.add(inflationField);
+        if (JOptionPane.showConfirmDialog(this, panel, "Balance Projection", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) {
+            projectButton.setEnabled(true);
+            return;
+        }
+
+        double startBalance;
+        int years, paths;
+        double inflation;
+        try {
+            startBalance = Double.parseDouble(balanceField.getText().trim());
+            years = Integer.parseInt(yearsField.getText().trim());
+            paths = Integer.parseInt(pathsField.getText().trim());
+            inflation = Double.parseDouble(inflationField.getText().trim()) / 100;
+            if (years < 1 || years > 30 || paths < 1) throw new NumberFormatException();
+        } catch (NumberFormatException ex) {
+            projectButton.setEnabled(true);
+            JOptionPane.showMessageDialog(this, "Invalid projection settings.");
+            return;
+        }
+
+        long months = first.until(last, java.time.temporal.ChronoUnit.MONTHS) + 1;
+        int n = monthly.size();
+        double[] mean = new double[n], sd = new double[n], sign = new double[n];
+        int c = 0;
+        for (Map.Entry<String, Map<YearMonth, Double>> entry : monthly.entrySet()) {
+            double sum = 0, sumSq = 0;
+            for (double v : entry.getValue().values()) {
+                sum += v;
+                sumSq += v * v;
+            }
+            // Months with no activity count as zero
+            mean[c] = sum / months;
+            sd[c] = Math.sqrt(Math.max(0, sumSq / months - mean[c] * mean[c]));
+            sign[c] = entry.getKey().startsWith("Income/") ? 1 : -1;
+            c++;
+        }
+
+        CashFlowProjection projection = new CashFlowProjection(mean, sd, sign, startBalance, inflation);
+        projectionChart.reset(years * 12, String.format("Projected balance, %,d paths (%s)", paths, projection.kernelName()), reportingCurrency);
+        new SwingWorker<Void, CashFlowProjection.Band>() {
+            @Override
+            protected Void doInBackground() {
+                projection.run(years * 12, paths, System.nanoTime(), this::publish);
+                return null;
+            }
+
+            @Override
+            protected void process(List<CashFlowProjection.Band> bands) {
+                projectionChart.addBands(bands);
+            }
+
+            @Override
+            protected void done() {
+                projectButton.setEnabled(true);
+                try {
+                    get();
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    statusLabel.setText("Projection failed.");
+                    JOptionPane.showMessageDialog(FinanceTracker.this, "Error running projection: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+    
     private JPanel createRemindersPanel() {
         JPanel panel = new JPanel(new BorderLayout());
         JTable reminderTable = new JTable(reminderModel);
-        reminderModel.setColumnIdentifiers(new String[]{"ID", "Due Date", "Description", "Status"}); // Added "ID"
+        reminderTable.removeColumn(reminderTable.getColumnModel().getColumn(4)); // Hide version column
         reminderTable.removeColumn(reminderTable.getColumnModel().getColumn(0)); // Hide ID column
 
         JToolBar toolbar = new JToolBar();
@@ -446,6 +1495,7 @@ public class FinanceTracker extends JFrame {
         String dueDate = (String) reminderModel.getValueAt(selectedRow, 1);
         String description = (String) reminderModel.getValueAt(selectedRow, 2);
         String status = (String) reminderModel.getValueAt(selectedRow, 3);
+        long version = (long) reminderModel.getValueAt(selectedRow, 4); // as loaded, so edits made elsewhere since are caught
 
         // Show input dialogs for editing
         String newDueDate = JOptionPane.showInputDialog(null, "Enter new due date (YYYY-MM-DD):", dueDate);
@@ -454,76 +1504,389 @@ public class FinanceTracker extends JFrame {
         String newDescription = JOptionPane.showInputDialog(null, "Enter new description:", description);
         if (newDescription == null) newDescription = "";
 
-        String[] statusOptions = {"Pending", "Completed"};
+        String[] statusOptions = {"Pending", "Paid"};
         String newStatus = (String) JOptionPane.showInputDialog(null, "Select new status:", "Edit Status",
                 JOptionPane.QUESTION_MESSAGE, null, statusOptions, status);
 
         if (newStatus == null || newStatus.trim().isEmpty()) return;
 
         try {
-            // Update in database
-            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:finance_tracker.db");
-                 PreparedStatement stmt = conn.prepareStatement("UPDATE reminders SET due_date = ?, description = ?, status = ? WHERE id = ?")) {
-                stmt.setString(1, newDueDate);
-                stmt.setString(2, newDescription);
-                stmt.setString(3, newStatus);
-                stmt.setInt(4, reminderId);
-                stmt.executeUpdate();
-                JOptionPane.showMessageDialog(null, "Reminder updated successfully.");
-            }
+            // Update in database, unless someone else changed it while the dialogs were open
+            long newVersion = updateVersioned("This reminder", "reminders", reminderId,
+                    "UPDATE reminders SET due_date = ?, description = ?, status = ? WHERE id = ? AND version = ?",
+                    newDueDate, newDescription, newStatus, reminderId, version);
+            if (newVersion < 0) return;
+            JOptionPane.showMessageDialog(null, "Reminder updated successfully.");
+            Reminder updated = new Reminder(LocalDate.parse(newDueDate), newDescription);
+            if ("Paid".equals(newStatus)) updated.markPaid();
+            updated.setStored(reminderId, newVersion);
+            reminders.replaceAll(r -> r.getId() == reminderId ? updated : r);
             
-            // Refresh the table
-            refreshReminderTable(reminderModel);
+            Object[] row = {reminderId, newDueDate, newDescription, newStatus, newVersion};
+            changes.publish(ChangeEvent.updated(ChangeEvent.Entity.REMINDER, -1, reminderId, null, row, 0));
         } catch (SQLException ex) {
             JOptionPane.showMessageDialog(null, "Error updating reminder: " + ex.getMessage());
         }
     }
 
     private void deleteSelectedReminder(JTable reminderTable, DefaultTableModel reminderModel) {
-        int selectedRow = reminderTable.getSelectedRow();
-        if (selectedRow == -1) {
+        int[] rows = selectedModelRows(reminderTable);
+        Map<Integer, Long> versions = selectedVersions(reminderTable, reminderModel, 4);
+        if (rows.length == 0) {
             JOptionPane.showMessageDialog(null, "Select a reminder to delete.");
             return;
         }
 
-        int reminderId = (int) reminderModel.getValueAt(selectedRow, 0);
-
-        int confirm = JOptionPane.showConfirmDialog(null, "Are you sure you want to delete this reminder?", "Confirm Delete", JOptionPane.YES_NO_OPTION);
+        String question = rows.length == 1 ? "Are you sure you want to delete this reminder?"
+                : "Are you sure you want to delete these " + rows.length + " reminders?";
+        int confirm = JOptionPane.showConfirmDialog(null, question, "Confirm Delete", JOptionPane.YES_NO_OPTION);
         if (confirm == JOptionPane.YES_OPTION) {
-            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:finance_tracker.db");
-                 PreparedStatement stmt = conn.prepareStatement("DELETE FROM reminders WHERE id = ?")) {
-                stmt.setInt(1, reminderId);
-                stmt.executeUpdate();
-                JOptionPane.showMessageDialog(null, "Reminder deleted successfully.");
+            try {
+                if (!versions.isEmpty()) SharedDatabase.withRetry(this::getConnection, conn -> deleteVersioned(conn, "reminders", versions));
+                // Reminders added here and not saved yet only leave the list
+                for (int i = rows.length - 1; i >= 0; i--) {
+                    if ((Integer) reminderModel.getValueAt(rows[i], 0) != 0) continue;
+                    String due = String.valueOf(reminderModel.getValueAt(rows[i], 1));
+                    Object description = reminderModel.getValueAt(rows[i], 2);
+                    for (Iterator<Reminder> it = reminders.iterator(); it.hasNext(); ) {
+                        Reminder r = it.next();
+                        if (r.getId() == 0 && r.getDueDate().toString().equals(due) && Objects.equals(r.getDescription(), description)) {
+                            it.remove();
+                            break;
+                        }
+                    }
+                    reminderModel.removeRow(rows[i]);
+                }
+                reminders.removeIf(r -> versions.containsKey(r.getId()));
+                for (int reminderId : versions.keySet()) changes.publish(ChangeEvent.deleted(ChangeEvent.Entity.REMINDER, -1, reminderId, null, 0));
+                JOptionPane.showMessageDialog(null, rows.length == 1 ? "Reminder deleted successfully." : rows.length + " reminders deleted.");
+            } catch (SharedDatabase.ConflictException ex) {
+                reportConflict(versions.size() == 1 ? "This reminder" : "One of these reminders");
             } catch (SQLException ex) {
                 JOptionPane.showMessageDialog(null, "Error deleting reminder: " + ex.getMessage());
             }
-            
-            // Refresh the table
-            refreshReminderTable(reminderModel);
         }
     }
 
     private void refreshReminderTable(DefaultTableModel reminderModel) {
         reminderModel.setRowCount(0); // Clear existing data
 
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:finance_tracker.db");
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT id, due_date, description, status FROM reminders")) {
-            
+        try (Connection conn = getConnection()) {
+            for (Object[] row : readReminderRows(conn)) reminderModel.addRow(row);
+        } catch (SQLException ex) {
+            JOptionPane.showMessageDialog(null, "Error loading reminders: " + ex.getMessage());
+        }
+    }
+    
+    private static List<Object[]> readReminderRows(Connection conn) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, due_date, description, status, version FROM reminders")) {
             while (rs.next()) {
-                reminderModel.addRow(new Object[]{
+                rows.add(new Object[]{
                     rs.getInt("id"),
                     rs.getString("due_date"),
                     rs.getString("description"),
-                    rs.getString("status")
+                    rs.getString("status"),
+                    rs.getLong("version")
                 });
             }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(null, "Error loading reminders: " + ex.getMessage());
         }
+        return rows;
+    }
+    
+    private static List<Reminder> readReminders(Connection conn) throws SQLException {
+        List<Reminder> loaded = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, due_date, description, status, version FROM reminders")) {
+            while (rs.next()) {
+                Reminder r = new Reminder(LocalDate.parse(rs.getString("due_date")), rs.getString("description"));
+                if ("Paid".equals(rs.getString("status"))) r.markPaid();
+                r.setStored(rs.getInt("id"), rs.getLong("version"));
+                loaded.add(r);
+            }
+        }
+        return loaded;
     }
     
+    private JPanel createRecurringPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        JTable recurringTable = new JTable(recurringModel);
+        recurringTable.removeColumn(recurringTable.getColumnModel().getColumn(0)); // Hide ID column
+
+        JToolBar toolbar = new JToolBar();
+
+        JButton addButton = new JButton("Add Recurring");
+        addButton.addActionListener(e -> showRecurringRuleDialog());
+        toolbar.add(addButton);
+
+        JButton deleteButton = new JButton("Delete Recurring");
+        deleteButton.addActionListener(e -> deleteSelectedRecurringRule(recurringTable));
+        toolbar.add(deleteButton);
+
+        JButton projectButton = new JButton("Project Window");
+        projectButton.addActionListener(e -> showRecurringProjection());
+        toolbar.add(projectButton);
+
+        panel.add(toolbar, BorderLayout.NORTH);
+        panel.add(new JScrollPane(recurringTable), BorderLayout.CENTER);
+        return panel;
+    }
+
+    private void showRecurringRuleDialog() {
+        JDialog dialog = new JDialog(this, "Add Recurring Transaction", true);
+        dialog.setLayout(new GridLayout(9, 2));
+
+        JComboBox<String> typeCombo = new JComboBox<>(new String[]{"Income", "Expense"});
+        JTextField amountField = new JTextField();
+        JComboBox<String> categoryCombo = new JComboBox<>(categories.toArray(new String[0]));
+        JTextField startField = new JTextField(LocalDate.now().toString());
+        JComboBox<RecurrenceRule.Frequency> frequencyCombo = new JComboBox<>(RecurrenceRule.Frequency.values());
+        frequencyCombo.setSelectedItem(RecurrenceRule.Frequency.MONTHLY);
+        JTextField ruleField = new JTextField("INTERVAL=1");
+        JTextField descriptionField = new JTextField();
+        JTextField currencyField = new JTextField(reportingCurrency);
+
+        dialog.add(new JLabel("Type:"));
+        dialog.add(typeCombo);
+        dialog.add(new JLabel("Amount:"));
+        dialog.add(amountField);
+        dialog.add(new JLabel("Currency:"));
+        dialog.add(currencyField);
+        dialog.add(new JLabel("Category:"));
+        dialog.add(categoryCombo);
+        dialog.add(new JLabel("Start (YYYY-MM-DD):"));
+        dialog.add(startField);
+        dialog.add(new JLabel("Frequency:"));
+        dialog.add(frequencyCombo);
+        dialog.add(new JLabel("Extra rule (INTERVAL/COUNT/UNTIL):"));
+        dialog.add(ruleField);
+        dialog.add(new JLabel("Description:"));
+        dialog.add(descriptionField);
+
+        JButton saveButton = new JButton("Save");
+        saveButton.addActionListener(e -> {
+            try {
+                String rrule = "FREQ=" + frequencyCombo.getSelectedItem();
+                if (!ruleField.getText().trim().isEmpty()) {
+                    rrule += ";" + ruleField.getText().trim();
+                }
+                RecurrenceRule rule = new RecurrenceRule(rrule, LocalDate.parse(startField.getText().trim()),
+                        Double.parseDouble(amountField.getText()), (String) typeCombo.getSelectedItem(),
+                        (String) categoryCombo.getSelectedItem(), descriptionField.getText().trim());
+                rule.setCurrency(currencyField.getText().trim().toUpperCase());
+
+                try (Connection conn = getConnection();
+                     PreparedStatement ps = conn.prepareStatement(
+                         "INSERT INTO recurring_rules(rule, start_date, type, category, amount, description, currency) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                         Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setString(1, rule.toRRule());
+                    ps.setString(2, rule.getStart().toString());
+                    ps.setString(3, rule.getType());
+                    ps.setString(4, rule.getCategory());
+                    ps.setDouble(5, rule.getAmount());
+                    ps.setString(6, rule.getDescription());
+                    ps.setString(7, rule.getCurrency());
+                    ps.executeUpdate();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        if (keys.next()) rule.setId(keys.getInt(1));
+                    }
+                }
+                recurringRules.add(rule);
+                recurringModel.addRow(rule.toTableRow());
+                dialog.dispose();
+                postNewRecurringRule(rule);
+            } catch (SQLException ex) {
+                JOptionPane.showMessageDialog(dialog, "Error saving recurring transaction: " + ex.getMessage());
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(dialog, "Invalid input: " + ex.getMessage());
+            }
+        });
+
+        dialog.add(saveButton);
+        dialog.pack();
+        dialog.setVisible(true);
+    }
+
+    // Backfills a just-saved rule off the EDT; the other rules were already
+    // posted up to today when the window opened.
+    private void postNewRecurringRule(RecurrenceRule rule) {
+        statusLabel.setText("Posting recurring transactions...");
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                backfillRecurringTransactions(List.of(rule));
+                return null;
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    get();
+                    statusLabel.setText("Recurring transaction saved.");
+                } catch (Exception ex) {
+                    statusLabel.setText("Posting recurring transactions failed.");
+                    JOptionPane.showMessageDialog(FinanceTracker.this, "Error posting recurring transactions: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+
+    private void deleteSelectedRecurringRule(JTable recurringTable) {
+        int selectedRow = recurringTable.getSelectedRow();
+        if (selectedRow == -1) {
+            JOptionPane.showMessageDialog(null, "Select a recurring transaction to delete.");
+            return;
+        }
+
+        int ruleId = (int) recurringModel.getValueAt(selectedRow, 0);
+
+        int confirm = JOptionPane.showConfirmDialog(null, "Stop this recurring transaction? Already posted transactions are kept.", "Confirm Delete", JOptionPane.YES_NO_OPTION);
+        if (confirm == JOptionPane.YES_OPTION) {
+            try (Connection conn = getConnection();
+                 PreparedStatement stmt = conn.prepareStatement("DELETE FROM recurring_rules WHERE id = ?")) {
+                stmt.setInt(1, ruleId);
+                stmt.executeUpdate();
+                recurringRules.removeIf(r -> r.getId() == ruleId);
+                recurringModel.removeRow(selectedRow);
+            } catch (SQLException ex) {
+                JOptionPane.showMessageDialog(null, "Error deleting recurring transaction: " + ex.getMessage());
+            }
+        }
+    }
+
+    private List<RecurrenceRule> readRecurringRules() {
+        List<RecurrenceRule> rules = new ArrayList<>();
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, rule, start_date, type, category, amount, description, currency, last_posted FROM recurring_rules")) {
+
+            while (rs.next()) {
+                RecurrenceRule rule = new RecurrenceRule(rs.getString("rule"), LocalDate.parse(rs.getString("start_date")),
+                        rs.getDouble("amount"), rs.getString("type"), rs.getString("category"), rs.getString("description"));
+                rule.setId(rs.getInt("id"));
+                rule.setCurrency(rs.getString("currency"));
+                String lastPosted = rs.getString("last_posted");
+                if (lastPosted != null) rule.setLastPosted(LocalDate.parse(lastPosted));
+                rules.add(rule);
+            }
+        } catch (SQLException | RuntimeException ex) {
+            ex.printStackTrace();
+        }
+        return rules;
+    }
+
+    private void showRecurringRules(List<RecurrenceRule> rules) {
+        recurringRules.clear();
+        recurringRules.addAll(rules);
+        recurringModel.setRowCount(0);
+        for (RecurrenceRule rule : rules) {
+            recurringModel.addRow(rule.toTableRow());
+        }
+    }
+
+    // Posts every occurrence between a rule's last posted date and today. Rows
+    // are inserted in batches, and each batch commits together with the rule's
+    // new watermark so an interrupted backfill resumes without duplicates.
+    private void backfillRecurringTransactions(List<RecurrenceRule> rules) {
+        LocalDate today = LocalDate.now();
+        try (Connection conn = getConnection();
+             PreparedStatement insert = conn.prepareStatement(
+                 "INSERT INTO transactions(date, type, category, amount, description, currency) VALUES (?, ?, ?, ?, ?, ?)");
+             // Only moves last_posted on from the value this window read, so
+             // when two windows start together only one posts each occurrence
+             PreparedStatement mark = conn.prepareStatement(
+                 "UPDATE recurring_rules SET last_posted = ? WHERE id = ? AND last_posted IS ?")) {
+            conn.setAutoCommit(false);
+
+            for (RecurrenceRule rule : rules) {
+                LocalDate from = rule.getLastPosted() == null ? rule.getStart() : rule.getLastPosted().plusDays(1);
+                Iterator<LocalDate> due = rule.occurrences(from, today);
+                int pending = 0;
+                LocalDate last = null;
+                while (due.hasNext()) {
+                    last = due.next();
+                    insert.setString(1, last.toString());
+                    insert.setString(2, rule.getType());
+                    insert.setString(3, rule.getCategory());
+                    insert.setDouble(4, rule.getAmount());
+                    insert.setString(5, rule.getDescription());
+                    insert.setString(6, rule.getCurrency());
+                    insert.addBatch();
+                    if (++pending == RECURRING_BACKFILL_BATCH || !due.hasNext()) {
+                        insert.executeBatch();
+                        mark.setString(1, last.toString());
+                        mark.setInt(2, rule.getId());
+                        mark.setString(3, rule.getLastPosted() == null ? null : rule.getLastPosted().toString());
+                        if (mark.executeUpdate() == 0) {
+                            // Another window posted these first
+                            conn.rollback();
+                            rule.setLastPosted(readLastPosted(conn, rule.getId()));
+                            break;
+                        }
+                        conn.commit();
+                        rule.setLastPosted(last);
+                        pending = 0;
+                    }
+                }
+            }
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private static LocalDate readLastPosted(Connection conn, int ruleId) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT last_posted FROM recurring_rules WHERE id = ?")) {
+            stmt.setInt(1, ruleId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                String lastPosted = rs.next() ? rs.getString(1) : null;
+                return lastPosted == null ? null : LocalDate.parse(lastPosted);
+            }
+        }
+    }
+
+    private void showRecurringProjection() {
+        JTextField fromField = new JTextField(LocalDate.now().toString());
+        JTextField toField = new JTextField(LocalDate.now().plusYears(1).toString());
+
+        JPanel panel = new JPanel(new GridLayout(2, 2));
+        panel.add(new JLabel("From (YYYY-MM-DD):"));
+        panel.add(fromField);
+        panel.add(new JLabel("To (YYYY-MM-DD):"));
+        panel.add(toField);
+
+        int result = JOptionPane.showConfirmDialog(this, panel, "Projection Window", JOptionPane.OK_CANCEL_OPTION);
+        if (result != JOptionPane.OK_OPTION) return;
+
+        try {
+            LocalDate from = LocalDate.parse(fromField.getText().trim());
+            LocalDate to = LocalDate.parse(toField.getText().trim());
+
+            // Future occurrences are converted at today's rate
+            FxRates.Converter fx = fxRates.converterTo(reportingCurrency);
+            long today = LocalDate.now().toEpochDay();
+            double income = 0, expenses = 0;
+            StringBuilder report = new StringBuilder();
+            for (RecurrenceRule rule : recurringRules) {
+                double total = rule.projectedTotal(from, to);
+                double converted = fx.convert(total, FxRates.currencyId(rule.getCurrency()), today);
+                if (rule.getType().equals("Income")) income += converted; else expenses += converted;
+                report.append(String.format("%s (%s): %d x %s = %s\n", rule.getDescription(), rule.toRRule(),
+                        rule.countBetween(from, to), FxRates.format(rule.getAmount(), rule.getCurrency()),
+                        FxRates.format(total, rule.getCurrency())));
+            }
+            report.insert(0, String.format("Projected Income: %s\nProjected Expenses: %s\nNet: %s\n\n",
+                    FxRates.format(income, reportingCurrency), FxRates.format(expenses, reportingCurrency),
+                    FxRates.format(income - expenses, reportingCurrency)));
+
+            JTextArea textArea = new JTextArea(report.toString());
+            textArea.setEditable(false);
+            JOptionPane.showMessageDialog(this, new JScrollPane(textArea), "Recurring Projection", JOptionPane.INFORMATION_MESSAGE);
+        } catch (DateTimeParseException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid date input.");
+        }
+    }
+
     private JPanel createAdvancedTransactionsPanel() {
         JPanel panel = new JPanel(new BorderLayout());
         
@@ -544,46 +1907,84 @@ public class FinanceTracker extends JFrame {
         JButton applyFilterButton = new JButton("Apply Filter");
         filterPanel.add(applyFilterButton);
         
-        panel.add(filterPanel, BorderLayout.NORTH);
+        // Query row: an expression such as category in (Rent, Utilities) and amount > 500
+        JPanel queryPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        queryPanel.add(new JLabel("Query:"));
+        JTextField queryField = new JTextField(40);
+        queryPanel.add(queryField);
+        JComboBox<String> savedCombo = new JComboBox<>();
+        Runnable reloadSaved = () -> {
+            savedCombo.removeAllItems();
+            savedCombo.addItem("Saved filters...");
+            for (String name : readSavedFilters().keySet()) savedCombo.addItem(name);
+        };
+        reloadSaved.run();
+        savedCombo.addActionListener(e -> {
+            if (savedCombo.getSelectedIndex() > 0) {
+                String query = readSavedFilters().get((String) savedCombo.getSelectedItem());
+                if (query != null) queryField.setText(query);
+            }
+        });
+        queryPanel.add(savedCombo);
+        JButton saveFilterButton = new JButton("Save Filter");
+        saveFilterButton.addActionListener(e -> {
+            String query = queryField.getText().trim();
+            if (query.isEmpty()) return;
+            try {
+                filterQuery(query);
+            } catch (IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(this, "Invalid filter: " + ex.getMessage());
+                return;
+            }
+            String name = JOptionPane.showInputDialog(this, "Filter name:");
+            if (name == null || name.trim().isEmpty()) return;
+            if (writeSavedFilter(name.trim(), query)) {
+                reloadSaved.run();
+                savedCombo.setSelectedItem(name.trim());
+            }
+        });
+        queryPanel.add(saveFilterButton);
+        JButton deleteFilterButton = new JButton("Delete Filter");
+        deleteFilterButton.addActionListener(e -> {
+            if (savedCombo.getSelectedIndex() <= 0) return;
+            if (deleteSavedFilter((String) savedCombo.getSelectedItem())) reloadSaved.run();
+        });
+        queryPanel.add(deleteFilterButton);
+        
+        JPanel toolbars = new JPanel(new GridLayout(2, 1));
+        toolbars.add(filterPanel);
+        toolbars.add(queryPanel);
+        panel.add(toolbars, BorderLayout.NORTH);
         
         // Transactions table (reuse existing model)
         JTable advTable = new JTable(transactionModel);
-        TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(transactionModel);
+        advTable.setDefaultRenderer(Double.class, TransactionTableModel.amountRenderer());
+        // Sorts a permutation over the model's primitive keys; header clicks stay fast on large tables
+        TransactionRowSorter sorter = new TransactionRowSorter(transactionModel);
         advTable.setRowSorter(sorter);
         
         applyFilterButton.addActionListener(e -> {
-            List<RowFilter<Object, Object>> filters = new ArrayList<>();
-            String searchText = searchField.getText().trim();
-            if (!searchText.isEmpty()) {
-                filters.add(RowFilter.regexFilter("(?i)" + searchText));
-            }
-            String fromText = fromDateField.getText().trim();
-            String toText = toDateField.getText().trim();
-            if (!fromText.isEmpty() || !toText.isEmpty()) {
-            	filters.add(new RowFilter<Object, Object>() {
-            	    @Override
-            	    public boolean include(Entry<? extends Object, ? extends Object> entry) {
-            	        try {
-            	            String dateStr = entry.getValue(0).toString();
-            	            LocalDate date = LocalDate.parse(dateStr);
-            	            boolean afterFrom = true, beforeTo = true;
-            	            if (!fromText.isEmpty()) {
-            	                LocalDate fromDate = LocalDate.parse(fromText);
-            	                afterFrom = !date.isBefore(fromDate);
-            	            }
-            	            if (!toText.isEmpty()) {
-            	                LocalDate toDate = LocalDate.parse(toText);
-            	                beforeTo = !date.isAfter(toDate);
-            	            }
-            	            return afterFrom && beforeTo;
-            	        } catch (Exception ex) {
-            	            return false;
-            	        }
-            	    }
-            	});
-            }
-            RowFilter<Object, Object> compoundRowFilter = RowFilter.andFilter(filters);
-            sorter.setRowFilter(compoundRowFilter);
+            try {
+                String searchText = searchField.getText().trim();
+                java.util.regex.Pattern search = searchText.isEmpty() ? null : java.util.regex.Pattern.compile("(?i)" + searchText);
+                String fromText = fromDateField.getText().trim();
+                String toText = toDateField.getText().trim();
+                long fromDay = fromText.isEmpty() ? Long.MIN_VALUE : LocalDate.parse(fromText).toEpochDay();
+                long toDay = toText.isEmpty() ? Long.MAX_VALUE : LocalDate.parse(toText).toEpochDay();
+                String queryText = queryField.getText().trim();
+                java.util.function.IntPredicate query = queryText.isEmpty() ? null : filterQuery(queryText).compile(transactionModel, tags);
+                if (search == null && fromText.isEmpty() && toText.isEmpty() && query == null) {
+                    sorter.setRowFilter(null);
+                } else {
+                    sorter.setRowFilter(row -> {
+                        int day = transactionModel.getEpochDay(row);
+                        return day >= fromDay && day <= toDay && (search == null || transactionModel.rowMatches(row, search))
+                            && (query == null || query.test(row));
+                    });
+                }
+            } catch (DateTimeParseException | IllegalArgumentException ex) {
+                JOptionPane.showMessageDialog(this, "Invalid filter: " + ex.getMessage());
+            }
         });
         
         panel.add(new JScrollPane(advTable), BorderLayout.CENTER);
@@ -605,6 +2006,69 @@ public class FinanceTracker extends JFrame {
         return panel;
     }
     
+    // Parsed once per distinct query text; throws IllegalArgumentException for a malformed query
+    private FilterQuery filterQuery(String text) {
+        synchronized (parsedFilters) {
+            return parsedFilters.computeIfAbsent(text.trim(), FilterQuery::parse);
+        }
+    }
+    
+    // Saved filter queries by name
+    private Map<String, String> readSavedFilters() {
+        Map<String, String> filters = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT name, query FROM saved_filters")) {
+            while (rs.next()) filters.put(rs.getString("name"), rs.getString("query"));
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+        return filters;
+    }
+    
+    private boolean writeSavedFilter(String name, String query) {
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement("INSERT OR REPLACE INTO saved_filters(name, query) VALUES (?, ?)")) {
+            stmt.setString(1, name);
+            stmt.setString(2, query);
+            stmt.executeUpdate();
+            return true;
+        } catch (SQLException ex) {
+            JOptionPane.showMessageDialog(this, "Error saving filter: " + ex.getMessage());
+            return false;
+        }
+    }
+    
+    private boolean deleteSavedFilter(String name) {
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement("DELETE FROM saved_filters WHERE name = ?")) {
+            stmt.setString(1, name);
+            stmt.executeUpdate();
+            return true;
+        } catch (SQLException ex) {
+            JOptionPane.showMessageDialog(this, "Error deleting filter: " + ex.getMessage());
+            return false;
+        }
+    }
+    
+    // Asks for a saved filter, or a query typed in place of one; null if cancelled or invalid
+    private FilterQuery chooseFilter(String title) {
+        Map<String, String> saved = readSavedFilters();
+        JComboBox<String> choice = new JComboBox<>(saved.keySet().toArray(new String[0]));
+        choice.setEditable(true);
+        Object[] fields = {"Saved filter or query:", choice};
+        if (JOptionPane.showConfirmDialog(this, fields, title, JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return null;
+        Object selected = choice.getEditor().getItem();
+        String text = selected == null ? "" : selected.toString().trim();
+        if (text.isEmpty()) return null;
+        try {
+            return filterQuery(saved.getOrDefault(text, text));
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid filter: " + ex.getMessage());
+            return null;
+        }
+    }
+    
     private JPanel createChartsPanel() {
         JPanel panel = new JPanel(new BorderLayout());
         JPanel buttonPanel = new JPanel();
@@ -612,12 +2076,38 @@ public class FinanceTracker extends JFrame {
         // Initialize the class-level graphPanel
         graphPanel = new ChartPanel();
         
+        // Kept current from the change stream; only the categories an event touched move
+        Map<String, Double> spending = new HashMap<>(calculateSpendingByCategory());
+        graphPanel.updateData(spending);
+        ChangeSubscriber chartUpdates = new ChangeSubscriber(ChangeEvent.Entity.TRANSACTION) {
+            @Override
+            protected void apply(ChangeEvent e) {
+                if (e.kind == ChangeEvent.Kind.RESET) {
+                    reload();
+                    return;
+                }
+                FxRates.Converter fx = fxRates.converterTo(reportingCurrency);
+                for (Transaction t : e.before(Transaction.class)) {
+                    if (t.getType().equals("Expense")) spending.merge(t.getCategory(), -fx.convert(t), Double::sum);
+                }
+                for (Transaction t : e.after(Transaction.class)) {
+                    if (t.getType().equals("Expense")) spending.merge(t.getCategory(), fx.convert(t), Double::sum);
+                }
+                spending.values().removeIf(v -> Math.abs(v) < 0.005);
+                graphPanel.updateData(spending);
+            }
+            
+            @Override
+            protected void reload() {
+                spending.clear();
+                spending.putAll(calculateSpendingByCategory());
+                graphPanel.updateData(spending);
+            }
+        };
+        changes.subscribe(chartUpdates);
+        
         JButton showChartButton = new JButton("Show Chart");
-        showChartButton.addActionListener(e -> {
-            // This will now work
-            Map<String, Double> data = calculateSpendingByCategory();
-            graphPanel.updateData(data);
-        });
+        showChartButton.addActionListener(e -> chartUpdates.reload());
         
         buttonPanel.add(showChartButton);
         panel.add(buttonPanel, BorderLayout.NORTH);
@@ -625,22 +2115,75 @@ public class FinanceTracker extends JFrame {
         return panel;
     }
     
+    private JPanel createAlertsPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        JTable table = new JTable(alertModel);
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
+        
+        JPanel buttonPanel = new JPanel();
+        JButton clearButton = new JButton("Clear Alerts");
+        clearButton.addActionListener(e -> alertModel.setRowCount(0));
+        buttonPanel.add(clearButton);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+        return panel;
+    }
+    
+    // New expenses are scored; edits and deletes adjust the statistics, and a
+    // reset (load, replace-all import, undo) retrains them without alerting
+    private void applyToAnomalies(ChangeEvent e) {
+        FxRates.Converter fx = fxRates.converterTo(reportingCurrency);
+        switch (e.kind) {
+            case INSERT:
+                recordAlerts(anomalies.observeAll(e.after(Transaction.class), fx));
+                break;
+            case UPDATE:
+            case DELETE:
+                for (Transaction t : e.before(Transaction.class)) {
+                    if (t.getType().equals("Expense")) anomalies.forget(t, fx.convert(t));
+                }
+                for (Transaction t : e.after(Transaction.class)) {
+                    if (t.getType().equals("Expense")) anomalies.observe(t, fx.convert(t));
+                }
+                break;
+            default:
+                anomalies.train(e.after(Transaction.class), fx);
+        }
+    }
+    
+    private void recordAlerts(List<AnomalyDetector.Alert> alerts) {
+        if (alerts.isEmpty()) return;
+        for (AnomalyDetector.Alert a : alerts.subList(Math.max(0, alerts.size() - MAX_ALERTS), alerts.size())) {
+            Transaction t = a.transaction;
+            alertModel.addRow(new Object[]{t.getDate(), t.getCategory(), FxRates.format(a.amount, reportingCurrency),
+                t.getDescription(), a.reason, String.format("%.1f", a.score)});
+        }
+        while (alertModel.getRowCount() > MAX_ALERTS) alertModel.removeRow(0);
+        statusLabel.setText(alerts.size() == 1 ? "1 unusual expense flagged; see the Alerts tab."
+            : alerts.size() + " unusual expenses flagged; see the Alerts tab.");
+    }
+    
     private Map<String, Double> calculateSpendingByCategory() {
         Map<String, Double> spending = new HashMap<>();
-        for (Transaction t : transactions) {
+        FxRates.Converter fx = fxRates.converterTo(reportingCurrency);
+        for (Transaction t : transactions.snapshot()) {
             if (t.getType().equals("Expense")) {
-                spending.merge(t.getCategory(), t.getAmount(), Double::sum);
+                spending.merge(t.getCategory(), fx.convert(t), Double::sum);
             }
         }
+        try {
+            archive.addExpensesByCategory(null, null, fx, spending); // answered from partition footers
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
         return spending;
     }
     
     private JPanel createCategoryManagementPanel() {
-        JPanel panel = new JPanel(new BorderLayout());
+        JPanel categoryPanel = new JPanel(new BorderLayout());
         DefaultListModel<String> listModel = new DefaultListModel<>();
         categories.forEach(listModel::addElement);
         JList<String> categoryList = new JList<>(listModel);
-        panel.add(new JScrollPane(categoryList), BorderLayout.CENTER);
+        categoryPanel.add(new JScrollPane(categoryList), BorderLayout.CENTER);
         
         JPanel buttonPanel = new JPanel();
         JButton addButton = new JButton("Add Category");
@@ -662,10 +2205,150 @@ public class FinanceTracker extends JFrame {
         });
         buttonPanel.add(addButton);
         buttonPanel.add(removeButton);
+        categoryPanel.add(buttonPanel, BorderLayout.SOUTH);
+        
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, categoryPanel, createCategoryRulesPanel()), BorderLayout.CENTER);
+        return panel;
+    }
+    
+    private JPanel createCategoryRulesPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        JTable ruleTable = new JTable(categoryRuleModel);
+        ruleTable.removeColumn(ruleTable.getColumnModel().getColumn(0)); // Hide ID column
+        panel.add(new JLabel("Auto-categorization rules (longest keyword wins; regex rules apply when no keyword matches)"), BorderLayout.NORTH);
+        panel.add(new JScrollPane(ruleTable), BorderLayout.CENTER);
+        
+        JPanel buttonPanel = new JPanel();
+        JButton addButton = new JButton("Add Rule");
+        addButton.addActionListener(e -> showCategoryRuleDialog());
+        JButton deleteButton = new JButton("Delete Rule");
+        deleteButton.addActionListener(e -> deleteSelectedCategoryRule(ruleTable));
+        buttonPanel.add(addButton);
+        buttonPanel.add(deleteButton);
         panel.add(buttonPanel, BorderLayout.SOUTH);
         return panel;
     }
     
+    private void showCategoryRuleDialog() {
+        JDialog dialog = new JDialog(this, "Add Categorization Rule", true);
+        dialog.setLayout(new GridLayout(4, 2));
+        
+        JTextField patternField = new JTextField();
+        JComboBox<String> kindCombo = new JComboBox<>(new String[]{"Keyword", "Regex"});
+        JComboBox<String> categoryCombo = new JComboBox<>(categories.toArray(new String[0]));
+        categoryCombo.setEditable(true);
+        
+        dialog.add(new JLabel("Description contains:"));
+        dialog.add(patternField);
+        dialog.add(new JLabel("Kind:"));
+        dialog.add(kindCombo);
+        dialog.add(new JLabel("Category:"));
+        dialog.add(categoryCombo);
+        
+        JButton saveButton = new JButton("Save");
+        saveButton.addActionListener(e -> {
+            String pattern = patternField.getText().trim();
+            Object category = categoryCombo.getSelectedItem();
+            boolean regex = "Regex".equals(kindCombo.getSelectedItem());
+            if (pattern.isEmpty() || category == null || category.toString().trim().isEmpty()) {
+                JOptionPane.showMessageDialog(dialog, "Pattern and category are required.");
+                return;
+            }
+            try {
+                if (regex) java.util.regex.Pattern.compile(pattern); // reject bad patterns before saving
+                try (Connection conn = getConnection();
+                     PreparedStatement ps = conn.prepareStatement(
+                         "INSERT INTO category_rules(pattern, is_regex, category) VALUES (?, ?, ?)",
+                         Statement.RETURN_GENERATED_KEYS)) {
+                    ps.setString(1, pattern);
+                    ps.setInt(2, regex ? 1 : 0);
+                    ps.setString(3, category.toString().trim());
+                    ps.executeUpdate();
+                    try (ResultSet keys = ps.getGeneratedKeys()) {
+                        int id = keys.next() ? keys.getInt(1) : 0;
+                        CategoryMatcher.Rule rule = new CategoryMatcher.Rule(id, pattern, regex, category.toString().trim());
+                        categoryRules.add(rule);
+                        categoryRuleModel.addRow(rule.toTableRow());
+                    }
+                }
+                categoryMatcher = new CategoryMatcher(categoryRules);
+                dialog.dispose();
+            } catch (SQLException ex) {
+                JOptionPane.showMessageDialog(dialog, "Error saving rule: " + ex.getMessage());
+            } catch (java.util.regex.PatternSyntaxException ex) {
+                JOptionPane.showMessageDialog(dialog, "Invalid regex: " + ex.getDescription());
+            }
+        });
+        
+        dialog.add(saveButton);
+        dialog.pack();
+        dialog.setVisible(true);
+    }
+    
+    private void deleteSelectedCategoryRule(JTable ruleTable) {
+        int selectedRow = ruleTable.getSelectedRow();
+        if (selectedRow == -1) {
+            JOptionPane.showMessageDialog(null, "Select a rule to delete.");
+            return;
+        }
+        
+        int ruleId = (int) categoryRuleModel.getValueAt(selectedRow, 0);
+        try (Connection conn = getConnection();
+             PreparedStatement stmt = conn.prepareStatement("DELETE FROM category_rules WHERE id = ?")) {
+            stmt.setInt(1, ruleId);
+            stmt.executeUpdate();
+            categoryRules.removeIf(r -> r.id == ruleId);
+            categoryRuleModel.removeRow(selectedRow);
+            categoryMatcher = new CategoryMatcher(categoryRules);
+        } catch (SQLException ex) {
+            JOptionPane.showMessageDialog(null, "Error deleting rule: " + ex.getMessage());
+        }
+    }
+    
+    private List<CategoryMatcher.Rule> readCategoryRules() {
+        List<CategoryMatcher.Rule> rules = new ArrayList<>();
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, pattern, is_regex, category FROM category_rules ORDER BY id")) {
+            while (rs.next()) {
+                CategoryMatcher.Rule rule = new CategoryMatcher.Rule(rs.getInt("id"), rs.getString("pattern"),
+                        rs.getInt("is_regex") == 1, rs.getString("category"));
+                if (rule.regex) {
+                    // A stored regex that no longer compiles is skipped rather than disabling every rule
+                    try {
+                        java.util.regex.Pattern.compile(rule.pattern);
+                    } catch (java.util.regex.PatternSyntaxException ex) {
+                        ex.printStackTrace();
+                        continue;
+                    }
+                }
+                rules.add(rule);
+            }
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+        return rules;
+    }
+    
+    private void showCategoryRules(List<CategoryMatcher.Rule> rules, CategoryMatcher matcher) {
+        categoryRules.clear();
+        categoryRules.addAll(rules);
+        categoryRuleModel.setRowCount(0);
+        for (CategoryMatcher.Rule rule : rules) {
+            categoryRuleModel.addRow(rule.toTableRow());
+        }
+        categoryMatcher = matcher;
+    }
+    
+    // A matching rule overrides the category column of an imported file;
+    // rows no rule matches keep the file's category
+    private String autoCategory(String fileCategory, String description) {
+        String matched = categoryMatcher.categorize(description);
+        if (matched != null) return matched;
+        return fileCategory.trim().isEmpty() ? "Uncategorized" : fileCategory;
+    }
+    
     private JMenuBar createMenuBar() {
         JMenuBar menuBar = new JMenuBar();
         JMenu fileMenu = new JMenu("File");
@@ -674,35 +2357,297 @@ public class FinanceTracker extends JFrame {
         exportCSV.addActionListener(e -> exportCSV());
         fileMenu.add(exportCSV);
         
+        JMenuItem exportFiltered = new JMenuItem("Export Filtered CSV");
+        exportFiltered.addActionListener(e -> exportFilteredCSV());
+        fileMenu.add(exportFiltered);
+        
         JMenuItem importCSV = new JMenuItem("Import CSV");
         importCSV.addActionListener(e -> importCSV());
         fileMenu.add(importCSV);
         
+        JMenuItem importCSVIncremental = new JMenuItem("Import CSV (Skip Duplicates)");
+        importCSVIncremental.addActionListener(e -> importCSVIncremental());
+        fileMenu.add(importCSVIncremental);
+        
         JMenuItem exportPDF = new JMenuItem("Export PDF");
         exportPDF.addActionListener(e -> exportPDF());
         fileMenu.add(exportPDF);
         
+        JMenuItem exportArrow = new JMenuItem("Export Arrow (Analytics)");
+        exportArrow.addActionListener(e -> exportColumnar(ColumnarExport.Format.ARROW));
+        fileMenu.add(exportArrow);
+        
+        JMenuItem exportParquet = new JMenuItem("Export Parquet (Analytics)");
+        exportParquet.addActionListener(e -> exportColumnar(ColumnarExport.Format.PARQUET));
+        fileMenu.add(exportParquet);
+        
+        JMenuItem importRates = new JMenuItem("Import FX Rates");
+        importRates.addActionListener(e -> importFxRates());
+        fileMenu.add(importRates);
+        
+        JMenuItem reportingCurrencyItem = new JMenuItem("Set Reporting Currency");
+        reportingCurrencyItem.addActionListener(e -> chooseReportingCurrency());
+        fileMenu.add(reportingCurrencyItem);
+        
+        JMenuItem archiveYears = new JMenuItem("Archive Closed Years");
+        archiveYears.addActionListener(e -> archiveClosedYears());
+        fileMenu.add(archiveYears);
+        
         JMenuItem saveData = new JMenuItem("Save Data");
         saveData.addActionListener(e -> saveData());
         fileMenu.add(saveData);
         
+        JMenuItem encryption = new JMenuItem("Encryption Passphrase...");
+        encryption.addActionListener(e -> setEncryptionPassphrase());
+        fileMenu.add(encryption);
+        
+        JMenuItem snapshot = new JMenuItem("Save Encrypted Snapshot...");
+        snapshot.addActionListener(e -> saveEncryptedSnapshot());
+        fileMenu.add(snapshot);
+        
+        JMenuItem backUp = new JMenuItem("Back Up Now");
+        backUp.addActionListener(e -> backUpNow());
+        fileMenu.add(backUp);
+        
+        JMenuItem backupList = new JMenuItem("Backups...");
+        backupList.addActionListener(e -> showBackups());
+        fileMenu.add(backupList);
+        
+        JMenuItem decrypt = new JMenuItem("Decrypt File...");
+        decrypt.addActionListener(e -> decryptFile());
+        fileMenu.add(decrypt);
+        
         JMenuItem loadData = new JMenuItem("Load Data");
         loadData.addActionListener(e -> loadData());
         fileMenu.add(loadData);
         
         menuBar.add(fileMenu);
+        
+        JMenu editMenu = new JMenu("Edit");
+        
+        // Undo covers changes not yet in the database; edits, deletes,
+        // bulk edits, imports and saves are written at once and end the history
+        JMenuItem undo = new JMenuItem("Undo");
+        undo.setAccelerator(KeyStroke.getKeyStroke("control Z"));
+        undo.setToolTipText("Undoes changes not yet saved to the database");
+        undo.addActionListener(e -> {
+            if (!rejectOnReplica() && !transactions.undo()) statusLabel.setText("Nothing to undo; saved changes cannot be undone.");
+        });
+        editMenu.add(undo);
+        
+        JMenuItem redo = new JMenuItem("Redo");
+        redo.setAccelerator(KeyStroke.getKeyStroke("control Y"));
+        redo.setToolTipText("Redoes changes not yet saved to the database");
+        redo.addActionListener(e -> {
+            if (!rejectOnReplica() && !transactions.redo()) statusLabel.setText("Nothing to redo.");
+        });
+        editMenu.add(redo);
+        
+        menuBar.add(editMenu);
+        
+        JMenu replicationMenu = new JMenu("Replication");
+        
+        JMenuItem startLeader = new JMenuItem("Serve Replicas...");
+        startLeader.addActionListener(e -> startReplicationLeader());
+        replicationMenu.add(startLeader);
+        
+        JMenuItem follow = new JMenuItem("Follow Leader...");
+        follow.addActionListener(e -> startReplicationFollower());
+        replicationMenu.add(follow);
+        
+        JMenuItem replicationStatus = new JMenuItem("Replication Status");
+        replicationStatus.addActionListener(e -> showReplicationStatus());
+        replicationMenu.add(replicationStatus);
+        
+        JMenuItem stopReplication = new JMenuItem("Stop Replication");
+        stopReplication.addActionListener(e -> stopReplication());
+        replicationMenu.add(stopReplication);
+        
+        menuBar.add(replicationMenu);
         return menuBar;
     }
     
+    // Replicas only change through the log they follow
+    private boolean rejectOnReplica() {
+        if (replicationFollower == null) return false;
+        JOptionPane.showMessageDialog(this, "This tracker is a read-only replica. Stop replication to make changes.");
+        return true;
+    }
+    
+    // Starts logging every store change under replication/ and serves it to followers.
+    // The log opens with a checkpoint of the current rows, so followers need nothing else.
+    private void startReplicationLeader() {
+        if (replicationLeader != null || replicationFollower != null) {
+            JOptionPane.showMessageDialog(this, "Replication is already running.");
+            return;
+        }
+        JTextField portField = new JTextField("7340");
+        JPasswordField secretField = new JPasswordField();
+        JCheckBox remote = new JCheckBox("Accept replicas from other computers");
+        JPanel panel = new JPanel(new GridLayout(3, 2));
+        panel.add(new JLabel("Port:"));
+        panel.add(portField);
+        panel.add(new JLabel("Shared secret:"));
+        panel.add(secretField);
+        panel.add(remote);
+        if (JOptionPane.showConfirmDialog(this, panel, "Serve Replicas", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+        byte[] secret = new String(secretField.getPassword()).getBytes(StandardCharsets.UTF_8);
+        if (secret.length == 0) {
+            JOptionPane.showMessageDialog(this, "Enter a shared secret; replicas must give the same one.");
+            return;
+        }
+        try {
+            int port = Integer.parseInt(portField.getText().trim());
+            mutationLog = new MutationLog(new File("replication"));
+            TransactionStore.Snapshot snapshot = transactions.snapshot();
+            long[] loggedVersion = {snapshot.getVersion()};
+            mutationLog.checkpoint(snapshot, loggedVersion[0]);
+            mutationLogger = new ChangeSubscriber(ChangeEvent.Entity.TRANSACTION) {
+                @Override
+                protected void apply(ChangeEvent e) {
+                    if (e.version <= loggedVersion[0]) return; // already in the checkpoint
+                    try {
+                        mutationLog.append(e);
+                        loggedVersion[0] = e.version;
+                    } catch (IOException ex) {
+                        statusLabel.setText("Replication log write failed: " + ex.getMessage());
+                    }
+                }
+                
+                @Override
+                protected void reload() {
+                    // Missed events: a fresh checkpoint puts followers back in step
+                    try {
+                        TransactionStore.Snapshot current = transactions.snapshot();
+                        mutationLog.checkpoint(current, current.getVersion());
+                        loggedVersion[0] = current.getVersion();
+                    } catch (IOException ex) {
+                        statusLabel.setText("Replication log write failed: " + ex.getMessage());
+                    }
+                }
+            };
+            changes.subscribe(mutationLogger);
+            // Loopback only unless asked; the log is sent unencrypted
+            replicationLeader = remote.isSelected() ? new ReplicationLeader(mutationLog, port, null, secret)
+                : new ReplicationLeader(mutationLog, port, secret);
+            startReplicationStatusTimer();
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid port number.");
+        } catch (IOException ex) {
+            stopReplication();
+            JOptionPane.showMessageDialog(this, "Could not start replication: " + ex.getMessage());
+        }
+    }
+    
+    // Replaces the local rows with the leader's and keeps applying its log
+    private void startReplicationFollower() {
+        if (replicationLeader != null || replicationFollower != null) {
+            JOptionPane.showMessageDialog(this, "Replication is already running.");
+            return;
+        }
+        JTextField addressField = new JTextField("localhost:7340");
+        JPasswordField secretField = new JPasswordField();
+        JPanel panel = new JPanel(new GridLayout(2, 2));
+        panel.add(new JLabel("Leader address (host:port):"));
+        panel.add(addressField);
+        panel.add(new JLabel("Shared secret:"));
+        panel.add(secretField);
+        if (JOptionPane.showConfirmDialog(this, panel, "Follow Leader", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+        String input = addressField.getText().trim();
+        int colon = input.lastIndexOf(':');
+        try {
+            String host = input.substring(0, colon).trim();
+            int port = Integer.parseInt(input.substring(colon + 1).trim());
+            byte[] secret = new String(secretField.getPassword()).getBytes(StandardCharsets.UTF_8);
+            if (secret.length == 0) {
+                JOptionPane.showMessageDialog(this, "Enter the leader's shared secret.");
+                return;
+            }
+            replicationFollower = new ReplicationFollower(host, port, secret, transactions, EventQueue::invokeLater);
+            startReplicationStatusTimer();
+        } catch (IndexOutOfBoundsException | NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Enter the leader as host:port.");
+        }
+    }
+    
+    private void stopReplication() {
+        if (replicationStatusTimer != null) replicationStatusTimer.stop();
+        replicationStatusTimer = null;
+        boolean wasReplica = replicationFollower != null;
+        if (replicationFollower != null) replicationFollower.close();
+        replicationFollower = null;
+        if (mutationLogger != null) mutationLogger.cancel();
+        mutationLogger = null;
+        try {
+            if (replicationLeader != null) replicationLeader.close();
+            if (mutationLog != null) mutationLog.close();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        replicationLeader = null;
+        mutationLog = null;
+        // A replica holds the leader's rows, ids and versions; editing them would hit unrelated local rows
+        if (wasReplica) refreshTransactionTable();
+        statusLabel.setText("Replication stopped.");
+    }
+    
+    private void startReplicationStatusTimer() {
+        replicationStatusTimer = new javax.swing.Timer(1000, e -> statusLabel.setText(replicationSummary()));
+        replicationStatusTimer.start();
+        statusLabel.setText(replicationSummary());
+    }
+    
+    // One-line lag summary for the status bar
+    private String replicationSummary() {
+        if (replicationFollower != null) {
+            ReplicationFollower f = replicationFollower;
+            if (!f.isConnected()) return "Replica: reconnecting" + (f.lastError() == null ? "" : " (" + f.lastError() + ")");
+            return String.format("Replica: LSN %d of %d, %d behind, applied %d ms after commit",
+                    f.appliedLsn(), f.leaderLsn(), f.lagRecords(), f.lastApplyLagMillis());
+        }
+        if (replicationLeader != null) {
+            long worstRecords = 0, worstMillis = 0;
+            for (ReplicationLeader.Follower f : replicationLeader.followers()) {
+                worstRecords = Math.max(worstRecords, f.lagRecords());
+                worstMillis = Math.max(worstMillis, f.lagMillis());
+            }
+            return String.format("Leader: LSN %d, %d replica(s), worst lag %d records / %d ms",
+                    mutationLog.lastLsn(), replicationLeader.followers().size(), worstRecords, worstMillis);
+        }
+        return "Replication is not running.";
+    }
+    
+    private void showReplicationStatus() {
+        StringBuilder sb = new StringBuilder(replicationSummary()).append("\n");
+        if (replicationLeader != null) {
+            sb.append(String.format("%nPort %d, log LSNs %d-%d, newest checkpoint at %d%n",
+                    replicationLeader.port(), mutationLog.firstLsn(), mutationLog.lastLsn(), mutationLog.latestCheckpoint()));
+            for (ReplicationLeader.Follower f : replicationLeader.followers()) {
+                sb.append(String.format("%s: shipped %d, applied %d, behind %d records / %d ms, %d checkpoint(s) sent, %.1f MB%n",
+                        f.address, f.shippedLsn(), f.ackedLsn(), f.lagRecords(), f.lagMillis(), f.snapshots(), f.bytesShipped() / 1048576.0));
+            }
+        } else if (replicationFollower != null) {
+            ReplicationFollower f = replicationFollower;
+            sb.append(String.format("%nApplied %d records, %d checkpoint(s); slowest apply %d ms after commit%n",
+                    f.recordsApplied(), f.snapshotsApplied(), f.maxApplyLagMillis()));
+        }
+        JOptionPane.showMessageDialog(this, sb.toString(), "Replication Status", JOptionPane.INFORMATION_MESSAGE);
+    }
+    
     private void showTransactionDialog() {
+        if (rejectOnReplica()) return;
         JDialog dialog = new JDialog(this, "Add Transaction", true);
-        dialog.setLayout(new GridLayout(6, 2));
+        dialog.setLayout(new GridLayout(8, 2));
         
         JComboBox<String> typeCombo = new JComboBox<>(new String[]{"Income", "Expense"});
         JTextField amountField = new JTextField();
         JComboBox<String> categoryCombo = new JComboBox<>(new String[]{"Groceries", "Rent", "Entertainment", "Utilities"});
         JTextField dateField = new JTextField(LocalDate.now().toString());
         JTextField descriptionField = new JTextField();
+        JTextField currencyField = new JTextField(reportingCurrency);
+        // Typing a new name opens a new account
+        JComboBox<String> accountCombo = new JComboBox<>(ledger.accountChoices());
+        accountCombo.setEditable(true);
         
         typeCombo.addActionListener(e -> {
             if (typeCombo.getSelectedItem().equals("Income")) {
@@ -712,6 +2657,24 @@ public class FinanceTracker extends JFrame {
             }
         });
         
+        // Suggest a category from the rules as the description is typed
+        descriptionField.getDocument().addDocumentListener(new DocumentListener() {
+            private void suggest() {
+                String matched = categoryMatcher.categorize(descriptionField.getText());
+                if (matched == null) return;
+                DefaultComboBoxModel<String> model = (DefaultComboBoxModel<String>) categoryCombo.getModel();
+                if (model.getIndexOf(matched) == -1) model.addElement(matched);
+                categoryCombo.setSelectedItem(matched);
+            }
+            
+            @Override
+            public void insertUpdate(DocumentEvent e) { suggest(); }
+            @Override
+            public void removeUpdate(DocumentEvent e) { suggest(); }
+            @Override
+            public void changedUpdate(DocumentEvent e) { suggest(); }
+        });
+        
         JButton saveButton = new JButton("Save");
         saveButton.addActionListener(e -> {
             try {
@@ -720,17 +2683,13 @@ public class FinanceTracker extends JFrame {
                 String category = (String) categoryCombo.getSelectedItem();
                 LocalDate date = LocalDate.parse(dateField.getText());
                 
-                Transaction t = new Transaction(amount, type, category, date, descriptionField.getText());
-                transactions.add(t);
+                String currency = currencyField.getText().trim().toUpperCase();
                 
-                if (type.equals("Expense")) {
-                    budgets.computeIfPresent(category, (k, v) -> {
-                        v.addExpense(amount);
-                        return v;
-                    });
-                }
+                String account = String.valueOf(accountCombo.getSelectedItem()).trim();
                 
-                transactionModel.addRow(t.toTableRow());
+                Transaction t = new Transaction(amount, type, category, date, descriptionField.getText(), currency);
+                t.setAccount(account.isEmpty() ? Ledger.DEFAULT_ACCOUNT : account);
+                transactions.add(t);
                 dialog.dispose();
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Invalid input: " + ex.getMessage());
@@ -741,12 +2700,16 @@ public class FinanceTracker extends JFrame {
         dialog.add(typeCombo);
         dialog.add(new JLabel("Amount:"));
         dialog.add(amountField);
+        dialog.add(new JLabel("Currency:"));
+        dialog.add(currencyField);
         dialog.add(new JLabel("Category:"));
         dialog.add(categoryCombo);
         dialog.add(new JLabel("Date (YYYY-MM-DD):"));
         dialog.add(dateField);
         dialog.add(new JLabel("Description:"));
         dialog.add(descriptionField);
+        dialog.add(new JLabel("Account:"));
+        dialog.add(accountCombo);
         dialog.add(saveButton);
         
         dialog.pack();
@@ -754,8 +2717,9 @@ public class FinanceTracker extends JFrame {
     }
     
     private void showEditTransactionDialog(Transaction t, int index) {
+        if (rejectOnReplica()) return;
         JDialog dialog = new JDialog(this, "Edit Transaction", true);
-        dialog.setLayout(new GridLayout(6, 2));
+        dialog.setLayout(new GridLayout(8, 2));
         
         // Prepopulate fields with transaction data
         JTextField amountField = new JTextField(String.valueOf(t.getAmount()));
@@ -763,9 +2727,15 @@ public class FinanceTracker extends JFrame {
         JTextField categoryField = new JTextField(t.getCategory());
         JTextField dateField = new JTextField(t.getDate().toString());
         JTextField descriptionField = new JTextField(t.toTableRow()[4].toString());
+        JTextField currencyField = new JTextField(t.getCurrency());
+        JComboBox<String> accountCombo = new JComboBox<>(ledger.accountChoices());
+        accountCombo.setEditable(true);
+        accountCombo.setSelectedItem(t.getAccount());
         
         dialog.add(new JLabel("Amount:"));
         dialog.add(amountField);
+        dialog.add(new JLabel("Currency:"));
+        dialog.add(currencyField);
         dialog.add(new JLabel("Type:"));
         dialog.add(typeField);
         dialog.add(new JLabel("Category:"));
@@ -774,6 +2744,8 @@ public class FinanceTracker extends JFrame {
         dialog.add(dateField);
         dialog.add(new JLabel("Description:"));
         dialog.add(descriptionField);
+        dialog.add(new JLabel("Account:"));
+        dialog.add(accountCombo);
         
         JButton saveButton = new JButton("Save");
         saveButton.addActionListener(e -> {
@@ -783,15 +2755,13 @@ public class FinanceTracker extends JFrame {
                 String category = categoryField.getText().trim();
                 LocalDate date = LocalDate.parse(dateField.getText().trim());
                 String description = descriptionField.getText().trim();
+                String currency = currencyField.getText().trim().toUpperCase();
                 
-                Transaction updated = new Transaction(amount, type, category, date, description);
-                transactions.set(index, updated);
+                String account = String.valueOf(accountCombo.getSelectedItem()).trim();
                 
-                // Update table model row
-                for (int i = 0; i < transactionModel.getColumnCount(); i++) {
-                    transactionModel.setValueAt(updated.toTableRow()[i], index, i);
-                }
-                dialog.dispose();
+                Transaction updated = new Transaction(amount, type, category, date, description, currency);
+                updated.setAccount(account.isEmpty() ? Ledger.DEFAULT_ACCOUNT : account);
+                if (updateTransaction(index, t, updated)) dialog.dispose();
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(dialog, "Invalid input: " + ex.getMessage());
             }
@@ -804,23 +2774,49 @@ public class FinanceTracker extends JFrame {
     
     private void showBudgetDialog() {
         JDialog dialog = new JDialog(this, "Set Budget", true);
-        dialog.setLayout(new GridLayout(3, 2));
+        dialog.setLayout(new GridLayout(5, 2));
         
-        JComboBox<String> categoryCombo = new JComboBox<>(
-            new String[]{"Groceries", "Rent", "Entertainment", "Utilities"});
+        // Editable so grouping envelopes (e.g. "Household") can be named freely
+        JComboBox<String> categoryCombo = new JComboBox<>(categories.toArray(new String[0]));
+        categoryCombo.setEditable(true);
         JTextField amountField = new JTextField();
+        JComboBox<String> parentCombo = new JComboBox<>();
+        parentCombo.addItem("(none)");
+        budgets.values().forEach(b -> parentCombo.addItem(b.getCategory()));
+        JComboBox<String> periodCombo = new JComboBox<>(new String[]{"MONTHLY", "WEEKLY", "ROLLING:30", "EVERY:14:" + LocalDate.now(), "LIFETIME"});
+        periodCombo.setEditable(true);
+        periodCombo.setToolTipText(PERIOD_HELP);
         
         dialog.add(new JLabel("Category:"));
         dialog.add(categoryCombo);
-        dialog.add(new JLabel("Budget Limit:"));
+        dialog.add(new JLabel("Budget Limit (0 = sum of sub-budgets):"));
         dialog.add(amountField);
+        dialog.add(new JLabel("Parent Budget:"));
+        dialog.add(parentCombo);
+        dialog.add(new JLabel("Period:"));
+        dialog.add(periodCombo);
         
         JButton saveButton = new JButton("Save");
         saveButton.addActionListener(e -> {
             try {
-                String category = (String) categoryCombo.getSelectedItem();
+                String category = String.valueOf(categoryCombo.getSelectedItem()).trim();
                 double limit = Double.parseDouble(amountField.getText());
-                budgets.put(category, new Budget(category, limit));
+                String parent = parentCombo.getSelectedIndex() <= 0 ? null : (String) parentCombo.getSelectedItem();
+                if (category.isEmpty() || category.equals(parent)) {
+                    JOptionPane.showMessageDialog(dialog, "Choose a category different from its parent.");
+                    return;
+                }
+                BudgetPeriod period;
+                try {
+                    period = BudgetPeriod.parse(String.valueOf(periodCombo.getSelectedItem()));
+                } catch (IllegalArgumentException ex) {
+                    JOptionPane.showMessageDialog(dialog, "Invalid period: " + ex.getMessage());
+                    return;
+                }
+                Budget budget = new Budget(category, limit, parent, period);
+                budget.replaces(budgets.get(category));
+                budgets.put(budget);
+                refreshBudgetPeriods();
                 dialog.dispose();
             } catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(dialog, "Invalid amount format");
@@ -860,137 +2856,666 @@ public class FinanceTracker extends JFrame {
                 
                 Reminder reminder = new Reminder(dueDate, description);
                 reminders.add(reminder);
-                reminderModel.addRow(reminder.toTableRow());
+                changes.publish(ChangeEvent.inserted(ChangeEvent.Entity.REMINDER, -1, 0,
+                        Collections.singletonList(reminder.toTableRow()), 0));
                 dialog.dispose();
                 
             } catch (DateTimeParseException ex) {
                 JOptionPane.showMessageDialog(dialog, "Invalid date format. Please use YYYY-MM-DD.", "Error", JOptionPane.ERROR_MESSAGE);
             }
-        });
-
-        cancelButton.addActionListener(e -> dialog.dispose());
-
-        dialog.add(saveButton);
-        dialog.add(cancelButton);
-        dialog.setVisible(true);
+        });
+
+        cancelButton.addActionListener(e -> dialog.dispose());
+
+        dialog.add(saveButton);
+        dialog.add(cancelButton);
+        dialog.setVisible(true);
+    }
+    
+    private void showSpendingChart() {
+        // Text-based spending report
+        Map<String, Double> categorySpending = calculateSpendingByCategory();
+        
+        SpendingSketches sketch = spendingSketches();
+        
+        StringBuilder report = new StringBuilder("Spending Breakdown:\n\n");
+        double total = categorySpending.values().stream().mapToDouble(Double::doubleValue).sum();
+        
+        for (Map.Entry<String, Double> entry : categorySpending.entrySet()) {
+            double percentage = (entry.getValue() / total) * 100;
+            report.append(String.format("%s: %s (%.1f%%)\n", 
+                entry.getKey(), FxRates.format(entry.getValue(), reportingCurrency), percentage));
+            if (sketch.count(entry.getKey()) > 0) {
+                report.append(String.format("    %d transactions, median %s, 95th percentile %s\n",
+                    sketch.count(entry.getKey()),
+                    FxRates.format(sketch.quantile(entry.getKey(), 0.5), reportingCurrency),
+                    FxRates.format(sketch.quantile(entry.getKey(), 0.95), reportingCurrency)));
+            }
+        }
+        
+        JTextArea textArea = new JTextArea(report.toString());
+        textArea.setEditable(false);
+        JOptionPane.showMessageDialog(this, new JScrollPane(textArea), 
+            "Spending Report", JOptionPane.INFORMATION_MESSAGE);
+    }
+    
+    // Distinct payees paid each month, newest first, read from the sketches;
+    // counts are HyperLogLog estimates, within about 2%
+    private void showMonthlyPayees() {
+        SpendingSketches sketch = spendingSketches();
+        DefaultTableModel model = new DefaultTableModel(new String[]{"Month", "Distinct Payees"}, 0);
+        List<YearMonth> months = new ArrayList<>(sketch.months());
+        Collections.reverse(months);
+        for (YearMonth month : months) model.addRow(new Object[]{month, sketch.distinctPayees(month)});
+        if (model.getRowCount() == 0) {
+            JOptionPane.showMessageDialog(this, "No expenses recorded yet.");
+            return;
+        }
+        JScrollPane scrollPane = new JScrollPane(new JTable(model));
+        scrollPane.setPreferredSize(new Dimension(400, 300));
+        JOptionPane.showMessageDialog(this, scrollPane, "Payees by Month", JOptionPane.INFORMATION_MESSAGE);
+    }
+    
+    // Totals per type and category for the rows a filter matches, archive included
+    private void showFilteredReport() {
+        FilterQuery filter = chooseFilter("Filtered Report");
+        if (filter == null) return;
+        java.util.function.Predicate<Transaction> matches = filter.matcher(tags);
+        FxRates.Converter fx = fxRates.converterTo(reportingCurrency);
+        Map<String, double[]> totals = new TreeMap<>(); // "type / category" -> {count, total}
+        Consumer<Transaction> tally = t -> {
+            if (!matches.test(t)) return;
+            double[] row = totals.computeIfAbsent(t.getType() + " / " + t.getCategory(), k -> new double[2]);
+            row[0]++;
+            row[1] += fx.convert(t);
+        };
+        try {
+            archive.scan(null, null, tally);
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Error reading archive: " + ex.getMessage());
+            return;
+        }
+        transactions.snapshot().forEach(tally);
+        if (totals.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "No transactions match " + filter + ".");
+            return;
+        }
+        DefaultTableModel model = new DefaultTableModel(new String[]{"Type / Category", "Count", "Total"}, 0);
+        totals.forEach((key, row) -> model.addRow(new Object[]{key, (long) row[0], FxRates.format(row[1], reportingCurrency)}));
+        JScrollPane scrollPane = new JScrollPane(new JTable(model));
+        scrollPane.setPreferredSize(new Dimension(500, 300));
+        JOptionPane.showMessageDialog(this, scrollPane, "Filtered Report: " + filter, JOptionPane.INFORMATION_MESSAGE);
+    }
+    
+    private void showASCIIChart() {
+        Map<String, Double> categorySpending = calculateSpendingByCategory();
+        
+        StringBuilder chart = new StringBuilder("ASCII Spending Chart:\n\n");
+        double max = categorySpending.values().stream().mapToDouble(Double::doubleValue).max().orElse(1);
+        for (Map.Entry<String, Double> entry : categorySpending.entrySet()) {
+            int barLength = (int) ((entry.getValue() / max) * 50);
+            chart.append(String.format("%-15s: %s (%s)\n", entry.getKey(), "*".repeat(barLength), FxRates.format(entry.getValue(), reportingCurrency)));
+        }
+        JOptionPane.showMessageDialog(this, new JScrollPane(new JTextArea(chart.toString())), "ASCII Chart", JOptionPane.INFORMATION_MESSAGE);
+    }
+    
+    private void showPeriodComparison() {
+        JTextField currentFrom = new JTextField(LocalDate.now().minusDays(30).toString());
+        JTextField currentTo = new JTextField(LocalDate.now().toString());
+        JTextField previousFrom = new JTextField(LocalDate.now().minusDays(60).toString());
+        JTextField previousTo = new JTextField(LocalDate.now().minusDays(31).toString());
+        
+        JPanel panel = new JPanel(new GridLayout(4, 2));
+        panel.add(new JLabel("Current Period From:"));
+        panel.add(currentFrom);
+        panel.add(new JLabel("Current Period To:"));
+        panel.add(currentTo);
+        panel.add(new JLabel("Previous Period From:"));
+        panel.add(previousFrom);
+        panel.add(new JLabel("Previous Period To:"));
+        panel.add(previousTo);
+        
+        int result = JOptionPane.showConfirmDialog(this, panel, "Enter Date Ranges", JOptionPane.OK_CANCEL_OPTION);
+        if (result == JOptionPane.OK_OPTION) {
+            try {
+                LocalDate curFromDate = LocalDate.parse(currentFrom.getText());
+                LocalDate curToDate = LocalDate.parse(currentTo.getText());
+                LocalDate prevFromDate = LocalDate.parse(previousFrom.getText());
+                LocalDate prevToDate = LocalDate.parse(previousTo.getText());
+                
+                TransactionStore.Snapshot snapshot = transactions.snapshot();
+                FxRates.Converter fx = fxRates.converterTo(reportingCurrency);
+                double currentTotal = snapshot.stream()
+                    .filter(t -> t.getType().equals("Expense") && !t.getDate().isBefore(curFromDate) && !t.getDate().isAfter(curToDate))
+                    .mapToDouble(fx::convert)
+                    .sum() + archive.expenseTotal(curFromDate, curToDate, fx);
+                double previousTotal = snapshot.stream()
+                    .filter(t -> t.getType().equals("Expense") && !t.getDate().isBefore(prevFromDate) && !t.getDate().isAfter(prevToDate))
+                    .mapToDouble(fx::convert)
+                    .sum() + archive.expenseTotal(prevFromDate, prevToDate, fx);
+                
+                String message = String.format("Current Period Spending: %s\nPrevious Period Spending: %s\nDifference: %s", 
+                    FxRates.format(currentTotal, reportingCurrency), FxRates.format(previousTotal, reportingCurrency),
+                    FxRates.format(currentTotal - previousTotal, reportingCurrency));
+                JOptionPane.showMessageDialog(this, message, "Period Comparison", JOptionPane.INFORMATION_MESSAGE);
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, "Invalid date input.");
+            }
+        }
+    }
+    
+    // Tree-table of the budget hierarchy; parents show their subtree's spending
+    private void showBudgetProgress() {
+        refreshBudgetPeriods();
+        BudgetTreeTableModel model = new BudgetTreeTableModel(budgets, reportingCurrency);
+        budgets.addListener(model);
+        JScrollPane scrollPane = new JScrollPane(model.createTable());
+        scrollPane.setPreferredSize(new Dimension(700, 400));
+        try {
+            JOptionPane.showMessageDialog(this, scrollPane, "Budget Progress", JOptionPane.INFORMATION_MESSAGE);
+        } finally {
+            budgets.removeListener(model);
+        }
+    }
+    
+    // Budget versus actual for the last twelve periods of one budget. Each
+    // period is two prefix-sum reads per category; a parent's actual covers
+    // its sub-budgets over the parent's periods.
+    private void showBudgetHistory() {
+        if (budgets.size() == 0) {
+            JOptionPane.showMessageDialog(this, "No budgets set.");
+            return;
+        }
+        String[] names = budgets.values().stream().map(Budget::getCategory).toArray(String[]::new);
+        String category = (String) JOptionPane.showInputDialog(this, "Budget:", "Budget History",
+                JOptionPane.QUESTION_MESSAGE, null, names, names[0]);
+        if (category == null) return;
+        
+        DailySpending spending = budgetSpending();
+        int node = budgets.node(category);
+        List<String> members = new ArrayList<>();
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            int n = stack.pop();
+            members.add(budgets.budget(n).getCategory());
+            for (int c : budgets.children(n)) stack.push(c);
+        }
+        BudgetPeriod period = budgets.budget(node).getPeriod();
+        double limit = budgets.rolledLimit(node);
+        
+        DefaultTableModel model = new DefaultTableModel(new String[]{"From", "To", "Limit", "Actual", "Remaining"}, 0);
+        long[] window = period.window(LocalDate.now().toEpochDay());
+        for (int i = 0; i < 12 && window != null; i++) {
+            double actual = 0;
+            for (String m : members) actual += spending.sum(m, window[0], window[1]);
+            model.addRow(new Object[]{
+                window[0] == BudgetPeriod.FIRST_DAY ? "" : LocalDate.ofEpochDay(window[0]),
+                window[1] == BudgetPeriod.LAST_DAY ? "" : LocalDate.ofEpochDay(window[1]),
+                FxRates.format(limit, reportingCurrency),
+                FxRates.format(actual, reportingCurrency),
+                FxRates.format(limit - actual, reportingCurrency)
+            });
+            window = period.previous(window);
+        }
+        JScrollPane scrollPane = new JScrollPane(new JTable(model));
+        scrollPane.setPreferredSize(new Dimension(600, 260));
+        JOptionPane.showMessageDialog(this, scrollPane, category + " (" + period + ")", JOptionPane.INFORMATION_MESSAGE);
+    }
+    
+    // Daily totals for the current transaction store, rebuilt only when the
+    // store's version has moved past the one they were built from
+    private DailySpending budgetSpending() {
+        TransactionStore.Snapshot snapshot = transactions.snapshot();
+        if (budgetSpending != null && budgetSpendingVersion == snapshot.getVersion()) return budgetSpending;
+        FxRates.Converter fx = fxRates.converterTo(reportingCurrency);
+        if (archivedSpending == null) {
+            DailySpending archived = new DailySpending();
+            try {
+                archive.scan(null, null, t -> {
+                    if (t.getType().equals("Expense")) archived.add(t.getCategory(), t.getDate().toEpochDay(), fx.convert(t));
+                });
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+            archivedSpending = archived;
+        }
+        DailySpending spending = archivedSpending.copy();
+        for (Transaction t : snapshot) {
+            if (t.getType().equals("Expense")) spending.add(t.getCategory(), t.getDate().toEpochDay(), fx.convert(t));
+        }
+        budgetSpending = spending;
+        budgetSpendingVersion = snapshot.getVersion();
+        budgetWindows.clear();
+        return spending;
+    }
+    
+    // Slides each budget's window to the period containing today and feeds the
+    // difference through the tree so enclosing budgets roll it up. Advancing a
+    // day only touches the days entering and leaving each window.
+    private void refreshBudgetPeriods() {
+        if (budgets.size() == 0) return;
+        DailySpending spending = budgetSpending();
+        long today = LocalDate.now().toEpochDay();
+        for (Budget b : budgets.values()) {
+            long[] window = b.getPeriod().window(today);
+            DailySpending.Window w = budgetWindows.computeIfAbsent(b.getCategory(), spending::window);
+            w.moveTo(window[0], window[1]);
+            double delta = w.sum() - b.getSpent();
+            if (delta != 0) budgets.addExpense(b.getCategory(), delta);
+        }
+    }
+    
+    // Conversions changed; daily totals and sketches are rebuilt on next use
+    private void invalidateBudgetSpending() {
+        archivedSpending = null;
+        budgetSpending = null;
+        archivedSketches = null;
+        sketches = null;
+        anomalies.train(transactions.snapshot(), fxRates.converterTo(reportingCurrency));
+    }
+    
+    // Sketches for the current store: archived partitions are sketched in
+    // parallel once, hot rows are added on top, and cells made stale by edits
+    // or deletes since are rebuilt from the snapshot they were recorded against
+    private SpendingSketches spendingSketches() {
+        TransactionStore.Snapshot snapshot = transactions.snapshot();
+        FxRates.Converter fx = fxRates.converterTo(reportingCurrency);
+        if (sketches != null && sketchesVersion == snapshot.getVersion()) {
+            sketches.rebuildStale(archivedSketches, snapshot, fx);
+            return sketches;
+        }
+        if (archivedSketches == null) {
+            try {
+                archivedSketches = SpendingSketches.ofArchive(archive, fx);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+                archivedSketches = new SpendingSketches();
+            }
+        }
+        SpendingSketches built = archivedSketches.copy();
+        for (Transaction t : snapshot) {
+            if (t.getType().equals("Expense")) built.add(t, fx.convert(t));
+        }
+        sketches = built;
+        sketchesVersion = snapshot.getVersion();
+        return built;
+    }
+    
+    // Inserted expenses go straight into the sketches; rows an event replaced
+    // or removed only mark their category and month stale
+    private void applyToSketches(ChangeEvent e) {
+        if (e.kind == ChangeEvent.Kind.RESET) {
+            sketches = null;
+        } else if (sketches != null && e.version > sketchesVersion) {
+            FxRates.Converter fx = fxRates.converterTo(reportingCurrency);
+            for (Transaction t : e.before(Transaction.class)) {
+                if (t.getType().equals("Expense")) sketches.markStale(t);
+            }
+            for (Transaction t : e.after(Transaction.class)) {
+                if (t.getType().equals("Expense")) sketches.add(t, fx.convert(t));
+            }
+            sketchesVersion = e.version;
+        }
+    }
+
+    // Folds one store event into the daily totals; a reset, or an event the
+    // totals were already rebuilt past, leaves them to budgetSpending()
+    private void applyToBudgetSpending(ChangeEvent e) {
+        if (e.kind == ChangeEvent.Kind.RESET) {
+            budgetSpending = null;
+        } else if (budgetSpending != null && e.version > budgetSpendingVersion) {
+            FxRates.Converter fx = fxRates.converterTo(reportingCurrency);
+            for (Transaction t : e.before(Transaction.class)) {
+                if (t.getType().equals("Expense")) budgetSpending.add(t.getCategory(), t.getDate().toEpochDay(), -fx.convert(t));
+            }
+            for (Transaction t : e.after(Transaction.class)) {
+                if (t.getType().equals("Expense")) budgetSpending.add(t.getCategory(), t.getDate().toEpochDay(), fx.convert(t));
+            }
+            budgetSpendingVersion = e.version;
+        }
+        refreshBudgetPeriods();
+    }
+    
+    private void exportCSV() {
+        JFileChooser fileChooser = new JFileChooser();
+        if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
+            File file = exportTarget(fileChooser.getSelectedFile());
+            try (Writer fw = new BufferedWriter(new OutputStreamWriter(openExport(file)))) {
+                fw.write("Date,Type,Category,Amount,Description,Currency\n");
+                archive.scan(null, null, t -> {
+                    try {
+                        fw.write(String.format("%s,%s,%s,%.2f,%s,%s\n", t.getDate(), t.getType(), t.getCategory(), t.getAmount(), t.getDescription(), t.getCurrency()));
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+                for (Transaction t : transactions.snapshot()) {
+                    fw.write(String.format("%s,%s,%s,%.2f,%s,%s\n", t.getDate(), t.getType(), t.getCategory(), t.getAmount(), t.toTableRow()[4], t.getCurrency()));
+                }
+                fw.flush();
+                JOptionPane.showMessageDialog(this, "CSV exported successfully to " + file.getName() + ".");
+            } catch (IOException | UncheckedIOException ex) {
+                JOptionPane.showMessageDialog(this, "Error exporting CSV: " + ex.getMessage());
+            }
+        }
+    }
+    
+    // Exports the rows a filter matches: archived years are scanned with the
+    // in-memory predicate, the rest is queried with the filter compiled to SQL
+    private void exportFilteredCSV() {
+        FilterQuery filter = chooseFilter("Export Filtered CSV");
+        if (filter == null) return;
+        java.util.function.Predicate<Transaction> matches = filter.matcher(tags);
+        JFileChooser fileChooser = new JFileChooser();
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = exportTarget(fileChooser.getSelectedFile());
+        List<Object> parameters = new ArrayList<>();
+        String sql = "SELECT date, type, category, amount, description, currency FROM transactions WHERE "
+            + filter.toSql(parameters) + " ORDER BY date, id";
+        int[] count = {0};
+        try (Writer fw = new BufferedWriter(new OutputStreamWriter(openExport(file)))) {
+            fw.write("Date,Type,Category,Amount,Description,Currency\n");
+            archive.scan(null, null, t -> {
+                if (!matches.test(t)) return;
+                try {
+                    fw.write(String.format("%s,%s,%s,%.2f,%s,%s\n", t.getDate(), t.getType(), t.getCategory(), t.getAmount(), t.getDescription(), t.getCurrency()));
+                    count[0]++;
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            try (Connection conn = getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (int i = 0; i < parameters.size(); i++) stmt.setObject(i + 1, parameters.get(i));
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        fw.write(String.format("%s,%s,%s,%.2f,%s,%s\n", rs.getString(1), rs.getString(2), rs.getString(3),
+                            rs.getDouble(4), rs.getString(5), rs.getString(6)));
+                        count[0]++;
+                    }
+                }
+            }
+            fw.flush();
+            JOptionPane.showMessageDialog(this, count[0] + " transactions exported to " + file.getName() + ".");
+        } catch (IOException | UncheckedIOException | SQLException ex) {
+            JOptionPane.showMessageDialog(this, "Error exporting CSV: " + ex.getMessage());
+        }
+    }
+    
+    // Exports get the encrypted-file suffix while a passphrase is set
+    private File exportTarget(File chosen) {
+        if (atRestKey == null || chosen.getName().endsWith(AtRestKey.SUFFIX)) return chosen;
+        return new File(chosen.getPath() + AtRestKey.SUFFIX);
+    }
+    
+    private OutputStream openExport(File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        return atRestKey == null ? out : new EncryptedOutputStream(out, atRestKey);
+    }
+    
+    // Sets or clears the session passphrase used for exports, snapshots and backups
+    private void setEncryptionPassphrase() {
+        JPasswordField first = new JPasswordField();
+        JPasswordField second = new JPasswordField();
+        Object[] fields = {"Passphrase (leave blank to turn encryption off):", first, "Repeat passphrase:", second};
+        if (JOptionPane.showConfirmDialog(this, fields, "Encryption Passphrase", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+        char[] passphrase = first.getPassword();
+        char[] repeated = second.getPassword();
+        try {
+            if (!Arrays.equals(passphrase, repeated)) {
+                JOptionPane.showMessageDialog(this, "The passphrases do not match.");
+                return;
+            }
+            if (atRestPassphrase != null) Arrays.fill(atRestPassphrase, '\0');
+            if (passphrase.length == 0) {
+                atRestKey = null;
+                atRestPassphrase = null;
+                backups.setKey(null, null);
+                statusLabel.setText("Exports, snapshots and backups are written unencrypted.");
+                return;
+            }
+            atRestKey = AtRestKey.derive(passphrase);
+            atRestPassphrase = passphrase.clone();
+            backups.setKey(atRestKey, atRestPassphrase);
+            statusLabel.setText("Exports, snapshots and backups are encrypted (" + AtRestKey.SUFFIX + ").");
+        } catch (GeneralSecurityException ex) {
+            JOptionPane.showMessageDialog(this, "Encryption is unavailable: " + ex.getMessage());
+        } finally {
+            Arrays.fill(passphrase, '\0');
+            Arrays.fill(repeated, '\0');
+        }
+    }
+    
+    // Consistent copy of the database (VACUUM INTO) plus the archive
+    // partitions, zipped and encrypted in one pass
+    private void saveEncryptedSnapshot() {
+        if (atRestKey == null) setEncryptionPassphrase();
+        if (atRestKey == null) return;
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setSelectedFile(new File("finance-snapshot-" + LocalDate.now() + ".zip" + AtRestKey.SUFFIX));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = exportTarget(fileChooser.getSelectedFile());
+        AtRestKey key = atRestKey;
+        statusLabel.setText("Writing encrypted snapshot...");
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                File copy = File.createTempFile("finance-snapshot", ".db");
+                copy.delete(); // VACUUM INTO needs a path that does not exist yet
+                try {
+                    try (Connection conn = getConnection();
+                         PreparedStatement stmt = conn.prepareStatement("VACUUM INTO ?")) {
+                        stmt.setString(1, copy.getAbsolutePath());
+                        stmt.execute();
+                    }
+                    try (ZipOutputStream zip = new ZipOutputStream(
+                            new EncryptedOutputStream(new FileOutputStream(file), key))) {
+                        zipFile(zip, "finance_tracker.db", copy);
+                        File[] partitions = new File("archive").listFiles((d, name) -> name.endsWith(".ftpart"));
+                        if (partitions != null) {
+                            for (File partition : partitions) zipFile(zip, "archive/" + partition.getName(), partition);
+                        }
+                    }
+                } finally {
+                    copy.delete();
+                }
+                return file.length();
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    statusLabel.setText(String.format("Encrypted snapshot written to %s (%.1f MB).", file.getName(), get() / 1048576.0));
+                } catch (Exception ex) {
+                    file.delete();
+                    statusLabel.setText("Snapshot failed.");
+                    JOptionPane.showMessageDialog(FinanceTracker.this, "Error writing snapshot: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+    
+    private void backUpNow() {
+        statusLabel.setText("Backing up...");
+        new SwingWorker<BackupScheduler.Snapshot, Void>() {
+            @Override
+            protected BackupScheduler.Snapshot doInBackground() throws Exception {
+                return backups.backUpNow();
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    BackupScheduler.Snapshot s = get();
+                    statusLabel.setText(s == null ? "Another window is backing up." : BackupScheduler.describe(s));
+                } catch (Exception ex) {
+                    statusLabel.setText("Backup failed.");
+                    JOptionPane.showMessageDialog(FinanceTracker.this, "Error backing up: " + ex.getMessage());
+                }
+            }
+        }.execute();
     }
     
-    private void showSpendingChart() {
-        // Text-based spending report
-        Map<String, Double> categorySpending = new HashMap<>();
-        transactions.stream()
-            .filter(t -> t.getType().equals("Expense"))
-            .forEach(t -> categorySpending.merge(t.getCategory(), t.getAmount(), Double::sum));
-        
-        StringBuilder report = new StringBuilder("Spending Breakdown:\n\n");
-        double total = categorySpending.values().stream().mapToDouble(Double::doubleValue).sum();
-        
-        for (Map.Entry<String, Double> entry : categorySpending.entrySet()) {
-            double percentage = (entry.getValue() / total) * 100;
-            report.append(String.format("%s: $%.2f (%.1f%%)\n", 
-                entry.getKey(), entry.getValue(), percentage));
+    // Snapshots with their timings; any one can be checked or rebuilt into a folder
+    private void showBackups() {
+        List<BackupScheduler.Snapshot> list;
+        try {
+            list = backups.snapshots();
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Error reading backups: " + ex.getMessage());
+            return;
+        }
+        DefaultTableModel backupModel = new DefaultTableModel(
+                new String[]{"Taken", "Size (MB)", "New (MB)", "Chunks Reused", "Copy (ms)", "Store (ms)", "SHA-256"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) { return false; }
+        };
+        for (BackupScheduler.Snapshot s : list) {
+            backupModel.addRow(new Object[]{s.taken, String.format("%.1f", s.bytes / 1048576.0),
+                String.format("%.1f", s.newBytes / 1048576.0), s.reusedChunks + " of " + (s.reusedChunks + s.newChunks),
+                s.copyMillis, s.storeMillis, s.files.isEmpty() ? "" : s.files.get(0).sha256.substring(0, 16)});
         }
+        JTable table = new JTable(backupModel);
+        JButton verify = new JButton("Verify");
+        verify.addActionListener(e -> {
+            int row = table.getSelectedRow();
+            if (row >= 0) checkBackup(list.get(row), null);
+        });
+        JButton restore = new JButton("Restore To Folder...");
+        restore.addActionListener(e -> {
+            int row = table.getSelectedRow();
+            if (row < 0) return;
+            JFileChooser chooser = new JFileChooser();
+            chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+            if (chooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) checkBackup(list.get(row), chooser.getSelectedFile());
+        });
         
-        JTextArea textArea = new JTextArea(report.toString());
-        textArea.setEditable(false);
-        JOptionPane.showMessageDialog(this, new JScrollPane(textArea), 
-            "Spending Report", JOptionPane.INFORMATION_MESSAGE);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        buttons.add(verify);
+        buttons.add(restore);
+        JPanel panel = new JPanel(new BorderLayout());
+        JScrollPane scroll = new JScrollPane(table);
+        scroll.setPreferredSize(new Dimension(720, 260));
+        panel.add(scroll, BorderLayout.CENTER);
+        panel.add(buttons, BorderLayout.SOUTH);
+        JOptionPane.showMessageDialog(this, panel, "Backups", JOptionPane.PLAIN_MESSAGE);
     }
     
-    private void showASCIIChart() {
-        Map<String, Double> categorySpending = new HashMap<>();
-        transactions.stream()
-            .filter(t -> t.getType().equals("Expense"))
-            .forEach(t -> categorySpending.merge(t.getCategory(), t.getAmount(), Double::sum));
-        
-        StringBuilder chart = new StringBuilder("ASCII Spending Chart:\n\n");
-        double max = categorySpending.values().stream().mapToDouble(Double::doubleValue).max().orElse(1);
-        for (Map.Entry<String, Double> entry : categorySpending.entrySet()) {
-            int barLength = (int) ((entry.getValue() / max) * 50);
-            chart.append(String.format("%-15s: %s ($%.2f)\n", entry.getKey(), "*".repeat(barLength), entry.getValue()));
-        }
-        JOptionPane.showMessageDialog(this, new JScrollPane(new JTextArea(chart.toString())), "ASCII Chart", JOptionPane.INFORMATION_MESSAGE);
+    // Verifies a snapshot's checksums, rebuilding its files under `target` when given.
+    // The running database is never overwritten; restored files are swapped in by hand.
+    private void checkBackup(BackupScheduler.Snapshot s, File target) {
+        statusLabel.setText((target == null ? "Verifying backup " : "Restoring backup ") + s.taken + "...");
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                if (target == null) backups.verify(s);
+                else backups.restore(s, target);
+                return null;
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    get();
+                    statusLabel.setText(target == null ? "Backup " + s.taken + " verified."
+                        : "Backup " + s.taken + " restored to " + target + ". Close the tracker before swapping it in.");
+                } catch (Exception ex) {
+                    statusLabel.setText("Backup check failed.");
+                    JOptionPane.showMessageDialog(FinanceTracker.this, "Error reading backup: " + ex.getMessage());
+                }
+            }
+        }.execute();
     }
     
-    private void showPeriodComparison() {
-        JTextField currentFrom = new JTextField(LocalDate.now().minusDays(30).toString());
-        JTextField currentTo = new JTextField(LocalDate.now().toString());
-        JTextField previousFrom = new JTextField(LocalDate.now().minusDays(60).toString());
-        JTextField previousTo = new JTextField(LocalDate.now().minusDays(31).toString());
-        
-        JPanel panel = new JPanel(new GridLayout(4, 2));
-        panel.add(new JLabel("Current Period From:"));
-        panel.add(currentFrom);
-        panel.add(new JLabel("Current Period To:"));
-        panel.add(currentTo);
-        panel.add(new JLabel("Previous Period From:"));
-        panel.add(previousFrom);
-        panel.add(new JLabel("Previous Period To:"));
-        panel.add(previousTo);
-        
-        int result = JOptionPane.showConfirmDialog(this, panel, "Enter Date Ranges", JOptionPane.OK_CANCEL_OPTION);
-        if (result == JOptionPane.OK_OPTION) {
-            try {
-                LocalDate curFromDate = LocalDate.parse(currentFrom.getText());
-                LocalDate curToDate = LocalDate.parse(currentTo.getText());
-                LocalDate prevFromDate = LocalDate.parse(previousFrom.getText());
-                LocalDate prevToDate = LocalDate.parse(previousTo.getText());
-                
-                double currentTotal = transactions.stream()
-                    .filter(t -> t.getType().equals("Expense") && !t.getDate().isBefore(curFromDate) && !t.getDate().isAfter(curToDate))
-                    .mapToDouble(Transaction::getAmount)
-                    .sum();
-                double previousTotal = transactions.stream()
-                    .filter(t -> t.getType().equals("Expense") && !t.getDate().isBefore(prevFromDate) && !t.getDate().isAfter(prevToDate))
-                    .mapToDouble(Transaction::getAmount)
-                    .sum();
-                
-                String message = String.format("Current Period Spending: $%.2f\nPrevious Period Spending: $%.2f\nDifference: $%.2f", 
-                    currentTotal, previousTotal, currentTotal - previousTotal);
-                JOptionPane.showMessageDialog(this, message, "Period Comparison", JOptionPane.INFORMATION_MESSAGE);
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, "Invalid date input.");
-            }
-        }
+    private static void zipFile(ZipOutputStream zip, String name, File file) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        Files.copy(file.toPath(), zip);
+        zip.closeEntry();
     }
     
-    private void showBudgetProgress() {
-        JPanel panel = new JPanel(new GridLayout(budgets.size(), 1));
-        for (Budget budget : budgets.values()) {
-            JPanel row = new JPanel(new BorderLayout());
-            JLabel label = new JLabel(budget.getCategory() + " ($" + String.format("%.2f", budget.getSpent()) + " / $" + String.format("%.2f", budget.getLimit()) + ")");
-            JProgressBar progressBar = new JProgressBar(0, (int) budget.getLimit());
-            progressBar.setValue((int) budget.getSpent());
-            progressBar.setStringPainted(true);
-            row.add(label, BorderLayout.WEST);
-            row.add(progressBar, BorderLayout.CENTER);
-            panel.add(row);
+    // Writes the plain text of an encrypted export or snapshot next to it
+    private void decryptFile() {
+        JFileChooser fileChooser = new JFileChooser();
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File source = fileChooser.getSelectedFile();
+        if (!AtRestKey.isEncrypted(source)) {
+            JOptionPane.showMessageDialog(this, source.getName() + " is not an encrypted tracker file.");
+            return;
+        }
+        char[] passphrase = atRestPassphrase;
+        if (passphrase == null) {
+            JPasswordField field = new JPasswordField();
+            if (JOptionPane.showConfirmDialog(this, new Object[]{"Passphrase:", field}, "Decrypt File", JOptionPane.OK_CANCEL_OPTION) != JOptionPane.OK_OPTION) return;
+            passphrase = field.getPassword();
         }
-        JOptionPane.showMessageDialog(this, panel, "Budget Progress", JOptionPane.INFORMATION_MESSAGE);
+        String name = source.getName();
+        File target = new File(source.getParentFile(), name.endsWith(AtRestKey.SUFFIX) ? name.substring(0, name.length() - AtRestKey.SUFFIX.length()) : name + ".decrypted");
+        fileChooser.setSelectedFile(target);
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File output = fileChooser.getSelectedFile();
+        AtRestKey key = atRestKey;
+        char[] secret = passphrase;
+        statusLabel.setText("Decrypting " + name + "...");
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                try (InputStream in = new EncryptedInputStream(new FileInputStream(source), key, secret);
+                     OutputStream out = new FileOutputStream(output)) {
+                    in.transferTo(out);
+                }
+                return null;
+            }
+            
+            @Override
+            protected void done() {
+                try {
+                    get();
+                    statusLabel.setText("Decrypted " + name + " to " + output.getName() + ".");
+                } catch (Exception ex) {
+                    output.delete();
+                    statusLabel.setText("Decryption failed.");
+                    Throwable cause = ex.getCause() == null ? ex : ex.getCause();
+                    JOptionPane.showMessageDialog(FinanceTracker.this, "Could not decrypt " + name + ": " + cause.getMessage());
+                }
+            }
+        }.execute();
     }
     
-    private void exportCSV() {
+    // Typed columnar export of the saved transactions, archived years included,
+    // streamed from the database off the EDT
+    private void exportColumnar(ColumnarExport.Format format) {
         JFileChooser fileChooser = new JFileChooser();
-        if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-            try (FileWriter fw = new FileWriter(fileChooser.getSelectedFile())) {
-                fw.write("Date,Type,Category,Amount,Description\n");
-                for (Transaction t : transactions) {
-                    fw.write(String.format("%s,%s,%s,%.2f,%s\n", t.getDate(), t.getType(), t.getCategory(), t.getAmount(), t.toTableRow()[4]));
+        fileChooser.setSelectedFile(new File("transactions" + format.extension));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = exportTarget(fileChooser.getSelectedFile());
+        statusLabel.setText("Exporting " + file.getName() + "...");
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() throws Exception {
+                try (Connection conn = getConnection()) {
+                    return ColumnarExport.exportTransactions(conn, archive, openExport(file), format);
                 }
-                fw.flush();
-                JOptionPane.showMessageDialog(this, "CSV exported successfully.");
-            } catch (IOException ex) {
-                JOptionPane.showMessageDialog(this, "Error exporting CSV: " + ex.getMessage());
             }
-        }
+            
+            @Override
+            protected void done() {
+                try {
+                    statusLabel.setText("Exported " + get() + " transactions to " + file.getName() + ".");
+                } catch (Exception ex) {
+                    statusLabel.setText("Export failed.");
+                    JOptionPane.showMessageDialog(FinanceTracker.this, "Error exporting " + file.getName() + ": " + ex.getMessage());
+                }
+            }
+        }.execute();
     }
     
     private void importCSV() {
+        if (rejectOnReplica()) return;
         JFileChooser fileChooser = new JFileChooser();
         if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             try (Scanner scanner = new Scanner(fileChooser.getSelectedFile())) {
-                transactions.clear();
-                transactionModel.setRowCount(0);
+                List<Transaction> imported = new ArrayList<>();
                 if (scanner.hasNextLine()) scanner.nextLine(); // skip header
                 while (scanner.hasNextLine()) {
                     String line = scanner.nextLine();
@@ -998,14 +3523,17 @@ public class FinanceTracker extends JFrame {
                     if (parts.length >= 5) {
                         LocalDate date = LocalDate.parse(parts[0]);
                         String type = parts[1];
-                        String category = parts[2];
                         double amount = Double.parseDouble(parts[3]);
                         String description = parts[4];
-                        Transaction t = new Transaction(amount, type, category, date, description);
-                        transactions.add(t);
-                        transactionModel.addRow(t.toTableRow());
+                        String category = autoCategory(parts[2], description);
+                        String currency = parts.length >= 6 ? parts[5].trim() : FxRates.DEFAULT_CURRENCY;
+                        Transaction t = new Transaction(amount, type, category, date, description, currency);
+                        imported.add(t);
                     }
                 }
+                // Scored against the history being replaced; the reset then retrains on the import
+                recordAlerts(anomalies.observeAll(imported, fxRates.converterTo(reportingCurrency)));
+                transactions.replaceAll(imported);
                 JOptionPane.showMessageDialog(this, "CSV imported successfully.");
             } catch (Exception ex) {
                 JOptionPane.showMessageDialog(this, "Error importing CSV: " + ex.getMessage());
@@ -1013,14 +3541,138 @@ public class FinanceTracker extends JFrame {
         }
     }
     
+    // Imports only rows whose fingerprint has not been seen before. Most rows of
+    // an overlapping statement are rejected by a single hash and Bloom probe;
+    // only Bloom hits are verified against the persisted index, in batches.
+    private void importCSVIncremental() {
+        if (rejectOnReplica()) return;
+        JFileChooser fileChooser = new JFileChooser();
+        if (fileChooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        try (Connection conn = getConnection();
+             BufferedReader reader = new BufferedReader(new FileReader(fileChooser.getSelectedFile()))) {
+            ensureImportBloom(conn);
+
+            List<Transaction> fresh = new ArrayList<>();
+            List<Long> freshHashes = new ArrayList<>();
+            List<Transaction> candidates = new ArrayList<>();
+            List<Long> candidateHashes = new ArrayList<>();
+            Map<Long, Integer> ordinals = new HashMap<>();
+            int skipped = 0;
+
+            String line = reader.readLine(); // skip header
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (parts.length < 5) continue;
+                LocalDate date = LocalDate.parse(parts[0]);
+                double amount = Double.parseDouble(parts[3]);
+                String currency = parts.length >= 6 ? parts[5].trim() : FxRates.DEFAULT_CURRENCY;
+                Transaction t = new Transaction(amount, parts[1], autoCategory(parts[2], parts[4]), date, parts[4], currency);
+
+                long base = ImportFingerprints.baseHash(date, amount, parts[4]);
+                long hash = ImportFingerprints.fingerprint(base, ordinals.merge(base, 1, Integer::sum) - 1);
+                if (importBloom.mightContain(hash)) {
+                    candidates.add(t);
+                    candidateHashes.add(hash);
+                } else {
+                    fresh.add(t);
+                    freshHashes.add(hash);
+                }
+            }
+
+            // Bloom hits are mostly true duplicates; confirm against the index
+            try (PreparedStatement lookup = conn.prepareStatement(
+                     "SELECT hash FROM import_fingerprints WHERE hash IN ("
+                     + String.join(",", Collections.nCopies(IMPORT_LOOKUP_BATCH, "?")) + ")")) {
+                for (int start = 0; start < candidates.size(); start += IMPORT_LOOKUP_BATCH) {
+                    int end = Math.min(start + IMPORT_LOOKUP_BATCH, candidates.size());
+                    for (int i = 0; i < IMPORT_LOOKUP_BATCH; i++) {
+                        // Pad the final chunk by repeating its first hash
+                        lookup.setLong(i + 1, candidateHashes.get(start + i < end ? start + i : start));
+                    }
+                    Set<Long> known = new HashSet<>();
+                    try (ResultSet rs = lookup.executeQuery()) {
+                        while (rs.next()) known.add(rs.getLong(1));
+                    }
+                    for (int i = start; i < end; i++) {
+                        if (known.contains(candidateHashes.get(i))) {
+                            skipped++;
+                        } else {
+                            fresh.add(candidates.get(i));
+                            freshHashes.add(candidateHashes.get(i));
+                        }
+                    }
+                }
+            }
+
+            conn.setAutoCommit(false);
+            try (PreparedStatement insert = conn.prepareStatement(
+                     "INSERT INTO transactions(date, type, category, amount, description, currency) VALUES (?, ?, ?, ?, ?, ?)");
+                 PreparedStatement index = conn.prepareStatement(
+                     "INSERT OR IGNORE INTO import_fingerprints(hash) VALUES (?)")) {
+                for (int i = 0; i < fresh.size(); i++) {
+                    Transaction t = fresh.get(i);
+                    insert.setString(1, t.getDate().toString());
+                    insert.setString(2, t.getType());
+                    insert.setString(3, t.getCategory());
+                    insert.setDouble(4, t.getAmount());
+                    insert.setString(5, t.toTableRow()[4].toString());
+                    insert.setString(6, t.getCurrency());
+                    insert.addBatch();
+                    index.setLong(1, freshHashes.get(i));
+                    index.addBatch();
+                    if ((i + 1) % IMPORT_LOOKUP_BATCH == 0) {
+                        insert.executeBatch();
+                        index.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+                index.executeBatch();
+                int lastId = fresh.isEmpty() ? 0 : lastTransactionId(conn);
+                conn.commit();
+                assignInsertedIds(fresh, lastId);
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            }
+
+            for (int i = 0; i < fresh.size(); i++) {
+                importBloom.put(freshHashes.get(i));
+            }
+            transactions.addAll(fresh);
+            transactions.markSaved();
+            if (importBloom.isFull()) importBloom = null; // resized from the index on next import
+
+            JOptionPane.showMessageDialog(this, String.format("Imported %d new transactions, skipped %d duplicates.", fresh.size(), skipped));
+        } catch (Exception ex) {
+            JOptionPane.showMessageDialog(this, "Error importing CSV: " + ex.getMessage());
+        }
+    }
+
+    private void ensureImportBloom(Connection conn) throws SQLException {
+        if (importBloom != null) return;
+        try (Statement stmt = conn.createStatement()) {
+            long count;
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM import_fingerprints")) {
+                count = rs.next() ? rs.getLong(1) : 0;
+            }
+            BloomFilter bloom = new BloomFilter(Math.max(count * 2, 1 << 16), 0.01);
+            try (ResultSet rs = stmt.executeQuery("SELECT hash FROM import_fingerprints")) {
+                while (rs.next()) bloom.put(rs.getLong(1));
+            }
+            importBloom = bloom;
+        }
+    }
+    
     // A simple PDF export that writes plain text to a file with a .pdf extension.
     private void exportPDF() {
         JFileChooser fileChooser = new JFileChooser();
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
-            try (FileWriter fw = new FileWriter(fileChooser.getSelectedFile())) {
+            File file = exportTarget(fileChooser.getSelectedFile());
+            try (Writer fw = new BufferedWriter(new OutputStreamWriter(openExport(file)))) {
                 fw.write("Spending Report\n\n");
-                for (Transaction t : transactions) {
-                    fw.write(String.format("%s | %s | %s | $%.2f | %s\n", t.getDate(), t.getType(), t.getCategory(), t.getAmount(), t.toTableRow()[4]));
+                for (Transaction t : transactions.snapshot()) {
+                    fw.write(String.format("%s | %s | %s | %s | %s\n", t.getDate(), t.getType(), t.getCategory(), FxRates.format(t.getAmount(), t.getCurrency()), t.toTableRow()[4]));
                 }
                 fw.flush();
                 JOptionPane.showMessageDialog(this, "PDF exported successfully (as plain text).");
@@ -1030,121 +3682,393 @@ public class FinanceTracker extends JFrame {
         }
     }
     
-    private void saveData() {
-        try (Connection conn = getConnection()) {
-            conn.setAutoCommit(false);
-            Statement stmt = conn.createStatement();
-            
-            // Clear existing records
-            stmt.executeUpdate("DELETE FROM transactions");
-            stmt.executeUpdate("DELETE FROM budgets");
-            stmt.executeUpdate("DELETE FROM reminders");
-            stmt.executeUpdate("DELETE FROM categories");
-            
-            // Save Transactions
-            PreparedStatement ps = conn.prepareStatement(
-                "INSERT INTO transactions(date, type, category, amount, description) VALUES (?, ?, ?, ?, ?)");
-            for (Transaction t : transactions) {
-                ps.setString(1, t.getDate().toString());
-                ps.setString(2, t.getType());
-                ps.setString(3, t.getCategory());
-                ps.setDouble(4, t.getAmount());
-                // Assuming description is stored in the 5th column of toTableRow()
-                ps.setString(5, t.toTableRow()[4].toString());
-                ps.addBatch();
-            }
-            ps.executeBatch();
-            
-            // Save Budgets
-            ps = conn.prepareStatement(
-            	    "INSERT INTO budgets(category, limit_amount, spent) VALUES (?, ?, ?)");
-            	for (Budget b : budgets.values()) {
-            	    ps.setString(1, b.getCategory());
-            	    ps.setDouble(2, b.getLimit());  // getLimit() now corresponds to limit_amount
-            	    ps.setDouble(3, b.getSpent());
-            	    ps.addBatch();
-            	}
-            	ps.executeBatch();
+    // Moves every transaction dated before the chosen year into per-year
+    // partitions. Each year is a two-phase step: the partition is prepared on
+    // disk, the hot rows are deleted together with a pending archive_log entry,
+    // and only then is the partition published.
+    private void archiveClosedYears() {
+        if (rejectOnReplica()) return;
+        String input = JOptionPane.showInputDialog(this, "Archive all transactions dated before year:", LocalDate.now().getYear());
+        if (input == null || input.trim().isEmpty()) return;
+        int cutoff;
+        try {
+            cutoff = Integer.parseInt(input.trim());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid year.");
+            return;
+        }
+        if (cutoff > LocalDate.now().getYear()) {
+            JOptionPane.showMessageDialog(this, "Only closed years can be archived.");
+            return;
+        }
 
+        new SwingWorker<Integer, String>() {
+            private Map<String, Map<String, Long>> openings;
             
-            // Save Reminders
-            ps = conn.prepareStatement(
-                "INSERT INTO reminders(dueDate, description, paid) VALUES (?, ?, ?)");
-            for (Reminder r : reminders) {
-                ps.setString(1, r.getDueDate().toString());
-                ps.setString(2, r.getDescription());
-                ps.setInt(3, r.isPaid() ? 1 : 0);
-                ps.addBatch();
-            }
-            ps.executeBatch();
-            
-            // Save Categories
-            ps = conn.prepareStatement(
-                "INSERT INTO categories(category) VALUES (?)");
-            for (String cat : categories) {
-                ps.setString(1, cat);
-                ps.addBatch();
-            }
-            ps.executeBatch();
-            
-            conn.commit();
+            @Override
+            protected Integer doInBackground() throws Exception {
+                int archived = 0;
+                try (Connection conn = getConnection()) {
+                    List<Integer> years = new ArrayList<>();
+                    try (PreparedStatement ps = conn.prepareStatement(
+                             "SELECT DISTINCT CAST(substr(date, 1, 4) AS INTEGER) FROM transactions WHERE date < ? ORDER BY 1")) {
+                        ps.setString(1, LocalDate.of(cutoff, 1, 1).toString());
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) years.add(rs.getInt(1));
+                        }
+                    }
+
+                    for (int year : years) {
+                        publish("Archiving " + year + "...");
+                        String from = LocalDate.of(year, 1, 1).toString();
+                        String to = LocalDate.of(year + 1, 1, 1).toString();
+                        List<Transaction> rows = new ArrayList<>();
+                        try {
+                            SharedDatabase.withRetry(FinanceTracker.this::getConnection, c -> {
+                                rows.clear();
+                                c.setAutoCommit(false);
+                                // The log row is written first so the transaction holds the write
+                                // lock before reading: no other window can add or edit a row of
+                                // this year between the read and the delete.
+                                try (PreparedStatement log = c.prepareStatement(
+                                         "INSERT OR REPLACE INTO archive_log(year, state, row_count, archived_at) VALUES (?, 'pending', 0, ?)")) {
+                                    log.setInt(1, year);
+                                    log.setString(2, LocalDateTime.now().toString());
+                                    log.executeUpdate();
+                                }
+                                try (PreparedStatement ps = c.prepareStatement(
+                                         "SELECT date, type, category, amount, description, currency, account,"
+                                         + " (SELECT group_concat(g.name, char(31)) FROM transaction_tags tt JOIN tags g ON g.id = tt.tag_id"
+                                         + " WHERE tt.transaction_id = transactions.id) AS tag_names"
+                                         + " FROM transactions WHERE date >= ? AND date < ? ORDER BY date")) {
+                                    ps.setString(1, from);
+                                    ps.setString(2, to);
+                                    try (ResultSet rs = ps.executeQuery()) {
+                                        while (rs.next()) {
+                                            Transaction t = new Transaction(rs.getDouble("amount"), rs.getString("type"), rs.getString("category"),
+                                                    LocalDate.parse(rs.getString("date")), rs.getString("description"), rs.getString("currency"));
+                                            t.setAccount(rs.getString("account"));
+                                            String tagNames = rs.getString("tag_names");
+                                            if (tagNames != null) t.setArchivedTags(Arrays.asList(tagNames.split("\u001f")));
+                                            rows.add(t);
+                                        }
+                                    }
+                                }
+                                try {
+                                    archive.preparePartition(year, rows);
+                                } catch (IOException ex) {
+                                    throw new SQLException("Could not write the " + year + " partition: " + ex.getMessage(), ex);
+                                }
+
+                                // Archived rows keep no ids, so their tag names go into the partition
+                                // and a trigger drops the tag links with the rows.
+                                // Their totals move into the accounts' opening balances in the same commit.
+                                try (PreparedStatement opening = c.prepareStatement(
+                                         "INSERT INTO account_openings(account, currency, cents)"
+                                         + " SELECT account, currency, SUM(CASE WHEN type = 'Income' THEN ROUND(amount * 100) ELSE -ROUND(amount * 100) END)"
+                                         + " FROM transactions WHERE date >= ? AND date < ? GROUP BY account, currency"
+                                         + " ON CONFLICT(account, currency) DO UPDATE SET cents = cents + excluded.cents");
+                                     PreparedStatement delete = c.prepareStatement("DELETE FROM transactions WHERE date >= ? AND date < ?");
+                                     PreparedStatement count = c.prepareStatement("UPDATE archive_log SET row_count = ? WHERE year = ?")) {
+                                    opening.setString(1, from);
+                                    opening.setString(2, to);
+                                    opening.executeUpdate();
+                                    delete.setString(1, from);
+                                    delete.setString(2, to);
+                                    delete.executeUpdate();
+                                    count.setInt(1, rows.size());
+                                    count.setInt(2, year);
+                                    count.executeUpdate();
+                                }
+                                c.commit();
+                                return null;
+                            });
+                        } catch (SQLException ex) {
+                            archive.discardPrepared();
+                            throw ex;
+                        }
+
+                        archive.commitPartition(year);
+                        try (PreparedStatement done = conn.prepareStatement("UPDATE archive_log SET state = 'done' WHERE year = ?")) {
+                            done.setInt(1, year);
+                            done.executeUpdate();
+                        }
+                        archived += rows.size();
+                    }
+                    openings = readOpenings(conn);
+                }
+                return archived;
+            }
+
+            @Override
+            protected void process(List<String> chunks) {
+                statusLabel.setText(chunks.get(chunks.size() - 1));
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    int archived = get();
+                    // Archived rows now live in partitions; keep only hot rows in memory.
+                    // Unsaved rows were not archived and stay until Save writes them.
+                    List<Transaction> hot = new ArrayList<>();
+                    for (Transaction t : transactions.snapshot()) {
+                        if (t.getDate().getYear() >= cutoff || t.getId() == 0) hot.add(t);
+                    }
+                    ledger.setOpenings(openings);
+                    transactions.reset(hot);
+                    invalidateBudgetSpending();
+                    statusLabel.setText("Archived " + archived + " transactions dated before " + cutoff + ".");
+                } catch (Exception ex) {
+                    statusLabel.setText("Archiving failed: " + ex.getMessage());
+                }
+            }
+        }.execute();
+    }
+    
+    // Finishes archive steps interrupted between the hot-table delete and
+    // publishing the partition, and drops partitions that were never committed
+    private void recoverArchive() {
+        try (Connection conn = getConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT year FROM archive_log WHERE state = 'pending'")) {
+            while (rs.next()) {
+                archive.commitPartition(rs.getInt(1));
+            }
+            stmt.executeUpdate("UPDATE archive_log SET state = 'done' WHERE state = 'pending'");
+            archive.discardPrepared();
+        } catch (SQLException | IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+    
+    private void loadCurrencySettings() {
+        try (Connection conn = getConnection()) {
+            fxRates.load(conn);
+            try (Statement stmt = conn.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT value FROM settings WHERE key = 'reporting_currency'")) {
+                if (rs.next()) reportingCurrency = rs.getString(1);
+            }
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+    }
+    
+    private void importFxRates() {
+        JFileChooser fileChooser = new JFileChooser();
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            try (Connection conn = getConnection()) {
+                int count = fxRates.importCsv(conn, fileChooser.getSelectedFile());
+                invalidateBudgetSpending();
+                JOptionPane.showMessageDialog(this, "Imported " + count + " exchange rates.");
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(this, "Error importing FX rates (expected date,base,quote,rate): " + ex.getMessage());
+            }
+        }
+    }
+    
+    private void chooseReportingCurrency() {
+        String input = JOptionPane.showInputDialog(this, "Reporting currency (ISO code):", reportingCurrency);
+        if (input == null || input.trim().isEmpty()) return;
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(
+                 "INSERT OR REPLACE INTO settings(key, value) VALUES ('reporting_currency', ?)")) {
+            ps.setString(1, input.trim().toUpperCase());
+            ps.executeUpdate();
+            reportingCurrency = input.trim().toUpperCase();
+            invalidateBudgetSpending();
+        } catch (SQLException ex) {
+            JOptionPane.showMessageDialog(this, "Error saving reporting currency: " + ex.getMessage());
+        }
+    }
+    
+    // Merges this window's unsaved data into the database. Other instances may
+    // be writing the same file, so nothing is cleared and rewritten: new
+    // transactions are inserted, budgets upserted by category, reminders added
+    // unless the same one exists and missing categories added.
+    private void saveData() {
+        if (rejectOnReplica()) return;
+        List<Transaction> unsaved = new ArrayList<>();
+        for (Transaction t : transactions.snapshot()) {
+            if (t.getId() == 0) unsaved.add(t);
+        }
+        // Only budgets changed here and reminders added here are written; the rest
+        // are as loaded, and writing them back would undo edits made elsewhere
+        List<Budget> changedBudgets = new ArrayList<>();
+        for (Budget b : budgets.values()) {
+            if (b.isModified()) changedBudgets.add(b);
+        }
+        List<Reminder> newReminders = new ArrayList<>();
+        for (Reminder r : reminders) {
+            if (r.getId() == 0) newReminders.add(r);
+        }
+        // Filled inside the transaction, applied once it commits
+        Map<Object, long[]> stored = new IdentityHashMap<>();
+        List<Budget> conflicts = new ArrayList<>();
+        try {
+            int lastId = SharedDatabase.withRetry(this::getConnection, conn -> {
+                stored.clear();
+                conflicts.clear();
+                conn.setAutoCommit(false);
+                try (PreparedStatement insert = conn.prepareStatement(
+                         "INSERT INTO transactions(date, type, category, amount, description, currency, account) VALUES (?, ?, ?, ?, ?, ?, ?)");
+                     PreparedStatement insertBudget = conn.prepareStatement(
+                         "INSERT INTO budgets(category, limit_amount, spent, parent, period) VALUES (?, ?, ?, ?, ?)"
+                         + " ON CONFLICT(category) DO NOTHING");
+                     PreparedStatement updateBudget = conn.prepareStatement(
+                         "UPDATE budgets SET category = ?, limit_amount = ?, spent = ?, parent = ?, period = ?"
+                         + " WHERE id = ? AND version = ?");
+                     PreparedStatement reminder = conn.prepareStatement(
+                         "INSERT INTO reminders(due_date, description, status) SELECT ?, ?, ?"
+                         + " WHERE NOT EXISTS (SELECT 1 FROM reminders WHERE due_date = ? AND description IS ?)");
+                     PreparedStatement category = conn.prepareStatement(
+                         "INSERT OR IGNORE INTO categories(category) VALUES (?)")) {
+                    
+                    // Save Transactions
+                    for (Transaction t : unsaved) {
+                        insert.setString(1, t.getDate().toString());
+                        insert.setString(2, t.getType());
+                        insert.setString(3, t.getCategory());
+                        insert.setDouble(4, t.getAmount());
+                        insert.setString(5, t.toTableRow()[4].toString());
+                        insert.setString(6, t.getCurrency());
+                        insert.setString(7, t.getAccount());
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                    int last = unsaved.isEmpty() ? 0 : lastTransactionId(conn);
+                    
+                    // Save Budgets; a new one whose category now exists, or a changed one
+                    // whose row moved on or went away, is a conflict and is skipped
+                    for (Budget b : changedBudgets) {
+                        PreparedStatement budget = b.getId() == 0 ? insertBudget : updateBudget;
+                        budget.setString(1, b.getCategory());
+                        budget.setDouble(2, b.getLimit());  // getLimit() now corresponds to limit_amount
+                        budget.setDouble(3, b.getSpent());
+                        budget.setString(4, b.getParent());
+                        budget.setString(5, b.getPeriod().toString());
+                        if (b.getId() != 0) {
+                            budget.setInt(6, b.getId());
+                            budget.setLong(7, b.getVersion());
+                        }
+                        if (budget.executeUpdate() == 0) {
+                            conflicts.add(b);
+                            continue;
+                        }
+                        stored.put(b, storedRow(conn, "SELECT id, version FROM budgets WHERE category = ?", b.getCategory()));
+                    }
+                    
+                    // Save Reminders
+                    for (Reminder r : newReminders) {
+                        reminder.setString(1, r.getDueDate().toString());
+                        reminder.setString(2, r.getDescription());
+                        reminder.setString(3, r.isPaid() ? "Paid" : "Pending");
+                        reminder.setString(4, r.getDueDate().toString());
+                        reminder.setString(5, r.getDescription());
+                        reminder.executeUpdate();
+                        stored.put(r, storedRow(conn, "SELECT id, version FROM reminders WHERE due_date = ? AND description IS ? ORDER BY id LIMIT 1",
+                                r.getDueDate().toString(), r.getDescription()));
+                    }
+                    
+                    // Save Categories
+                    for (String cat : categories) {
+                        category.setString(1, cat);
+                        category.addBatch();
+                    }
+                    category.executeBatch();
+                    
+                    conn.commit();
+                    return last;
+                } catch (SQLException ex) {
+                    conn.rollback();
+                    throw ex;
+                }
+            });
+            assignInsertedIds(unsaved, lastId);
+            if (!unsaved.isEmpty()) transactions.markSaved();
+            for (Budget b : changedBudgets) {
+                long[] row = stored.get(b);
+                if (row != null) b.setStored((int) row[0], row[1]);
+            }
+            for (Reminder r : newReminders) {
+                long[] row = stored.get(r);
+                if (row != null) r.setStored((int) row[0], row[1]);
+            }
             JOptionPane.showMessageDialog(this, "Data saved to database successfully.");
+            if (!conflicts.isEmpty()) dropConflictingBudgets(conflicts);
         } catch (SQLException ex) {
             JOptionPane.showMessageDialog(this, "Error saving data to database: " + ex.getMessage());
         }
     }
     
+    // Id and version of the row a save just wrote, read inside its transaction
+    private static long[] storedRow(Connection conn, String sql, String... keys) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < keys.length; i++) stmt.setString(i + 1, keys[i]);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? new long[]{rs.getLong(1), rs.getLong(2)} : null;
+            }
+        }
+    }
+    
+    // Budget changes a save skipped give way to the rows as they are now
+    private void dropConflictingBudgets(List<Budget> conflicts) throws SQLException {
+        List<String> names = new ArrayList<>();
+        for (Budget b : conflicts) {
+            names.add(b.getCategory());
+            budgets.remove(b.getCategory());
+            budgetWindows.remove(b.getCategory());
+        }
+        try (Connection conn = getConnection()) {
+            mergeBudgets(readBudgets(conn));
+            changes.publish(ChangeEvent.reset(ChangeEvent.Entity.BUDGET, readBudgetRows(conn), 0));
+        }
+        reportConflict("The budget for " + String.join(", ", names));
+    }
+    
+    // Called inside the write transaction that inserted rows. AUTOINCREMENT
+    // ids only grow and the transaction holds the write lock, so its rows
+    // got consecutive ids ending at the current maximum.
+    private static int lastTransactionId(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(id) FROM transactions")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+    
+    // Gives rows their database ids once the insert has committed, so later
+    // saves and the change poll recognise them
+    private static void assignInsertedIds(List<Transaction> inserted, int lastId) {
+        for (int i = 0; i < inserted.size(); i++) inserted.get(i).setId(lastId - inserted.size() + 1 + i);
+    }
+    
     private void loadData() {
+        if (rejectOnReplica()) return;
         try (Connection conn = getConnection();
              Statement stmt = conn.createStatement()) {
              
              // Load Transactions
-             transactions.clear();
-             transactionModel.setRowCount(0);
-             ResultSet rs = stmt.executeQuery("SELECT date, type, category, amount, description FROM transactions");
-             while (rs.next()) {
-                 LocalDate date = LocalDate.parse(rs.getString("date"));
-                 String type = rs.getString("type");
-                 String category = rs.getString("category");
-                 double amount = rs.getDouble("amount");
-                 String description = rs.getString("description");
-                 Transaction t = new Transaction(amount, type, category, date, description);
-                 transactions.add(t);
-                 transactionModel.addRow(t.toTableRow());
-             }
+             long seq = transactionSeq(conn);
+             ledger.setOpenings(readOpenings(conn));
+             resetTransactions(readAllTransactions(conn), seq);
              
              // Load Budgets
              budgets.clear();
-             rs = stmt.executeQuery("SELECT category, limit_amount, spent FROM budgets");
-             while (rs.next()) {
-                 String category = rs.getString("category");
-                 double limit = rs.getDouble("limit_amount");
-                 double spent = rs.getDouble("spent");
-                 Budget b = new Budget(category, limit);
-                 if (spent > 0) {
-                     b.addExpense(spent);
-                 }
-                 budgets.put(category, b);
-             }
+             budgets.putAll(readBudgets(conn));
+             refreshBudgetPeriods();
 
              
              // Load Reminders
              reminders.clear();
              reminderModel.setRowCount(0);
-             rs = stmt.executeQuery("SELECT dueDate, description, paid FROM reminders");
-             while (rs.next()) {
-                 LocalDate dueDate = LocalDate.parse(rs.getString("dueDate"));
-                 String description = rs.getString("description");
-                 boolean paid = rs.getInt("paid") == 1;
-                 Reminder r = new Reminder(dueDate, description);
-                 if (paid) r.markPaid();
+             for (Reminder r : readReminders(conn)) {
                  reminders.add(r);
                  reminderModel.addRow(r.toTableRow());
              }
              
              // Load Categories
              categories.clear();
-             rs = stmt.executeQuery("SELECT category FROM categories");
+             ResultSet rs = stmt.executeQuery("SELECT category FROM categories");
              while (rs.next()) {
                  categories.add(rs.getString("category"));
              }
@@ -1158,30 +4082,62 @@ public class FinanceTracker extends JFrame {
     private void refreshBudgetTable(DefaultTableModel budgetModel) {
         budgetModel.setRowCount(0);
 
-        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:finance_tracker.db");
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT id, category, limit, spent, (limit - spent) AS remaining FROM budgets")) {
-            
+        try (Connection conn = getConnection()) {
+            for (Object[] row : readBudgetRows(conn)) budgetModel.addRow(row);
+        } catch (SQLException ex) {
+            JOptionPane.showMessageDialog(null, "Error loading budgets: " + ex.getMessage());
+        }
+    }
+    
+    private static List<Object[]> readBudgetRows(Connection conn) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, category, limit_amount, spent, (limit_amount - spent) AS remaining, parent, period, version FROM budgets")) {
             while (rs.next()) {
-                budgetModel.addRow(new Object[]{
+                rows.add(new Object[]{
                     rs.getInt("id"), 
                     rs.getString("category"),
-                    rs.getDouble("limit"),
+                    rs.getDouble("limit_amount"),
                     rs.getDouble("spent"),
-                    rs.getDouble("remaining")
+                    rs.getDouble("remaining"),
+                    rs.getString("parent"),
+                    rs.getString("period"),
+                    rs.getLong("version")
                 });
             }
-        } catch (SQLException ex) {
-            JOptionPane.showMessageDialog(null, "Error loading budgets: " + ex.getMessage());
         }
+        return rows;
+    }
+    
+    // Spending is derived from the transactions for each budget's current period
+    private static List<Budget> readBudgets(Connection conn) throws SQLException {
+        List<Budget> loaded = new ArrayList<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, category, limit_amount, parent, period, version FROM budgets")) {
+            while (rs.next()) {
+                BudgetPeriod period;
+                try {
+                    period = BudgetPeriod.parse(rs.getString("period"));
+                } catch (IllegalArgumentException ex) {
+                    period = BudgetPeriod.LIFETIME;
+                }
+                Budget b = new Budget(rs.getString("category"), rs.getDouble("limit_amount"), rs.getString("parent"), period);
+                b.setStored(rs.getInt("id"), rs.getLong("version"));
+                loaded.add(b);
+            }
+        }
+        return loaded;
     }
     
     private void setupDailyReminderCheck() {
-        Timer timer = new Timer();
+        Timer timer = new Timer("reminder-check", true);
         timer.scheduleAtFixedRate(new TimerTask() {
             @Override
             public void run() {
-                checkReminders();
+                SwingUtilities.invokeLater(() -> {
+                    checkReminders();
+                    refreshBudgetPeriods();
+                });
             }
         }, 0, 1000 * 60 * 60 * 24); // Daily check
     }
@@ -1203,61 +4159,17 @@ public class FinanceTracker extends JFrame {
     }
     
     public static void main(String[] args) {
-        SwingUtilities.invokeLater(() -> {
-            try {
-                UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-            } catch (Exception ignored) {}
-            new FinanceTracker().setVisible(true);
-        });
-    }
-}
-
-class ChartPanel extends JPanel {
-    private Map<String, Double> categorySpending = new HashMap<>();
-    
-    public ChartPanel() {
-        setPreferredSize(new Dimension(600, 400));
-    }
-    
-    public void updateData(Map<String, Double> data) {
-        this.categorySpending = data;
-        repaint();
+        SwingUtilities.invokeLater(FinanceTracker::launch);
     }
     
-    @Override
-    protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        
-        // Check if there is data to draw
-        if (categorySpending.isEmpty()) {
-            g.drawString("No data available", 10, 10);
-            return;
-        }
-        
-        double max = categorySpending.values().stream()
-                        .mapToDouble(Double::doubleValue)
-                        .max()
-                        .orElse(1);
-        int width = getWidth();
-        int height = getHeight();
-        
-        // Prevent division by zero by ensuring the divisor is at least 1
-        int divisor = categorySpending.size() * 2;
-        if(divisor == 0) {
-            divisor = 1;
-        }
-        int barWidth = width / divisor;
-        
-        int i = 0;
-        for (Map.Entry<String, Double> entry : categorySpending.entrySet()) {
-            int barHeight = (int) ((entry.getValue() / max) * (height - 50));
-            int x = i * 2 * barWidth + barWidth;
-            int y = height - barHeight - 30;
-            g.setColor(Color.BLUE);
-            g.fillRect(x, y, barWidth, barHeight);
-            g.setColor(Color.BLACK);
-            g.drawString(entry.getKey(), x, height - 10);
-            i++;
-        }
+    // Must run on the EDT. Shows the frame before any database work starts.
+    static FinanceTracker launch() {
+        try {
+            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+        } catch (Exception ignored) {}
+        FinanceTracker app = new FinanceTracker();
+        app.setVisible(true);
+        app.initializeDatabase();
+        return app;
     }
 }
@@ -0,0 +1,125 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// Just enough of a FlatBuffers encoder for Arrow IPC metadata. Like the
+// reference builder it fills the buffer back to front: children are written
+// before the tables that point at them, so every offset refers forward.
+// Offsets handed around are distances from the end of the buffer.
+class FlatBufferBuilder {
+    private ByteBuffer bb = newBuffer(256);
+    private int space = 256;       // bytes still free at the front
+    private int minAlign = 1;
+    private int[] vtable;          // field slot -> offset of its value, 0 when absent
+    private int objectStart;
+
+    private static ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public int offset() { return bb.capacity() - space; }
+
+    // Pads so that after writing `additional` bytes the offset is `size`-aligned
+    private void prep(int size, int additional) {
+        minAlign = Math.max(minAlign, size);
+        int pad = (-(bb.capacity() - space + additional)) & (size - 1);
+        while (space < pad + size + additional) {
+            int old = bb.capacity();
+            ByteBuffer grown = newBuffer(old * 2);
+            grown.position(old);
+            grown.put(bb.array(), 0, old);
+            bb = grown;
+            space += old;
+        }
+        for (int i = 0; i < pad; i++) bb.put(--space, (byte) 0);
+    }
+
+    private void putByte(byte v) { bb.put(space -= 1, v); }
+    private void putShort(short v) { bb.putShort(space -= 2, v); }
+    private void putInt(int v) { bb.putInt(space -= 4, v); }
+    private void putLong(long v) { bb.putLong(space -= 8, v); }
+
+    public void addByte(byte v) { prep(1, 0); putByte(v); }
+    public void addShort(short v) { prep(2, 0); putShort(v); }
+    public void addInt(int v) { prep(4, 0); putInt(v); }
+    public void addLong(long v) { prep(8, 0); putLong(v); }
+
+    // A uoffset to something already written
+    public void addOffset(int target) {
+        prep(4, 0);
+        putInt(offset() - target + 4);
+    }
+
+    public int createString(String s) {
+        byte[] utf8 = s.getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        prep(4, utf8.length + 1);
+        putByte((byte) 0);
+        space -= utf8.length;
+        bb.position(space);
+        bb.put(utf8);
+        putInt(utf8.length);
+        return offset();
+    }
+
+    public int createOffsetVector(int[] targets) {
+        prep(4, 4 * targets.length);
+        for (int i = targets.length - 1; i >= 0; i--) addOffset(targets[i]);
+        return endVector(targets.length);
+    }
+
+    // Vector of structs made of longs, e.g. Arrow's Block, FieldNode and Buffer
+    public int createStructVector(long[][] structs, int structSize) {
+        prep(4, structSize * structs.length);
+        prep(8, structSize * structs.length);
+        for (int i = structs.length - 1; i >= 0; i--) {
+            long[] fields = structs[i];
+            for (int f = fields.length - 1; f >= 0; f--) putLong(fields[f]);
+        }
+        return endVector(structs.length);
+    }
+
+    private int endVector(int length) {
+        addInt(length);
+        return offset();
+    }
+
+    public void startTable(int fields) {
+        vtable = new int[fields];
+        objectStart = offset();
+    }
+
+    public void addByte(int slot, byte v) { addByte(v); vtable[slot] = offset(); }
+    public void addShort(int slot, short v) { addShort(v); vtable[slot] = offset(); }
+    public void addInt(int slot, int v) { addInt(v); vtable[slot] = offset(); }
+    public void addLong(int slot, long v) { addLong(v); vtable[slot] = offset(); }
+    public void addOffset(int slot, int target) { addOffset(target); vtable[slot] = offset(); }
+
+    // An inline struct of longs (Arrow's Block); must be the last field added before endTable
+    public void addStruct(int slot, long... fields) {
+        prep(8, 8 * fields.length);
+        for (int f = fields.length - 1; f >= 0; f--) putLong(fields[f]);
+        vtable[slot] = offset();
+    }
+
+    public int endTable() {
+        addInt(0); // soffset to the vtable, patched below
+        int object = offset();
+        int fields = vtable.length;
+        while (fields > 0 && vtable[fields - 1] == 0) fields--;
+        prep(2, 2 * (fields + 2));
+        for (int i = fields - 1; i >= 0; i--) putShort((short) (vtable[i] == 0 ? 0 : object - vtable[i]));
+        putShort((short) (object - objectStart));
+        putShort((short) ((fields + 2) * 2));
+        int vt = offset();
+        bb.putInt(bb.capacity() - object, vt - object);
+        vtable = null;
+        return object;
+    }
+
+    // Writes the root offset and returns the finished buffer
+    public byte[] finish(int root) {
+        prep(minAlign, 4);
+        addOffset(root);
+        return Arrays.copyOfRange(bb.array(), space, bb.capacity());
+    }
+}
@@ -0,0 +1,168 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Date-indexed exchange rates backed by the fx_rates table. Currency codes are
+// interned to small ids when a Transaction is created, and a Converter holds
+// one sorted (epoch day, rate) series per source currency in primitive arrays
+// indexed by that id, so converting a row is an array index plus a binary
+// search instead of a map lookup.
+class FxRates {
+    static final String DEFAULT_CURRENCY = "USD";
+
+    private static final Map<String, Integer> IDS = new HashMap<>();
+    private static final List<String> CODES = new ArrayList<>();
+
+    // Series per "BASE/QUOTE": rate converts one unit of BASE into QUOTE
+    private final Map<String, int[]> days = new HashMap<>();
+    private final Map<String, double[]> rates = new HashMap<>();
+
+    static synchronized int currencyId(String code) {
+        return IDS.computeIfAbsent(code, c -> {
+            CODES.add(c);
+            return CODES.size() - 1;
+        });
+    }
+
+    static synchronized String currencyCode(int id) {
+        return CODES.get(id);
+    }
+
+    private static synchronized int currencyCount() {
+        return CODES.size();
+    }
+
+    static String format(double amount, String code) {
+        try {
+            String symbol = Currency.getInstance(code).getSymbol();
+            return symbol.equals(code) ? String.format("%s %.2f", code, amount) : String.format("%s%.2f", symbol, amount);
+        } catch (IllegalArgumentException ex) {
+            return String.format("%s %.2f", code, amount);
+        }
+    }
+
+    public synchronized void load(Connection conn) throws SQLException {
+        days.clear();
+        rates.clear();
+        Map<String, List<double[]>> series = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT base, quote, date, rate FROM fx_rates ORDER BY base, quote, date")) {
+            while (rs.next()) {
+                series.computeIfAbsent(rs.getString("base") + "/" + rs.getString("quote"), k -> new ArrayList<>())
+                      .add(new double[]{LocalDate.parse(rs.getString("date")).toEpochDay(), rs.getDouble("rate")});
+            }
+        }
+        for (Map.Entry<String, List<double[]>> e : series.entrySet()) {
+            List<double[]> points = e.getValue();
+            int[] d = new int[points.size()];
+            double[] r = new double[points.size()];
+            for (int i = 0; i < d.length; i++) {
+                d[i] = (int) points.get(i)[0];
+                r[i] = points.get(i)[1];
+            }
+            days.put(e.getKey(), d);
+            rates.put(e.getKey(), r);
+        }
+    }
+
+    // Imports "date,base,quote,rate" rows (with a header line) into fx_rates
+    public int importCsv(Connection conn, File file) throws IOException, SQLException {
+        int count = 0;
+        conn.setAutoCommit(false);
+        try (BufferedReader reader = new BufferedReader(new FileReader(file));
+             PreparedStatement ps = conn.prepareStatement(
+                 "INSERT OR REPLACE INTO fx_rates(base, quote, date, rate) VALUES (?, ?, ?, ?)")) {
+            String line = reader.readLine(); // skip header
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",");
+                if (parts.length < 4) continue;
+                ps.setString(1, parts[1].trim().toUpperCase());
+                ps.setString(2, parts[2].trim().toUpperCase());
+                ps.setString(3, LocalDate.parse(parts[0].trim()).toString());
+                ps.setDouble(4, Double.parseDouble(parts[3].trim()));
+                ps.addBatch();
+                if (++count % 1000 == 0) ps.executeBatch();
+            }
+            ps.executeBatch();
+            conn.commit();
+        } catch (IOException | SQLException | RuntimeException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        load(conn);
+        return count;
+    }
+
+    // Snapshot of the rates needed to convert every known currency into `target`.
+    // Direct pairs are used as-is and reverse pairs are inverted up front.
+    public synchronized Converter converterTo(String target) {
+        int targetId = currencyId(target);
+        for (String pair : days.keySet()) {
+            for (String code : pair.split("/")) currencyId(code);
+        }
+        int n = currencyCount();
+        int[][] d = new int[n][];
+        double[][] r = new double[n][];
+        for (int id = 0; id < n; id++) {
+            if (id == targetId) continue;
+            String code = currencyCode(id);
+            String direct = code + "/" + target, reverse = target + "/" + code;
+            if (days.containsKey(direct)) {
+                d[id] = days.get(direct);
+                r[id] = rates.get(direct);
+            } else if (days.containsKey(reverse)) {
+                d[id] = days.get(reverse);
+                double[] inverted = rates.get(reverse).clone();
+                for (int i = 0; i < inverted.length; i++) inverted[i] = 1 / inverted[i];
+                r[id] = inverted;
+            }
+        }
+        return new Converter(target, targetId, d, r);
+    }
+
+    static final class Converter {
+        private final String target;
+        private final int targetId;
+        private final int[][] days;
+        private final double[][] rates;
+
+        private Converter(String target, int targetId, int[][] days, double[][] rates) {
+            this.target = target;
+            this.targetId = targetId;
+            this.days = days;
+            this.rates = rates;
+        }
+
+        public String getTarget() { return target; }
+
+        // Uses the latest rate on or before the day (the earliest one for
+        // older dates); NaN when no rate exists for the currency.
+        public double convert(double amount, int currencyId, long epochDay) {
+            if (currencyId == targetId) return amount;
+            if (currencyId >= days.length || days[currencyId] == null) return Double.NaN;
+            int[] d = days[currencyId];
+            int i = Arrays.binarySearch(d, (int) epochDay);
+            if (i < 0) i = Math.max(0, -i - 2);
+            return amount * rates[currencyId][i];
+        }
+
+        public double convert(Transaction t) {
+            return convert(t.getAmount(), t.getCurrencyId(), t.getDate().toEpochDay());
+        }
+    }
+}
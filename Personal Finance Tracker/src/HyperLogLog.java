@@ -0,0 +1,75 @@
+import java.util.Arrays;
+
+// Mergeable distinct-count sketch. Each value's 64-bit hash picks one of
+// 2^12 registers, which keeps the longest run of leading zeros seen in the
+// rest of the hash. Merging takes the register-wise maximum, so sketches
+// built on separate partitions combine exactly as if built together.
+// Standard error is about 1.04 / sqrt(4096), or 1.6%, in 4 KiB.
+final class HyperLogLog {
+    private static final int PRECISION = 12;
+    private static final int REGISTERS = 1 << PRECISION;
+
+    private final byte[] registers = new byte[REGISTERS];
+    private long estimate = 0; // cached; -1 when registers changed since
+
+    void add(String value) {
+        long hash = hash(value);
+        int index = (int) (hash >>> (64 - PRECISION));
+        // The guard bit caps the rank when the remaining bits are all zero
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[index]) {
+            registers[index] = (byte) rank;
+            estimate = -1;
+        }
+    }
+
+    void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTERS; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+                estimate = -1;
+            }
+        }
+    }
+
+    HyperLogLog copy() {
+        HyperLogLog c = new HyperLogLog();
+        c.merge(this);
+        return c;
+    }
+
+    void clear() {
+        Arrays.fill(registers, (byte) 0);
+        estimate = 0;
+    }
+
+    // Harmonic-mean estimate, with linear counting while many registers are empty
+    long estimate() {
+        if (estimate >= 0) return estimate;
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += 1.0 / (1L << r);
+            if (r == 0) zeros++;
+        }
+        double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+        double e = alpha * REGISTERS * REGISTERS / sum;
+        if (e <= 2.5 * REGISTERS && zeros > 0) e = REGISTERS * Math.log((double) REGISTERS / zeros);
+        return estimate = Math.round(e);
+    }
+
+    // FNV-1a over the chars, then the MurmurHash3 finalizer to spread the bits
+    private static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
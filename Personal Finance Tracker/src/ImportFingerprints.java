@@ -0,0 +1,68 @@
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+// 64-bit fingerprints for imported statement rows. A row is identified by
+// its date, amount in cents, normalized description and its ordinal among
+// identical rows in the same file, so two genuine same-day coffees at the same
+// price survive a re-import while the overlapping month does not.
+final class ImportFingerprints {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ImportFingerprints() {}
+
+    // Lowercased with runs of whitespace folded to one space and the ends
+    // trimmed. Character.toLowerCase ignores the default locale, so a row
+    // fingerprints the same on every machine, and it maps char for char, so
+    // CategoryMatcher can apply the same folding while it scans.
+    public static String normalizeDescription(String description) {
+        if (description == null) return "";
+        StringBuilder sb = new StringBuilder(description.length());
+        boolean space = false;
+        for (int i = 0, n = description.length(); i < n; i++) {
+            char c = description.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+            } else {
+                if (space) sb.append(' ');
+                space = false;
+                sb.append(Character.toLowerCase(c));
+            }
+        }
+        return sb.toString();
+    }
+
+    // Fingerprint of a row before its ordinal is mixed in
+    public static long baseHash(LocalDate date, double amount, String description) {
+        long h = FNV_OFFSET;
+        h = mixLong(h, date.toEpochDay());
+        h = mixLong(h, Math.round(amount * 100));
+        for (byte b : normalizeDescription(description).getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    public static long fingerprint(long baseHash, int ordinal) {
+        return fmix64(baseHash + ordinal * 0x9e3779b97f4a7c15L);
+    }
+
+    private static long mixLong(long h, long v) {
+        for (int i = 0; i < 8; i++) {
+            h ^= (v >>> (i * 8)) & 0xff;
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    // MurmurHash3 finalizer, spreads FNV output across all 64 bits
+    static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
@@ -0,0 +1,30 @@
+import javax.swing.*;
+import java.awt.*;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// Tabbed pane that builds a tab's content the first time the tab is selected,
+// so only the initially visible tab is constructed before the first frame.
+class LazyTabbedPane extends JTabbedPane {
+    private final Map<Component, Supplier<? extends Component>> pending = new HashMap<>();
+
+    public LazyTabbedPane() {
+        addChangeListener(e -> build(getSelectedIndex()));
+    }
+
+    public void addLazyTab(String title, Supplier<? extends Component> factory) {
+        JPanel placeholder = new JPanel(new BorderLayout());
+        pending.put(placeholder, factory);
+        addTab(title, placeholder); // the first tab is selected, and so built, right away
+    }
+
+    private void build(int index) {
+        if (index < 0) return;
+        Component placeholder = getComponentAt(index);
+        Supplier<? extends Component> factory = pending.remove(placeholder);
+        if (factory == null) return;
+        ((JPanel) placeholder).add(factory.get(), BorderLayout.CENTER);
+        placeholder.revalidate();
+    }
+}
@@ -0,0 +1,193 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+// Running balances per account. Each account keeps one book per currency, so
+// amounts in different currencies never mix. A book holds a Fenwick tree of
+// signed cents per epoch day, which makes the balance at the end of any day a
+// prefix sum in O(log days). A back-dated insert, edit or delete changes one
+// day's slot instead of every later running total. Rows on the same day keep
+// their arrival order. A row's running balance is the prefix through the day
+// before, plus that day's rows up to and including it.
+//
+// Years moved to the cold archive are not held in memory. Their totals come
+// in as each book's opening balance, so dates inside archived years are not
+// answered exactly.
+final class Ledger {
+    static final String DEFAULT_ACCOUNT = "Main";
+
+    private final Map<String, Map<String, Book>> books = new TreeMap<>();
+    private Map<String, Map<String, Long>> openings = new HashMap<>();
+
+    private static final class Book {
+        final DaySums days = new DaySums();
+        final Map<Integer, List<Transaction>> sameDay = new HashMap<>();
+    }
+
+    // Fenwick tree over a window of epoch days that widens as dates arrive
+    // outside it. Widening at least doubles the window, so rebuilds from the
+    // plain per-day totals are amortized O(1) per new date.
+    private static final class DaySums {
+        private int base;                   // epoch day of slot 0
+        private long[] daily = new long[0]; // total per slot
+        private long[] tree = new long[1];  // 1-based Fenwick over daily
+        private long total;
+
+        void add(int day, long cents) {
+            if (daily.length == 0 || day < base || day >= base + daily.length) widen(day);
+            int slot = day - base;
+            daily[slot] += cents;
+            total += cents;
+            for (int i = slot + 1; i < tree.length; i += i & -i) tree[i] += cents;
+        }
+
+        // Sum of every day up to and including `day`
+        long through(int day) {
+            if (daily.length == 0 || day < base) return 0;
+            if (day >= base + daily.length) return total;
+            long sum = 0;
+            for (int i = day - base + 1; i > 0; i -= i & -i) sum += tree[i];
+            return sum;
+        }
+
+        private void widen(int day) {
+            int from = daily.length == 0 ? day : Math.min(base, day);
+            int to = daily.length == 0 ? day : Math.max(base + daily.length - 1, day);
+            int size = Math.max(64, Math.max(2 * daily.length, to - from + 1));
+            // Room on both sides, since back-dated and future rows are both common
+            int newBase = from - (size - (to - from + 1)) / 2;
+            long[] widened = new long[size];
+            if (daily.length > 0) System.arraycopy(daily, 0, widened, base - newBase, daily.length);
+            base = newBase;
+            daily = widened;
+            tree = new long[size + 1];
+            for (int i = 1; i <= size; i++) {
+                tree[i] += daily[i - 1];
+                int parent = i + (i & -i);
+                if (parent <= size) tree[parent] += tree[i];
+            }
+        }
+    }
+
+    // Income adds to an account, everything else draws on it
+    static long signedCents(Transaction t) {
+        long cents = Math.round(t.getAmount() * 100);
+        return "Income".equalsIgnoreCase(t.getType()) ? cents : -cents;
+    }
+
+    void reset(Collection<? extends Transaction> rows) {
+        books.clear();
+        for (Transaction t : rows) add(t);
+    }
+
+    // Balance per account and currency carried in from archived years
+    void setOpenings(Map<String, Map<String, Long>> openings) {
+        this.openings = openings;
+    }
+
+    void add(Transaction t) {
+        Book book = books.computeIfAbsent(t.getAccount(), a -> new TreeMap<>()).computeIfAbsent(t.getCurrency(), c -> new Book());
+        int day = (int) t.getDate().toEpochDay();
+        book.sameDay.computeIfAbsent(day, d -> new ArrayList<>()).add(t);
+        book.days.add(day, signedCents(t));
+    }
+
+    void remove(Transaction t) {
+        Book book = book(t.getAccount(), t.getCurrency());
+        int day = (int) t.getDate().toEpochDay();
+        List<Transaction> onDay = book == null ? null : book.sameDay.get(day);
+        if (onDay == null) return;
+        for (int i = 0; i < onDay.size(); i++) {
+            if (onDay.get(i) != t) continue;
+            onDay.remove(i);
+            if (onDay.isEmpty()) book.sameDay.remove(day);
+            book.days.add(day, -signedCents(t));
+            return;
+        }
+    }
+
+    // Keeps the ledger in step with one TransactionStore event
+    void apply(ChangeEvent e) {
+        switch (e.kind) {
+            case INSERT:
+                for (Transaction t : e.after(Transaction.class)) add(t);
+                break;
+            case UPDATE:
+                for (Transaction t : e.before(Transaction.class)) remove(t);
+                for (Transaction t : e.after(Transaction.class)) add(t);
+                break;
+            case DELETE:
+                for (Transaction t : e.before(Transaction.class)) remove(t);
+                break;
+            default:
+                reset(e.after(Transaction.class));
+        }
+    }
+
+    // Running balance of the row's account, in its currency, just after the row
+    long balanceAfter(Transaction t) {
+        Book book = book(t.getAccount(), t.getCurrency());
+        if (book == null) return opening(t.getAccount(), t.getCurrency());
+        int day = (int) t.getDate().toEpochDay();
+        long balance = opening(t.getAccount(), t.getCurrency()) + book.days.through(day - 1);
+        for (Transaction other : book.sameDay.getOrDefault(day, List.of())) {
+            balance += signedCents(other);
+            if (other == t) break;
+        }
+        return balance;
+    }
+
+    // Balance at the end of `date`
+    long balanceOn(String account, String currency, LocalDate date) {
+        Book book = book(account, currency);
+        long through = book == null ? 0 : book.days.through((int) date.toEpochDay());
+        return opening(account, currency) + through;
+    }
+
+    // Balance at the end of `date` for every account and currency seen
+    Map<String, Map<String, Long>> balancesOn(LocalDate date) {
+        Map<String, Map<String, Long>> balances = new TreeMap<>();
+        for (String account : accounts()) {
+            Set<String> currencies = new TreeSet<>();
+            if (books.containsKey(account)) currencies.addAll(books.get(account).keySet());
+            if (openings.containsKey(account)) currencies.addAll(openings.get(account).keySet());
+            for (String currency : currencies) {
+                balances.computeIfAbsent(account, a -> new TreeMap<>()).put(currency, balanceOn(account, currency, date));
+            }
+        }
+        return balances;
+    }
+
+    Set<String> accounts() {
+        Set<String> accounts = new TreeSet<>(books.keySet());
+        accounts.addAll(openings.keySet());
+        accounts.add(DEFAULT_ACCOUNT);
+        return accounts;
+    }
+
+    // Account names for a combo box, the default first
+    String[] accountChoices() {
+        Set<String> others = accounts();
+        others.remove(DEFAULT_ACCOUNT);
+        List<String> choices = new ArrayList<>(Arrays.asList(DEFAULT_ACCOUNT));
+        choices.addAll(others);
+        return choices.toArray(new String[0]);
+    }
+
+    private Book book(String account, String currency) {
+        Map<String, Book> byCurrency = books.get(account);
+        return byCurrency == null ? null : byCurrency.get(currency);
+    }
+
+    private long opening(String account, String currency) {
+        Map<String, Long> byCurrency = openings.get(account);
+        return byCurrency == null ? 0 : byCurrency.getOrDefault(currency, 0L);
+    }
+}
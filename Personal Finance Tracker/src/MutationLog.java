@@ -0,0 +1,388 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+// Append-only log of transaction mutations, kept as numbered segment files
+// in one directory. Every record gets the next log sequence number (LSN).
+// A SNAPSHOT record holds the whole store and always opens a new segment;
+// these checkpoints let a reader that fell behind the retained segments
+// start over from a full copy. Segments before the previous checkpoint are
+// deleted when a new one is written.
+//
+// Record layout: [int bodyLength][int crc32(body)] then the body
+// [long lsn][long commitMillis][long version][byte kind][int position]
+// [int count] and count transactions. Appends are not fsynced; a torn tail
+// is cut off when the log is reopened.
+class MutationLog implements AutoCloseable {
+    static final byte INSERT = 1, UPDATE = 2, DELETE = 3, SNAPSHOT = 4;
+    static final int HEADER = 8;
+    private static final long SEGMENT_BYTES = 4L << 20;
+
+    private final File dir;
+    // First LSN of each segment, with whether the segment opens with a checkpoint
+    private final TreeMap<Long, Boolean> segments = new TreeMap<>();
+    private FileChannel active;
+    private long activeFirstLsn;
+    private long activeEnd;
+    private long lastLsn;
+    private long lastCommitMillis;
+
+    MutationLog(File dir) throws IOException {
+        this.dir = dir;
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".seg"));
+        if (files != null) {
+            for (File f : files) {
+                long first = Long.parseLong(f.getName().substring(0, f.getName().length() - 4));
+                segments.put(first, opensWithCheckpoint(f));
+            }
+        }
+        if (!segments.isEmpty()) recoverTail();
+    }
+
+    // One decoded record; transactions are rebuilt with their database ids
+    static final class Record {
+        final long lsn;
+        final long commitMillis;
+        final long version;
+        final byte kind;
+        final int position;
+        final List<Transaction> rows;
+
+        Record(long lsn, long commitMillis, long version, byte kind, int position, List<Transaction> rows) {
+            this.lsn = lsn;
+            this.commitMillis = commitMillis;
+            this.version = version;
+            this.kind = kind;
+            this.position = position;
+            this.rows = rows;
+        }
+    }
+
+    // Logs one store event; RESET becomes a checkpoint. A bulk update or
+    // delete becomes one record per row under the event's version, deletes
+    // from the last row back so each position holds when applied in order.
+    public long append(ChangeEvent e) throws IOException {
+        switch (e.kind) {
+            case INSERT: return append(INSERT, e.position, e.version, e.after(Transaction.class));
+            case UPDATE: {
+                long lsn = -1;
+                List<Transaction> after = e.after(Transaction.class);
+                for (int i = 0; i < e.positions.length; i++) {
+                    lsn = append(UPDATE, e.positions[i], e.version, Collections.singletonList(after.get(i)));
+                }
+                return lsn;
+            }
+            case DELETE: {
+                long lsn = -1;
+                for (int i = e.positions.length - 1; i >= 0; i--) {
+                    lsn = append(DELETE, e.positions[i], e.version, Collections.emptyList());
+                }
+                return lsn;
+            }
+            default: return append(SNAPSHOT, 0, e.version, e.after(Transaction.class));
+        }
+    }
+
+    public long checkpoint(Iterable<Transaction> rows, long version) throws IOException {
+        return append(SNAPSHOT, 0, version, rows);
+    }
+
+    public synchronized long append(byte kind, int position, long version, Iterable<Transaction> rows) throws IOException {
+        long lsn = lastLsn + 1;
+        long now = System.currentTimeMillis();
+        ByteBuffer record = encode(lsn, now, version, kind, position, rows);
+        if (active == null || kind == SNAPSHOT || activeEnd + record.remaining() > SEGMENT_BYTES) roll(lsn, kind == SNAPSHOT);
+        while (record.hasRemaining()) activeEnd += active.write(record, activeEnd);
+        lastLsn = lsn;
+        lastCommitMillis = now;
+        if (kind == SNAPSHOT) compact(lsn);
+        notifyAll();
+        return lsn;
+    }
+
+    public synchronized long lastLsn() { return lastLsn; }
+
+    public synchronized long lastCommitMillis() { return lastCommitMillis; }
+
+    // Oldest LSN a reader can still start from without a checkpoint
+    public synchronized long firstLsn() { return segments.isEmpty() ? lastLsn + 1 : segments.firstKey(); }
+
+    // LSN of the newest checkpoint, or -1 before the first one
+    public synchronized long latestCheckpoint() {
+        for (Long first : segments.descendingKeySet()) {
+            if (segments.get(first)) return first;
+        }
+        return -1;
+    }
+
+    // Waits up to timeoutMillis for records past lsn; true when there are some
+    public synchronized boolean awaitPast(long lsn, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (lastLsn <= lsn) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0 || active == null) return false;
+            wait(left);
+        }
+        return true;
+    }
+
+    // Reader positioned at fromLsn, or null when that part of the log was compacted away
+    public Reader openReader(long fromLsn) throws IOException {
+        synchronized (this) {
+            if (fromLsn < firstLsn() || fromLsn > lastLsn + 1) return null;
+        }
+        Reader reader = new Reader(fromLsn);
+        return reader.seek() ? reader : null;
+    }
+
+    // Sequential reader handing out raw record bytes, as shipped to followers.
+    // It only reads what was fully appended, and follows the log across segments.
+    final class Reader implements AutoCloseable {
+        private long segment;
+        private FileChannel channel;
+        private long offset;
+        private long nextLsn;
+        private long batchCommitMillis;
+        private final ByteBuffer header = ByteBuffer.allocate(HEADER);
+
+        private Reader(long fromLsn) {
+            this.nextLsn = fromLsn;
+        }
+
+        long nextLsn() { return nextLsn; }
+
+        // Commit time of the first record handed out by the last read
+        long batchCommitMillis() { return batchCommitMillis; }
+
+        private boolean seek() throws IOException {
+            Long first;
+            synchronized (MutationLog.this) {
+                first = segments.floorKey(nextLsn);
+            }
+            if (first == null) return false;
+            if (!open(first)) return false;
+            long lsn = first;
+            while (lsn < nextLsn) {
+                int length = readHeader();
+                if (length < 0) return false;
+                offset += HEADER + length;
+                lsn++;
+            }
+            return true;
+        }
+
+        private boolean open(long first) throws IOException {
+            if (channel != null) channel.close();
+            File f = segmentFile(first);
+            if (!f.exists()) return false;
+            channel = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+            segment = first;
+            offset = 0;
+            return true;
+        }
+
+        // Reads the next record's body length, -1 when nothing more is readable yet
+        private int readHeader() throws IOException {
+            if (offset + HEADER > readableEnd()) return -1;
+            header.clear();
+            while (header.hasRemaining()) {
+                if (channel.read(header, offset + header.position()) < 0) return -1;
+            }
+            return header.getInt(0);
+        }
+
+        private long readableEnd() throws IOException {
+            synchronized (MutationLog.this) {
+                if (active != null && segment == activeFirstLsn) return activeEnd;
+            }
+            return channel.size();
+        }
+
+        // Appends up to maxRecords whole records (at most about maxBytes) to out.
+        // Returns the number copied; throws if the segment being read was compacted.
+        int read(int maxRecords, int maxBytes, ByteArrayOutputStream out) throws IOException {
+            int count = 0;
+            int bytes = 0;
+            while (count < maxRecords && bytes < maxBytes) {
+                int length = readHeader();
+                if (length < 0) {
+                    Long next;
+                    synchronized (MutationLog.this) {
+                        next = segments.higherKey(segment);
+                        if (next == null) return count;
+                    }
+                    if (next != nextLsn || !open(next)) throw new IOException("Segment after " + segment + " was compacted");
+                    continue;
+                }
+                ByteBuffer record = ByteBuffer.allocate(HEADER + length);
+                while (record.hasRemaining()) {
+                    if (channel.read(record, offset + record.position()) < 0) throw new IOException("Truncated record " + nextLsn);
+                }
+                if (count == 0) batchCommitMillis = record.getLong(HEADER + 8);
+                out.write(record.array(), 0, record.capacity());
+                offset += record.capacity();
+                bytes += record.capacity();
+                nextLsn++;
+                count++;
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (channel != null) channel.close();
+        }
+    }
+
+    // Decodes records shipped as raw bytes; a CRC mismatch is an IOException
+    static List<Record> decode(byte[] data, int length) throws IOException {
+        List<Record> records = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= HEADER) {
+            int bodyLength = buffer.getInt();
+            int checksum = buffer.getInt();
+            crc.reset();
+            crc.update(data, buffer.position(), bodyLength);
+            if ((int) crc.getValue() != checksum) throw new IOException("Corrupt replication record");
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, buffer.position(), bodyLength));
+            long lsn = in.readLong();
+            long commitMillis = in.readLong();
+            long version = in.readLong();
+            byte kind = in.readByte();
+            int position = in.readInt();
+            int count = in.readInt();
+            List<Transaction> rows = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int id = in.readInt();
+                LocalDate date = LocalDate.ofEpochDay(in.readLong());
+                String type = in.readUTF();
+                String category = in.readUTF();
+                double amount = in.readDouble();
+                String description = in.readUTF();
+                Transaction t = new Transaction(amount, type, category, date, description, in.readUTF());
+                t.setId(id);
+                rows.add(t);
+            }
+            records.add(new Record(lsn, commitMillis, version, kind, position, rows));
+            buffer.position(buffer.position() + bodyLength);
+        }
+        return records;
+    }
+
+    private static ByteBuffer encode(long lsn, long now, long version, byte kind, int position, Iterable<Transaction> rows) throws IOException {
+        List<Transaction> list = new ArrayList<>();
+        rows.forEach(list::add);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 48 * list.size());
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeLong(lsn);
+        out.writeLong(now);
+        out.writeLong(version);
+        out.writeByte(kind);
+        out.writeInt(position);
+        out.writeInt(list.size());
+        for (Transaction t : list) {
+            out.writeInt(t.getId());
+            out.writeLong(t.getDate().toEpochDay());
+            out.writeUTF(t.getType());
+            out.writeUTF(t.getCategory());
+            out.writeDouble(t.getAmount());
+            out.writeUTF(t.getDescription() == null ? "" : t.getDescription());
+            out.writeUTF(t.getCurrency());
+        }
+        ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER, record.capacity() - HEADER);
+        record.putInt(0, record.capacity() - HEADER);
+        record.putInt(4, (int) crc.getValue());
+        return record;
+    }
+
+    private void roll(long firstLsn, boolean checkpoint) throws IOException {
+        if (active != null) active.close();
+        active = FileChannel.open(segmentFile(firstLsn).toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE, StandardOpenOption.READ);
+        activeFirstLsn = firstLsn;
+        activeEnd = 0;
+        segments.put(firstLsn, checkpoint);
+    }
+
+    // Keeps the previous checkpoint's segments so followers just behind it stream on
+    private void compact(long checkpointLsn) {
+        Long previous = null;
+        for (Long first : segments.headMap(checkpointLsn, false).descendingKeySet()) {
+            if (segments.get(first)) {
+                previous = first;
+                break;
+            }
+        }
+        if (previous == null) return;
+        for (Long first : new ArrayList<>(segments.headMap(previous, false).keySet())) {
+            if (segmentFile(first).delete() || !segmentFile(first).exists()) segments.remove(first);
+        }
+    }
+
+    // Finds the last complete record and cuts off anything torn after it
+    private void recoverTail() throws IOException {
+        long first = segments.lastKey();
+        active = FileChannel.open(segmentFile(first).toPath(), StandardOpenOption.WRITE, StandardOpenOption.READ);
+        activeFirstLsn = first;
+        long size = active.size();
+        long offset = 0;
+        long lsn = first - 1;
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        CRC32 crc = new CRC32();
+        while (offset + HEADER <= size) {
+            header.clear();
+            active.read(header, offset);
+            int length = header.getInt(0);
+            if (length <= 0 || offset + HEADER + length > size) break;
+            ByteBuffer body = ByteBuffer.allocate(length);
+            active.read(body, offset + HEADER);
+            crc.reset();
+            crc.update(body.array());
+            if ((int) crc.getValue() != header.getInt(4)) break;
+            lsn = body.getLong(0);
+            lastCommitMillis = body.getLong(8);
+            offset += HEADER + length;
+        }
+        active.truncate(offset);
+        activeEnd = offset;
+        lastLsn = lsn;
+        if (offset == 0) segments.put(first, false);
+    }
+
+    private static boolean opensWithCheckpoint(File f) throws IOException {
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(HEADER + 25);
+            channel.read(head, 0);
+            return head.position() == head.capacity() && head.get(HEADER + 24) == SNAPSHOT;
+        }
+    }
+
+    private File segmentFile(long firstLsn) {
+        return new File(dir, String.format("%020d.seg", firstLsn));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (active != null) active.close();
+        active = null;
+        notifyAll();
+    }
+}
@@ -0,0 +1,355 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Parquet file with one row group per ColumnarExport row group and one
+// uncompressed v1 data page per column chunk. Dictionary columns get a PLAIN
+// dictionary page (the file-wide dictionary so far) and RLE_DICTIONARY
+// indices; the rest are PLAIN. Every column is REQUIRED, so pages carry no
+// definition or repetition levels. Metadata is Thrift compact protocol.
+class ParquetFileWriter implements ColumnarExport.Sink {
+    private static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+    // Physical types
+    private static final int INT32 = 1, INT64 = 2, BYTE_ARRAY = 6;
+    // Encodings
+    private static final int PLAIN = 0, RLE = 3, RLE_DICTIONARY = 8;
+    // Converted types
+    private static final int UTF8 = 0, DECIMAL = 5, DATE = 6;
+    // Page types
+    private static final int DATA_PAGE = 0, DICTIONARY_PAGE = 2;
+    private static final int[] PHYSICAL = {INT32, INT32, BYTE_ARRAY, BYTE_ARRAY, INT64, BYTE_ARRAY, BYTE_ARRAY};
+
+    private final OutputStream out;
+    private long position;
+    private final List<RowGroupMeta> rowGroups = new ArrayList<>();
+    private final ByteArrayOutputStream page = new ByteArrayOutputStream(1 << 16);
+    private final ByteBuffer lengthPrefix = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+
+    private static final class ChunkMeta {
+        int type;
+        boolean dictionary;
+        long values, size, dictionaryOffset, dataOffset;
+    }
+
+    private static final class RowGroupMeta {
+        long rows, size, offset;
+        final ChunkMeta[] chunks = new ChunkMeta[ColumnarExport.COLUMNS.length];
+    }
+
+    ParquetFileWriter(File file) throws IOException {
+        this(new FileOutputStream(file));
+    }
+
+    ParquetFileWriter(OutputStream target) throws IOException {
+        out = new BufferedOutputStream(target, 1 << 16);
+        write(MAGIC);
+    }
+
+    @Override
+    public void write(ColumnarExport.RowGroup g) throws IOException {
+        int n = g.size;
+        RowGroupMeta rg = new RowGroupMeta();
+        rg.rows = n;
+        rg.offset = position;
+        rg.chunks[0] = plainInts(g.id, n);
+        rg.chunks[1] = plainInts(g.day, n);
+        rg.chunks[2] = dictionary(g.types, g.type, n);
+        rg.chunks[3] = dictionary(g.categories, g.category, n);
+        rg.chunks[4] = plainLongs(g.cents, n);
+        rg.chunks[5] = dictionary(g.currencies, g.currency, n);
+        rg.chunks[6] = plainStrings(g.description, n);
+        rg.size = position - rg.offset;
+        rowGroups.add(rg);
+    }
+
+    private ChunkMeta plainInts(int[] values, int n) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(4 * n).order(ByteOrder.LITTLE_ENDIAN);
+        b.asIntBuffer().put(values, 0, n);
+        page.reset();
+        page.write(b.array(), 0, 4 * n);
+        return dataChunk(INT32, n);
+    }
+
+    private ChunkMeta plainLongs(long[] values, int n) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(8 * n).order(ByteOrder.LITTLE_ENDIAN);
+        b.asLongBuffer().put(values, 0, n);
+        page.reset();
+        page.write(b.array(), 0, 8 * n);
+        return dataChunk(INT64, n);
+    }
+
+    private ChunkMeta plainStrings(String[] values, int n) throws IOException {
+        page.reset();
+        for (int i = 0; i < n; i++) byteArray(values[i]);
+        return dataChunk(BYTE_ARRAY, n);
+    }
+
+    private ChunkMeta dataChunk(int type, int n) throws IOException {
+        ChunkMeta chunk = new ChunkMeta();
+        chunk.type = type;
+        chunk.values = n;
+        chunk.dataOffset = position;
+        writePage(DATA_PAGE, n, PLAIN);
+        chunk.size = position - chunk.dataOffset;
+        return chunk;
+    }
+
+    private ChunkMeta dictionary(ColumnarExport.Dictionary dictionary, int[] ids, int n) throws IOException {
+        ChunkMeta chunk = new ChunkMeta();
+        chunk.type = BYTE_ARRAY;
+        chunk.dictionary = true;
+        chunk.values = n;
+        chunk.dictionaryOffset = position;
+        int size = dictionary.values.size();
+        page.reset();
+        for (int i = 0; i < size; i++) byteArray(dictionary.values.get(i));
+        writePage(DICTIONARY_PAGE, size, PLAIN);
+
+        // Indices: bit width byte, then bit-packed runs of up to 63 groups of 8
+        chunk.dataOffset = position;
+        int width = Math.max(1, 32 - Integer.numberOfLeadingZeros(size - 1));
+        byte[] packed = new byte[1 + (n + 63 * 8 - 1) / (63 * 8) + (n + 7) / 8 * width];
+        int p = 0;
+        packed[p++] = (byte) width;
+        for (int start = 0; start < n; start += 63 * 8) {
+            int count = Math.min(63 * 8, n - start);
+            int groups = (count + 7) / 8;
+            packed[p++] = (byte) (groups << 1 | 1);
+            long buffer = 0;
+            int bits = 0;
+            for (int i = 0; i < groups * 8; i++) {
+                buffer |= (long) (i < count ? ids[start + i] : 0) << bits;
+                bits += width;
+                while (bits >= 8) {
+                    packed[p++] = (byte) buffer;
+                    buffer >>>= 8;
+                    bits -= 8;
+                }
+            }
+        }
+        page.reset();
+        page.write(packed, 0, p);
+        writePage(DATA_PAGE, n, RLE_DICTIONARY);
+        chunk.size = position - chunk.dictionaryOffset;
+        return chunk;
+    }
+
+    // PageHeader followed by the contents of `page`
+    private void writePage(int type, int values, int encoding) throws IOException {
+        Thrift header = new Thrift();
+        header.i32(1, type);
+        header.i32(2, page.size());
+        header.i32(3, page.size());
+        if (type == DICTIONARY_PAGE) {
+            header.beginStruct(7);
+            header.i32(1, values);
+            header.i32(2, encoding);
+            header.endStruct();
+        } else {
+            header.beginStruct(5);
+            header.i32(1, values);
+            header.i32(2, encoding);
+            header.i32(3, RLE);
+            header.i32(4, RLE);
+            header.endStruct();
+        }
+        header.stop();
+        write(header.toByteArray());
+        page.writeTo(out);
+        position += page.size();
+    }
+
+    @Override
+    public void finish() throws IOException {
+        String[] columns = ColumnarExport.COLUMNS;
+        long rows = 0;
+        for (RowGroupMeta rg : rowGroups) rows += rg.rows;
+
+        Thrift meta = new Thrift();
+        meta.i32(1, 1);
+        meta.beginList(2, Thrift.STRUCT, columns.length + 1);
+        meta.beginElement();
+        meta.string(4, "schema");
+        meta.i32(5, columns.length);
+        meta.endStruct();
+        for (int c = 0; c < columns.length; c++) {
+            meta.beginElement();
+            meta.i32(1, PHYSICAL[c]);
+            meta.i32(3, 0); // REQUIRED
+            meta.string(4, columns[c]);
+            if (c == 1) {
+                meta.i32(6, DATE);
+                meta.beginStruct(10);
+                meta.beginStruct(6); // LogicalType.DATE
+                meta.endStruct();
+                meta.endStruct();
+            } else if (c == 4) {
+                meta.i32(6, DECIMAL);
+                meta.i32(7, ColumnarExport.SCALE);
+                meta.i32(8, ColumnarExport.PRECISION);
+                meta.beginStruct(10);
+                meta.beginStruct(5); // LogicalType.DECIMAL
+                meta.i32(1, ColumnarExport.SCALE);
+                meta.i32(2, ColumnarExport.PRECISION);
+                meta.endStruct();
+                meta.endStruct();
+            } else if (PHYSICAL[c] == BYTE_ARRAY) {
+                meta.i32(6, UTF8);
+                meta.beginStruct(10);
+                meta.beginStruct(1); // LogicalType.STRING
+                meta.endStruct();
+                meta.endStruct();
+            }
+            meta.endStruct();
+        }
+        meta.i64(3, rows);
+        meta.beginList(4, Thrift.STRUCT, rowGroups.size());
+        for (RowGroupMeta rg : rowGroups) {
+            meta.beginElement();
+            meta.beginList(1, Thrift.STRUCT, columns.length);
+            for (int c = 0; c < columns.length; c++) {
+                ChunkMeta chunk = rg.chunks[c];
+                meta.beginElement();
+                meta.i64(2, chunk.dictionary ? chunk.dictionaryOffset : chunk.dataOffset);
+                meta.beginStruct(3);
+                meta.i32(1, chunk.type);
+                meta.beginList(2, Thrift.I32, chunk.dictionary ? 2 : 1);
+                meta.listI32(PLAIN);
+                if (chunk.dictionary) meta.listI32(RLE_DICTIONARY);
+                meta.beginList(3, Thrift.BINARY, 1);
+                meta.listString(columns[c]);
+                meta.i32(4, 0); // UNCOMPRESSED
+                meta.i64(5, chunk.values);
+                meta.i64(6, chunk.size);
+                meta.i64(7, chunk.size);
+                meta.i64(9, chunk.dataOffset);
+                if (chunk.dictionary) meta.i64(11, chunk.dictionaryOffset);
+                meta.endStruct();
+                meta.endStruct();
+            }
+            meta.i64(2, rg.size);
+            meta.i64(3, rg.rows);
+            meta.i64(5, rg.offset);
+            meta.i64(6, rg.size);
+            meta.endStruct();
+        }
+        meta.string(6, "Personal Finance Tracker");
+        meta.stop();
+
+        byte[] footer = meta.toByteArray();
+        write(footer);
+        ByteArrayOutputStream length = new ByteArrayOutputStream(4);
+        le(length, footer.length, 4);
+        write(length.toByteArray());
+        write(MAGIC);
+        out.close();
+    }
+
+    private void write(byte[] bytes) throws IOException {
+        out.write(bytes);
+        position += bytes.length;
+    }
+
+    private static void le(ByteArrayOutputStream out, long v, int bytes) {
+        for (int i = 0; i < bytes; i++) out.write((int) (v >>> (8 * i)));
+    }
+
+    // PLAIN BYTE_ARRAY: 4-byte little-endian length, then the bytes
+    private void byteArray(String s) {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        lengthPrefix.putInt(0, utf8.length);
+        page.write(lengthPrefix.array(), 0, 4);
+        page.write(utf8, 0, utf8.length);
+    }
+
+    // Thrift compact protocol writer. Field headers are deltas from the
+    // previous field id of the enclosing struct, tracked on a stack.
+    private static final class Thrift extends ByteArrayOutputStream {
+        private static final int I32 = 5, I64 = 6, BINARY = 8, LIST = 9, STRUCT = 12;
+        private int[] lastField = new int[16];
+        private int depth;
+
+        private void fieldHeader(int id, int type) {
+            int delta = id - lastField[depth];
+            if (delta > 0 && delta <= 15) {
+                write(delta << 4 | type);
+            } else {
+                write(type);
+                varint(zigzag(id));
+            }
+            lastField[depth] = id;
+        }
+
+        private void varint(long v) {
+            while ((v & ~0x7FL) != 0) {
+                write((int) (v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            write((int) v);
+        }
+
+        private static long zigzag(long v) { return (v << 1) ^ (v >> 63); }
+
+        void i32(int id, int v) {
+            fieldHeader(id, I32);
+            varint(zigzag(v));
+        }
+
+        void i64(int id, long v) {
+            fieldHeader(id, I64);
+            varint(zigzag(v));
+        }
+
+        void string(int id, String s) {
+            fieldHeader(id, BINARY);
+            listString(s);
+        }
+
+        void beginStruct(int id) {
+            fieldHeader(id, STRUCT);
+            push();
+        }
+
+        // A list whose elements are written next with listI32/listString/beginElement
+        void beginList(int id, int elementType, int size) {
+            fieldHeader(id, LIST);
+            if (size < 15) {
+                write(size << 4 | elementType);
+            } else {
+                write(0xF0 | elementType);
+                varint(size);
+            }
+        }
+
+        void beginElement() { push(); }
+
+        void listI32(int v) { varint(zigzag(v)); }
+
+        void listString(String s) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            varint(utf8.length);
+            write(utf8, 0, utf8.length);
+        }
+
+        void endStruct() {
+            write(0);
+            depth--;
+        }
+
+        void stop() { write(0); }
+
+        private void push() {
+            if (++depth == lastField.length) lastField = Arrays.copyOf(lastField, depth * 2);
+            lastField[depth] = 0;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+import javax.swing.JPanel;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.util.ArrayList;
+import java.util.List;
+
+// Fan chart of projected balance percentiles; bands are appended as the
+// simulation streams them in.
+class ProjectionChartPanel extends JPanel {
+    private final List<CashFlowProjection.Band> bands = new ArrayList<>();
+    private int months;
+    private String title = "";
+    private String currency = FxRates.DEFAULT_CURRENCY;
+
+    public ProjectionChartPanel() {
+        setPreferredSize(new Dimension(600, 400));
+    }
+
+    public void reset(int months, String title, String currency) {
+        this.months = months;
+        this.title = title;
+        this.currency = currency;
+        bands.clear();
+        repaint();
+    }
+
+    public void addBands(List<CashFlowProjection.Band> more) {
+        bands.addAll(more);
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (bands.isEmpty()) {
+            g.drawString("No projection yet", 10, 20);
+            return;
+        }
+
+        double min = 0, max = 0;
+        for (CashFlowProjection.Band b : bands) {
+            min = Math.min(min, b.p5);
+            max = Math.max(max, b.p95);
+        }
+        if (max == min) max = min + 1;
+        int left = 80, top = 30, width = getWidth() - left - 20, height = getHeight() - top - 40;
+
+        int n = bands.size();
+        int[] x = new int[n];
+        int[][] y = new int[5][n];
+        for (int i = 0; i < n; i++) {
+            CashFlowProjection.Band b = bands.get(i);
+            x[i] = left + (int) ((long) b.month * width / Math.max(1, months));
+            double[] values = {b.p5, b.p25, b.p50, b.p75, b.p95};
+            for (int k = 0; k < 5; k++) {
+                y[k][i] = top + (int) ((max - values[k]) / (max - min) * height);
+            }
+        }
+
+        fillBand(g, x, y[0], y[4], new Color(70, 130, 180, 60));
+        fillBand(g, x, y[1], y[3], new Color(70, 130, 180, 120));
+        g.setColor(Color.BLUE);
+        g.drawPolyline(x, y[2], n);
+
+        g.setColor(Color.BLACK);
+        int zero = top + (int) (max / (max - min) * height);
+        g.drawLine(left, zero, left + width, zero);
+        g.drawString(title, left, top - 10);
+        g.drawString(String.format("%,.0f %s", max, currency), 5, top + 5);
+        g.drawString(String.format("%,.0f %s", min, currency), 5, top + height);
+        g.drawString("Month " + bands.get(n - 1).month + " of " + months, left, top + height + 25);
+    }
+
+    private static void fillBand(Graphics g, int[] x, int[] lower, int[] upper, Color color) {
+        int n = x.length;
+        int[] px = new int[2 * n];
+        int[] py = new int[2 * n];
+        for (int i = 0; i < n; i++) {
+            px[i] = x[i];
+            py[i] = upper[i];
+            px[2 * n - 1 - i] = x[i];
+            py[2 * n - 1 - i] = lower[i];
+        }
+        g.setColor(color);
+        g.fillPolygon(px, py, 2 * n);
+    }
+}
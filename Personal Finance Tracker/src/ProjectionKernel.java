@@ -0,0 +1,5 @@
+// Advances a range of simulated balances by one month. Each path owns a
+// xorshift64 state so the scalar and SIMD kernels draw identical numbers.
+interface ProjectionKernel {
+    void step(double[] balances, long[] rng, int from, int to, double[] mean, double[] sd, double[] sign, double scale);
+}
@@ -0,0 +1,146 @@
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// A recurring income/expense template with an RRULE-style schedule, e.g.
+// "FREQ=MONTHLY;INTERVAL=1;COUNT=12" or "FREQ=WEEKLY;INTERVAL=2;UNTIL=2025-12-31".
+// Occurrence k is computed directly from the start date, so a window can be
+// expanded lazily or counted in closed form without walking earlier dates.
+class RecurrenceRule {
+    enum Frequency { DAILY, WEEKLY, MONTHLY, YEARLY }
+
+    private int id;
+    private Frequency frequency = Frequency.MONTHLY;
+    private int interval = 1;
+    private int count;        // 0 = no occurrence limit
+    private LocalDate until;  // null = no end date
+    private LocalDate start;
+    private double amount;
+    private String type;
+    private String category;
+    private String description;
+    private String currency = FxRates.DEFAULT_CURRENCY;
+    private LocalDate lastPosted; // last occurrence already written to transactions
+
+    public RecurrenceRule(String rrule, LocalDate start, double amount, String type, String category, String description) {
+        this.start = start;
+        this.amount = amount;
+        this.type = type;
+        this.category = category;
+        this.description = description;
+        parse(rrule);
+    }
+
+    private void parse(String rrule) {
+        for (String part : rrule.toUpperCase().split(";")) {
+            String[] kv = part.split("=", 2);
+            if (kv.length != 2) continue;
+            String value = kv[1].trim();
+            switch (kv[0].trim()) {
+                case "FREQ": frequency = Frequency.valueOf(value); break;
+                case "INTERVAL": interval = Integer.parseInt(value); break;
+                case "COUNT": count = Integer.parseInt(value); break;
+                case "UNTIL": until = LocalDate.parse(value); break;
+                default: throw new IllegalArgumentException("Unsupported rule part: " + kv[0]);
+            }
+        }
+        if (interval < 1) throw new IllegalArgumentException("INTERVAL must be at least 1");
+        if (count < 0) throw new IllegalArgumentException("COUNT cannot be negative");
+    }
+
+    public String toRRule() {
+        StringBuilder sb = new StringBuilder("FREQ=").append(frequency).append(";INTERVAL=").append(interval);
+        if (count > 0) sb.append(";COUNT=").append(count);
+        if (until != null) sb.append(";UNTIL=").append(until);
+        return sb.toString();
+    }
+
+    public LocalDate occurrence(long k) {
+        long step = k * interval;
+        switch (frequency) {
+            case DAILY: return start.plusDays(step);
+            case WEEKLY: return start.plusWeeks(step);
+            case MONTHLY: return start.plusMonths(step); // clamps to month end, e.g. Jan 31 -> Feb 28
+            default: return start.plusYears(step);
+        }
+    }
+
+    // Smallest k with occurrence(k) >= date. The unit difference gives the
+    // answer up to month-end clamping, which the loop corrects in a step or two.
+    private long firstIndexOnOrAfter(LocalDate date) {
+        if (!date.isAfter(start)) return 0;
+        ChronoUnit unit;
+        switch (frequency) {
+            case DAILY: unit = ChronoUnit.DAYS; break;
+            case WEEKLY: unit = ChronoUnit.WEEKS; break;
+            case MONTHLY: unit = ChronoUnit.MONTHS; break;
+            default: unit = ChronoUnit.YEARS; break;
+        }
+        long k = Math.max(0, unit.between(start, date) / interval - 1);
+        while (occurrence(k).isBefore(date)) k++;
+        return k;
+    }
+
+    // Largest valid index, or Long.MAX_VALUE for an open-ended rule
+    private long lastIndex() {
+        long last = Long.MAX_VALUE;
+        if (count > 0) last = count - 1;
+        if (until != null) last = Math.min(last, firstIndexOnOrAfter(until.plusDays(1)) - 1);
+        return last;
+    }
+
+    private long[] indexRange(LocalDate from, LocalDate to) {
+        long lo = firstIndexOnOrAfter(from);
+        long hi = Math.min(lastIndex(), firstIndexOnOrAfter(to.plusDays(1)) - 1);
+        return new long[]{lo, hi};
+    }
+
+    // Lazily expands the occurrences falling in [from, to]
+    public Iterator<LocalDate> occurrences(LocalDate from, LocalDate to) {
+        long[] range = indexRange(from, to);
+        return new Iterator<LocalDate>() {
+            private long k = range[0];
+
+            @Override
+            public boolean hasNext() { return k <= range[1]; }
+
+            @Override
+            public LocalDate next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return occurrence(k++);
+            }
+        };
+    }
+
+    public long countBetween(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) return 0;
+        long[] range = indexRange(from, to);
+        return Math.max(0, range[1] - range[0] + 1);
+    }
+
+    // Closed-form total of this rule's occurrences in [from, to]
+    public double projectedTotal(LocalDate from, LocalDate to) {
+        return countBetween(from, to) * amount;
+    }
+
+    public Transaction toTransaction(LocalDate date) {
+        return new Transaction(amount, type, category, date, description, currency);
+    }
+
+    public Object[] toTableRow() {
+        return new Object[]{id, start, toRRule(), type, category, FxRates.format(amount, currency), description};
+    }
+
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+    public LocalDate getStart() { return start; }
+    public double getAmount() { return amount; }
+    public String getType() { return type; }
+    public String getCategory() { return category; }
+    public String getDescription() { return description; }
+    public String getCurrency() { return currency; }
+    public void setCurrency(String currency) { this.currency = currency; }
+    public LocalDate getLastPosted() { return lastPosted; }
+    public void setLastPosted(LocalDate lastPosted) { this.lastPosted = lastPosted; }
+}
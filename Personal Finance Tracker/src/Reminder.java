@@ -0,0 +1,32 @@
+import java.io.Serializable;
+import java.time.LocalDate;
+
+class Reminder implements Serializable {
+    private LocalDate dueDate;
+    private String description;
+    private boolean paid;
+    private int id; // 0 until saved
+    private long version;
+
+    public Reminder(LocalDate dueDate, String description) {
+        this.dueDate = dueDate;
+        this.description = description;
+    }
+
+    public Object[] toTableRow() {
+        String status = paid ? "Paid" : "Pending";
+        return new Object[]{id, dueDate.toString(), description, status, version};
+    }
+
+    public void setStored(int id, long version) {
+        this.id = id;
+        this.version = version;
+    }
+
+    public LocalDate getDueDate() { return dueDate; }
+    public String getDescription() { return description; }
+    public boolean isPaid() { return paid; }
+    public int getId() { return id; }
+    public long getVersion() { return version; }
+    public void markPaid() { paid = true; }
+}
@@ -0,0 +1,145 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+// Replication benchmark over loopback: a leader store logs a sustained mix
+// of inserts, edits and deletes (checkpointing periodically, which compacts
+// the log) while a follower applies the shipped segments. Reports the lag
+// sampled during ingest, the time to drain once ingest stops, and how long
+// a second follower that joins late takes to catch up from a checkpoint.
+// Both followers are checked against the leader at the end.
+//
+//   java -cp . ReplicationBenchmark [recordsPerSecond] [seconds]
+public class ReplicationBenchmark {
+    private static final String[] CATEGORIES = {"Food", "Rent", "Transport", "Utilities", "Entertainment", "Health"};
+    private static final int CHECKPOINT_EVERY = 50_000;
+    private static final byte[] SECRET = "benchmark".getBytes(StandardCharsets.UTF_8);
+
+    public static void main(String[] args) throws Exception {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 5_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        File dir = Files.createTempDirectory("replication-benchmark").toFile();
+        TransactionStore leaderStore = new TransactionStore();
+        TransactionStore replica = new TransactionStore();
+        TransactionStore lateReplica = new TransactionStore();
+        Random random = new Random(42);
+
+        try (MutationLog log = new MutationLog(dir);
+             ReplicationLeader leader = new ReplicationLeader(log, 0, SECRET)) {
+            log.checkpoint(leaderStore.snapshot(), 0);
+            List<Long> lagMillis = new ArrayList<>();
+            List<Long> lagRecords = new ArrayList<>();
+            long records = 0;
+            try (ReplicationFollower follower = new ReplicationFollower("127.0.0.1", leader.port(), SECRET, replica, Runnable::run)) {
+                long start = System.nanoTime();
+                long end = start + seconds * 1_000_000_000L;
+                long nextSample = start;
+                int nextId = 1;
+                while (System.nanoTime() < end) {
+                    long due = (System.nanoTime() - start) * rate / 1_000_000_000L;
+                    for (; records < due; records++) {
+                        nextId = mutate(leaderStore, log, random, nextId);
+                        if (records % CHECKPOINT_EVERY == CHECKPOINT_EVERY - 1) {
+                            log.checkpoint(leaderStore.snapshot(), leaderStore.snapshot().getVersion());
+                        }
+                    }
+                    if (System.nanoTime() >= nextSample && !leader.followers().isEmpty()) {
+                        ReplicationLeader.Follower f = leader.followers().get(0);
+                        lagMillis.add(f.lagMillis());
+                        lagRecords.add(f.lagRecords());
+                        nextSample += 50_000_000L;
+                    }
+                    Thread.sleep(1);
+                }
+                long drainStart = System.nanoTime();
+                awaitLsn(follower, log.lastLsn());
+                long drainMs = (System.nanoTime() - drainStart) / 1_000_000;
+                double elapsed = (drainStart - start) / 1e9;
+
+                System.out.printf("ingest   %d records in %.1f s (%.0f/s target %d/s), log at LSN %d%n",
+                        records, elapsed, records / elapsed, rate, log.lastLsn());
+                System.out.printf("lag      p50 %d ms / %d records, p99 %d ms / %d records, max %d ms / %d records%n",
+                        percentile(lagMillis, 50), percentile(lagRecords, 50), percentile(lagMillis, 99),
+                        percentile(lagRecords, 99), percentile(lagMillis, 100), percentile(lagRecords, 100));
+                System.out.printf("drain    %d ms after ingest stopped; commit-to-apply max %d ms%n", drainMs, follower.maxApplyLagMillis());
+                System.out.printf("follower %d records applied, %d checkpoints, %s%n", follower.recordsApplied(),
+                        follower.snapshotsApplied(), same(leaderStore, replica) ? "matches leader" : "DIVERGED");
+            }
+
+            long catchUpStart = System.nanoTime();
+            try (ReplicationFollower late = new ReplicationFollower("127.0.0.1", leader.port(), SECRET, lateReplica, Runnable::run)) {
+                awaitLsn(late, log.lastLsn());
+                System.out.printf("catch-up %d ms for %d rows from LSN %d (%d checkpoint, %d records), %s%n",
+                        (System.nanoTime() - catchUpStart) / 1_000_000, lateReplica.size(), log.latestCheckpoint(),
+                        late.snapshotsApplied(), late.recordsApplied(), same(leaderStore, lateReplica) ? "matches leader" : "DIVERGED");
+            }
+        } finally {
+            File[] files = dir.listFiles();
+            if (files != null) for (File f : files) f.delete();
+            dir.delete();
+        }
+    }
+
+    // Mostly inserts, with some edits and deletes of random rows
+    private static int mutate(TransactionStore store, MutationLog log, Random random, int nextId) throws IOException {
+        int roll = random.nextInt(100);
+        if (roll < 90 || store.size() < 100) {
+            Transaction t = transaction(random, nextId);
+            store.add(t);
+            log.append(MutationLog.INSERT, store.size() - 1, store.snapshot().getVersion(), Collections.singletonList(t));
+            return nextId + 1;
+        }
+        int index = random.nextInt(store.size());
+        if (roll < 98) {
+            Transaction t = transaction(random, store.get(index).getId());
+            store.set(index, t);
+            log.append(MutationLog.UPDATE, index, store.snapshot().getVersion(), Collections.singletonList(t));
+        } else {
+            store.remove(index);
+            log.append(MutationLog.DELETE, index, store.snapshot().getVersion(), Collections.emptyList());
+        }
+        return nextId;
+    }
+
+    private static Transaction transaction(Random random, int id) {
+        Transaction t = new Transaction(random.nextInt(500_00) / 100.0, random.nextInt(10) == 0 ? "Income" : "Expense",
+                CATEGORIES[random.nextInt(CATEGORIES.length)], LocalDate.of(2024, 1, 1).plusDays(random.nextInt(365)),
+                "Merchant " + random.nextInt(2000), "USD");
+        t.setId(id);
+        return t;
+    }
+
+    private static void awaitLsn(ReplicationFollower follower, long lsn) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 60_000;
+        while (follower.appliedLsn() < lsn) {
+            if (System.currentTimeMillis() > deadline) throw new IllegalStateException("Follower stuck at LSN " + follower.appliedLsn());
+            Thread.sleep(1);
+        }
+    }
+
+    private static boolean same(TransactionStore a, TransactionStore b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) {
+            Transaction x = a.get(i), y = b.get(i);
+            if (x.getId() != y.getId() || x.getAmount() != y.getAmount() || !x.getType().equals(y.getType())
+                    || !x.getCategory().equals(y.getCategory()) || !x.getDate().equals(y.getDate())
+                    || !x.getDescription().equals(y.getDescription()) || !x.getCurrency().equals(y.getCurrency())) return false;
+        }
+        return true;
+    }
+
+    private static long percentile(List<Long> samples, int p) {
+        if (samples.isEmpty()) return 0;
+        List<Long> sorted = new ArrayList<>(samples);
+        Collections.sort(sorted);
+        int rank = (int) Math.ceil(p / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(sorted.size() - 1, rank)));
+    }
+}
@@ -0,0 +1,207 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+// Read-only replica fed by a ReplicationLeader. Each frame is decoded and
+// applied to the local TransactionStore as one batch on the given executor
+// (the EDT in the app), coalescing runs of inserts into a single addAll,
+// then acked. A dropped connection is retried with backoff from the last
+// applied LSN, so short outages stream the gap and long ones catch up from
+// a checkpoint. A batch that cannot be decoded or applied drops the
+// connection and starts over from a checkpoint.
+class ReplicationFollower implements AutoCloseable {
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final long MAX_BACKOFF_MILLIS = 10_000;
+
+    private final String host;
+    private final int port;
+    private final TransactionStore store;
+    private final byte[] secret;
+    private final Executor applyOn;
+    private final Thread thread;
+    private volatile Socket socket;
+    private volatile boolean closed;
+    private volatile boolean connected;
+    private volatile long appliedLsn;
+    private volatile long leaderLsn;
+    private volatile long lastApplyLagMillis;
+    private volatile long maxApplyLagMillis;
+    private volatile long recordsApplied;
+    private volatile long snapshotsApplied;
+    private volatile String lastError;
+
+    ReplicationFollower(String host, int port, byte[] secret, TransactionStore store, Executor applyOn) {
+        this.host = host;
+        this.port = port;
+        this.secret = secret.clone();
+        this.store = store;
+        this.applyOn = applyOn;
+        this.thread = new Thread(this::run, "replication-follow " + host + ":" + port);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    boolean isConnected() { return connected; }
+
+    long appliedLsn() { return appliedLsn; }
+
+    long leaderLsn() { return leaderLsn; }
+
+    // Records the leader had committed that were not yet applied here, as of the last frame
+    long lagRecords() { return Math.max(0, leaderLsn - appliedLsn); }
+
+    // Commit-to-apply delay of the newest applied record; assumes the clocks agree
+    long lastApplyLagMillis() { return lastApplyLagMillis; }
+
+    long maxApplyLagMillis() { return maxApplyLagMillis; }
+
+    long recordsApplied() { return recordsApplied; }
+
+    long snapshotsApplied() { return snapshotsApplied; }
+
+    String lastError() { return lastError; }
+
+    private void run() {
+        long backoff = 250;
+        while (!closed) {
+            try (Socket s = new Socket()) {
+                socket = s;
+                s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+                s.setTcpNoDelay(true);
+                connected = true;
+                backoff = 250;
+                follow(s);
+            } catch (IOException | RuntimeException ex) {
+                if (!closed) lastError = ex.getMessage() != null ? ex.getMessage() : ex.toString();
+            } finally {
+                connected = false;
+            }
+            if (closed) return;
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException ex) {
+                return;
+            }
+            backoff = Math.min(MAX_BACKOFF_MILLIS, backoff * 2);
+        }
+    }
+
+    private void follow(Socket s) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 64 * 1024));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+        if (in.readInt() != ReplicationLeader.MAGIC) throw new IOException("Not a replication leader");
+        byte[] nonce = new byte[16];
+        in.readFully(nonce);
+        out.writeInt(ReplicationLeader.MAGIC);
+        out.writeLong(appliedLsn);
+        out.write(ReplicationLeader.proof(secret, nonce));
+        out.flush();
+        byte[] buffer = new byte[ReplicationLeader.BATCH_BYTES];
+        boolean first = true;
+        while (!closed) {
+            long leaderLast;
+            try {
+                leaderLast = in.readLong();
+            } catch (EOFException ex) {
+                // The leader hangs up without a frame when the answer is wrong
+                throw first ? new IOException("Leader refused the connection; check the shared secret") : ex;
+            }
+            first = false;
+            int count = in.readInt();
+            int length = in.readInt();
+            if (length < 0 || length > ReplicationLeader.MAX_FRAME_BYTES) throw new IOException("Bad replication frame length " + length);
+            if (length > buffer.length) buffer = new byte[length];
+            in.readFully(buffer, 0, length);
+            if (count > 0) {
+                try {
+                    List<MutationLog.Record> records = MutationLog.decode(buffer, length);
+                    CompletableFuture.runAsync(() -> apply(records), applyOn).join();
+                } catch (RuntimeException ex) {
+                    // The store may hold part of the batch; a checkpoint replaces it whole
+                    appliedLsn = 0;
+                    Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                    throw new IOException("Could not apply replication batch: " + cause, ex);
+                }
+                out.writeLong(appliedLsn);
+                out.flush();
+            }
+            leaderLsn = Math.max(leaderLast, appliedLsn);
+            lastError = null; // kept until a frame goes through, so the status shows why it reconnects
+        }
+    }
+
+    private void apply(List<MutationLog.Record> records) {
+        List<Transaction> inserts = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            MutationLog.Record r = records.get(i);
+            if (r.kind != MutationLog.INSERT && !inserts.isEmpty()) {
+                store.addAll(inserts);
+                inserts.clear();
+            }
+            // Rows of one bulk edit share a version and are applied as one again
+            int end = i + 1;
+            if (r.kind == MutationLog.UPDATE || r.kind == MutationLog.DELETE) {
+                while (end < records.size() && records.get(end).kind == r.kind && records.get(end).version == r.version) end++;
+            }
+            switch (r.kind) {
+                case MutationLog.INSERT: inserts.addAll(r.rows); break;
+                case MutationLog.UPDATE:
+                    if (end - i == 1) {
+                        store.set(r.position, r.rows.get(0));
+                    } else {
+                        int[] positions = new int[end - i];
+                        List<Transaction> rows = new ArrayList<>(end - i);
+                        for (int j = i; j < end; j++) {
+                            positions[j - i] = records.get(j).position;
+                            rows.add(records.get(j).rows.get(0));
+                        }
+                        store.setAll(positions, rows);
+                    }
+                    break;
+                case MutationLog.DELETE:
+                    if (end - i == 1) {
+                        store.remove(r.position);
+                    } else {
+                        // Logged last row first; the store takes them ascending
+                        int[] positions = new int[end - i];
+                        for (int j = i; j < end; j++) positions[end - 1 - j] = records.get(j).position;
+                        store.removeAll(positions);
+                    }
+                    break;
+                default:
+                    store.reset(r.rows);
+                    snapshotsApplied++;
+            }
+            i = end - 1;
+        }
+        if (!inserts.isEmpty()) store.addAll(inserts);
+        MutationLog.Record last = records.get(records.size() - 1);
+        appliedLsn = last.lsn;
+        recordsApplied += records.size();
+        lastApplyLagMillis = Math.max(0, System.currentTimeMillis() - last.commitMillis);
+        maxApplyLagMillis = Math.max(maxApplyLagMillis, lastApplyLagMillis);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        Socket s = socket;
+        if (s != null) {
+            try {
+                s.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
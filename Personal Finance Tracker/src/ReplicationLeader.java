@@ -0,0 +1,242 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+// Ships MutationLog segments to read-only followers over TCP. A follower
+// sends HELLO with the last LSN it applied; it is streamed everything after
+// that if the log still has it, otherwise it starts over from the newest
+// checkpoint. Records go out verbatim in frames of up to BATCH_RECORDS, and
+// the follower acks each frame once applied, which is what lag is measured
+// against. Idle connections get an empty frame every second.
+//
+// Followers prove they hold the shared secret by answering a random
+// challenge with its HMAC, so the secret never crosses the wire. The stream
+// itself is not encrypted. The leader listens on loopback unless it is
+// given another address.
+//
+// Challenge: [int MAGIC][16-byte nonce]. Frame: [long leaderLastLsn][int count][int bytes]
+// then count raw records. HELLO: [int MAGIC][long lastAppliedLsn][32-byte HMAC-SHA256(secret, nonce)].
+// Ack: [long appliedLsn].
+class ReplicationLeader implements AutoCloseable {
+    static final int MAGIC = 0x4654524C; // "FTRL"
+    static final int BATCH_RECORDS = 512;
+    static final int BATCH_BYTES = 256 * 1024;
+    // A batch stops after the record that crosses BATCH_BYTES, and a checkpoint
+    // is one record holding the whole store, so frames are only bounded loosely
+    static final int MAX_FRAME_BYTES = 1 << 30;
+    private static final long HEARTBEAT_MILLIS = 1000;
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 10_000;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final MutationLog log;
+    private final byte[] secret;
+    private final ServerSocket server;
+    private final List<Follower> followers = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    ReplicationLeader(MutationLog log, int port, byte[] secret) throws IOException {
+        this(log, port, InetAddress.getLoopbackAddress(), secret);
+    }
+
+    // A null `bind` listens on every interface
+    ReplicationLeader(MutationLog log, int port, InetAddress bind, byte[] secret) throws IOException {
+        if (secret == null || secret.length == 0) throw new IllegalArgumentException("A shared secret is required");
+        this.log = log;
+        this.secret = secret.clone();
+        this.server = new ServerSocket(port, 8, bind);
+        Thread acceptor = new Thread(this::acceptLoop, "replication-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int port() { return server.getLocalPort(); }
+
+    // Answer to a challenge; the follower computes the same from its copy of the secret
+    static byte[] proof(byte[] secret, byte[] nonce) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            return mac.doFinal(nonce);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    List<Follower> followers() { return followers; }
+
+    // One connected follower and its lag, as seen from the leader
+    final class Follower {
+        final String address;
+        private final Socket socket;
+        // [last LSN in frame, commit time of its first record], oldest first
+        private final ArrayDeque<long[]> unacked = new ArrayDeque<>();
+        private volatile long shippedLsn;
+        private volatile long ackedLsn;
+        private volatile long snapshots;
+        private volatile long bytesShipped;
+
+        Follower(Socket socket) {
+            this.socket = socket;
+            this.address = socket.getRemoteSocketAddress().toString();
+        }
+
+        long shippedLsn() { return shippedLsn; }
+
+        long ackedLsn() { return ackedLsn; }
+
+        long snapshots() { return snapshots; }
+
+        long bytesShipped() { return bytesShipped; }
+
+        // Records committed on the leader that the follower has not applied
+        long lagRecords() { return Math.max(0, log.lastLsn() - ackedLsn); }
+
+        // Age of the oldest record the follower has not applied
+        long lagMillis() {
+            synchronized (unacked) {
+                long[] oldest = unacked.peekFirst();
+                if (oldest != null) return Math.max(0, System.currentTimeMillis() - oldest[1]);
+            }
+            return lagRecords() == 0 ? 0 : Math.max(0, System.currentTimeMillis() - log.lastCommitMillis());
+        }
+
+        private void acked(long lsn) {
+            ackedLsn = lsn;
+            synchronized (unacked) {
+                while (!unacked.isEmpty() && unacked.peekFirst()[0] <= lsn) unacked.pollFirst();
+            }
+        }
+
+        private void serve() {
+            try (Socket s = socket;
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream(), 64 * 1024))) {
+                s.setTcpNoDelay(true);
+                byte[] nonce = new byte[16];
+                RANDOM.nextBytes(nonce);
+                out.writeInt(MAGIC);
+                out.write(nonce);
+                out.flush();
+                s.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+                if (in.readInt() != MAGIC) return;
+                long from = in.readLong() + 1;
+                byte[] answer = new byte[32];
+                in.readFully(answer);
+                if (!MessageDigest.isEqual(answer, proof(secret, nonce))) return;
+                s.setSoTimeout(0);
+                followers.add(this);
+                ackedLsn = from - 1;
+                Thread acks = new Thread(() -> {
+                    try {
+                        while (true) acked(in.readLong());
+                    } catch (IOException ex) {
+                        close();
+                    }
+                }, "replication-acks");
+                acks.setDaemon(true);
+                acks.start();
+                ship(from, out);
+            } catch (IOException | InterruptedException ex) {
+                // follower went away; it reconnects and resumes from its last LSN
+            } finally {
+                followers.remove(this);
+            }
+        }
+
+        private void ship(long from, DataOutputStream out) throws IOException, InterruptedException {
+            ByteArrayOutputStream frame = new ByteArrayOutputStream(BATCH_BYTES + 64 * 1024);
+            MutationLog.Reader reader = null;
+            try {
+                while (!closed && !socket.isClosed()) {
+                    if (reader == null) {
+                        reader = from > 1 ? log.openReader(from) : null;
+                        if (reader == null) {
+                            // New, or too far behind: start over from the newest checkpoint
+                            long checkpoint = log.latestCheckpoint();
+                            reader = checkpoint < 0 ? null : log.openReader(checkpoint);
+                            if (reader == null) {
+                                log.awaitPast(log.lastLsn(), HEARTBEAT_MILLIS);
+                                continue;
+                            }
+                            snapshots++;
+                        }
+                    }
+                    frame.reset();
+                    int count;
+                    try {
+                        count = reader.read(BATCH_RECORDS, BATCH_BYTES, frame);
+                    } catch (IOException compacted) {
+                        reader.close();
+                        reader = null;
+                        from = 0; // before anything retained, so the next open takes a checkpoint
+                        continue;
+                    }
+                    if (count == 0) {
+                        if (!log.awaitPast(reader.nextLsn() - 1, HEARTBEAT_MILLIS)) writeFrame(out, 0, frame);
+                        continue;
+                    }
+                    long last = reader.nextLsn() - 1;
+                    synchronized (unacked) {
+                        unacked.addLast(new long[]{last, reader.batchCommitMillis()});
+                    }
+                    writeFrame(out, count, frame);
+                    shippedLsn = last;
+                    from = last + 1;
+                }
+            } finally {
+                if (reader != null) reader.close();
+            }
+        }
+
+        private void writeFrame(DataOutputStream out, int count, ByteArrayOutputStream frame) throws IOException {
+            out.writeLong(log.lastLsn());
+            out.writeInt(count);
+            out.writeInt(frame.size());
+            frame.writeTo(out);
+            out.flush();
+            bytesShipped += 16 + frame.size();
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = server.accept();
+                Follower follower = new Follower(socket);
+                Thread sender = new Thread(follower::serve, "replication-ship " + follower.address);
+                sender.setDaemon(true);
+                sender.start();
+            } catch (IOException ex) {
+                if (!closed) ex.printStackTrace();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        server.close();
+        for (Follower f : followers) f.close();
+    }
+}
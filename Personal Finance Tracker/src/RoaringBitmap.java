@@ -0,0 +1,294 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Compressed set of non-negative ints in the Roaring layout. Values are split
+// by their high 16 bits into chunks. A chunk holds its low 16 bits either as a
+// sorted array (up to 4096 values, 2 bytes each) or as a 65536-bit bitmap
+// (8 KiB), whichever is smaller. AND, OR and AND NOT walk the chunks of both
+// sides in key order. Each pair of chunks combines by array merge or by 64-bit
+// words, so set algebra costs about the compressed size, not the value range.
+final class RoaringBitmap {
+    private static final int ARRAY_MAX = 4096;
+
+    private char[] keys = new char[0];
+    private Chunk[] chunks = new Chunk[0];
+    private int size;
+
+    private static final class Chunk {
+        char[] array; // sorted low bits, while cardinality <= ARRAY_MAX
+        long[] bits;  // 1024 words otherwise
+        int cardinality;
+
+        static Chunk ofArray(char[] array, int cardinality) {
+            Chunk c = new Chunk();
+            c.array = array;
+            c.cardinality = cardinality;
+            return c;
+        }
+
+        // Keeps the bitmap only while it is the smaller form
+        static Chunk ofBits(long[] bits) {
+            int cardinality = 0;
+            for (long w : bits) cardinality += Long.bitCount(w);
+            if (cardinality == 0) return null;
+            Chunk c = new Chunk();
+            c.cardinality = cardinality;
+            if (cardinality > ARRAY_MAX) {
+                c.bits = bits;
+                return c;
+            }
+            c.array = new char[cardinality];
+            int n = 0;
+            for (int i = 0; i < bits.length; i++) {
+                for (long w = bits[i]; w != 0; w &= w - 1) c.array[n++] = (char) (i * 64 + Long.numberOfTrailingZeros(w));
+            }
+            return c;
+        }
+
+        boolean contains(char low) {
+            if (bits != null) return (bits[low >>> 6] & (1L << low)) != 0;
+            return Arrays.binarySearch(array, 0, cardinality, low) >= 0;
+        }
+
+        boolean add(char low) {
+            if (bits != null) {
+                long before = bits[low >>> 6];
+                bits[low >>> 6] |= 1L << low;
+                if (before == bits[low >>> 6]) return false;
+                cardinality++;
+                return true;
+            }
+            int at = Arrays.binarySearch(array, 0, cardinality, low);
+            if (at >= 0) return false;
+            at = -at - 1;
+            if (cardinality == ARRAY_MAX) {
+                bits = toBits();
+                array = null;
+                bits[low >>> 6] |= 1L << low;
+            } else {
+                if (cardinality == array.length) array = Arrays.copyOf(array, Math.min(ARRAY_MAX, Math.max(4, 2 * cardinality)));
+                System.arraycopy(array, at, array, at + 1, cardinality - at);
+                array[at] = low;
+            }
+            cardinality++;
+            return true;
+        }
+
+        boolean remove(char low) {
+            if (bits != null) {
+                if ((bits[low >>> 6] & (1L << low)) == 0) return false;
+                bits[low >>> 6] &= ~(1L << low);
+                if (--cardinality <= ARRAY_MAX) {
+                    Chunk shrunk = ofBits(bits);
+                    array = shrunk == null ? new char[0] : shrunk.array;
+                    bits = null;
+                }
+                return true;
+            }
+            int at = Arrays.binarySearch(array, 0, cardinality, low);
+            if (at < 0) return false;
+            System.arraycopy(array, at + 1, array, at, cardinality - at - 1);
+            cardinality--;
+            return true;
+        }
+
+        long[] toBits() {
+            if (bits != null) return bits.clone();
+            long[] b = new long[1024];
+            for (int i = 0; i < cardinality; i++) b[array[i] >>> 6] |= 1L << array[i];
+            return b;
+        }
+
+        Chunk and(Chunk other) {
+            if (array != null && other.array != null) {
+                char[] out = new char[Math.min(cardinality, other.cardinality)];
+                int n = 0;
+                for (int i = 0, j = 0; i < cardinality && j < other.cardinality; ) {
+                    if (array[i] < other.array[j]) i++;
+                    else if (array[i] > other.array[j]) j++;
+                    else {
+                        out[n++] = array[i++];
+                        j++;
+                    }
+                }
+                return n == 0 ? null : ofArray(out, n);
+            }
+            if (array != null || other.array != null) {
+                Chunk small = array != null ? this : other;
+                Chunk large = small == this ? other : this;
+                char[] out = new char[small.cardinality];
+                int n = 0;
+                for (int i = 0; i < small.cardinality; i++) {
+                    if (large.contains(small.array[i])) out[n++] = small.array[i];
+                }
+                return n == 0 ? null : ofArray(out, n);
+            }
+            long[] out = new long[1024];
+            for (int i = 0; i < 1024; i++) out[i] = bits[i] & other.bits[i];
+            return ofBits(out);
+        }
+
+        Chunk or(Chunk other) {
+            if (array != null && other.array != null && cardinality + other.cardinality <= ARRAY_MAX) {
+                char[] out = new char[cardinality + other.cardinality];
+                int n = 0, i = 0, j = 0;
+                while (i < cardinality && j < other.cardinality) {
+                    if (array[i] < other.array[j]) out[n++] = array[i++];
+                    else if (array[i] > other.array[j]) out[n++] = other.array[j++];
+                    else {
+                        out[n++] = array[i++];
+                        j++;
+                    }
+                }
+                while (i < cardinality) out[n++] = array[i++];
+                while (j < other.cardinality) out[n++] = other.array[j++];
+                return ofArray(out, n);
+            }
+            long[] out = toBits();
+            if (other.bits != null) {
+                for (int i = 0; i < 1024; i++) out[i] |= other.bits[i];
+            } else {
+                for (int i = 0; i < other.cardinality; i++) out[other.array[i] >>> 6] |= 1L << other.array[i];
+            }
+            return ofBits(out);
+        }
+
+        Chunk andNot(Chunk other) {
+            if (array != null) {
+                char[] out = new char[cardinality];
+                int n = 0;
+                for (int i = 0; i < cardinality; i++) {
+                    if (!other.contains(array[i])) out[n++] = array[i];
+                }
+                return n == 0 ? null : ofArray(out, n);
+            }
+            long[] out = bits.clone();
+            if (other.bits != null) {
+                for (int i = 0; i < 1024; i++) out[i] &= ~other.bits[i];
+            } else {
+                for (int i = 0; i < other.cardinality; i++) out[other.array[i] >>> 6] &= ~(1L << other.array[i]);
+            }
+            return ofBits(out);
+        }
+
+        Chunk copy() {
+            Chunk c = new Chunk();
+            c.array = array == null ? null : Arrays.copyOf(array, cardinality);
+            c.bits = bits == null ? null : bits.clone();
+            c.cardinality = cardinality;
+            return c;
+        }
+
+        void forEach(int high, IntConsumer action) {
+            if (bits != null) {
+                for (int i = 0; i < bits.length; i++) {
+                    for (long w = bits[i]; w != 0; w &= w - 1) action.accept(high | (i * 64 + Long.numberOfTrailingZeros(w)));
+                }
+            } else {
+                for (int i = 0; i < cardinality; i++) action.accept(high | array[i]);
+            }
+        }
+    }
+
+    void add(int value) {
+        char key = (char) (value >>> 16);
+        int at = find(key);
+        if (at < 0) {
+            at = -at - 1;
+            insert(at, key, Chunk.ofArray(new char[4], 0));
+        }
+        chunks[at].add((char) value);
+    }
+
+    void remove(int value) {
+        int at = find((char) (value >>> 16));
+        if (at < 0 || !chunks[at].remove((char) value)) return;
+        if (chunks[at].cardinality == 0) {
+            System.arraycopy(keys, at + 1, keys, at, size - at - 1);
+            System.arraycopy(chunks, at + 1, chunks, at, size - at - 1);
+            chunks[--size] = null;
+        }
+    }
+
+    boolean contains(int value) {
+        int at = find((char) (value >>> 16));
+        return at >= 0 && chunks[at].contains((char) value);
+    }
+
+    boolean isEmpty() { return size == 0; }
+
+    int cardinality() {
+        int n = 0;
+        for (int i = 0; i < size; i++) n += chunks[i].cardinality;
+        return n;
+    }
+
+    RoaringBitmap and(RoaringBitmap other) {
+        RoaringBitmap out = new RoaringBitmap();
+        for (int i = 0, j = 0; i < size && j < other.size; ) {
+            if (keys[i] < other.keys[j]) i++;
+            else if (keys[i] > other.keys[j]) j++;
+            else {
+                out.append(keys[i], chunks[i++].and(other.chunks[j++]));
+            }
+        }
+        return out;
+    }
+
+    RoaringBitmap or(RoaringBitmap other) {
+        RoaringBitmap out = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                out.append(keys[i], chunks[i++].copy());
+            } else if (i == size || keys[i] > other.keys[j]) {
+                out.append(other.keys[j], other.chunks[j++].copy());
+            } else {
+                out.append(keys[i], chunks[i++].or(other.chunks[j++]));
+            }
+        }
+        return out;
+    }
+
+    RoaringBitmap andNot(RoaringBitmap other) {
+        RoaringBitmap out = new RoaringBitmap();
+        for (int i = 0, j = 0; i < size; i++) {
+            while (j < other.size && other.keys[j] < keys[i]) j++;
+            out.append(keys[i], j < other.size && other.keys[j] == keys[i] ? chunks[i].andNot(other.chunks[j]) : chunks[i].copy());
+        }
+        return out;
+    }
+
+    RoaringBitmap copy() {
+        RoaringBitmap out = new RoaringBitmap();
+        for (int i = 0; i < size; i++) out.append(keys[i], chunks[i].copy());
+        return out;
+    }
+
+    // Values in ascending order
+    void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) chunks[i].forEach(keys[i] << 16, action);
+    }
+
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insert(int at, char key, Chunk chunk) {
+        if (size == keys.length) {
+            int grown = Math.max(4, 2 * size);
+            keys = Arrays.copyOf(keys, grown);
+            chunks = Arrays.copyOf(chunks, grown);
+        }
+        System.arraycopy(keys, at, keys, at + 1, size - at);
+        System.arraycopy(chunks, at, chunks, at + 1, size - at);
+        keys[at] = key;
+        chunks[at] = chunk;
+        size++;
+    }
+
+    // Adds a chunk past the current last key; empty results are dropped
+    private void append(char key, Chunk chunk) {
+        if (chunk != null && chunk.cardinality > 0) insert(size, key, chunk);
+    }
+}
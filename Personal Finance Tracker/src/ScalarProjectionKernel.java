@@ -0,0 +1,26 @@
+// Portable kernel; also finishes the tail lanes of the vector kernel.
+class ScalarProjectionKernel implements ProjectionKernel {
+    static final double SQRT3 = Math.sqrt(3.0);
+
+    @Override
+    public void step(double[] balances, long[] rng, int from, int to, double[] mean, double[] sd, double[] sign, double scale) {
+        for (int i = from; i < to; i++) {
+            long x = rng[i];
+            double b = balances[i];
+            for (int c = 0; c < mean.length; c++) {
+                // Irwin-Hall(4) approximation of a standard normal deviate
+                double s = 0;
+                for (int k = 0; k < 4; k++) {
+                    x ^= x << 13;
+                    x ^= x >>> 7;
+                    x ^= x << 17;
+                    s += (x >>> 11) * 0x1.0p-53;
+                }
+                double amount = Math.max(0, mean[c] + sd[c] * (s - 2) * SQRT3);
+                b += sign[c] * amount * scale;
+            }
+            rng[i] = x;
+            balances[i] = b;
+        }
+    }
+}
@@ -0,0 +1,406 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Ordered schema migrations recorded in a schema_version table. DDL-only
+// migrations and rewrites of small tables run during startup; larger table
+// rewrites copy rows in bounded chunks while triggers mirror concurrent writes
+// into the new table, so they can run on a background thread against a live
+// database.
+class SchemaMigrator {
+    interface ProgressListener {
+        void progress(int version, String description, long done, long total);
+    }
+
+    private static final int REWRITE_CHUNK = 10_000;
+
+    private abstract static class Migration {
+        final int version;
+        final String description;
+
+        Migration(int version, String description) {
+            this.version = version;
+            this.description = description;
+        }
+
+        abstract boolean isQuick();
+
+        // Whether later migrations may run while this one waits for migrateRemaining
+        boolean canDefer() { return false; }
+
+        // Whether this migration is cheap enough to run before the window shows
+        abstract boolean canRunInline(Connection conn) throws SQLException;
+
+        abstract void apply(Connection conn, ProgressListener listener) throws SQLException;
+    }
+
+    private final List<Migration> migrations = new ArrayList<>();
+
+    public SchemaMigrator() {
+        ddl(1, "Baseline tables",
+            "CREATE TABLE IF NOT EXISTS transactions ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, date TEXT, type TEXT, category TEXT, amount REAL, description TEXT)",
+            "CREATE TABLE IF NOT EXISTS budgets (category TEXT PRIMARY KEY, limit_amount REAL, spent REAL)",
+            "CREATE TABLE IF NOT EXISTS reminders ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, dueDate TEXT, description TEXT, paid INTEGER)",
+            "CREATE TABLE IF NOT EXISTS categories (category TEXT PRIMARY KEY)");
+        ddl(2, "Recurring transaction rules",
+            "CREATE TABLE IF NOT EXISTS recurring_rules ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, rule TEXT, start_date TEXT, type TEXT, category TEXT, "
+                + "amount REAL, description TEXT, last_posted TEXT)");
+        ddl(3, "Import fingerprint index",
+            "CREATE TABLE IF NOT EXISTS import_fingerprints (hash INTEGER PRIMARY KEY)");
+        rewrite(4, "Add id to budgets", "budgets",
+            "CREATE TABLE IF NOT EXISTS budgets_new ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, category TEXT UNIQUE, limit_amount REAL, spent REAL)",
+            "id, category, limit_amount, spent",
+            "src.rowid, src.category, src.limit_amount, src.spent");
+        rewrite(5, "Rename reminder columns to due_date/status", "reminders",
+            "CREATE TABLE IF NOT EXISTS reminders_new ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, due_date TEXT, description TEXT, status TEXT)",
+            "id, due_date, description, status",
+            "src.id, src.dueDate, src.description, CASE WHEN src.paid = 1 THEN 'Paid' ELSE 'Pending' END");
+        ddl(6, "Cold archive log",
+            "CREATE TABLE IF NOT EXISTS archive_log ("
+                + "year INTEGER PRIMARY KEY, state TEXT, row_count INTEGER, archived_at TEXT)");
+        ddl(7, "Currencies and FX rates",
+            "ALTER TABLE transactions ADD COLUMN currency TEXT NOT NULL DEFAULT 'USD'",
+            "ALTER TABLE recurring_rules ADD COLUMN currency TEXT NOT NULL DEFAULT 'USD'",
+            "CREATE TABLE IF NOT EXISTS fx_rates ("
+                + "base TEXT, quote TEXT, date TEXT, rate REAL, PRIMARY KEY (base, quote, date))",
+            "CREATE TABLE IF NOT EXISTS settings (key TEXT PRIMARY KEY, value TEXT)");
+        ddl(8, "Auto-categorization rules",
+            "CREATE TABLE IF NOT EXISTS category_rules ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, pattern TEXT NOT NULL, is_regex INTEGER NOT NULL DEFAULT 0, category TEXT NOT NULL)");
+        ddl(9, "Budget hierarchy",
+            "ALTER TABLE budgets ADD COLUMN parent TEXT");
+        ddl(10, "Budget periods",
+            "ALTER TABLE budgets ADD COLUMN period TEXT NOT NULL DEFAULT 'LIFETIME'");
+        ddl(11, "Saved filters",
+            "CREATE TABLE IF NOT EXISTS saved_filters (name TEXT PRIMARY KEY, query TEXT NOT NULL)");
+        index(12, "Transaction date and category indexes", "transactions",
+            "CREATE INDEX IF NOT EXISTS idx_transactions_date ON transactions(date)",
+            "CREATE INDEX IF NOT EXISTS idx_transactions_category_date ON transactions(category, date)");
+        ddl(13, "Transaction tags",
+            "CREATE TABLE IF NOT EXISTS tags (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL UNIQUE)",
+            "CREATE TABLE IF NOT EXISTS transaction_tags ("
+                + "transaction_id INTEGER NOT NULL, tag_id INTEGER NOT NULL, PRIMARY KEY (transaction_id, tag_id)) WITHOUT ROWID",
+            "CREATE INDEX IF NOT EXISTS idx_transaction_tags_tag ON transaction_tags(tag_id)");
+        ddl(14, "Row versions and change tracking", concat(
+            new String[]{
+                "CREATE TABLE IF NOT EXISTS sync_state (name TEXT PRIMARY KEY, seq INTEGER NOT NULL DEFAULT 0)",
+                "CREATE TABLE IF NOT EXISTS tombstones ("
+                    + "table_name TEXT NOT NULL, id INTEGER NOT NULL, seq INTEGER NOT NULL, deleted_at TEXT NOT NULL)",
+                "CREATE INDEX IF NOT EXISTS idx_tombstones_seq ON tombstones(table_name, seq)"},
+            versioned("transactions", "date, type, category, amount, description, currency"),
+            versioned("budgets", "category, limit_amount, spent, parent, period"),
+            versioned("reminders", "due_date, description, status"),
+            versioned("recurring_rules", "rule, start_date, type, category, amount, description, currency, last_posted"),
+            versioned("category_rules", "pattern, is_regex, category"),
+            new String[]{
+                "CREATE TRIGGER IF NOT EXISTS transactions_untag AFTER DELETE ON transactions"
+                    + " BEGIN DELETE FROM transaction_tags WHERE transaction_id = OLD.id; END"}));
+        ddl(15, "Accounts and opening balances",
+            "ALTER TABLE transactions ADD COLUMN account TEXT NOT NULL DEFAULT '" + Ledger.DEFAULT_ACCOUNT + "'",
+            // Signed cents per account and currency moved out with archived years
+            "CREATE TABLE IF NOT EXISTS account_openings ("
+                + "account TEXT NOT NULL, currency TEXT NOT NULL, cents INTEGER NOT NULL, PRIMARY KEY (account, currency))",
+            // Moving a row to another account is a versioned change too
+            "DROP TRIGGER IF EXISTS transactions_versioned_upd",
+            updateTrigger("transactions", "date, type, category, amount, description, currency, account"));
+    }
+
+    // Optimistic-concurrency columns for an id-keyed table. Every change
+    // bumps the table's sequence in sync_state. An update stamps the row's
+    // version with the new sequence, so "version = ?" detects a lost update
+    // and "version > ?" finds rows changed since a poll. Inserts keep version
+    // 0 and are found by id, since ids only grow. Deletes leave a tombstone.
+    private static String[] versioned(String table, String dataColumns) {
+        return new String[]{
+            "ALTER TABLE " + table + " ADD COLUMN version INTEGER NOT NULL DEFAULT 0",
+            "CREATE INDEX IF NOT EXISTS idx_" + table + "_version ON " + table + "(version)",
+            "INSERT OR IGNORE INTO sync_state(name, seq) VALUES ('" + table + "', 0)",
+            "CREATE TRIGGER IF NOT EXISTS " + table + "_versioned_ins AFTER INSERT ON " + table
+                + " BEGIN " + bump(table) + " END",
+            updateTrigger(table, dataColumns),
+            "CREATE TRIGGER IF NOT EXISTS " + table + "_versioned_del AFTER DELETE ON " + table
+                + " BEGIN " + bump(table) + " INSERT INTO tombstones(table_name, id, seq, deleted_at)"
+                + " VALUES ('" + table + "', OLD.id, " + seq(table) + ", datetime('now')); END"};
+    }
+
+    // Only updates of `dataColumns` count as changes
+    private static String updateTrigger(String table, String dataColumns) {
+        return "CREATE TRIGGER IF NOT EXISTS " + table + "_versioned_upd AFTER UPDATE OF " + dataColumns + " ON " + table
+            + " BEGIN " + bump(table) + " UPDATE " + table + " SET version = " + seq(table) + " WHERE id = NEW.id; END";
+    }
+
+    private static String bump(String table) {
+        return "UPDATE sync_state SET seq = seq + 1 WHERE name = '" + table + "';";
+    }
+
+    private static String seq(String table) {
+        return "(SELECT seq FROM sync_state WHERE name = '" + table + "')";
+    }
+
+    private static String[] concat(String[]... parts) {
+        List<String> all = new ArrayList<>();
+        for (String[] part : parts) all.addAll(Arrays.asList(part));
+        return all.toArray(new String[0]);
+    }
+
+    private void ddl(int version, String description, String... statements) {
+        migrations.add(new Migration(version, description) {
+            @Override
+            boolean isQuick() { return true; }
+
+            @Override
+            boolean canRunInline(Connection conn) { return true; }
+
+            @Override
+            void apply(Connection conn, ProgressListener listener) throws SQLException {
+                try (Statement stmt = conn.createStatement()) {
+                    for (String sql : statements) stmt.execute(sql);
+                }
+            }
+        });
+    }
+
+    // Index builds on `table`. Like ddl, except a large table defers the build
+    // to migrateRemaining so startup does not wait on the sort; queries work
+    // unindexed until then.
+    private void index(int version, String description, String table, String... statements) {
+        migrations.add(new Migration(version, description) {
+            @Override
+            boolean isQuick() { return true; }
+
+            @Override
+            boolean canRunInline(Connection conn) throws SQLException {
+                return rowCount(conn, table) <= REWRITE_CHUNK;
+            }
+
+            @Override
+            boolean canDefer() { return true; }
+
+            @Override
+            void apply(Connection conn, ProgressListener listener) throws SQLException {
+                long total = rowCount(conn, table);
+                listener.progress(version, description, 0, total);
+                try (Statement stmt = conn.createStatement()) {
+                    for (String sql : statements) stmt.execute(sql);
+                }
+                listener.progress(version, description, total, total);
+            }
+        });
+    }
+
+    private static long rowCount(Connection conn, String table) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // Rebuilds `table` as `<table>_new` and swaps it in. selectExprs refer to
+    // the old row as "src."; the same expressions with "NEW." feed the mirror
+    // triggers. The new table's first column must be the key the rows map to.
+    private void rewrite(int version, String description, String table, String createSql, String columns, String selectExprs) {
+        migrations.add(new Migration(version, description) {
+            @Override
+            boolean isQuick() { return false; }
+
+            @Override
+            boolean canRunInline(Connection conn) throws SQLException {
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+                    return rs.next() && rs.getLong(1) <= REWRITE_CHUNK;
+                }
+            }
+
+            // Each step that touches `<table>_new` takes the write lock and first
+            // checks that another tracker has not finished this rewrite meanwhile
+            @Override
+            void apply(Connection conn, ProgressListener listener) throws SQLException {
+                String target = table + "_new";
+                String key = columns.split(",")[0].trim();
+                String mirrored = selectExprs.replace("src.", "NEW.");
+                boolean started = underWriteLock(conn, () -> {
+                    if (isRecorded(conn, version)) return false;
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.execute(createSql);
+                        stmt.execute("CREATE TRIGGER IF NOT EXISTS " + target + "_ins AFTER INSERT ON " + table
+                                + " BEGIN INSERT OR REPLACE INTO " + target + "(" + columns + ") VALUES (" + mirrored + "); END");
+                        stmt.execute("CREATE TRIGGER IF NOT EXISTS " + target + "_upd AFTER UPDATE ON " + table
+                                + " BEGIN DELETE FROM " + target + " WHERE " + key + " = OLD.rowid;"
+                                + " INSERT OR REPLACE INTO " + target + "(" + columns + ") VALUES (" + mirrored + "); END");
+                        stmt.execute("CREATE TRIGGER IF NOT EXISTS " + target + "_del AFTER DELETE ON " + table
+                                + " BEGIN DELETE FROM " + target + " WHERE " + key + " = OLD.rowid; END");
+                    }
+                    return true;
+                });
+                if (!started) return;
+
+                long total;
+                try (Statement stmt = conn.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+                    total = rs.next() ? rs.getLong(1) : 0;
+                }
+
+                // Copy in rowid ranges; INSERT OR IGNORE keeps rows the triggers already wrote
+                long done = 0, lastRowId = Long.MIN_VALUE;
+                try (PreparedStatement bound = conn.prepareStatement(
+                         "SELECT MAX(rowid), COUNT(*) FROM (SELECT rowid FROM " + table
+                         + " WHERE rowid > ? ORDER BY rowid LIMIT " + REWRITE_CHUNK + ")");
+                     PreparedStatement copy = conn.prepareStatement(
+                         "INSERT OR IGNORE INTO " + target + "(" + columns + ") SELECT " + selectExprs
+                         + " FROM " + table + " AS src WHERE src.rowid > ? AND src.rowid <= ?")) {
+                    while (true) {
+                        long upper, rows;
+                        bound.setLong(1, lastRowId);
+                        try (ResultSet rs = bound.executeQuery()) {
+                            rs.next();
+                            rows = rs.getLong(2);
+                            upper = rs.getLong(1);
+                        }
+                        if (rows == 0) break;
+                        long from = lastRowId;
+                        boolean copied = underWriteLock(conn, () -> {
+                            if (isRecorded(conn, version)) return false;
+                            copy.setLong(1, from);
+                            copy.setLong(2, upper);
+                            copy.executeUpdate();
+                            return true;
+                        });
+                        if (!copied) return;
+                        lastRowId = upper;
+                        done += rows;
+                        listener.progress(version, description, Math.min(done, total), total);
+                    }
+                }
+
+                underWriteLock(conn, () -> {
+                    if (isRecorded(conn, version)) return false;
+                    try (Statement stmt = conn.createStatement()) {
+                        stmt.execute("DROP TRIGGER IF EXISTS " + target + "_ins");
+                        stmt.execute("DROP TRIGGER IF EXISTS " + target + "_upd");
+                        stmt.execute("DROP TRIGGER IF EXISTS " + target + "_del");
+                        stmt.execute("DROP TABLE " + table);
+                        stmt.execute("ALTER TABLE " + target + " RENAME TO " + table);
+                    }
+                    recordVersion(conn, this);
+                    return true;
+                });
+            }
+        });
+    }
+
+    public int currentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                    + "version INTEGER PRIMARY KEY, description TEXT, applied_at TEXT)");
+            try (ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    // Versions recorded so far. A deferred index build can leave a gap below
+    // later versions, so this is a set rather than a maximum.
+    private Set<Integer> appliedVersions(Connection conn) throws SQLException {
+        currentVersion(conn);
+        Set<Integer> applied = new HashSet<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT version FROM schema_version")) {
+            while (rs.next()) applied.add(rs.getInt(1));
+        }
+        return applied;
+    }
+
+    // Applies pending migrations in order, stopping at the first rewrite of a
+    // table too large to copy in one chunk. Large index builds are skipped
+    // rather than waited on. Returns true if migrations remain for
+    // migrateRemaining.
+    public boolean migrateQuick(Connection conn) throws SQLException {
+        Set<Integer> applied = appliedVersions(conn);
+        boolean remaining = false;
+        for (Migration m : migrations) {
+            if (applied.contains(m.version)) continue;
+            if (!m.canRunInline(conn)) {
+                if (!m.canDefer()) return true;
+                remaining = true;
+                continue;
+            }
+            applyAndRecord(conn, m, (v, d, done, total) -> {});
+        }
+        return remaining;
+    }
+
+    public void migrateRemaining(Connection conn, ProgressListener listener) throws SQLException {
+        Set<Integer> applied = appliedVersions(conn);
+        for (Migration m : migrations) {
+            if (!applied.contains(m.version)) applyAndRecord(conn, m, listener);
+        }
+    }
+
+    private void applyAndRecord(Connection conn, Migration m, ProgressListener listener) throws SQLException {
+        if (!m.isQuick()) {
+            m.apply(conn, listener); // rewrites record inside their swap transaction
+            return;
+        }
+        // The DDL and its record commit together. A second tracker starting at
+        // the same time waits for the lock, then finds the version recorded and
+        // skips steps such as ADD COLUMN that cannot run twice.
+        underWriteLock(conn, () -> {
+            if (isRecorded(conn, m.version)) return false;
+            m.apply(conn, listener);
+            recordVersion(conn, m);
+            return true;
+        });
+    }
+
+    private interface LockedWork {
+        boolean run() throws SQLException;
+    }
+
+    // Runs `work` in a BEGIN IMMEDIATE transaction, which takes the database's
+    // write lock up front; `work` returns whether it changed anything
+    private static boolean underWriteLock(Connection conn, LockedWork work) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("BEGIN IMMEDIATE");
+            try {
+                boolean changed = work.run();
+                stmt.execute("COMMIT");
+                return changed;
+            } catch (SQLException | RuntimeException ex) {
+                stmt.execute("ROLLBACK");
+                throw ex;
+            }
+        }
+    }
+
+    private static boolean isRecorded(Connection conn, int version) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM schema_version WHERE version = ?")) {
+            ps.setInt(1, version);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    private static void recordVersion(Connection conn, Migration m) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                 "INSERT OR REPLACE INTO schema_version(version, description, applied_at) VALUES (?, ?, ?)")) {
+            ps.setInt(1, m.version);
+            ps.setString(2, m.description);
+            ps.setString(3, LocalDateTime.now().toString());
+            ps.executeUpdate();
+        }
+    }
+}
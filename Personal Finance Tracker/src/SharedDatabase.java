@@ -0,0 +1,112 @@
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Support for several tracker processes sharing one SQLite file. Writers
+// wait out each other's locks with a busy timeout and retry whole units of
+// work with jittered exponential backoff. Lost updates are caught by
+// conditional writes against the row versions from migration 14. Readers
+// notice other writers' commits through PRAGMA data_version, then read the
+// per-table sequences in sync_state to see which tables moved.
+final class SharedDatabase {
+    static final int BUSY_TIMEOUT_MS = 5_000;
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long FIRST_BACKOFF_MS = 20;
+    private static final long MAX_BACKOFF_MS = 2_000;
+
+    // A conditional write found rows changed or deleted since they were read
+    static final class ConflictException extends SQLException {
+        ConflictException(String message) { super(message); }
+    }
+
+    interface ConnectionSource {
+        Connection open() throws SQLException;
+    }
+
+    interface Work<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    private SharedDatabase() {}
+
+    static Connection open(String url) throws SQLException {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+        } catch (SQLException ex) {
+            conn.close();
+            throw ex;
+        }
+        return conn;
+    }
+
+    // WAL lets other processes keep reading while one writes; the mode is stored in the file
+    static void enableWal(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA journal_mode = WAL");
+        }
+    }
+
+    // Runs `work` on a fresh connection, again from the start while the
+    // database stays locked past the busy timeout. That includes a WAL
+    // snapshot that went stale before its first write. Closing the connection
+    // rolls back whatever the failed attempt left open.
+    static <T> T withRetry(ConnectionSource connections, Work<T> work) throws SQLException {
+        long backoff = FIRST_BACKOFF_MS;
+        for (int attempt = 1; ; attempt++) {
+            try (Connection conn = connections.open()) {
+                return work.run(conn);
+            } catch (SQLException ex) {
+                if (!isBusy(ex) || attempt == MAX_ATTEMPTS) throw ex;
+            }
+            try {
+                Thread.sleep(backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for the database", ex);
+            }
+            backoff = Math.min(MAX_BACKOFF_MS, backoff * 2);
+        }
+    }
+
+    static boolean isBusy(SQLException ex) {
+        if (ex instanceof ConflictException) return false;
+        String message = String.valueOf(ex.getMessage());
+        return ex.getErrorCode() == 5 || ex.getErrorCode() == 6
+            || message.contains("SQLITE_BUSY") || message.contains("SQLITE_LOCKED") || message.contains("database is locked");
+    }
+
+    // Changes whenever another connection commits; it costs no disk read
+    static long dataVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("PRAGMA data_version")) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // Change sequence per versioned table
+    static Map<String, Long> sequences(Connection conn) throws SQLException {
+        Map<String, Long> sequences = new HashMap<>();
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT name, seq FROM sync_state")) {
+            while (rs.next()) sequences.put(rs.getString(1), rs.getLong(2));
+        }
+        return sequences;
+    }
+
+    // Drops old tombstones and records the newest sequence dropped per table.
+    // An instance that last synced before that point has to reload the table.
+    static void pruneTombstones(Connection conn, int days) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            String old = "deleted_at < datetime('now', '-" + days + " days')";
+            stmt.executeUpdate("INSERT OR REPLACE INTO sync_state(name, seq) SELECT 'pruned:' || table_name, MAX(seq)"
+                + " FROM tombstones WHERE " + old + " GROUP BY table_name");
+            stmt.executeUpdate("DELETE FROM tombstones WHERE " + old);
+        }
+    }
+}
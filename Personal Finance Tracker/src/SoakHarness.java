@@ -0,0 +1,684 @@
+import javax.swing.*;
+import javax.swing.table.JTableHeader;
+import java.awt.*;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+// Soak harness: drives the real UI through scripted sessions against a
+// generated database and reports how responsive it stays over time. A child
+// JVM runs in a scratch directory (so the user's finance_tracker.db is never
+// touched), seeds it, launches the app and repeats a weighted mix of CSV
+// imports, Advanced tab filters and sorts, edits through Edit Transaction,
+// spending reports, chart repaints and saves. Dialogs the actions open are
+// answered automatically.
+//
+// Measured: how long each EDT event blocks (dispatch), how late a timer
+// posted to the EDT every 50 ms runs (responsiveness), wall and EDT time
+// per action, live heap after GC and database file size. Results go to a
+// key=value report plus a per-window timeline CSV; --compare diffs two
+// reports and exits 1 on regressions. Needs a display; Xvfb works:
+//
+//   xvfb-run java -cp "lib/*:." SoakHarness --minutes 120 --rows 200000 --report soak-new.txt
+//   java -cp . SoakHarness --compare soak-old.txt soak-new.txt [thresholdPercent]
+public class SoakHarness {
+    private static final String[] CATEGORIES = {"Groceries", "Rent", "Entertainment", "Utilities", "Transport",
+            "Dining", "Health", "Travel", "Shopping", "Insurance", "Salary", "Bonus"};
+    private static final long PROBE_MILLIS = 50;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 3 && args[0].equals("--compare")) {
+            double threshold = args.length > 3 ? Double.parseDouble(args[3]) : 10;
+            System.exit(compare(new File(args[1]), new File(args[2]), threshold) ? 1 : 0);
+        }
+        Options options = Options.parse(args);
+        if (options.child) {
+            new Session(options).run();
+            System.exit(0);
+        }
+
+        File work = Files.createTempDirectory("finance-soak").toFile();
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+        command.addAll(Arrays.asList("-cp", absoluteClassPath(), "SoakHarness", "--child"));
+        command.addAll(options.forwarded());
+        Process child = new ProcessBuilder(command).directory(work).inheritIO().start();
+        int exit = child.waitFor();
+        if (!options.keep) deleteTree(work);
+        else System.out.println("Scratch directory kept: " + work);
+        if (exit != 0) {
+            System.err.println("Soak session failed (exit " + exit + "); is a display available?");
+            System.exit(exit);
+        }
+        System.out.println("Report written to " + options.report);
+    }
+
+    static final class Options {
+        boolean child;
+        boolean keep;
+        double minutes = 60;
+        int rows = 200_000;
+        long seed = 42;
+        long thinkMillis = 250;
+        double windowMinutes = 5;
+        String label = "";
+        File report = new File("soak-report.txt").getAbsoluteFile();
+
+        static Options parse(String[] args) {
+            Options o = new Options();
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--child": o.child = true; break;
+                    case "--keep": o.keep = true; break;
+                    case "--minutes": o.minutes = Double.parseDouble(args[++i]); break;
+                    case "--hours": o.minutes = 60 * Double.parseDouble(args[++i]); break;
+                    case "--rows": o.rows = Integer.parseInt(args[++i]); break;
+                    case "--seed": o.seed = Long.parseLong(args[++i]); break;
+                    case "--think-ms": o.thinkMillis = Long.parseLong(args[++i]); break;
+                    case "--window-minutes": o.windowMinutes = Double.parseDouble(args[++i]); break;
+                    case "--label": o.label = args[++i]; break;
+                    case "--report": o.report = new File(args[++i]).getAbsoluteFile(); break;
+                    default: throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            return o;
+        }
+
+        List<String> forwarded() {
+            return Arrays.asList("--minutes", String.valueOf(minutes), "--rows", String.valueOf(rows),
+                    "--seed", String.valueOf(seed), "--think-ms", String.valueOf(thinkMillis),
+                    "--window-minutes", String.valueOf(windowMinutes), "--label", label,
+                    "--report", report.getPath());
+        }
+    }
+
+    // One scripted session inside the child JVM
+    static final class Session {
+        private final Options options;
+        private final Random random;
+        private final TimingEventQueue queue = new TimingEventQueue();
+        private final Histogram responsiveness = new Histogram();
+        private final Histogram windowResponsiveness = new Histogram();
+        private final Map<String, Histogram> actionWall = new LinkedHashMap<>();
+        private final Map<String, Histogram> actionEdt = new LinkedHashMap<>();
+        private final List<String> timeline = new ArrayList<>();
+        private final List<double[]> heapSamples = new ArrayList<>();
+        private final List<double[]> dbSamples = new ArrayList<>();
+        private final DialogAnswerer answerer;
+        private FinanceTracker app;
+        private int imports;
+
+        Session(Options options) {
+            this.options = options;
+            this.random = new Random(options.seed);
+            this.answerer = new DialogAnswerer(new Random(options.seed + 1));
+        }
+
+        void run() throws Exception {
+            seedDatabase();
+            Toolkit.getDefaultToolkit().getSystemEventQueue().push(queue);
+            ScheduledExecutorService probe = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "soak-probe");
+                t.setDaemon(true);
+                return t;
+            });
+            probe.scheduleAtFixedRate(() -> {
+                long posted = System.nanoTime();
+                EventQueue.invokeLater(() -> {
+                    long micros = (System.nanoTime() - posted) / 1000;
+                    responsiveness.record(micros);
+                    windowResponsiveness.record(micros);
+                });
+            }, PROBE_MILLIS, PROBE_MILLIS, TimeUnit.MILLISECONDS);
+
+            AtomicReference<FinanceTracker> launched = new AtomicReference<>();
+            SwingUtilities.invokeAndWait(() -> launched.set(FinanceTracker.launch()));
+            app = launched.get();
+            app.interactive().get(10, TimeUnit.MINUTES);
+            answerer.start();
+
+            long start = System.nanoTime();
+            long end = start + (long) (options.minutes * 60e9);
+            long windowNanos = (long) (options.windowMinutes * 60e9);
+            long nextWindow = start + windowNanos;
+            sample(0);
+            action("load", () -> clickMenu("Load Data"));
+            int actions = 1;
+            while (System.nanoTime() < end) {
+                int roll = random.nextInt(100);
+                if (roll < 25) action("filter", this::filter);
+                else if (roll < 35) action("sort", this::sort);
+                else if (roll < 55) action("edit", this::edit);
+                else if (roll < 65) action("report", () -> click("Reports", "Show Spending Report"));
+                else if (roll < 80) action("chart", this::chart);
+                else if (roll < 92) importCsv();
+                else action("save", () -> clickMenu("Save Data"));
+                actions++;
+                Thread.sleep(options.thinkMillis);
+                if (System.nanoTime() >= nextWindow) {
+                    sample((System.nanoTime() - start) / 60e9);
+                    nextWindow += windowNanos;
+                }
+            }
+            sample((System.nanoTime() - start) / 60e9);
+            answerer.stop();
+            probe.shutdownNow();
+            writeReport((System.nanoTime() - start) / 60e9, actions);
+        }
+
+        // Same schema the app migrates to, filled with a few years of history
+        private void seedDatabase() throws SQLException {
+            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:finance_tracker.db")) {
+                SchemaMigrator migrator = new SchemaMigrator();
+                migrator.migrateQuick(conn);
+                migrator.migrateRemaining(conn, (v, d, done, total) -> {});
+                conn.setAutoCommit(false);
+                try (PreparedStatement insert = conn.prepareStatement(
+                        "INSERT INTO transactions(date, type, category, amount, description, currency) VALUES (?, ?, ?, ?, ?, ?)")) {
+                    for (int i = 0; i < options.rows; i++) {
+                        String[] row = randomRow();
+                        for (int c = 0; c < row.length; c++) insert.setString(c + 1, row[c]);
+                        insert.addBatch();
+                        if (i % 10_000 == 9_999) insert.executeBatch();
+                    }
+                    insert.executeBatch();
+                }
+                conn.commit();
+            }
+        }
+
+        private String[] randomRow() {
+            String category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            boolean income = category.equals("Salary") || category.equals("Bonus");
+            double amount = Math.round(Math.exp(2 + random.nextGaussian() * 1.2) * 100) / 100.0;
+            return new String[]{LocalDate.now().minusDays(random.nextInt(5 * 365)).toString(), income ? "Income" : "Expense",
+                    category, String.valueOf(amount), "Merchant " + random.nextInt(3000) + " #" + random.nextInt(100_000), "USD"};
+        }
+
+        // Runs one scripted step and waits until the EDT is idle with no dialog left open
+        private void action(String name, Runnable onEdt) throws Exception {
+            long busyBefore = queue.busyNanos();
+            long start = System.nanoTime();
+            EventQueue.invokeLater(onEdt);
+            awaitQuiet();
+            long wall = (System.nanoTime() - start) / 1000;
+            long edt = (queue.busyNanos() - busyBefore) / 1000;
+            actionWall.computeIfAbsent(name, k -> new Histogram()).record(wall);
+            actionEdt.computeIfAbsent(name, k -> new Histogram()).record(edt);
+        }
+
+        private void awaitQuiet() throws Exception {
+            int quiet = 0;
+            while (quiet < 2) {
+                boolean[] dialogOpen = new boolean[1];
+                SwingUtilities.invokeAndWait(() -> dialogOpen[0] = DialogAnswerer.openDialog() != null);
+                quiet = dialogOpen[0] ? 0 : quiet + 1;
+                Thread.sleep(dialogOpen[0] ? 5 : 1);
+            }
+        }
+
+        private void filter() {
+            selectTab("Advanced Transactions");
+            Container panel = selectedTab();
+            JTextField search = fieldAfter(panel, "Search:");
+            JTextField from = fieldAfter(panel, "From (YYYY-MM-DD):");
+            JTextField to = fieldAfter(panel, "To (YYYY-MM-DD):");
+            int kind = random.nextInt(4);
+            search.setText(kind == 0 || kind == 2 ? "Merchant " + random.nextInt(300) : "");
+            LocalDate start = LocalDate.now().minusDays(random.nextInt(5 * 365));
+            from.setText(kind >= 1 && kind <= 2 ? start.toString() : "");
+            to.setText(kind >= 1 && kind <= 2 ? start.plusDays(30 + random.nextInt(365)).toString() : "");
+            button(panel, "Apply Filter").doClick(0);
+        }
+
+        private void sort() {
+            selectTab("Advanced Transactions");
+            JTable table = find(selectedTab(), JTable.class);
+            JTableHeader header = table.getTableHeader();
+            if (table.getRowSorter() != null) table.getRowSorter().toggleSortOrder(random.nextInt(table.getColumnCount()));
+            header.repaint();
+        }
+
+        private void edit() {
+            selectTab("Transactions");
+            Container panel = selectedTab();
+            JTable table = find(panel, JTable.class);
+            if (table.getRowCount() == 0) return;
+            int row = random.nextInt(table.getRowCount());
+            table.setRowSelectionInterval(row, row);
+            table.scrollRectToVisible(table.getCellRect(row, 0, true));
+            button(panel, "Edit Transaction").doClick(0);
+        }
+
+        private void chart() {
+            selectTab("Charts");
+            Container panel = selectedTab();
+            button(panel, "Show Chart").doClick(0);
+            ChartPanel chart = find(panel, ChartPanel.class);
+            chart.paintImmediately(0, 0, chart.getWidth(), chart.getHeight());
+        }
+
+        // A bank export of recent rows; every other file repeats half of the previous one
+        private void importCsv() throws Exception {
+            File csv = new File("import-" + (imports++ % 4) + ".csv").getAbsoluteFile();
+            try (PrintWriter out = new PrintWriter(new FileWriter(csv))) {
+                out.println("Date,Type,Category,Amount,Description,Currency");
+                Random rows = new Random(options.seed * 31 + imports / 2);
+                for (int i = 0; i < 1000; i++) {
+                    if (i == 500 && imports % 2 == 0) rows = new Random(System.nanoTime());
+                    String category = CATEGORIES[rows.nextInt(CATEGORIES.length - 2)];
+                    out.printf("%s,Expense,%s,%.2f,Card %d,USD%n", LocalDate.now().minusDays(rows.nextInt(60)),
+                            category, Math.exp(2 + rows.nextGaussian()), rows.nextInt(1_000_000));
+                }
+            }
+            answerer.nextFile(csv);
+            action("import", () -> clickMenu("Import CSV (Skip Duplicates)"));
+        }
+
+        private void clickMenu(String text) {
+            JMenuBar bar = app.getJMenuBar();
+            for (int m = 0; m < bar.getMenuCount(); m++) {
+                JMenu menu = bar.getMenu(m);
+                for (int i = 0; i < menu.getItemCount(); i++) {
+                    JMenuItem item = menu.getItem(i);
+                    if (item != null && text.equals(item.getText())) {
+                        item.doClick(0);
+                        return;
+                    }
+                }
+            }
+            throw new IllegalStateException("No menu item " + text);
+        }
+
+        private void click(String tab, String text) {
+            selectTab(tab);
+            button(selectedTab(), text).doClick(0);
+        }
+
+        private void selectTab(String title) {
+            JTabbedPane tabs = find(app.getContentPane(), JTabbedPane.class);
+            tabs.setSelectedIndex(tabs.indexOfTab(title));
+        }
+
+        private Container selectedTab() {
+            return (Container) find(app.getContentPane(), JTabbedPane.class).getSelectedComponent();
+        }
+
+        // Live heap after the last collection, database size and this window's EDT figures
+        private void sample(double minutes) {
+            long live = 0;
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                MemoryUsage afterGc = pool.getCollectionUsage();
+                if (pool.getType() == MemoryType.HEAP && afterGc != null) live += afterGc.getUsed();
+            }
+            double heapMb = live / 1048576.0;
+            double dbMb = databaseBytes() / 1048576.0;
+            heapSamples.add(new double[]{minutes, heapMb});
+            dbSamples.add(new double[]{minutes, dbMb});
+            Histogram dispatch = queue.takeWindow();
+            timeline.add(String.format("%.1f,%.2f,%.2f,%.2f,%.2f,%.1f,%.1f", minutes, dispatch.percentile(50) / 1000.0,
+                    dispatch.percentile(99) / 1000.0, windowResponsiveness.percentile(99) / 1000.0,
+                    dispatch.max() / 1000.0, heapMb, dbMb));
+            windowResponsiveness.reset();
+        }
+
+        private static long databaseBytes() {
+            long total = 0;
+            for (String suffix : new String[]{"", "-wal", "-journal", "-shm"}) total += new File("finance_tracker.db" + suffix).length();
+            return total;
+        }
+
+        private void writeReport(double minutes, int actions) throws IOException {
+            Map<String, String> report = new LinkedHashMap<>();
+            report.put("label", options.label);
+            report.put("java.version", System.getProperty("java.version"));
+            report.put("duration.minutes", String.format("%.1f", minutes));
+            report.put("rows.seeded", String.valueOf(options.rows));
+            report.put("actions.total", String.valueOf(actions));
+            Histogram dispatch = queue.total();
+            putLatency(report, "edt.dispatch", dispatch);
+            putLatency(report, "edt.responsiveness", responsiveness);
+            report.put("edt.stalls.over100ms", String.valueOf(dispatch.countAbove(100_000)));
+            report.put("edt.stalls.over1s", String.valueOf(dispatch.countAbove(1_000_000)));
+            for (String name : actionWall.keySet()) {
+                report.put("action." + name + ".count", String.valueOf(actionWall.get(name).count()));
+                putLatency(report, "action." + name + ".wall", actionWall.get(name));
+                putLatency(report, "action." + name + ".edt", actionEdt.get(name));
+            }
+            putGrowth(report, "heap.live", heapSamples);
+            putGrowth(report, "db.size", dbSamples);
+
+            try (PrintWriter out = new PrintWriter(new FileWriter(options.report))) {
+                out.println("# Soak report; compare with: java SoakHarness --compare old.txt new.txt");
+                for (Map.Entry<String, String> e : report.entrySet()) out.println(e.getKey() + "=" + e.getValue());
+            }
+            try (PrintWriter out = new PrintWriter(new FileWriter(options.report.getPath() + ".timeline.csv"))) {
+                out.println("minutes,dispatch_p50_ms,dispatch_p99_ms,responsiveness_p99_ms,dispatch_max_ms,heap_live_mb,db_mb");
+                for (String line : timeline) out.println(line);
+            }
+        }
+
+        private static void putLatency(Map<String, String> report, String prefix, Histogram h) {
+            for (double p : new double[]{50, 90, 99, 99.9}) {
+                report.put(prefix + ".p" + (p == Math.rint(p) ? String.valueOf((int) p) : String.valueOf(p)) + ".ms",
+                        String.format("%.2f", h.percentile(p) / 1000.0));
+            }
+            report.put(prefix + ".max.ms", String.format("%.2f", h.max() / 1000.0));
+        }
+
+        // Start, end and least-squares slope; the first window is skipped as warm-up when there are enough
+        private static void putGrowth(Map<String, String> report, String prefix, List<double[]> samples) {
+            List<double[]> fit = samples.size() > 3 ? samples.subList(1, samples.size()) : samples;
+            double n = fit.size(), sx = 0, sy = 0, sxx = 0, sxy = 0;
+            for (double[] s : fit) {
+                sx += s[0];
+                sy += s[1];
+                sxx += s[0] * s[0];
+                sxy += s[0] * s[1];
+            }
+            double denominator = n * sxx - sx * sx;
+            double slopePerMinute = denominator == 0 ? 0 : (n * sxy - sx * sy) / denominator;
+            report.put(prefix + ".start.mb", String.format("%.1f", samples.get(0)[1]));
+            report.put(prefix + ".end.mb", String.format("%.1f", samples.get(samples.size() - 1)[1]));
+            report.put(prefix + ".growth.mb_per_hour", String.format("%.2f", slopePerMinute * 60));
+        }
+    }
+
+    // Times every event the EDT dispatches. An event that opened a modal
+    // dialog spans the user's (here the script's) answer, so only events
+    // with no nested dispatch are recorded and counted as busy time.
+    static final class TimingEventQueue extends EventQueue {
+        private final Histogram total = new Histogram();
+        private Histogram window = new Histogram();
+        private final boolean[] nested = new boolean[64];
+        private int depth;
+        private volatile long busyNanos;
+
+        @Override
+        protected void dispatchEvent(AWTEvent event) {
+            int d = depth++;
+            if (d > 0 && d <= nested.length) nested[d - 1] = true;
+            if (d < nested.length) nested[d] = false;
+            long start = System.nanoTime();
+            try {
+                super.dispatchEvent(event);
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                depth--;
+                if (d < nested.length && !nested[d]) {
+                    busyNanos += elapsed;
+                    total.record(elapsed / 1000);
+                    synchronized (this) {
+                        window.record(elapsed / 1000);
+                    }
+                }
+            }
+        }
+
+        long busyNanos() { return busyNanos; }
+
+        Histogram total() { return total; }
+
+        synchronized Histogram takeWindow() {
+            Histogram taken = window;
+            window = new Histogram();
+            return taken;
+        }
+    }
+
+    // Answers the dialogs scripted actions open: file choosers get the file
+    // queued for them, input prompts keep their value (amounts are nudged),
+    // and confirmations and messages are accepted.
+    static final class DialogAnswerer {
+        private final Random random;
+        private final IdentityHashMap<Window, Boolean> handled = new IdentityHashMap<>();
+        private volatile File nextFile;
+        private volatile boolean running;
+        private Thread thread;
+
+        DialogAnswerer(Random random) {
+            this.random = random;
+        }
+
+        void nextFile(File file) { nextFile = file; }
+
+        void start() {
+            running = true;
+            thread = new Thread(() -> {
+                while (running) {
+                    try {
+                        SwingUtilities.invokeAndWait(this::answerOpenDialogs);
+                        Thread.sleep(5);
+                    } catch (Exception ex) {
+                        return;
+                    }
+                }
+            }, "soak-dialogs");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void stop() { running = false; }
+
+        static JDialog openDialog() {
+            for (Window w : Window.getWindows()) {
+                if (w instanceof JDialog && w.isShowing()) return (JDialog) w;
+            }
+            return null;
+        }
+
+        private void answerOpenDialogs() {
+            handled.keySet().removeIf(w -> !w.isShowing());
+            for (Window w : Window.getWindows()) {
+                if (!(w instanceof JDialog) || !w.isShowing() || handled.containsKey(w)) continue;
+                handled.put(w, Boolean.TRUE);
+                JDialog dialog = (JDialog) w;
+                JFileChooser chooser = find(dialog.getContentPane(), JFileChooser.class);
+                JOptionPane pane = find(dialog.getContentPane(), JOptionPane.class);
+                if (chooser != null) {
+                    File file = nextFile;
+                    nextFile = null;
+                    if (file == null) {
+                        chooser.cancelSelection();
+                    } else {
+                        chooser.setSelectedFile(file);
+                        chooser.approveSelection();
+                    }
+                } else if (pane != null) {
+                    if (pane.getWantsInput()) pane.setInputValue(answer(pane));
+                    Object[] options = pane.getOptions();
+                    pane.setValue(options == null || options.length == 0 ? Integer.valueOf(JOptionPane.OK_OPTION) : options[0]);
+                } else {
+                    dialog.dispose();
+                }
+            }
+        }
+
+        private Object answer(JOptionPane pane) {
+            Object initial = pane.getInitialSelectionValue();
+            String message = String.valueOf(pane.getMessage()).toLowerCase();
+            if (initial != null && (message.contains("amount") || message.contains("limit"))) {
+                try {
+                    double value = Double.parseDouble(initial.toString());
+                    return String.format("%.2f", value * (0.9 + 0.2 * random.nextDouble()));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+            return initial == null ? "" : initial;
+        }
+    }
+
+    // Log-linear histogram of microseconds, 32 sub-buckets per power of two (about 3% resolution)
+    static final class Histogram {
+        private final long[] counts = new long[64 * 32];
+        private long count;
+        private long max;
+
+        synchronized void record(long micros) {
+            long v = Math.max(0, micros);
+            counts[index(v)]++;
+            count++;
+            max = Math.max(max, v);
+        }
+
+        private static int index(long v) {
+            if (v < 32) return (int) v;
+            int exponent = 63 - Long.numberOfLeadingZeros(v);
+            return (exponent - 4) * 32 + (int) ((v >>> (exponent - 5)) & 31);
+        }
+
+        private static long lowerBound(int index) {
+            if (index < 32) return index;
+            int exponent = index / 32 + 4;
+            return (32L + index % 32) << (exponent - 5);
+        }
+
+        synchronized long percentile(double p) {
+            if (count == 0) return 0;
+            long rank = (long) Math.ceil(p / 100.0 * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(max, lowerBound(i));
+            }
+            return max;
+        }
+
+        synchronized long countAbove(long micros) {
+            long above = 0;
+            for (int i = index(micros) + 1; i < counts.length; i++) above += counts[i];
+            return above;
+        }
+
+        synchronized long count() { return count; }
+
+        synchronized long max() { return max; }
+
+        synchronized void reset() {
+            Arrays.fill(counts, 0);
+            count = 0;
+            max = 0;
+        }
+    }
+
+    // Prints old, new and change for every shared metric. Times, sizes, growth
+    // and stall counts are lower-is-better; a rise past the threshold (and past
+    // a small absolute floor, against noise) is a regression.
+    static boolean compare(File oldFile, File newFile, double thresholdPercent) throws IOException {
+        Properties before = load(oldFile), after = load(newFile);
+        boolean regressed = false;
+        System.out.printf("%-42s %12s %12s %9s%n", "metric", before.getProperty("label", "old"), after.getProperty("label", "new"), "change");
+        for (String key : new TreeSet<>(before.stringPropertyNames())) {
+            if (!after.containsKey(key)) continue;
+            double a, b;
+            try {
+                a = Double.parseDouble(before.getProperty(key));
+                b = Double.parseDouble(after.getProperty(key));
+            } catch (NumberFormatException ex) {
+                continue;
+            }
+            double change = a == 0 ? (b == 0 ? 0 : 100) : 100 * (b - a) / Math.abs(a);
+            boolean lowerIsBetter = key.endsWith(".ms") || key.endsWith(".mb") || key.endsWith("mb_per_hour") || key.startsWith("edt.stalls");
+            double floor = key.startsWith("edt.stalls") ? 2 : 1;
+            boolean worse = lowerIsBetter && change > thresholdPercent && b - a > floor;
+            regressed |= worse;
+            System.out.printf("%-42s %12s %12s %8.1f%%%s%n", key, before.getProperty(key), after.getProperty(key), change, worse ? "  REGRESSION" : "");
+        }
+        System.out.println(regressed ? "Regressions above " + thresholdPercent + "%." : "No regressions above " + thresholdPercent + "%.");
+        return regressed;
+    }
+
+    private static Properties load(File file) throws IOException {
+        Properties p = new Properties();
+        try (FileInputStream in = new FileInputStream(file)) {
+            p.load(in);
+        }
+        return p;
+    }
+
+    // Depth-first search of a component tree, null if absent
+    static <T> T find(Container root, Class<T> type) {
+        if (root == null) return null;
+        for (Component c : root.getComponents()) {
+            if (type.isInstance(c)) return type.cast(c);
+            if (c instanceof Container) {
+                T found = find((Container) c, type);
+                if (found != null) return found;
+            }
+        }
+        return null;
+    }
+
+    static AbstractButton button(Container root, String text) {
+        for (Component c : root.getComponents()) {
+            if (c instanceof AbstractButton && text.equals(((AbstractButton) c).getText())) return (AbstractButton) c;
+            if (c instanceof Container) {
+                AbstractButton found = button((Container) c, text);
+                if (found != null) return found;
+            }
+        }
+        if (root instanceof Window || root instanceof JRootPane) throw new IllegalStateException("No button " + text);
+        return null;
+    }
+
+    // The text field placed right after a label, as the filter toolbars are laid out
+    static JTextField fieldAfter(Container root, String label) {
+        Component[] children = root.getComponents();
+        for (int i = 0; i < children.length; i++) {
+            if (children[i] instanceof JLabel && label.equals(((JLabel) children[i]).getText())
+                    && i + 1 < children.length && children[i + 1] instanceof JTextField) return (JTextField) children[i + 1];
+            if (children[i] instanceof Container) {
+                JTextField found = fieldAfter((Container) children[i], label);
+                if (found != null) return found;
+            }
+        }
+        return null;
+    }
+
+    // The child runs elsewhere, so relative class path entries are resolved here
+    private static String absoluteClassPath() {
+        List<String> entries = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            if (entry.endsWith("*")) {
+                entries.add(new File(entry.substring(0, entry.length() - 1)).getAbsolutePath() + File.separator + "*");
+            } else {
+                entries.add(new File(entry).getAbsolutePath());
+            }
+        }
+        return String.join(File.pathSeparator, entries);
+    }
+
+    private static void deleteTree(File dir) throws IOException {
+        try (Stream<java.nio.file.Path> paths = Files.walk(dir.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+// Expense size quantiles and distinct payees, sketched per category and
+// month. Each cell holds a TDigest of amounts and a HyperLogLog of payees.
+// Per-category digests and per-month payee counts are kept as rollups, so
+// reports read them without touching the cells. Inserts update a cell and
+// its rollups in place. Sketches cannot take a value back out, so an edit or
+// delete marks its cell stale instead; rebuildStale() later re-reads only
+// the stale cells.
+class SpendingSketches {
+    static final class Cell {
+        final TDigest sizes = new TDigest();
+        final HyperLogLog payees = new HyperLogLog();
+
+        Cell copy() {
+            Cell c = new Cell();
+            c.sizes.merge(sizes);
+            c.payees.merge(payees);
+            return c;
+        }
+    }
+
+    private final Map<String, Map<YearMonth, Cell>> cells = new HashMap<>();
+    private final Map<String, TDigest> byCategory = new HashMap<>();
+    private final Map<YearMonth, HyperLogLog> payeesByMonth = new HashMap<>();
+    private final Map<String, Set<YearMonth>> stale = new HashMap<>();
+
+    // Same payee regardless of case and spacing; blank descriptions have none
+    static String payee(Transaction t) {
+        return ImportFingerprints.normalizeDescription(t.getDescription());
+    }
+
+    void add(Transaction t, double amount) {
+        String category = t.getCategory();
+        YearMonth month = YearMonth.from(t.getDate());
+        String payee = payee(t);
+        Cell cell = cells.computeIfAbsent(category, k -> new HashMap<>()).computeIfAbsent(month, k -> new Cell());
+        cell.sizes.add(amount);
+        byCategory.computeIfAbsent(category, k -> new TDigest()).add(amount);
+        if (!payee.isEmpty()) {
+            cell.payees.add(payee);
+            payeesByMonth.computeIfAbsent(month, k -> new HyperLogLog()).add(payee);
+        }
+    }
+
+    void markStale(Transaction t) {
+        stale.computeIfAbsent(t.getCategory(), k -> new HashSet<>()).add(YearMonth.from(t.getDate()));
+    }
+
+    boolean hasStale() { return !stale.isEmpty(); }
+
+    // Folds another partition's sketches into this one
+    void merge(SpendingSketches other) {
+        other.cells.forEach((category, months) -> {
+            Map<YearMonth, Cell> mine = cells.computeIfAbsent(category, k -> new HashMap<>());
+            months.forEach((month, cell) -> {
+                Cell target = mine.computeIfAbsent(month, k -> new Cell());
+                target.sizes.merge(cell.sizes);
+                target.payees.merge(cell.payees);
+            });
+        });
+        other.byCategory.forEach((category, digest) -> byCategory.computeIfAbsent(category, k -> new TDigest()).merge(digest));
+        other.payeesByMonth.forEach((month, hll) -> payeesByMonth.computeIfAbsent(month, k -> new HyperLogLog()).merge(hll));
+        other.stale.forEach((category, months) -> stale.computeIfAbsent(category, k -> new HashSet<>()).addAll(months));
+    }
+
+    SpendingSketches copy() {
+        SpendingSketches c = new SpendingSketches();
+        c.merge(this);
+        return c;
+    }
+
+    // Resets stale cells to their `base` contents, re-adds the matching rows,
+    // then rebuilds the rollups those cells feed from the cells themselves
+    void rebuildStale(SpendingSketches base, Iterable<Transaction> rows, FxRates.Converter fx) {
+        if (stale.isEmpty()) return;
+        Set<YearMonth> months = new HashSet<>();
+        stale.forEach((category, staleMonths) -> {
+            Map<YearMonth, Cell> mine = cells.computeIfAbsent(category, k -> new HashMap<>());
+            Map<YearMonth, Cell> theirs = base == null ? null : base.cells.get(category);
+            for (YearMonth month : staleMonths) {
+                Cell original = theirs == null ? null : theirs.get(month);
+                mine.put(month, original == null ? new Cell() : original.copy());
+                months.add(month);
+            }
+        });
+        for (Transaction t : rows) {
+            if (!t.getType().equals("Expense")) continue;
+            Set<YearMonth> staleMonths = stale.get(t.getCategory());
+            YearMonth month = YearMonth.from(t.getDate());
+            if (staleMonths == null || !staleMonths.contains(month)) continue;
+            Cell cell = cells.get(t.getCategory()).get(month);
+            cell.sizes.add(fx.convert(t));
+            String payee = payee(t);
+            if (!payee.isEmpty()) cell.payees.add(payee);
+        }
+        for (String category : stale.keySet()) {
+            Map<YearMonth, Cell> mine = cells.get(category);
+            mine.values().removeIf(cell -> cell.sizes.count() == 0);
+            TDigest digest = new TDigest();
+            for (Cell cell : mine.values()) digest.merge(cell.sizes);
+            byCategory.put(category, digest);
+        }
+        for (YearMonth month : months) {
+            HyperLogLog hll = new HyperLogLog();
+            for (Map<YearMonth, Cell> mine : cells.values()) {
+                Cell cell = mine.get(month);
+                if (cell != null) hll.merge(cell.payees);
+            }
+            payeesByMonth.put(month, hll);
+        }
+        stale.clear();
+        cells.values().removeIf(Map::isEmpty);
+        byCategory.values().removeIf(d -> d.count() == 0);
+    }
+
+    Set<String> categories() { return new TreeSet<>(byCategory.keySet()); }
+
+    Set<YearMonth> months() { return new TreeSet<>(payeesByMonth.keySet()); }
+
+    // Expense amount at quantile q (0..1) for a category; NaN if it has none
+    double quantile(String category, double q) {
+        TDigest digest = byCategory.get(category);
+        return digest == null ? Double.NaN : digest.quantile(q);
+    }
+
+    long count(String category) {
+        TDigest digest = byCategory.get(category);
+        return digest == null ? 0 : Math.round(digest.count());
+    }
+
+    long distinctPayees(YearMonth month) {
+        HyperLogLog hll = payeesByMonth.get(month);
+        return hll == null ? 0 : hll.estimate();
+    }
+
+    // Sketches of the archived expenses. Each partition (one closed year) is
+    // sketched on its own worker and the results are merged.
+    static SpendingSketches ofArchive(ColdArchive archive, FxRates.Converter fx) throws IOException {
+        try {
+            return archive.partitions().keySet().parallelStream().map(year -> {
+                SpendingSketches partition = new SpendingSketches();
+                try {
+                    archive.scan(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31), t -> {
+                        if (t.getType().equals("Expense")) partition.add(t, fx.convert(t));
+                    });
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                return partition;
+            }).reduce((a, b) -> {
+                a.merge(b);
+                return a;
+            }).orElseGet(SpendingSketches::new);
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+import javax.swing.*;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Cold-start benchmark. Each run launches a fresh JVM with this JVM's options
+// (so -XX:SharedArchiveFile and --add-modules carry over), which measures the
+// time from JVM start to the first painted frame and to the end of startup
+// database work, then exits. Needs a display.
+//
+//   java -cp "lib/*:." StartupBenchmark [runs]
+//   java -XX:ArchiveClassesAtExit=app.jsa -cp "lib/*:." StartupBenchmark --child   (AppCDS training run)
+public class StartupBenchmark {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("--child")) {
+            runChild();
+            return;
+        }
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(runtime.getInputArguments());
+        command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), "StartupBenchmark", "--child"));
+
+        List<Long> paint = new ArrayList<>();
+        List<Long> ready = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            Process child = new ProcessBuilder(command).redirectErrorStream(true).start();
+            try (BufferedReader out = new BufferedReader(new InputStreamReader(child.getInputStream()))) {
+                String line;
+                while ((line = out.readLine()) != null) {
+                    if (line.startsWith("first-paint-ms=")) {
+                        String[] parts = line.split("[= ]");
+                        paint.add(Long.parseLong(parts[1]));
+                        ready.add(Long.parseLong(parts[3]));
+                    }
+                }
+            }
+            if (!child.waitFor(2, TimeUnit.MINUTES)) child.destroyForcibly();
+        }
+        if (paint.isEmpty()) {
+            System.err.println("No run reported timings (is a display available?)");
+            System.exit(1);
+        }
+        System.out.printf("runs=%d%n", paint.size());
+        report("time-to-first-paint", paint);
+        report("time-to-interactive", ready);
+    }
+
+    private static void runChild() throws Exception {
+        long jvmStart = ManagementFactory.getRuntimeMXBean().getStartTime();
+        AtomicReference<FinanceTracker> app = new AtomicReference<>();
+        SwingUtilities.invokeAndWait(() -> app.set(FinanceTracker.launch()));
+        long painted = app.get().firstPaint().get(1, TimeUnit.MINUTES);
+        long interactive = app.get().interactive().get(1, TimeUnit.MINUTES);
+        System.out.printf("first-paint-ms=%d interactive-ms=%d%n", painted - jvmStart, interactive - jvmStart);
+        System.exit(0);
+    }
+
+    private static void report(String name, List<Long> millis) {
+        List<Long> sorted = new ArrayList<>(millis);
+        Collections.sort(sorted);
+        System.out.printf("%-20s min %5d ms   median %5d ms   p90 %5d ms%n", name,
+                sorted.get(0), sorted.get(sorted.size() / 2), sorted.get((int) Math.ceil(sorted.size() * 0.9) - 1));
+    }
+}
@@ -0,0 +1,160 @@
+import java.util.Arrays;
+
+// Mergeable quantile sketch (merging t-digest). Values are buffered and
+// periodically folded into at most about `compression` centroids, sized by
+// the arcsine scale function so centroids near the tails stay small and
+// extreme quantiles stay accurate. Digests built on separate partitions
+// merge by folding one's centroids into the other. Space and query time
+// depend only on the compression, never on how many values were added.
+final class TDigest {
+    private static final int DEFAULT_COMPRESSION = 100;
+
+    private final double compression;
+    private double[] mean = new double[0];
+    private double[] weight = new double[0];
+    private int centroids;
+    // Grows up to 5 * compression, so the many small per-month digests stay small
+    private final int bufferLimit;
+    private double[] bufferMean = new double[0];
+    private double[] bufferWeight = new double[0];
+    private int buffered;
+    private double total;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    TDigest() {
+        this(DEFAULT_COMPRESSION);
+    }
+
+    TDigest(double compression) {
+        this.compression = compression;
+        this.bufferLimit = (int) (5 * compression);
+    }
+
+    void add(double x) {
+        add(x, 1);
+    }
+
+    void add(double x, double w) {
+        if (Double.isNaN(x) || w <= 0) return;
+        if (buffered == bufferMean.length) {
+            if (buffered < bufferLimit) {
+                int grown = Math.min(bufferLimit, Math.max(16, 2 * buffered));
+                bufferMean = Arrays.copyOf(bufferMean, grown);
+                bufferWeight = Arrays.copyOf(bufferWeight, grown);
+            } else {
+                compress();
+            }
+        }
+        bufferMean[buffered] = x;
+        bufferWeight[buffered++] = w;
+        total += w;
+        min = Math.min(min, x);
+        max = Math.max(max, x);
+    }
+
+    void merge(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.centroids; i++) add(other.mean[i], other.weight[i]);
+        // Centroid means lie inside the other digest's range, so carry its extremes over
+        if (other.total > 0) {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+    }
+
+    TDigest copy() {
+        TDigest c = new TDigest(compression);
+        c.merge(this);
+        return c;
+    }
+
+    double count() { return total; }
+
+    double min() { return total == 0 ? Double.NaN : min; }
+
+    double max() { return total == 0 ? Double.NaN : max; }
+
+    // Folds the buffer into the centroids. A run of neighbours is merged
+    // while its quantile span stays within one unit of the scale function.
+    private void compress() {
+        if (buffered == 0) return;
+        int n = centroids + buffered;
+        double[] m = Arrays.copyOf(mean, n);
+        double[] w = Arrays.copyOf(weight, n);
+        System.arraycopy(bufferMean, 0, m, centroids, buffered);
+        System.arraycopy(bufferWeight, 0, w, centroids, buffered);
+        sortByMean(m, w, n);
+        buffered = 0;
+
+        double[] merged = new double[n];
+        double[] mergedWeight = new double[n];
+        int out = 0;
+        double soFar = 0;
+        double limit = total * quantileOf(scaleOf(0) + 1);
+        double currentMean = m[0], currentWeight = w[0];
+        for (int i = 1; i < n; i++) {
+            if (soFar + currentWeight + w[i] <= limit) {
+                currentWeight += w[i];
+                currentMean += (m[i] - currentMean) * w[i] / currentWeight;
+            } else {
+                soFar += currentWeight;
+                merged[out] = currentMean;
+                mergedWeight[out++] = currentWeight;
+                limit = total * quantileOf(scaleOf(soFar / total) + 1);
+                currentMean = m[i];
+                currentWeight = w[i];
+            }
+        }
+        merged[out] = currentMean;
+        mergedWeight[out++] = currentWeight;
+        mean = Arrays.copyOf(merged, out);
+        weight = Arrays.copyOf(mergedWeight, out);
+        centroids = out;
+    }
+
+    // k1 scale: k(q) = compression / (2 pi) * asin(2q - 1)
+    private double scaleOf(double q) {
+        return compression / (2 * Math.PI) * Math.asin(Math.max(-1, Math.min(1, 2 * q - 1)));
+    }
+
+    private double quantileOf(double k) {
+        if (k >= compression / 4) return 1;
+        return (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+    }
+
+    // Estimated value at quantile q (0..1); NaN when empty. Each centroid's
+    // weight is centred on its mean and values between centres are interpolated.
+    double quantile(double q) {
+        compress();
+        if (centroids == 0) return Double.NaN;
+        if (q <= 0) return min;
+        if (q >= 1) return max;
+        if (centroids == 1) return mean[0];
+        double index = q * total;
+        if (index < weight[0] / 2) return min + (mean[0] - min) * index / (weight[0] / 2);
+        double left = weight[0] / 2;
+        for (int i = 0; i < centroids - 1; i++) {
+            double right = left + (weight[i] + weight[i + 1]) / 2;
+            if (index <= right) {
+                return mean[i] + (mean[i + 1] - mean[i]) * (index - left) / (right - left);
+            }
+            left = right;
+        }
+        double last = weight[centroids - 1] / 2;
+        return mean[centroids - 1] + (max - mean[centroids - 1]) * Math.min(1, (index - left) / last);
+    }
+
+    private static void sortByMean(double[] m, double[] w, int n) {
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Double.compare(m[a], m[b]));
+        double[] sm = new double[n], sw = new double[n];
+        for (int i = 0; i < n; i++) {
+            sm[i] = m[order[i]];
+            sw[i] = w[order[i]];
+        }
+        System.arraycopy(sm, 0, m, 0, n);
+        System.arraycopy(sw, 0, w, 0, n);
+    }
+}
@@ -0,0 +1,66 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+// In-memory side of the tags / transaction_tags tables: one RoaringBitmap of
+// transaction ids per tag. Ids come from AUTOINCREMENT and are never reused,
+// so a bitmap stays valid as rows move around the store. Combinations such
+// as "reimbursable and trip-2025 and not paid" are bitmap AND / AND NOT
+// rather than a scan of the rows.
+class TagIndex {
+    private final Map<String, RoaringBitmap> byTag = new TreeMap<>();
+
+    // Tags are matched without regard to case or surrounding spaces
+    static String normalize(String tag) {
+        return tag.trim().toLowerCase(Locale.ROOT);
+    }
+
+    synchronized void tag(String tag, int transactionId) {
+        byTag.computeIfAbsent(normalize(tag), k -> new RoaringBitmap()).add(transactionId);
+    }
+
+    synchronized void untag(String tag, int transactionId) {
+        RoaringBitmap ids = byTag.get(normalize(tag));
+        if (ids != null) ids.remove(transactionId);
+    }
+
+    synchronized void forget(int transactionId) {
+        for (RoaringBitmap ids : byTag.values()) ids.remove(transactionId);
+    }
+
+    // Drops ids that are no longer live, e.g. after rows were archived or reloaded
+    synchronized void retainOnly(RoaringBitmap live) {
+        byTag.replaceAll((tag, ids) -> ids.and(live));
+    }
+
+    // Ids carrying the tag; empty for an unknown tag. The result is a copy
+    // and safe to combine with and/or/andNot.
+    synchronized RoaringBitmap ids(String tag) {
+        RoaringBitmap ids = byTag.get(normalize(tag));
+        return ids == null ? new RoaringBitmap() : ids.copy();
+    }
+
+    synchronized boolean has(String tag, int transactionId) {
+        RoaringBitmap ids = byTag.get(normalize(tag));
+        return ids != null && ids.contains(transactionId);
+    }
+
+    // Tag names with at least one transaction, and how many each has
+    synchronized Map<String, Integer> counts() {
+        Map<String, Integer> counts = new TreeMap<>();
+        byTag.forEach((tag, ids) -> {
+            if (!ids.isEmpty()) counts.put(tag, ids.cardinality());
+        });
+        return counts;
+    }
+
+    synchronized List<String> tagsOf(int transactionId) {
+        List<String> tags = new ArrayList<>();
+        byTag.forEach((tag, ids) -> {
+            if (ids.contains(transactionId)) tags.add(tag);
+        });
+        return tags;
+    }
+}
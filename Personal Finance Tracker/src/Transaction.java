@@ -0,0 +1,77 @@
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.List;
+
+class Transaction implements Serializable {
+    private int id; // transactions.id, 0 until read back from the database
+    private long version; // transactions.version when last read or written, for conditional updates
+    private double amount;
+    private String type;
+    private String category;
+    private LocalDate date;
+    private String description;
+    private String currency;
+    private int currencyId; // interned code, indexes FxRates.Converter arrays
+    private String account = Ledger.DEFAULT_ACCOUNT;
+    private List<String> archivedTags = List.of(); // archived rows have no id in the TagIndex
+
+    public Transaction(double amount, String type, String category, LocalDate date, String description) {
+        this(amount, type, category, date, description, FxRates.DEFAULT_CURRENCY);
+    }
+
+    public Transaction(double amount, String type, String category, LocalDate date, String description, String currency) {
+        this.amount = amount;
+        this.type = type;
+        this.category = category;
+        this.date = date;
+        this.description = description;
+        this.currency = currency;
+        this.currencyId = FxRates.currencyId(currency);
+    }
+
+    // Every column saved in the transactions table apart from id and version;
+    // a row read back with the same values is unchanged
+    public Object[] storedValues() {
+        return new Object[]{date, type, category, amount, description, currency, account};
+    }
+
+    public Object[] toTableRow() {
+        return new Object[]{date, type, category, FxRates.format(amount, currency), description};
+    }
+
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+    public double getAmount() { return amount; }
+    public String getType() { return type; }
+    public String getCategory() { return category; }
+    public LocalDate getDate() { return date; }
+    public String getDescription() { return description; }
+    public String getCurrency() { return currency; }
+    public int getCurrencyId() { return currencyId; }
+    public String getAccount() { return account; }
+    public void setAccount(String account) { this.account = account; }
+    public List<String> getArchivedTags() { return archivedTags; }
+    public void setArchivedTags(List<String> tags) { this.archivedTags = List.copyOf(tags); }
+
+    // Copies with one field changed, keeping the database id and version
+    public Transaction withCategory(String category) { return copy(type, category, date, account); }
+    public Transaction withType(String type) { return copy(type, category, date, account); }
+    public Transaction withDate(LocalDate date) { return copy(type, category, date, account); }
+    public Transaction withAccount(String account) { return copy(type, category, date, account); }
+
+    public Transaction withVersion(long version) {
+        Transaction t = copy(type, category, date, account);
+        t.setVersion(version);
+        return t;
+    }
+
+    private Transaction copy(String type, String category, LocalDate date, String account) {
+        Transaction t = new Transaction(amount, type, category, date, description, currency);
+        t.setId(id);
+        t.setVersion(version);
+        t.setAccount(account);
+        return t;
+    }
+}
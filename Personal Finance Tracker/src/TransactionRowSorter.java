@@ -0,0 +1,181 @@
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+// RowSorter for TransactionTableModel that sorts an int permutation of model
+// rows instead of comparing cell objects. Each sort key is applied as a stable
+// pass, least significant first: the column's primitive key and the row's
+// current position are packed into one long and radix sorted on just the
+// significant bits. Filtering is a predicate over model row indexes.
+class TransactionRowSorter extends RowSorter<TransactionTableModel> {
+    private static final int MAX_SORT_KEYS = 3;
+    private static final int RADIX_BITS = 11;
+
+    private final TransactionTableModel model;
+    private List<SortKey> sortKeys = Collections.emptyList();
+    private IntPredicate filter;
+    private int[] viewToModel = new int[0];
+    private int[] modelToView = new int[0];
+
+    public TransactionRowSorter(TransactionTableModel model) {
+        this.model = model;
+        sort();
+    }
+
+    @Override
+    public TransactionTableModel getModel() { return model; }
+
+    @Override
+    public void toggleSortOrder(int column) {
+        List<SortKey> keys = new ArrayList<>(sortKeys);
+        SortOrder order = SortOrder.ASCENDING;
+        if (!keys.isEmpty() && keys.get(0).getColumn() == column) {
+            order = keys.get(0).getSortOrder() == SortOrder.ASCENDING ? SortOrder.DESCENDING : SortOrder.ASCENDING;
+        }
+        keys.removeIf(k -> k.getColumn() == column);
+        keys.add(0, new SortKey(column, order));
+        if (keys.size() > MAX_SORT_KEYS) keys = keys.subList(0, MAX_SORT_KEYS);
+        setSortKeys(keys);
+    }
+
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        List<SortKey> next = keys == null ? Collections.emptyList() : Collections.unmodifiableList(new ArrayList<>(keys));
+        if (next.equals(sortKeys)) return;
+        sortKeys = next;
+        fireSortOrderChanged();
+        sort();
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() { return sortKeys; }
+
+    // Model rows failing the predicate are hidden; null shows every row
+    public void setRowFilter(IntPredicate filter) {
+        this.filter = filter;
+        sort();
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) {
+        if (index < 0 || index >= viewToModel.length) throw new IndexOutOfBoundsException("Invalid view index: " + index);
+        return viewToModel[index];
+    }
+
+    @Override
+    public int convertRowIndexToView(int index) {
+        if (index < 0 || index >= modelToView.length) throw new IndexOutOfBoundsException("Invalid model index: " + index);
+        return modelToView[index];
+    }
+
+    @Override
+    public int getViewRowCount() { return viewToModel.length; }
+
+    @Override
+    public int getModelRowCount() { return model.getRowCount(); }
+
+    @Override
+    public void modelStructureChanged() { sort(); }
+
+    @Override
+    public void allRowsChanged() { sort(); }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) { sort(); }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) { sort(); }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) { sort(); }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+        // A column nothing is sorted on (e.g. running balances) leaves the order as it is
+        if (sortKeys.stream().anyMatch(k -> k.getColumn() == column)) sort();
+    }
+
+    private void sort() {
+        int[] previous = viewToModel;
+        int n = model.getRowCount();
+        int[] perm = new int[n];
+        int count = 0;
+        for (int row = 0; row < n; row++) {
+            if (filter == null || filter.test(row)) perm[count++] = row;
+        }
+        perm = Arrays.copyOf(perm, count);
+        for (int k = sortKeys.size() - 1; k >= 0; k--) {
+            SortKey key = sortKeys.get(k);
+            if (key.getSortOrder() == SortOrder.UNSORTED) continue;
+            perm = stableSort(perm, key.getColumn(), key.getSortOrder() == SortOrder.DESCENDING);
+        }
+
+        viewToModel = perm;
+        modelToView = new int[n];
+        Arrays.fill(modelToView, -1);
+        for (int v = 0; v < perm.length; v++) modelToView[perm[v]] = v;
+        fireRowSorterChanged(previous);
+    }
+
+    private int[] stableSort(int[] perm, int column, boolean descending) {
+        int n = perm.length;
+        if (n < 2) return perm;
+        long[] keys = model.sortKeys(column, perm);
+
+        long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+        for (long k : keys) {
+            min = Math.min(min, k);
+            max = Math.max(max, k);
+        }
+        int positionBits = 32 - Integer.numberOfLeadingZeros(n - 1);
+        long range = max - min;
+        if (range < 0 || range >= 1L << (63 - positionBits)) return sortBoxed(perm, keys, descending);
+
+        // (normalized key, position) packs into one non-negative long, so
+        // ordering the longs orders by key and breaks ties by current position
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) {
+            long normalized = descending ? max - keys[i] : keys[i] - min;
+            packed[i] = normalized << positionBits | i;
+        }
+        packed = radixSort(packed, 64 - Long.numberOfLeadingZeros(range) + positionBits);
+        long mask = (1L << positionBits) - 1;
+        int[] sorted = new int[n];
+        for (int i = 0; i < n; i++) sorted[i] = perm[(int) (packed[i] & mask)];
+        return sorted;
+    }
+
+    // LSD radix sort of non-negative values below 2^bits; returns the sorted array
+    private static long[] radixSort(long[] a, int bits) {
+        long[] buffer = new long[a.length];
+        int[] counts = new int[1 << RADIX_BITS];
+        for (int shift = 0; shift < bits; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (long v : a) counts[(int) (v >>> shift) & ((1 << RADIX_BITS) - 1)]++;
+            for (int i = 0, sum = 0; i < counts.length; i++) {
+                int c = counts[i];
+                counts[i] = sum;
+                sum += c;
+            }
+            for (long v : a) buffer[counts[(int) (v >>> shift) & ((1 << RADIX_BITS) - 1)]++] = v;
+            long[] t = a;
+            a = buffer;
+            buffer = t;
+        }
+        return a;
+    }
+
+    // Keys too wide to pack alongside the position
+    private int[] sortBoxed(int[] perm, long[] keys, boolean descending) {
+        Integer[] positions = new Integer[perm.length];
+        for (int i = 0; i < positions.length; i++) positions[i] = i;
+        Arrays.sort(positions, (a, b) -> descending ? Long.compare(keys[b], keys[a]) : Long.compare(keys[a], keys[b]));
+        int[] sorted = new int[perm.length];
+        for (int i = 0; i < sorted.length; i++) sorted[i] = perm[positions[i]];
+        return sorted;
+    }
+}
@@ -0,0 +1,293 @@
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+// Versioned, copy-on-write store for transactions. Every write publishes a new
+// immutable Snapshot that shares all untouched chunks with its predecessor, so
+// readers take a consistent view in O(1) and never block or see a writer's
+// half-finished change. Retaining old snapshots gives undo/redo for free.
+// Each write is also published as a ChangeEvent, under the write lock so
+// subscribers see writes in the order they happened.
+class TransactionStore {
+    private static final int CHUNK = 64;
+    private static final int MAX_HISTORY = 100;
+
+    private volatile Snapshot current = new Snapshot(0, new Transaction[0][], new int[0]);
+    // Versions are never reused, even after undo, so a version names one set of contents
+    private long lastVersion;
+    private final Deque<Snapshot> undoStack = new ArrayDeque<>();
+    private final Deque<Snapshot> redoStack = new ArrayDeque<>();
+    private final ChangeStream changes;
+
+    TransactionStore() {
+        this(null);
+    }
+
+    TransactionStore(ChangeStream changes) {
+        this.changes = changes;
+    }
+
+    static final class Snapshot extends AbstractList<Transaction> implements RandomAccess {
+        private final long version;
+        private final Transaction[][] chunks;
+        private final int[] ends; // ends[c] = number of rows in chunks 0..c
+
+        private Snapshot(long version, Transaction[][] chunks, int[] ends) {
+            this.version = version;
+            this.chunks = chunks;
+            this.ends = ends;
+        }
+
+        public long getVersion() { return version; }
+
+        @Override
+        public int size() { return ends.length == 0 ? 0 : ends[ends.length - 1]; }
+
+        private int chunkOf(int index) {
+            if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+            int c = Arrays.binarySearch(ends, index + 1);
+            return c >= 0 ? c : -c - 1;
+        }
+
+        private int startOf(int chunk) { return chunk == 0 ? 0 : ends[chunk - 1]; }
+
+        @Override
+        public Transaction get(int index) {
+            int c = chunkOf(index);
+            return chunks[c][index - startOf(c)];
+        }
+
+        @Override
+        public void forEach(Consumer<? super Transaction> action) {
+            for (Transaction[] chunk : chunks) {
+                for (Transaction t : chunk) action.accept(t);
+            }
+        }
+
+        @Override
+        public Iterator<Transaction> iterator() {
+            return new Iterator<Transaction>() {
+                private int c, i;
+
+                @Override
+                public boolean hasNext() {
+                    while (c < chunks.length && i == chunks[c].length) { c++; i = 0; }
+                    return c < chunks.length;
+                }
+
+                @Override
+                public Transaction next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    return chunks[c][i++];
+                }
+            };
+        }
+    }
+
+    public Snapshot snapshot() { return current; }
+
+    public int size() { return current.size(); }
+
+    public Transaction get(int index) { return current.get(index); }
+
+    public synchronized void add(Transaction t) {
+        Snapshot s = current;
+        int last = s.chunks.length - 1;
+        Transaction[][] chunks;
+        if (last >= 0 && s.chunks[last].length < CHUNK) {
+            chunks = s.chunks.clone();
+            chunks[last] = Arrays.copyOf(s.chunks[last], s.chunks[last].length + 1);
+            chunks[last][chunks[last].length - 1] = t;
+        } else {
+            chunks = Arrays.copyOf(s.chunks, s.chunks.length + 1);
+            chunks[chunks.length - 1] = new Transaction[]{t};
+        }
+        publish(chunks);
+        emit(ChangeEvent.inserted(ChangeEvent.Entity.TRANSACTION, current.size() - 1, t.getId(), List.of(t), current.version));
+    }
+
+    // Appends a batch as a single version, so one import is one undo step
+    public synchronized void addAll(Collection<? extends Transaction> batch) {
+        if (batch.isEmpty()) return;
+        int first = current.size();
+        publish(appendChunks(current.chunks, batch));
+        emit(ChangeEvent.inserted(ChangeEvent.Entity.TRANSACTION, first, 0, List.copyOf(batch), current.version));
+    }
+
+    public synchronized void set(int index, Transaction t) {
+        Snapshot s = current;
+        int c = s.chunkOf(index);
+        Transaction[][] chunks = s.chunks.clone();
+        chunks[c] = s.chunks[c].clone();
+        chunks[c][index - s.startOf(c)] = t;
+        publish(chunks);
+        emit(ChangeEvent.updated(ChangeEvent.Entity.TRANSACTION, index, t.getId(), s.get(index), t, current.version));
+    }
+
+    public synchronized void remove(int index) {
+        Snapshot s = current;
+        int c = s.chunkOf(index);
+        Transaction[] old = s.chunks[c];
+        Transaction[][] chunks;
+        if (old.length == 1) {
+            chunks = new Transaction[s.chunks.length - 1][];
+            System.arraycopy(s.chunks, 0, chunks, 0, c);
+            System.arraycopy(s.chunks, c + 1, chunks, c, chunks.length - c);
+        } else {
+            int offset = index - s.startOf(c);
+            Transaction[] shrunk = new Transaction[old.length - 1];
+            System.arraycopy(old, 0, shrunk, 0, offset);
+            System.arraycopy(old, offset + 1, shrunk, offset, shrunk.length - offset);
+            chunks = s.chunks.clone();
+            chunks[c] = shrunk;
+        }
+        publish(chunks);
+        Transaction removed = s.get(index);
+        emit(ChangeEvent.deleted(ChangeEvent.Entity.TRANSACTION, index, removed.getId(), removed, current.version));
+    }
+
+    // Replaces the rows at ascending, distinct indices as a single version;
+    // only the chunks holding them are copied
+    public synchronized void setAll(int[] indices, List<Transaction> rows) {
+        if (indices.length == 0) return;
+        Snapshot s = current;
+        Transaction[][] chunks = s.chunks.clone();
+        List<Transaction> before = new ArrayList<>(indices.length);
+        int copied = -1;
+        for (int i = 0; i < indices.length; i++) {
+            int c = s.chunkOf(indices[i]);
+            if (c != copied) {
+                chunks[c] = s.chunks[c].clone();
+                copied = c;
+            }
+            before.add(s.get(indices[i]));
+            chunks[c][indices[i] - s.startOf(c)] = rows.get(i);
+        }
+        publish(chunks);
+        emit(ChangeEvent.updatedAll(ChangeEvent.Entity.TRANSACTION, indices.clone(), before, List.copyOf(rows), current.version));
+    }
+
+    // Removes the rows at ascending, distinct indices as a single version.
+    // Chunks without a removed row are shared; emptied chunks are dropped.
+    public synchronized void removeAll(int[] indices) {
+        if (indices.length == 0) return;
+        Snapshot s = current;
+        List<Transaction[]> kept = new ArrayList<>(s.chunks.length);
+        List<Transaction> removed = new ArrayList<>(indices.length);
+        int next = 0;
+        for (int c = 0; c < s.chunks.length; c++) {
+            int start = s.startOf(c), end = s.ends[c];
+            if (next == indices.length || indices[next] >= end) {
+                kept.add(s.chunks[c]);
+                continue;
+            }
+            Transaction[] old = s.chunks[c];
+            Transaction[] shrunk = new Transaction[old.length];
+            int n = 0;
+            for (int i = 0; i < old.length; i++) {
+                if (next < indices.length && indices[next] == start + i) {
+                    removed.add(old[i]);
+                    next++;
+                } else {
+                    shrunk[n++] = old[i];
+                }
+            }
+            if (n > 0) kept.add(Arrays.copyOf(shrunk, n));
+        }
+        if (next < indices.length) throw new IndexOutOfBoundsException("Index: " + indices[next] + ", Size: " + s.size());
+        publish(kept.toArray(new Transaction[0][]));
+        emit(ChangeEvent.deletedAll(ChangeEvent.Entity.TRANSACTION, indices.clone(), removed, current.version));
+    }
+
+    public synchronized void clear() {
+        if (current.size() > 0) {
+            publish(new Transaction[0][]);
+            emitReset();
+        }
+    }
+
+    // Replaces the contents as one undoable version
+    public synchronized void replaceAll(Collection<? extends Transaction> rows) {
+        publish(appendChunks(new Transaction[0][], rows));
+        emitReset();
+    }
+
+    // Replaces the contents and forgets history, e.g. after loading from the database
+    public synchronized void reset(Collection<? extends Transaction> rows) {
+        current = build(++lastVersion, appendChunks(new Transaction[0][], rows));
+        undoStack.clear();
+        redoStack.clear();
+        emitReset();
+    }
+
+    // Undo and redo only swap in-memory versions, so once a change is in the
+    // database the versions before it no longer match it. Writers call this
+    // after applying a persisted change; undo then covers unsaved rows only.
+    public synchronized void markSaved() {
+        undoStack.clear();
+        redoStack.clear();
+    }
+
+    public synchronized boolean canUndo() { return !undoStack.isEmpty(); }
+
+    public synchronized boolean canRedo() { return !redoStack.isEmpty(); }
+
+    public synchronized boolean undo() {
+        if (undoStack.isEmpty()) return false;
+        redoStack.push(current);
+        current = undoStack.pop();
+        emitReset();
+        return true;
+    }
+
+    public synchronized boolean redo() {
+        if (redoStack.isEmpty()) return false;
+        undoStack.push(current);
+        current = redoStack.pop();
+        emitReset();
+        return true;
+    }
+
+    private void publish(Transaction[][] chunks) {
+        undoStack.push(current);
+        if (undoStack.size() > MAX_HISTORY) undoStack.removeLast();
+        redoStack.clear();
+        current = build(++lastVersion, chunks);
+    }
+
+    private void emitReset() {
+        emit(ChangeEvent.reset(ChangeEvent.Entity.TRANSACTION, current, current.version));
+    }
+
+    private void emit(ChangeEvent event) {
+        if (changes != null) changes.publish(event);
+    }
+
+    private static Transaction[][] appendChunks(Transaction[][] base, Collection<? extends Transaction> rows) {
+        Transaction[] all = rows.toArray(new Transaction[0]);
+        int added = (all.length + CHUNK - 1) / CHUNK;
+        Transaction[][] chunks = Arrays.copyOf(base, base.length + added);
+        for (int i = 0; i < added; i++) {
+            chunks[base.length + i] = Arrays.copyOfRange(all, i * CHUNK, Math.min(all.length, (i + 1) * CHUNK));
+        }
+        return chunks;
+    }
+
+    private static Snapshot build(long version, Transaction[][] chunks) {
+        int[] ends = new int[chunks.length];
+        int total = 0;
+        for (int c = 0; c < chunks.length; c++) {
+            total += chunks[c].length;
+            ends[c] = total;
+        }
+        return new Snapshot(version, chunks, ends);
+    }
+}
@@ -0,0 +1,295 @@
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.event.TableModelEvent;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableCellRenderer;
+import java.awt.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+// Read-only table model over Transaction rows with typed columns. Alongside
+// each row it keeps primitive sort keys (epoch day, cents, dictionary ids for
+// the text columns) so TransactionRowSorter can order a million rows without
+// touching the row objects. The Balance column is read from the Ledger,
+// which the owner keeps in step with the same rows.
+class TransactionTableModel extends AbstractTableModel {
+    static final int ID = 0, DATE = 1, TYPE = 2, CATEGORY = 3, AMOUNT = 4, DESCRIPTION = 5, ACCOUNT = 6, BALANCE = 7;
+    private static final String[] COLUMNS = {"ID", "Date", "Type", "Category", "Amount", "Description", "Account", "Balance"};
+    private static final Class<?>[] TYPES = {Integer.class, LocalDate.class, String.class, String.class, Double.class, String.class, String.class, Double.class};
+
+    private Transaction[] rows = new Transaction[0];
+    private int[] epochDay = new int[0];
+    private long[] cents = new long[0];
+    private int[] typeId = new int[0];
+    private int[] categoryId = new int[0];
+    private int[] descriptionId = new int[0];
+    private int[] accountId = new int[0];
+    private int size;
+    private final Dictionary types = new Dictionary();
+    private final Dictionary categories = new Dictionary();
+    private final Dictionary descriptions = new Dictionary();
+    private final Dictionary accounts = new Dictionary();
+    private final Ledger ledger;
+
+    // Interns strings to dense ids; ranks give each id its position in sorted order
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private int[] ranks = new int[0];
+
+        int id(String value) {
+            String key = value == null ? "" : value;
+            return ids.computeIfAbsent(key, v -> {
+                values.add(v);
+                return values.size() - 1;
+            });
+        }
+
+        int[] ranks() {
+            if (ranks.length != values.size()) {
+                Integer[] order = new Integer[values.size()];
+                for (int i = 0; i < order.length; i++) order[i] = i;
+                Arrays.sort(order, (a, b) -> values.get(a).compareToIgnoreCase(values.get(b)));
+                ranks = new int[order.length];
+                for (int r = 0; r < order.length; r++) ranks[order[r]] = r;
+            }
+            return ranks;
+        }
+    }
+
+    TransactionTableModel(Ledger ledger) {
+        this.ledger = ledger;
+    }
+
+    @Override
+    public int getRowCount() { return size; }
+
+    @Override
+    public int getColumnCount() { return COLUMNS.length; }
+
+    @Override
+    public String getColumnName(int column) { return COLUMNS[column]; }
+
+    @Override
+    public Class<?> getColumnClass(int column) { return TYPES[column]; }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Transaction t = rows[row];
+        switch (column) {
+            case ID: return t.getId();
+            case DATE: return t.getDate();
+            case TYPE: return t.getType();
+            case CATEGORY: return t.getCategory();
+            case AMOUNT: return t.getAmount();
+            case ACCOUNT: return t.getAccount();
+            case BALANCE: return ledger.balanceAfter(t) / 100.0;
+            default: return t.getDescription();
+        }
+    }
+
+    public Transaction getTransaction(int row) { return rows[row]; }
+
+    public int getEpochDay(int row) { return epochDay[row]; }
+
+    public long getCents(int row) { return cents[row]; }
+
+    // Rows whose TYPE, CATEGORY, DESCRIPTION or ACCOUNT text passes `test`. The test
+    // runs once per distinct value and its answer is kept by dictionary id,
+    // so filtering a million rows costs an array read per row.
+    public IntPredicate textFilter(int column, Predicate<String> test) {
+        Dictionary dictionary = dictionary(column);
+        byte[][] answers = {new byte[0]}; // 0 = not asked yet, 1 = match, 2 = no match
+        return row -> {
+            int id = column == TYPE ? typeId[row] : column == CATEGORY ? categoryId[row]
+                : column == ACCOUNT ? accountId[row] : descriptionId[row];
+            byte[] known = answers[0];
+            if (id >= known.length) known = answers[0] = Arrays.copyOf(known, Math.max(dictionary.values.size(), id + 1));
+            if (known[id] == 0) known[id] = test.test(dictionary.values.get(id)) ? (byte) 1 : (byte) 2;
+            return known[id] == 1;
+        };
+    }
+
+    private Dictionary dictionary(int column) {
+        switch (column) {
+            case TYPE: return types;
+            case CATEGORY: return categories;
+            case ACCOUNT: return accounts;
+            default: return descriptions;
+        }
+    }
+
+    public void setTransactions(Collection<? extends Transaction> transactions) {
+        size = 0;
+        ensureCapacity(transactions.size());
+        for (Transaction t : transactions) store(size++, t);
+        Arrays.fill(rows, size, rows.length, null);
+        fireTableDataChanged();
+    }
+
+    public void addTransaction(Transaction t) {
+        addTransactions(List.of(t));
+    }
+
+    public void addTransactions(Collection<? extends Transaction> transactions) {
+        if (transactions.isEmpty()) return;
+        int first = size;
+        ensureCapacity(size + transactions.size());
+        for (Transaction t : transactions) store(size++, t);
+        fireTableRowsInserted(first, size - 1);
+    }
+
+    public void setTransaction(int row, Transaction t) {
+        store(row, t);
+        fireTableRowsUpdated(row, row);
+    }
+
+    public void removeTransaction(int row) {
+        int tail = size - row - 1;
+        System.arraycopy(rows, row + 1, rows, row, tail);
+        System.arraycopy(epochDay, row + 1, epochDay, row, tail);
+        System.arraycopy(cents, row + 1, cents, row, tail);
+        System.arraycopy(typeId, row + 1, typeId, row, tail);
+        System.arraycopy(categoryId, row + 1, categoryId, row, tail);
+        System.arraycopy(descriptionId, row + 1, descriptionId, row, tail);
+        System.arraycopy(accountId, row + 1, accountId, row, tail);
+        rows[--size] = null;
+        fireTableRowsDeleted(row, row);
+    }
+
+    // Running balances shift for every later row in the account, so the
+    // owner calls this after each ledger change to repaint the column
+    public void balancesChanged() {
+        if (size > 0) fireTableChanged(new TableModelEvent(this, 0, size - 1, BALANCE));
+    }
+
+    // Rows at ascending model indices replaced in one pass, with one event
+    public void setTransactions(int[] modelRows, List<? extends Transaction> transactions) {
+        if (modelRows.length == 0) return;
+        for (int i = 0; i < modelRows.length; i++) store(modelRows[i], transactions.get(i));
+        fireTableRowsUpdated(modelRows[0], modelRows[modelRows.length - 1]);
+    }
+
+    // Rows at ascending model indices removed in one compacting pass
+    public void removeTransactions(int[] modelRows) {
+        if (modelRows.length == 0) return;
+        int out = modelRows[0], next = 0;
+        for (int row = modelRows[0]; row < size; row++) {
+            if (next < modelRows.length && modelRows[next] == row) {
+                next++;
+                continue;
+            }
+            rows[out] = rows[row];
+            epochDay[out] = epochDay[row];
+            cents[out] = cents[row];
+            typeId[out] = typeId[row];
+            categoryId[out] = categoryId[row];
+            descriptionId[out] = descriptionId[row];
+            accountId[out] = accountId[row];
+            out++;
+        }
+        Arrays.fill(rows, out, size, null);
+        size = out;
+        if (modelRows.length == 1) fireTableRowsDeleted(modelRows[0], modelRows[0]);
+        else fireTableDataChanged();
+    }
+
+    private void store(int row, Transaction t) {
+        rows[row] = t;
+        epochDay[row] = (int) t.getDate().toEpochDay();
+        cents[row] = Math.round(t.getAmount() * 100);
+        typeId[row] = types.id(t.getType());
+        categoryId[row] = categories.id(t.getCategory());
+        descriptionId[row] = descriptions.id(t.getDescription());
+        accountId[row] = accounts.id(t.getAccount());
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= rows.length) return;
+        int n = Math.max(capacity, rows.length + (rows.length >> 1) + 16);
+        rows = Arrays.copyOf(rows, n);
+        epochDay = Arrays.copyOf(epochDay, n);
+        cents = Arrays.copyOf(cents, n);
+        typeId = Arrays.copyOf(typeId, n);
+        categoryId = Arrays.copyOf(categoryId, n);
+        descriptionId = Arrays.copyOf(descriptionId, n);
+        accountId = Arrays.copyOf(accountId, n);
+    }
+
+    // Primitive sort key of `column` for each of the given model rows
+    public long[] sortKeys(int column, int[] modelRows) {
+        long[] keys = new long[modelRows.length];
+        switch (column) {
+            case ID:
+                for (int i = 0; i < keys.length; i++) keys[i] = rows[modelRows[i]].getId();
+                return keys;
+            case DATE:
+                for (int i = 0; i < keys.length; i++) keys[i] = epochDay[modelRows[i]];
+                return keys;
+            case AMOUNT:
+                for (int i = 0; i < keys.length; i++) keys[i] = cents[modelRows[i]];
+                return keys;
+            case TYPE: {
+                int[] ranks = types.ranks();
+                for (int i = 0; i < keys.length; i++) keys[i] = ranks[typeId[modelRows[i]]];
+                return keys;
+            }
+            case CATEGORY: {
+                int[] ranks = categories.ranks();
+                for (int i = 0; i < keys.length; i++) keys[i] = ranks[categoryId[modelRows[i]]];
+                return keys;
+            }
+            case ACCOUNT: {
+                int[] ranks = accounts.ranks();
+                for (int i = 0; i < keys.length; i++) keys[i] = ranks[accountId[modelRows[i]]];
+                return keys;
+            }
+            case BALANCE:
+                for (int i = 0; i < keys.length; i++) keys[i] = ledger.balanceAfter(rows[modelRows[i]]);
+                return keys;
+            default: {
+                int[] ranks = descriptions.ranks();
+                for (int i = 0; i < keys.length; i++) keys[i] = ranks[descriptionId[modelRows[i]]];
+                return keys;
+            }
+        }
+    }
+
+    // True when any column's displayed text contains a match for the pattern
+    public boolean rowMatches(int row, Pattern pattern) {
+        Transaction t = rows[row];
+        return pattern.matcher(String.valueOf(t.getId())).find()
+            || pattern.matcher(t.getDate().toString()).find()
+            || pattern.matcher(t.getType()).find()
+            || pattern.matcher(t.getCategory()).find()
+            || pattern.matcher(FxRates.format(t.getAmount(), t.getCurrency())).find()
+            || pattern.matcher(String.valueOf(t.getDescription())).find()
+            || pattern.matcher(t.getAccount()).find();
+    }
+
+    // Formats the Amount and Balance columns in the row's own currency
+    static TableCellRenderer amountRenderer() {
+        return new DefaultTableCellRenderer() {
+            {
+                setHorizontalAlignment(SwingConstants.RIGHT);
+            }
+
+            @Override
+            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                           boolean hasFocus, int row, int column) {
+                super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+                Transaction t = ((TransactionTableModel) table.getModel()).getTransaction(table.convertRowIndexToModel(row));
+                setText(FxRates.format(((Number) value).doubleValue(), t.getCurrency()));
+                return this;
+            }
+        };
+    }
+}
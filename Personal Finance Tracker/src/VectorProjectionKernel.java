@@ -0,0 +1,47 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// SIMD version of ScalarProjectionKernel using jdk.incubator.vector. Each lane
+// runs its own xorshift64 generator, so it draws the same numbers as the
+// scalar kernel (totals differ only by fused multiply-add rounding).
+// Compile and run with --add-modules jdk.incubator.vector; CashFlowProjection
+// loads this class reflectively and falls back to scalar when it is absent.
+class VectorProjectionKernel implements ProjectionKernel {
+    private static final VectorSpecies<Double> D = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> L = LongVector.SPECIES_PREFERRED;
+
+    private final ScalarProjectionKernel tail = new ScalarProjectionKernel();
+
+    @Override
+    public void step(double[] balances, long[] rng, int from, int to, double[] mean, double[] sd, double[] sign, double scale) {
+        int lanes = Math.min(D.length(), L.length());
+        if (lanes != D.length() || lanes != L.length()) {
+            tail.step(balances, rng, from, to, mean, sd, sign, scale);
+            return;
+        }
+        int i = from;
+        for (int bound = from + (to - from) / lanes * lanes; i < bound; i += lanes) {
+            LongVector x = LongVector.fromArray(L, rng, i);
+            DoubleVector b = DoubleVector.fromArray(D, balances, i);
+            for (int c = 0; c < mean.length; c++) {
+                DoubleVector s = DoubleVector.zero(D);
+                for (int k = 0; k < 4; k++) {
+                    x = x.lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHL, 13));
+                    x = x.lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHR, 7));
+                    x = x.lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHL, 17));
+                    DoubleVector u = (DoubleVector) x.lanewise(VectorOperators.LSHR, 11)
+                            .convert(VectorOperators.L2D, 0);
+                    s = s.add(u.mul(0x1.0p-53));
+                }
+                DoubleVector z = s.sub(2).mul(ScalarProjectionKernel.SQRT3);
+                DoubleVector amount = z.fma(sd[c], mean[c]).max(0);
+                b = amount.mul(sign[c] * scale).add(b);
+            }
+            x.intoArray(rng, i);
+            b.intoArray(balances, i);
+        }
+        tail.step(balances, rng, i, to, mean, sd, sign, scale);
+    }
+}